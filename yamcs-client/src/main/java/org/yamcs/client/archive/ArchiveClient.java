@@ -42,6 +42,7 @@ import org.yamcs.protobuf.CreateTagRequest;
 import org.yamcs.protobuf.DeleteTagRequest;
 import org.yamcs.protobuf.EditTagRequest;
 import org.yamcs.protobuf.EventsApiClient;
+import org.yamcs.protobuf.ExportParameterColumnsRequest;
 import org.yamcs.protobuf.GetParameterRangesRequest;
 import org.yamcs.protobuf.IndexGroup;
 import org.yamcs.protobuf.IndexResponse;
@@ -59,6 +60,7 @@ import org.yamcs.protobuf.ListTagsRequest;
 import org.yamcs.protobuf.ListTagsResponse;
 import org.yamcs.protobuf.PacketsApiClient;
 import org.yamcs.protobuf.ParameterArchiveApiClient;
+import org.yamcs.protobuf.ParameterColumns;
 import org.yamcs.protobuf.Pvalue.ParameterData;
 import org.yamcs.protobuf.Pvalue.ParameterValue;
 import org.yamcs.protobuf.Pvalue.Ranges;
@@ -74,6 +76,7 @@ import org.yamcs.protobuf.StreamEventsRequest;
 import org.yamcs.protobuf.StreamIndexRequest;
 import org.yamcs.protobuf.StreamPacketIndexRequest;
 import org.yamcs.protobuf.StreamPacketsRequest;
+import org.yamcs.protobuf.StreamParameterHistoryRequest;
 import org.yamcs.protobuf.StreamParameterIndexRequest;
 import org.yamcs.protobuf.Table.GetTableDataRequest;
 import org.yamcs.protobuf.Table.ReadRowsRequest;
@@ -716,6 +719,81 @@ public class ArchiveClient {
         return new ValuePage(requestb.build()).future();
     }
 
+    public CompletableFuture<Void> streamValues(String parameter, StreamReceiver<ParameterValue> consumer,
+            Instant start, Instant stop, ListOption... options) {
+        StreamParameterHistoryRequest.Builder requestb = StreamParameterHistoryRequest.newBuilder()
+                .setInstance(instance)
+                .setName(parameter);
+        if (start != null) {
+            requestb.setStart(Timestamp.newBuilder().setSeconds(start.getEpochSecond()).setNanos(start.getNano()));
+        }
+        if (stop != null) {
+            requestb.setStop(Timestamp.newBuilder().setSeconds(stop.getEpochSecond()).setNanos(stop.getNano()));
+        }
+        for (ListOption option : options) {
+            if (option instanceof AscendingOption) {
+                requestb.setOrder(((AscendingOption) option).ascending ? "asc" : "desc");
+            } else if (option instanceof NoRepeatOption) {
+                requestb.setNorepeat(((NoRepeatOption) option).noRepeat);
+            } else if (option instanceof NoRealtimeOption) {
+                requestb.setNorealtime(((NoRealtimeOption) option).noRealtime);
+            } else {
+                throw new IllegalArgumentException("Usupported option " + option.getClass());
+            }
+        }
+        CompletableFuture<Void> f = new CompletableFuture<>();
+        parameterArchiveService.streamParameterHistory(null, requestb.build(), new Observer<ParameterData>() {
+
+            @Override
+            public void next(ParameterData message) {
+                message.getParameterList().forEach(consumer::accept);
+            }
+
+            @Override
+            public void completeExceptionally(Throwable t) {
+                f.completeExceptionally(t);
+            }
+
+            @Override
+            public void complete() {
+                f.complete(null);
+            }
+        });
+        return f;
+    }
+
+    public CompletableFuture<Void> exportParameterColumns(List<String> parameters,
+            StreamReceiver<ParameterColumns> consumer, Instant start, Instant stop) {
+        ExportParameterColumnsRequest.Builder requestb = ExportParameterColumnsRequest.newBuilder()
+                .setInstance(instance)
+                .addAllParameters(parameters);
+        if (start != null) {
+            requestb.setStart(Timestamp.newBuilder().setSeconds(start.getEpochSecond()).setNanos(start.getNano()));
+        }
+        if (stop != null) {
+            requestb.setStop(Timestamp.newBuilder().setSeconds(stop.getEpochSecond()).setNanos(stop.getNano()));
+        }
+        CompletableFuture<Void> f = new CompletableFuture<>();
+        parameterArchiveService.exportParameterColumns(null, requestb.build(), new Observer<ParameterColumns>() {
+
+            @Override
+            public void next(ParameterColumns message) {
+                consumer.accept(message);
+            }
+
+            @Override
+            public void completeExceptionally(Throwable t) {
+                f.completeExceptionally(t);
+            }
+
+            @Override
+            public void complete() {
+                f.complete(null);
+            }
+        });
+        return f;
+    }
+
     public CompletableFuture<List<Sample>> getSamples(String parameter, Instant start, Instant stop) {
         GetParameterSamplesRequest.Builder requestb = GetParameterSamplesRequest.newBuilder()
                 .setInstance(instance)
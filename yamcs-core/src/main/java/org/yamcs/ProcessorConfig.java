@@ -26,6 +26,10 @@ public class ProcessorConfig {
     private static final String CONFIG_KEY_CHECK_COMMAND_CLEARANCE = "checkCommandClearance";
     private static final String CONFIG_KEY_CHECK_PARAMETER_VALIDITY_RANGES = "checkParameterValidityRanges";
     private static final String CONFIG_KEY_SUBSCRIBE_CONTAINER_ARCHPART = "subscribeContainerArchivePartitions";
+    private static final String CONFIG_KEY_COMPILE_MATCH_CRITERIA = "compileMatchCriteria";
+    private static final String CONFIG_KEY_ACTIVE_COMMAND_RETENTION = "activeCommandRetention";
+    private static final String CONFIG_KEY_ACTIVE_COMMAND_TIMEOUT = "activeCommandTimeout";
+    private static final String CONFIG_KEY_MAX_ACTIVE_COMMANDS = "maxActiveCommands";
 
     boolean checkParameterAlarms = true;
     boolean parameterAlarmServerEnabled = false;
@@ -42,6 +46,18 @@ public class ProcessorConfig {
     //if set to true, subscribe by default to all containers that have the useAsArchivePartiton flag set
     // used to have nice statistics showing the number of each packet received for the realtime and replay processors
     boolean subscribeContainerArchivePartitions = true;
+
+    // if set to true, the match criteria (container restrictions, context alarms, command verifiers) are compiled to
+    // java bytecode instead of being interpreted
+    boolean compileMatchCriteria = false;
+
+    // how long (in seconds) the command history manager keeps the commands after they have completed
+    int activeCommandRetention = 60;
+    // how long (in seconds) the command history manager keeps the commands which did not complete, after the last
+    // update
+    int activeCommandTimeout = 3600;
+    // maximum number of commands kept by the command history manager; the oldest are removed first
+    int maxActiveCommands = 10000;
     
     
     /**
@@ -89,6 +105,14 @@ public class ProcessorConfig {
                     checkParameterValidityRanges = config.getBoolean(key);
                 } else if (CONFIG_KEY_SUBSCRIBE_CONTAINER_ARCHPART.equals(key)) {
                     subscribeContainerArchivePartitions = config.getBoolean(key);
+                } else if (CONFIG_KEY_COMPILE_MATCH_CRITERIA.equals(key)) {
+                    compileMatchCriteria = config.getBoolean(key);
+                } else if (CONFIG_KEY_ACTIVE_COMMAND_RETENTION.equals(key)) {
+                    activeCommandRetention = config.getInt(key);
+                } else if (CONFIG_KEY_ACTIVE_COMMAND_TIMEOUT.equals(key)) {
+                    activeCommandTimeout = config.getInt(key);
+                } else if (CONFIG_KEY_MAX_ACTIVE_COMMANDS.equals(key)) {
+                    maxActiveCommands = config.getInt(key);
                 } else {
                     log.warn("Ignoring unknown config key '{}'", key);
                 }
@@ -113,6 +137,10 @@ public class ProcessorConfig {
         spec.addOption(CONFIG_KEY_CHECK_COMMAND_CLEARANCE, OptionType.BOOLEAN).withDefault(false);
         spec.addOption(CONFIG_KEY_CHECK_PARAMETER_VALIDITY_RANGES, OptionType.ANY);
         spec.addOption(CONFIG_KEY_SUBSCRIBE_CONTAINER_ARCHPART, OptionType.BOOLEAN).withDefault(true);
+        spec.addOption(CONFIG_KEY_COMPILE_MATCH_CRITERIA, OptionType.BOOLEAN).withDefault(false);
+        spec.addOption(CONFIG_KEY_ACTIVE_COMMAND_RETENTION, OptionType.INTEGER).withDefault(60);
+        spec.addOption(CONFIG_KEY_ACTIVE_COMMAND_TIMEOUT, OptionType.INTEGER).withDefault(3600);
+        spec.addOption(CONFIG_KEY_MAX_ACTIVE_COMMANDS, OptionType.INTEGER).withDefault(10000);
 
 
         return spec;
@@ -185,6 +213,35 @@ public class ProcessorConfig {
         this.subscribeContainerArchivePartitions = b;
     }
 
+    public boolean compileMatchCriteria() {
+        return compileMatchCriteria;
+    }
+
+    public void setCompileMatchCriteria(boolean b) {
+        this.compileMatchCriteria = b;
+    }
+
+    /**
+     * 
+     * @return the number of seconds the completed commands are kept in the list of active commands
+     */
+    public int getActiveCommandRetention() {
+        return activeCommandRetention;
+    }
+
+    /**
+     * 
+     * @return the number of seconds after the last update when the commands that did not complete are removed from
+     *         the list of active commands
+     */
+    public int getActiveCommandTimeout() {
+        return activeCommandTimeout;
+    }
+
+    public int getMaxActiveCommands() {
+        return maxActiveCommands;
+    }
+
     @Override
     public String toString() {
         return "ProcessorConfig [checkParameterAlarms=" + checkParameterAlarms + ", parameterAlarmServerEnabled="
@@ -1,7 +1,30 @@
 package org.yamcs.alarms;
 
+import java.util.List;
+
 public interface AlarmListener<T> {
     public void notifyUpdate(AlarmNotificationType notificationType, ActiveAlarm<T> activeAlarm) ;
-    public void notifySeverityIncrease(ActiveAlarm<T> activeAlarm);    
+    public void notifySeverityIncrease(ActiveAlarm<T> activeAlarm);
     public void notifyValueUpdate(ActiveAlarm<T> activeAlarm);
+
+    /**
+     * Called once per processed delivery with all the notifications generated by it, in the order in which they have
+     * been generated.
+     * <p>
+     * The default implementation dispatches each notification to one of the methods above.
+     */
+    default void notifyBatch(List<AlarmNotification<T>> notifications) {
+        for (AlarmNotification<T> n : notifications) {
+            switch (n.getType()) {
+            case VALUE_UPDATED:
+                notifyValueUpdate(n.getActiveAlarm());
+                break;
+            case SEVERITY_INCREASED:
+                notifySeverityIncrease(n.getActiveAlarm());
+                break;
+            default:
+                notifyUpdate(n.getType(), n.getActiveAlarm());
+            }
+        }
+    }
 }
@@ -0,0 +1,31 @@
+package org.yamcs.alarms;
+
+/**
+ * One alarm notification produced by the {@link AlarmServer} while processing a value.
+ * <p>
+ * The notifications resulting from one delivery are collected and passed together to
+ * {@link AlarmListener#notifyBatch(java.util.List)}.
+ *
+ */
+public class AlarmNotification<T> {
+    final AlarmNotificationType type;
+    final ActiveAlarm<T> activeAlarm;
+
+    public AlarmNotification(AlarmNotificationType type, ActiveAlarm<T> activeAlarm) {
+        this.type = type;
+        this.activeAlarm = activeAlarm;
+    }
+
+    public AlarmNotificationType getType() {
+        return type;
+    }
+
+    public ActiveAlarm<T> getActiveAlarm() {
+        return activeAlarm;
+    }
+
+    @Override
+    public String toString() {
+        return "AlarmNotification [type=" + type + ", alarmId=" + activeAlarm.getId() + "]";
+    }
+}
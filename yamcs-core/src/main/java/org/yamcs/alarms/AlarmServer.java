@@ -1,5 +1,8 @@
 package org.yamcs.alarms;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -31,7 +34,11 @@ import com.google.common.util.concurrent.AbstractService;
  */
 public class AlarmServer<S, T> extends AbstractService {
 
+    static final int NUM_STRIPES = 64;
+
     private Map<S, ActiveAlarm<T>> activeAlarms = new ConcurrentHashMap<>();
+    // locks used to serialize the state transitions of one subject
+    private final Object[] stripes = new Object[NUM_STRIPES];
 
     final String yamcsInstance;
     static private final Logger log = LoggerFactory.getLogger(AlarmServer.class);
@@ -42,6 +49,9 @@ public class AlarmServer<S, T> extends AbstractService {
     public AlarmServer(String yamcsInstance, ScheduledThreadPoolExecutor timer) {
         this.yamcsInstance = yamcsInstance;
         this.timer = timer;
+        for (int i = 0; i < NUM_STRIPES; i++) {
+            stripes[i] = new Object();
+        }
     }
 
     /**
@@ -122,7 +132,9 @@ public class AlarmServer<S, T> extends AbstractService {
 
         if (alarm.isNormal()) {
             S subject = getSubject(alarm.getTriggerValue());
-            activeAlarms.remove(subject);
+            synchronized (getStripe(subject)) {
+                activeAlarms.remove(subject, alarm);
+            }
             alarmListeners.forEach(l -> l.notifyUpdate(AlarmNotificationType.CLEARED, alarm));
         }
 
@@ -163,10 +175,11 @@ public class AlarmServer<S, T> extends AbstractService {
         if (!activeAlarms.containsValue(alarm)) {
             return null;
         }
-        alarm.clear(username, clearTime, message);
-
         S subject = getSubject(alarm.getTriggerValue());
-        activeAlarms.remove(subject);
+        synchronized (getStripe(subject)) {
+            alarm.clear(username, clearTime, message);
+            activeAlarms.remove(subject, alarm);
+        }
         alarmListeners.forEach(l -> l.notifyUpdate(AlarmNotificationType.CLEARED, alarm));
 
         return alarm;
@@ -237,8 +250,48 @@ public class AlarmServer<S, T> extends AbstractService {
     }
 
     public void update(T value, int minViolations, boolean autoAck, boolean latching) {
-        S alarmId = getSubject(value);
+        List<AlarmNotification<T>> batch = new ArrayList<>(2);
+        update(value, minViolations, autoAck, latching, batch);
+        publish(batch);
+    }
 
+    /**
+     * Evaluates the alarm state transition caused by the value, without notifying the listeners.
+     * <p>
+     * The resulting notifications are appended to the batch; once all the values of a delivery have been processed,
+     * the batch has to be passed to {@link #publish(List)}.
+     * <p>
+     * The evaluation is serialized per subject (using a lock striped by the subject hash) such that the values of
+     * different subjects can be processed concurrently from different threads.
+     */
+    public void update(T value, int minViolations, boolean autoAck, boolean latching,
+            List<AlarmNotification<T>> batch) {
+        S subject = getSubject(value);
+        synchronized (getStripe(subject)) {
+            doUpdate(subject, value, minViolations, autoAck, latching, batch);
+        }
+    }
+
+    /**
+     * Sends the notifications collected with {@link #update(Object, int, boolean, boolean, List)} to the listeners,
+     * as one batch.
+     */
+    public void publish(List<AlarmNotification<T>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<AlarmNotification<T>> notifications = Collections.unmodifiableList(batch);
+        for (AlarmListener<T> l : alarmListeners) {
+            try {
+                l.notifyBatch(notifications);
+            } catch (Exception e) {
+                log.warn("Alarm listener {} failed to process notifications", l, e);
+            }
+        }
+    }
+
+    private void doUpdate(S alarmId, T value, int minViolations, boolean autoAck, boolean latching,
+            List<AlarmNotification<T>> batch) {
         ActiveAlarm<T> activeAlarm = activeAlarms.get(alarmId);
 
         boolean noAlarm = isOkNoAlarm(value);
@@ -256,21 +309,13 @@ public class AlarmServer<S, T> extends AbstractService {
 
             activeAlarm.setCurrentValue(value);
             activeAlarm.incrementValueCount();
-            for (AlarmListener<T> l : alarmListeners) {
-                l.notifyValueUpdate(activeAlarm);
-            }
+            batch.add(new AlarmNotification<>(AlarmNotificationType.VALUE_UPDATED, activeAlarm));
 
             if (updated) {
-                for (AlarmListener<T> l : alarmListeners) {
-                    l.notifyUpdate(AlarmNotificationType.RTN, activeAlarm);
-                }
+                batch.add(new AlarmNotification<>(AlarmNotificationType.RTN, activeAlarm));
                 if (activeAlarm.isNormal()) {
                     activeAlarms.remove(alarmId);
-                    if (activeAlarm.isNormal()) {
-                        for (AlarmListener<T> l : alarmListeners) {
-                            l.notifyUpdate(AlarmNotificationType.CLEARED, activeAlarm);
-                        }
-                    }
+                    batch.add(new AlarmNotification<>(AlarmNotificationType.CLEARED, activeAlarm));
                 }
             }
         } else { // alarm
@@ -291,24 +336,22 @@ public class AlarmServer<S, T> extends AbstractService {
             activeAlarm.trigger();
 
             if (newAlarm) {
-                activeAlarms.put(alarmId, activeAlarm);
-                for (AlarmListener<T> l : alarmListeners) {
-                    l.notifyUpdate(AlarmNotificationType.TRIGGERED, activeAlarm);
-                }
+                batch.add(new AlarmNotification<>(AlarmNotificationType.TRIGGERED, activeAlarm));
             } else {
                 if (moreSevere(value, activeAlarm.getMostSevereValue())) {
                     activeAlarm.setMostSevereValue(value);
-                    for (AlarmListener<T> l : alarmListeners) {
-                        l.notifySeverityIncrease(activeAlarm);
-                    }
-                }
-                for (AlarmListener<T> l : alarmListeners) {
-                    l.notifyValueUpdate(activeAlarm);
+                    batch.add(new AlarmNotification<>(AlarmNotificationType.SEVERITY_INCREASED, activeAlarm));
                 }
+                batch.add(new AlarmNotification<>(AlarmNotificationType.VALUE_UPDATED, activeAlarm));
             }
         }
     }
 
+    private Object getStripe(S subject) {
+        int h = subject.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (NUM_STRIPES - 1)];
+    }
+
     @SuppressWarnings("unchecked")
     private S getSubject(T value) {
         if (value instanceof ParameterValue) {
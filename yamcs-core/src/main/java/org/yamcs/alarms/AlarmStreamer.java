@@ -1,16 +1,28 @@
 package org.yamcs.alarms;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.yamcs.yarch.DataType;
 import org.yamcs.yarch.Stream;
 import org.yamcs.yarch.Tuple;
 import org.yamcs.yarch.TupleDefinition;
 
+/**
+ * Converts the alarm notifications into tuples and sends them to a stream (usually to be recorded in the alarms
+ * table).
+ * <p>
+ * If an executor is provided, the tuples are built in the notifying thread (such that they reflect the alarm state at
+ * the moment of the notification) but emitted from the executor. The executor should be single threaded in order to
+ * preserve the order of the notifications.
+ */
 public abstract class AlarmStreamer<T> implements AlarmListener<T> {
     protected Stream stream;
     final DataType dataType;
     final TupleDefinition tdefTemplate;
+    final Executor executor;
     public final static String CNAME_TRIGGER_TIME = "triggerTime";
     public final static String CNAME_CLEARED_BY = "clearedBy";
     public final static String CNAME_CLEAR_MSG = "clearedMessage";
@@ -26,21 +38,48 @@ public abstract class AlarmStreamer<T> implements AlarmListener<T> {
     public final static String CNAME_SHELVE_DURATION = "shelvedDuration";
 
     public AlarmStreamer(Stream s, DataType dataType, TupleDefinition tdefTemplate) {
+        this(s, dataType, tdefTemplate, null);
+    }
+
+    public AlarmStreamer(Stream s, DataType dataType, TupleDefinition tdefTemplate, Executor executor) {
         this.stream = s;
         this.dataType = dataType;
         this.tdefTemplate = tdefTemplate;
+        this.executor = executor;
+    }
+
+    @Override
+    public void notifyBatch(List<AlarmNotification<T>> notifications) {
+        List<Tuple> tuples = new ArrayList<>(notifications.size());
+        for (AlarmNotification<T> n : notifications) {
+            switch (n.getType()) {
+            case VALUE_UPDATED:
+                break;
+            case SEVERITY_INCREASED:
+                tuples.add(getSeverityIncreaseTuple(n.getActiveAlarm()));
+                break;
+            default:
+                tuples.add(getUpdateTuple(n.getType(), n.getActiveAlarm()));
+            }
+        }
+        if (!tuples.isEmpty()) {
+            emit(tuples);
+        }
     }
 
     @Override
     public void notifySeverityIncrease(ActiveAlarm<T> activeAlarm) {
+        emit(getSeverityIncreaseTuple(activeAlarm));
+    }
+
+    private Tuple getSeverityIncreaseTuple(ActiveAlarm<T> activeAlarm) {
         TupleDefinition tdef = tdefTemplate.copy();
         ArrayList<Object> al = getTupleKey(activeAlarm, AlarmNotificationType.SEVERITY_INCREASED);
 
         tdef.addColumn(getColNameSeverityIncreased(), dataType);
         al.add(getYarchValue(activeAlarm.getMostSevereValue()));
 
-        Tuple t = new Tuple(tdef, al);
-        stream.emitTuple(t);
+        return new Tuple(tdef, al);
     }
 
     @Override
@@ -50,6 +89,10 @@ public abstract class AlarmStreamer<T> implements AlarmListener<T> {
 
     @Override
     public void notifyUpdate(AlarmNotificationType notificationType, ActiveAlarm<T> activeAlarm) {
+        emit(getUpdateTuple(notificationType, activeAlarm));
+    }
+
+    private Tuple getUpdateTuple(AlarmNotificationType notificationType, ActiveAlarm<T> activeAlarm) {
         TupleDefinition tdef = tdefTemplate.copy();
         ArrayList<Object> al = getTupleKey(activeAlarm, notificationType);
 
@@ -112,9 +155,32 @@ public abstract class AlarmStreamer<T> implements AlarmListener<T> {
             break;
 
         }
-        Tuple t = new Tuple(tdef, al);
-        stream.emitTuple(t);
+        return new Tuple(tdef, al);
+    }
+
+    private void emit(Tuple t) {
+        if (executor == null) {
+            stream.emitTuple(t);
+        } else {
+            submit(() -> stream.emitTuple(t));
+        }
+    }
 
+    private void emit(List<Tuple> tuples) {
+        if (executor == null) {
+            tuples.forEach(t -> stream.emitTuple(t));
+        } else {
+            submit(() -> tuples.forEach(t -> stream.emitTuple(t)));
+        }
+    }
+
+    private void submit(Runnable r) {
+        try {
+            executor.execute(r);
+        } catch (RejectedExecutionException e) {
+            // the executor has been shutdown, the processor is stopping
+            r.run();
+        }
     }
 
     protected abstract String getColNameClear();
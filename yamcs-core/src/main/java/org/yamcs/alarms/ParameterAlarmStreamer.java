@@ -1,6 +1,7 @@
 package org.yamcs.alarms;
 
 import java.util.ArrayList;
+import java.util.concurrent.Executor;
 
 import org.yamcs.StandardTupleDefinitions;
 import org.yamcs.parameter.ParameterValue;
@@ -17,6 +18,14 @@ public class ParameterAlarmStreamer extends AlarmStreamer<ParameterValue> {
         super(s, DataType.PARAMETER_VALUE, StandardTupleDefinitions.PARAMETER_ALARM);
     }
 
+    /**
+     * Creates a streamer which emits the tuples from the given executor such that the processing thread is not
+     * blocked by the recording of the alarms.
+     */
+    public ParameterAlarmStreamer(Stream s, Executor executor) {
+        super(s, DataType.PARAMETER_VALUE, StandardTupleDefinitions.PARAMETER_ALARM, executor);
+    }
+
     protected ArrayList<Object> getTupleKey(ActiveAlarm<ParameterValue> activeAlarm, AlarmNotificationType e) {
         ArrayList<Object> al = new ArrayList<>(7);
 
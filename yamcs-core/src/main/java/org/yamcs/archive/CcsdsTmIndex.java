@@ -3,19 +3,23 @@ package org.yamcs.archive;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import javax.naming.ConfigurationException;
 
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
 import org.yamcs.AbstractYamcsService;
 import org.yamcs.InitException;
 import org.yamcs.NotThreadSafe;
+import org.yamcs.Spec;
+import org.yamcs.Spec.OptionType;
 import org.yamcs.StandardTupleDefinitions;
 import org.yamcs.StreamConfig;
 import org.yamcs.StreamConfig.StandardStreamType;
@@ -26,10 +30,8 @@ import org.yamcs.protobuf.Yamcs.NamedObjectId;
 import org.yamcs.tctm.CcsdsPacket;
 import org.yamcs.utils.TimeEncoding;
 import org.yamcs.utils.TimeInterval;
-import org.yamcs.utils.parser.ParseException;
 import org.yamcs.yarch.HistogramSegment;
 import org.yamcs.yarch.Stream;
-import org.yamcs.yarch.StreamSubscriber;
 import org.yamcs.yarch.Tuple;
 import org.yamcs.yarch.YarchDatabase;
 import org.yamcs.yarch.YarchDatabaseInstance;
@@ -40,7 +42,6 @@ import org.yamcs.yarch.rocksdb.Tablespace;
 import org.yamcs.yarch.rocksdb.YRDB;
 import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord;
 import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord.Type;
-import org.yamcs.yarch.streamsql.StreamSqlException;
 
 /**
  * Completeness index of CCSDS telemetry. The structure of the rocksdb records:
@@ -65,11 +66,18 @@ public class CcsdsTmIndex extends AbstractYamcsService implements TmIndexService
     // if time between two packets with the same apid is more than one hour,
     // make two records even if they packets are in sequence (because maybe there is a wrap around involved)
     static long maxApidInterval = 3600 * 1000l;
-    private static AtomicInteger streamCounter = new AtomicInteger();
     protected Tablespace tablespace;
     int tbsIndex;
     List<String> streamNames;
+    CcsdsTmIndexRebuilder rebuilder;
 
+    @Override
+    public Spec getSpec() {
+        Spec spec = new Spec();
+        spec.addOption("streams", OptionType.LIST).withElementType(OptionType.STRING);
+        spec.addOption("rebuildThreads", OptionType.INTEGER);
+        return spec;
+    }
 
     @Override
     public void init(String yamcsInstance, String serviceName, YConfiguration args) throws InitException {
@@ -85,9 +93,12 @@ public class CcsdsTmIndex extends AbstractYamcsService implements TmIndexService
         }
         YarchDatabaseInstance ydb = YarchDatabase.getInstance(yamcsInstance);
         tablespace = RdbStorageEngine.getInstance().getTablespace(ydb);
+        int rebuildThreads = config.getInt("rebuildThreads",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
         try {
             openDb();
-        } catch (RocksDBException e) {
+            rebuilder = new CcsdsTmIndexRebuilder(this, rebuildThreads);
+        } catch (RocksDBException | YarchException e) {
             throw new InitException("Failed to open rocksdb", e);
         }
     }
@@ -104,6 +115,7 @@ public class CcsdsTmIndex extends AbstractYamcsService implements TmIndexService
             }
             stream.addSubscriber(this);
         }
+        rebuilder.resume();
         notifyStarted();
     }
 
@@ -117,6 +129,7 @@ public class CcsdsTmIndex extends AbstractYamcsService implements TmIndexService
                 stream.removeSubscriber(this);
             }
         }
+        rebuilder.shutDown();
         notifyStopped();
     }
 
@@ -491,73 +504,140 @@ public class CcsdsTmIndex extends AbstractYamcsService implements TmIndexService
         }
     }
 
-    public synchronized CompletableFuture<Void> rebuild(TimeInterval interval) throws YarchException {
-        if (interval.hasStart() || interval.hasEnd()) {
-            log.info("{}: Rebuilding ccsds tm index for time interval: {}", yamcsInstance, interval.toStringEncoded());
-        } else {
-            log.info("{} Rebuilding ccsds tm index", yamcsInstance);
-        }
-
-        CompletableFuture<Void> cf = new CompletableFuture<>();
-
-        try {
-            deleteRecords(interval);
-        } catch (Exception e) {
-            log.error("Error when removing existing histograms", e);
-            cf.completeExceptionally(e);
-            return cf;
-        }
+    /**
+     * Rebuilds the index for the given interval from the tm table.
+     * <p>
+     * The rebuild is performed in parallel chunks, see {@link CcsdsTmIndexRebuilder}.
+     *
+     * @return a future completed when the rebuild is finished
+     */
+    public CompletableFuture<Void> rebuild(TimeInterval interval) throws YarchException {
+        return rebuilder.rebuild(interval).getFuture();
+    }
 
-        String timeColumnName = StandardTupleDefinitions.GENTIME_COLUMN;
-        String streamName = "histo_rebuild_" + streamCounter.incrementAndGet();
-        YarchDatabaseInstance ydb = YarchDatabase.getInstance(yamcsInstance);
-        try {
-            ydb.execute("create stream " + streamName + " as select * from tm "
-                    + getWhereCondition(timeColumnName, interval));
-        } catch (StreamSqlException | ParseException e) {
-            throw new RuntimeException(e);
+    private synchronized void deleteRecords(TimeInterval interval) throws RocksDBException {
+        try (WriteBatch writeBatch = new WriteBatch(); WriteOptions wo = new WriteOptions()) {
+            deleteRecords(writeBatch, interval.hasStart() ? interval.getStart() : 0,
+                    interval.hasEnd() ? interval.getEnd() : Long.MAX_VALUE);
+            tablespace.getRdb().getDb().write(wo, writeBatch);
         }
+    }
 
-        Stream stream = ydb.getStream(streamName);
-        stream.addSubscriber(new StreamSubscriber() {
-            @Override
-            public void streamClosed(Stream stream) {
-                cf.complete(null);
+    /**
+     * Extends the interval [start, stop) such that no index record starts before and ends inside it or starts inside
+     * and ends after it.
+     *
+     * @return the new start and stop
+     */
+    synchronized long[] extendInterval(long start, long stop) throws RocksDBException {
+        boolean changed = true;
+        try (RocksIterator it = tablespace.getRdb().newIterator()) {
+            while (changed) {
+                changed = false;
+                for (short apid : getApids(it)) {
+                    // the last record starting before start
+                    it.seek(rangeStartKey(apid, start));
+                    it.prev();
+                    Record r = new Record(it.key(), it.value());
+                    if (r.apid == apid && r.lastTime >= start && r.firstTime < start) {
+                        start = r.firstTime;
+                        changed = true;
+                    }
+                    // the last record starting before stop
+                    it.seek(Record.key(tbsIndex, apid, stop, (short) 0));
+                    it.prev();
+                    r = new Record(it.key(), it.value());
+                    if (r.apid == apid && r.firstTime >= start && r.lastTime >= stop) {
+                        stop = r.lastTime + 1;
+                        changed = true;
+                    }
+                }
             }
+        }
+        return new long[] { start, stop };
+    }
 
-            @Override
-            public void onTuple(Stream stream, Tuple tuple) {
-                CcsdsTmIndex.this.onTuple(stream, tuple);
+    /**
+     * Adds to the write batch the deletion of all the records starting in [start, stop)
+     */
+    synchronized void deleteRecords(WriteBatch writeBatch, long start, long stop) throws RocksDBException {
+        try (RocksIterator it = tablespace.getRdb().newIterator()) {
+            for (short apid : getApids(it)) {
+                writeBatch.deleteRange(rangeStartKey(apid, start), Record.key(tbsIndex, apid, stop, (short) 0));
             }
-        });
-        stream.start();
-
-        return cf;
+        }
     }
 
-    private synchronized void deleteRecords(TimeInterval interval) throws RocksDBException {
-        YRDB db = tablespace.getRdb();
+    /**
+     * Adds to the write batch the records of one APID built from the packets in [start, stop).
+     * <p>
+     * The existing records starting in the interval are removed. The first record is attached to the existing record
+     * before the interval and the last one to the existing record after the interval if the packets are in sequence.
+     *
+     * @param records
+     *            - non empty list of records of one APID, sorted by the start time
+     */
+    synchronized void mergeRecords(YRDB db, WriteBatch writeBatch, List<Record> records, long start, long stop)
+            throws RocksDBException {
+        short apid = records.get(0).apid;
+        byte[] rangeStart = rangeStartKey(apid, start);
+        byte[] rangeStop = Record.key(tbsIndex, apid, stop, (short) 0);
+        writeBatch.deleteRange(rangeStart, rangeStop);
+
         try (RocksIterator it = db.newIterator()) {
-            it.seekToFirst(); // header
-            it.next();
-            while (it.isValid()) {
-                Record r = new Record(it.key(), it.value());
-                if (r.apid == Short.MAX_VALUE) {
-                    break;
+            Record first = records.get(0);
+            it.seek(rangeStart);
+            it.prev();
+            if (it.isValid()) {
+                Record left = new Record(it.key(), it.value());
+                if (left.apid == apid && compare(first.firstTime, first.seqFirst, left.lastTime, left.seqLast) == 1) {
+                    left.lastTime = first.lastTime;
+                    left.seqLast = first.seqLast;
+                    left.numPackets += first.numPackets;
+                    records.set(0, left);
                 }
-                byte[] keyStart = Record.key(tbsIndex, r.apid, interval.hasStart() ? interval.getStart() : 0,
-                        (short) 0);
-                byte[] keyEnd;
-                if (interval.hasEnd()) {
-                    keyEnd = Record.key(tbsIndex, r.apid, interval.getEnd(), (short) 0);
-                } else {
-                    keyEnd = Record.key(tbsIndex, r.apid, Long.MAX_VALUE, (short) 0);
+            }
+
+            Record last = records.get(records.size() - 1);
+            it.seek(rangeStop);
+            if (it.isValid()) {
+                Record right = new Record(it.key(), it.value());
+                if (right.apid == apid
+                        && compare(last.lastTime, last.seqLast, right.firstTime, right.seqFirst) == -1) {
+                    last.lastTime = right.lastTime;
+                    last.seqLast = right.seqLast;
+                    last.numPackets += right.numPackets;
+                    writeBatch.delete(right.key(tbsIndex));
                 }
+            }
+        }
+        for (Record r : records) {
+            writeBatch.put(r.key(tbsIndex), r.val());
+        }
+    }
 
-                it.seek(keyEnd);
-                db.getDb().deleteRange(keyStart, keyEnd);
+    // the apids present in the index
+    private List<Short> getApids(RocksIterator it) {
+        List<Short> apids = new ArrayList<>();
+        short apid = 0;
+        while (true) {
+            it.seek(Record.key(tbsIndex, apid, Long.MAX_VALUE, Short.MAX_VALUE));
+            Record r = new Record(it.key(), it.value());
+            apid = r.apid;
+            if (apid == Short.MAX_VALUE) {
+                break;
             }
+            apids.add(apid);
+        }
+        return apids;
+    }
+
+    // the key of the first record of the apid starting at or after the given time; skips the header record
+    private byte[] rangeStartKey(short apid, long start) {
+        if (apid == 0 && start <= 0) {
+            return Record.key(tbsIndex, apid, 0, (short) 1);
         }
+        return Record.key(tbsIndex, apid, start, (short) 0);
     }
 
     public static String getWhereCondition(String timeColumnName, TimeInterval interval) {
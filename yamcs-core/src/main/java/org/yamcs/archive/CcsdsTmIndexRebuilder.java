@@ -0,0 +1,404 @@
+package org.yamcs.archive;
+
+import static org.yamcs.yarch.rocksdb.RdbStorageEngine.TBS_INDEX_SIZE;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+import org.yamcs.StandardTupleDefinitions;
+import org.yamcs.logging.Log;
+import org.yamcs.tctm.CcsdsPacket;
+import org.yamcs.utils.ByteArrayUtils;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.TimeInterval;
+import org.yamcs.yarch.Stream;
+import org.yamcs.yarch.StreamSubscriber;
+import org.yamcs.yarch.TableDefinition;
+import org.yamcs.yarch.Tuple;
+import org.yamcs.yarch.YarchDatabase;
+import org.yamcs.yarch.YarchDatabaseInstance;
+import org.yamcs.yarch.YarchException;
+import org.yamcs.yarch.rocksdb.AscendingRangeIterator;
+import org.yamcs.yarch.rocksdb.Tablespace;
+import org.yamcs.yarch.rocksdb.YRDB;
+import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord;
+import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord.Type;
+import org.yamcs.yarch.streamsql.StreamSqlResult;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Rebuilds the {@link CcsdsTmIndex} from the tm table.
+ * <p>
+ * The interval to be rebuilt is first extended such that it does not cut any existing index record and the records
+ * inside are removed. Then it is split into chunks, at the boundaries of the tm table time partitions (if the table is
+ * partitioned by time) and of the days. The chunks are scanned in parallel, each scan producing for each APID a
+ * sorted list of records (a run). The runs of one chunk are merged into the index in one write batch, attaching the
+ * first and last record to the neighbouring records from the previous and next chunks if the packets are in sequence.
+ * <p>
+ * The chunks not yet merged are persisted in the tablespace (in the same write batch which merges them) such that if
+ * Yamcs is stopped during a rebuild, the remaining chunks are rebuilt when the index service is started again.
+ * <p>
+ * The rebuild jobs are run one after the other; the index lock is only taken when merging a chunk, such that the
+ * packets received in realtime are indexed during a rebuild.
+ */
+class CcsdsTmIndexRebuilder {
+    static final String TM_TABLE_NAME = XtceTmRecorder.TABLE_NAME;
+    static final long CHUNK_DURATION = 86400_000L;
+
+    private static final AtomicInteger streamCounter = new AtomicInteger();
+
+    final CcsdsTmIndex index;
+    final Tablespace tablespace;
+    final String yamcsInstance;
+    final ExecutorService executor;
+    private final Log log;
+    // tbsIndex of the record under which the chunks still to be merged are stored
+    private final int tbsIndex;
+
+    // the last job submitted; the next one is started when it is finished
+    private RebuildJob lastJob;
+
+    CcsdsTmIndexRebuilder(CcsdsTmIndex index, int numThreads) throws RocksDBException, YarchException {
+        this.index = index;
+        this.tablespace = index.tablespace;
+        this.yamcsInstance = index.getYamcsInstance();
+        this.log = new Log(CcsdsTmIndexRebuilder.class, yamcsInstance);
+        executor = Executors.newFixedThreadPool(numThreads, new ThreadFactoryBuilder()
+                .setNameFormat("CcsdsTmIndex-Rebuild-" + yamcsInstance + "-%d").setDaemon(true).build());
+        tbsIndex = getTbsIndex();
+    }
+
+    /**
+     * Schedules the rebuild of the interval
+     *
+     * @return the job; its future is completed when all the chunks have been merged.
+     */
+    synchronized RebuildJob rebuild(TimeInterval interval) {
+        RebuildJob job = new RebuildJob();
+        submit(job, () -> {
+            List<Chunk> chunks = prepare(interval);
+            log.info("Rebuilding the ccsds tm index for {} in {} chunks", interval.toStringEncoded(), chunks.size());
+            return chunks;
+        });
+        return job;
+    }
+
+    /**
+     * Schedules the rebuild of the chunks left over from the previous run
+     */
+    synchronized void resume() {
+        List<Chunk> chunks = new ArrayList<>();
+        byte[] range = new byte[TBS_INDEX_SIZE];
+        ByteArrayUtils.encodeInt(tbsIndex, range, 0);
+        try (AscendingRangeIterator it = new AscendingRangeIterator(tablespace.getRdb().newIterator(), range,
+                range)) {
+            while (it.isValid()) {
+                byte[] key = it.key();
+                chunks.add(new Chunk(ByteArrayUtils.decodeLong(key, TBS_INDEX_SIZE),
+                        ByteArrayUtils.decodeLong(key, TBS_INDEX_SIZE + 8)));
+                it.next();
+            }
+        } catch (RocksDBException e) {
+            log.error("Failed to load the ccsds tm index chunks left over from the previous run", e);
+            return;
+        }
+        if (!chunks.isEmpty()) {
+            log.info("Resuming the rebuild of the ccsds tm index for {} chunks left over from the previous run",
+                    chunks.size());
+            submit(new RebuildJob(), () -> chunks);
+        }
+    }
+
+    void shutDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     *
+     * @return the last rebuild job submitted or null if there was none
+     */
+    synchronized RebuildJob getLastJob() {
+        return lastJob;
+    }
+
+    private void submit(RebuildJob job, ChunkSupplier chunkSupplier) {
+        CompletableFuture<?> previous = lastJob == null ? CompletableFuture.completedFuture(null) : lastJob.future;
+        lastJob = job;
+        previous.whenCompleteAsync((v, e) -> {
+            try {
+                job.start(chunkSupplier.get());
+            } catch (Exception e1) {
+                log.error("Failed to start the rebuild of the ccsds tm index", e1);
+                job.future.completeExceptionally(e1);
+            }
+        }, executor);
+    }
+
+    /**
+     * Extends the interval such that it does not cut any index record, removes the records in the extended interval
+     * and splits it into chunks which are persisted.
+     */
+    List<Chunk> prepare(TimeInterval interval) throws RocksDBException {
+        YarchDatabaseInstance ydb = YarchDatabase.getInstance(yamcsInstance);
+        TableDefinition tblDef = ydb.getTable(TM_TABLE_NAME);
+        if (tblDef == null) {
+            return new ArrayList<>();
+        }
+        long start = interval.hasStart() ? interval.getStart() : getTableLimit(ydb, true);
+        long stop = interval.hasEnd() ? interval.getEnd() : getTableLimit(ydb, false) + 1;
+        if (start >= stop) {
+            return new ArrayList<>();
+        }
+
+        synchronized (index) {
+            long[] limits = index.extendInterval(start, stop);
+            List<Chunk> chunks = getChunks(tblDef, limits[0], limits[1]);
+            try (WriteBatch writeBatch = new WriteBatch(); WriteOptions wo = new WriteOptions()) {
+                index.deleteRecords(writeBatch, limits[0], limits[1]);
+                for (Chunk chunk : chunks) {
+                    writeBatch.put(getChunkKey(chunk), new byte[0]);
+                }
+                tablespace.getRdb().getDb().write(wo, writeBatch);
+            }
+            return chunks;
+        }
+    }
+
+    // returns the first or the last generation time in the tm table
+    private long getTableLimit(YarchDatabaseInstance ydb, boolean first) {
+        String query = "select gentime from " + TM_TABLE_NAME + (first ? "" : " order desc") + " limit 1";
+        StreamSqlResult r = ydb.executeUnchecked(query);
+        try {
+            if (r.hasNext()) {
+                return (Long) r.next().getColumn(StandardTupleDefinitions.GENTIME_COLUMN);
+            }
+            return first ? TimeEncoding.MAX_INSTANT : TimeEncoding.MIN_INSTANT;
+        } finally {
+            r.close();
+        }
+    }
+
+    /**
+     * Splits [start, stop) into chunks not crossing the time partitions of the table and the day boundaries
+     */
+    static List<Chunk> getChunks(TableDefinition tblDef, long start, long stop) {
+        List<Chunk> chunks = new ArrayList<>();
+        long t = start;
+        while (t < stop) {
+            long next = (Math.floorDiv(t, CHUNK_DURATION) + 1) * CHUNK_DURATION;
+            if (tblDef.isPartitionedByTime()) {
+                next = Math.min(next,
+                        tblDef.getPartitioningSpec().getTimePartitioningSchema().getPartitionInfo(t).getEnd());
+            }
+            next = Math.min(next, stop);
+            chunks.add(new Chunk(t, next));
+            t = next;
+        }
+        return chunks;
+    }
+
+    private void runChunk(RebuildJob job, Chunk chunk) {
+        try {
+            Map<Short, ApidRun> runs = scan(chunk);
+            synchronized (index) {
+                try (WriteBatch writeBatch = new WriteBatch(); WriteOptions wo = new WriteOptions()) {
+                    YRDB db = tablespace.getRdb();
+                    for (ApidRun run : runs.values()) {
+                        index.mergeRecords(db, writeBatch, run.getRecords(), chunk.start, chunk.stop);
+                    }
+                    writeBatch.delete(getChunkKey(chunk));
+                    db.getDb().write(wo, writeBatch);
+                }
+            }
+            job.chunkDone(chunk, true);
+        } catch (Exception e) {
+            log.error("Failed to rebuild the ccsds tm index for {}", chunk, e);
+            job.chunkDone(chunk, false);
+        }
+    }
+
+    /**
+     * Scans the tm table for the chunk and returns the sorted index records for each APID
+     */
+    private Map<Short, ApidRun> scan(Chunk chunk) throws Exception {
+        Map<Short, ApidRun> runs = new HashMap<>();
+        CompletableFuture<Void> cf = new CompletableFuture<>();
+        YarchDatabaseInstance ydb = YarchDatabase.getInstance(yamcsInstance);
+        String streamName = "ccsds_index_rebuild_" + streamCounter.incrementAndGet();
+        ydb.execute("create stream " + streamName + " as select gentime, packet from " + TM_TABLE_NAME
+                + " where gentime >= " + chunk.start + " and gentime < " + chunk.stop);
+        Stream stream = ydb.getStream(streamName);
+        stream.addSubscriber(new StreamSubscriber() {
+            @Override
+            public void streamClosed(Stream stream) {
+                cf.complete(null);
+            }
+
+            @Override
+            public void onTuple(Stream stream, Tuple tuple) {
+                byte[] packet = (byte[]) tuple.getColumn(StandardTupleDefinitions.TM_PACKET_COLUMN);
+                long time = (Long) tuple.getColumn(StandardTupleDefinitions.GENTIME_COLUMN);
+                if (packet.length < 7) {
+                    return;
+                }
+                short apid = CcsdsPacket.getAPID(packet);
+                short seq = (short) CcsdsPacket.getSequenceCount(packet);
+                runs.computeIfAbsent(apid, ApidRun::new).add(time, seq);
+            }
+        });
+        stream.start();
+        try {
+            cf.get();
+        } catch (InterruptedException e) {
+            stream.close();
+            throw e;
+        }
+        return runs;
+    }
+
+    // the chunk is stored with the key (tbsIndex, start, stop) and an empty value; the stop is part of the key such
+    // that a chunk left over from a failed rebuild is not overwritten by a new chunk starting at the same time
+    private byte[] getChunkKey(Chunk chunk) {
+        byte[] key = new byte[TBS_INDEX_SIZE + 16];
+        ByteArrayUtils.encodeInt(tbsIndex, key, 0);
+        ByteArrayUtils.encodeLong(chunk.start, key, TBS_INDEX_SIZE);
+        ByteArrayUtils.encodeLong(chunk.stop, key, TBS_INDEX_SIZE + 8);
+        return key;
+    }
+
+    private int getTbsIndex() throws YarchException, RocksDBException {
+        List<TablespaceRecord> trl = tablespace.filter(Type.TM_INDEX_REBUILD, yamcsInstance,
+                tr -> CcsdsTmIndex.TM_INDEX_NAME.equals(tr.getTmIndexName()));
+        if (trl.isEmpty()) {
+            TablespaceRecord.Builder trb = TablespaceRecord.newBuilder().setType(Type.TM_INDEX_REBUILD)
+                    .setTmIndexName(CcsdsTmIndex.TM_INDEX_NAME);
+            return tablespace.createMetadataRecord(yamcsInstance, trb).getTbsIndex();
+        } else {
+            return trl.get(0).getTbsIndex();
+        }
+    }
+
+    /**
+     * The records of one APID in one chunk, built from the packets received in time order
+     */
+    static class ApidRun {
+        final short apid;
+        final List<Record> records = new ArrayList<>();
+        Record current;
+
+        ApidRun(short apid) {
+            this.apid = apid;
+        }
+
+        void add(long time, short seq) {
+            if (current != null) {
+                int c = CcsdsTmIndex.compare(time, seq, current.lastTime(), current.lastSeq());
+                if (c == 0) { // duplicate
+                    return;
+                } else if (c == 1) {
+                    current.lastTime = time;
+                    current.seqLast = seq;
+                    current.numPackets++;
+                    return;
+                }
+            }
+            current = new Record(apid, time, seq, 1);
+            records.add(current);
+        }
+
+        List<Record> getRecords() {
+            records.sort(Comparator.comparingLong(Record::firstTime).thenComparingInt(Record::firstSeq));
+            return records;
+        }
+    }
+
+    static class Chunk {
+        final long start;
+        final long stop;
+
+        Chunk(long start, long stop) {
+            this.start = start;
+            this.stop = stop;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + TimeEncoding.toString(start) + " - " + TimeEncoding.toString(stop) + ")";
+        }
+    }
+
+    @FunctionalInterface
+    interface ChunkSupplier {
+        List<Chunk> get() throws Exception;
+    }
+
+    /**
+     * A rebuild request, made of a number of chunks
+     */
+    class RebuildJob {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        private int numChunks;
+        private int completedChunks;
+        private int failedChunks;
+        private long startTime;
+
+        synchronized void start(List<Chunk> chunks) {
+            numChunks = chunks.size();
+            startTime = System.currentTimeMillis();
+            if (chunks.isEmpty()) {
+                future.complete(null);
+                return;
+            }
+            for (Chunk chunk : chunks) {
+                executor.execute(() -> runChunk(this, chunk));
+            }
+        }
+
+        synchronized void chunkDone(Chunk chunk, boolean success) {
+            if (success) {
+                completedChunks++;
+            } else {
+                failedChunks++;
+            }
+            int done = completedChunks + failedChunks;
+            log.info("Ccsds tm index rebuild: {} done, {}/{} chunks processed", chunk, done, numChunks);
+            if (done == numChunks) {
+                log.info("Ccsds tm index rebuild finished in {} seconds, {} chunks failed",
+                        (System.currentTimeMillis() - startTime) / 1000, failedChunks);
+                if (failedChunks > 0) {
+                    future.completeExceptionally(new YarchException(failedChunks + " chunks (out of " + numChunks
+                            + ") failed to be rebuilt; they will be retried at the next restart"));
+                } else {
+                    future.complete(null);
+                }
+            }
+        }
+
+        CompletableFuture<Void> getFuture() {
+            return future;
+        }
+
+        synchronized int getNumChunks() {
+            return numChunks;
+        }
+
+        synchronized int getCompletedChunks() {
+            return completedChunks;
+        }
+
+        synchronized int getFailedChunks() {
+            return failedChunks;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.yamcs.cfdp;
 import static org.yamcs.cfdp.CfdpService.*;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -150,7 +151,19 @@ public class CfdpIncomingTransfer extends OngoingCfdpTransfer {
                 hdr.getSequenceNumber());
 
         needsFinish = acknowledged;
-        incomingDataFile = new DataFile(-1);
+        incomingDataFile = createDataFile(config.getString("receiveBufferDir", null));
+    }
+
+    private DataFile createDataFile(String receiveBufferDir) {
+        if (receiveBufferDir != null) {
+            try {
+                return new DiskDataFile(Paths.get(receiveBufferDir), -1);
+            } catch (IOException e) {
+                log.warn("TXID{} cannot create the receive buffer file in {}, keeping the data in memory",
+                        cfdpTransactionId, receiveBufferDir, e);
+            }
+        }
+        return new DataFile(-1);
     }
 
     @Override
@@ -339,12 +352,15 @@ public class CfdpIncomingTransfer extends OngoingCfdpTransfer {
                 log.warn("TXID{} received data file whose end offset {} is larger than the file size {}",
                         cfdpTransactionId, dfs.getEndOffset(), fileSize);
                 handleFault(ConditionCode.FILE_SIZE_ERROR);
+                // the segment is not stored; with ABANDON the data file is already closed
+                return;
             }
         } else {
             if (dfs.getEndOffset() > maxFileSize) {
                 log.warn("TXID{} received data file whose end offset {} is larger than the maximum file size {}",
                         cfdpTransactionId, dfs.getEndOffset(), maxFileSize);
                 handleFault(ConditionCode.FILESTORE_REJECTION);
+                return;
             }
         }
 
@@ -358,24 +374,48 @@ public class CfdpIncomingTransfer extends OngoingCfdpTransfer {
         long expectedChecksum = eofPacket.getFileChecksum();
         if (expectedChecksum == incomingDataFile.getChecksum()) {
             log.info("TXID{} file completed, checksum OK", cfdpTransactionId);
+            // the file is saved before finishing because the received data is released when the transfer completes
+            ConditionCode code = trySaveFileInBucket(false) ? ConditionCode.NO_ERROR
+                    : ConditionCode.FILESTORE_REJECTION;
             if (needsFinish) {
-                finish(ConditionCode.NO_ERROR);
+                finish(code);
             } else {
-                complete(ConditionCode.NO_ERROR);
+                complete(code);
+            }
+            if (code == ConditionCode.NO_ERROR) {
+                sendInfoEvent(ETYPE_TRANSFER_FINISHED,
+                        " downlink finished and saved in " + incomingBucket.getName() + "/" + getObjectName());
             }
-            saveFileInBucket(false, Collections.emptyList());
-            sendInfoEvent(ETYPE_TRANSFER_FINISHED,
-                    " downlink finished and saved in " + incomingBucket.getName() + "/" + getObjectName());
         } else {
             log.warn("TXID{} file checksum failure; EOF packet indicates {} while data received has {}",
                     cfdpTransactionId, expectedChecksum, incomingDataFile.getChecksum());
-            saveFileInBucket(true, Collections.emptyList());
-            sendWarnEvent(ETYPE_TRANSFER_FINISHED,
-                    " checksum failure; corrupted file saved in " + incomingBucket.getName() + "/" + getObjectName());
+            if (trySaveFileInBucket(true)) {
+                sendWarnEvent(ETYPE_TRANSFER_FINISHED, " checksum failure; corrupted file saved in "
+                        + incomingBucket.getName() + "/" + getObjectName());
+            }
             handleFault(ConditionCode.FILE_CHECKSUM_FAILURE);
         }
     }
 
+    /**
+     * Saves the received file in the bucket; a failure is reported as an event such that the transfer can still be
+     * finished.
+     * 
+     * @return true if the file has been saved
+     */
+    private boolean trySaveFileInBucket(boolean checksumError) {
+        try {
+            saveFileInBucket(checksumError, Collections.emptyList());
+            return true;
+        } catch (RuntimeException e) {
+            log.error("TXID{} cannot save the received file", cfdpTransactionId, e);
+            failureReason = "cannot save the received file: " + e.getMessage();
+            sendWarnEvent(ETYPE_TRANSFER_FINISHED, " cannot save the received file in "
+                    + incomingBucket.getName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
     private void finish(ConditionCode code) {
         if (inTxState == InTxState.FIN) {
             throw new IllegalStateException("already in FINISHED state");
@@ -419,6 +459,7 @@ public class CfdpIncomingTransfer extends OngoingCfdpTransfer {
         if (!acknowledged) {
             checkTimer.cancel();
         }
+        incomingDataFile.close();
 
         if (conditionCode == ConditionCode.NO_ERROR) {
             changeState(TransferState.COMPLETED);
@@ -70,6 +70,8 @@ public class CfdpOutgoingTransfer extends OngoingCfdpTransfer {
     private final int seqNrSize;
     private final int maxDataSize;
     private final int sleepBetweenPdus;
+    private final int pduBurst;
+    private final PduPacer pacer;
     private final boolean closureRequested;
     private final List<FileDataPacket> sentFileDataPackets = new ArrayList<>();
     private Queue<FileDataPacket> toResend;
@@ -95,13 +97,14 @@ public class CfdpOutgoingTransfer extends OngoingCfdpTransfer {
     MetadataPacket metadata;
     ConditionCode reasonForCancellation;
 
-    public CfdpOutgoingTransfer(String yamcsInstance, long id, long creationTime, ScheduledThreadPoolExecutor executor, PutRequest request,
-            Stream cfdpOut, YConfiguration config, EventProducer eventProducer, TransferMonitor monitor,
-            Map<ConditionCode, FaultHandlingAction> faultHandlerActions) {
+    public CfdpOutgoingTransfer(String yamcsInstance, long id, long creationTime, ScheduledThreadPoolExecutor executor,
+            PutRequest request, PduPacer pacer, Stream cfdpOut, YConfiguration config, EventProducer eventProducer,
+            TransferMonitor monitor, Map<ConditionCode, FaultHandlingAction> faultHandlerActions) {
         super(yamcsInstance, id, creationTime, executor, config, makeTransactionId(request.getSourceId(), config, id),
                 request.getDestinationId(), cfdpOut,
                 eventProducer, monitor, faultHandlerActions);
         this.request = request;
+        this.pacer = pacer;
         entityIdLength = config.getInt("entityIdLength");
         seqNrSize = config.getInt("sequenceNrLength");
         int maxPduSize = config.getInt("maxPduSize", 512);
@@ -114,6 +117,7 @@ public class CfdpOutgoingTransfer extends OngoingCfdpTransfer {
 
         outTxState = OutTxState.START;
         this.sleepBetweenPdus = config.getInt("sleepBetweenPdus", 500);
+        this.pduBurst = config.getInt("pduBurst", 1);
         this.closureRequested = request.isClosureRequested();
 
         // create header for all file directive PDUs
@@ -156,63 +160,120 @@ public class CfdpOutgoingTransfer extends OngoingCfdpTransfer {
         if (suspended) {
             return;
         }
+        if (outTxState == OutTxState.COMPLETED) {
+            pduSendingSchedule.cancel(true);
+            cancelInactivityTimer();
+            return;
+        }
+        // send a burst of PDUs, as much as the pacer allows
+        int n = 0;
+        while (n < pduBurst && !suspended && outTxState != OutTxState.COMPLETED && sendNextPdu()) {
+            n++;
+        }
+        if (n > 0) {
+            monitor.stateChanged(this);
+        }
+    }
 
+    /**
+     * Sends the next PDU if there is one to be sent and the pacer allows it.
+     *
+     * @return true if a PDU has been sent
+     */
+    private boolean sendNextPdu() {
         switch (outTxState) {
         case START:
             metadata = getMetadataPacket();
-            sendInfoEvent(ETYPE_TRANSFER_META, "Sending metadata: "+toEventMsg(metadata));
+            if (!acquire(metadata)) {
+                return false;
+            }
+            sendInfoEvent(ETYPE_TRANSFER_META, "Sending metadata: " + toEventMsg(metadata));
             sendPacket(metadata);
             this.outTxState = OutTxState.SENDING_DATA;
             offset = 0; // first file data packet starts at the start of the data
             end = Math.min(maxDataSize, request.getFileLength());
-            monitor.stateChanged(this);
-            break;
+            return true;
         case SENDING_DATA:
             if (resendMetadata) {
+                if (!acquire(metadata)) {
+                    return false;
+                }
                 sendPacket(metadata);
                 resendMetadata = false;
-            } else {
-                if (offset == request.getFileLength()) {
-                    if (toResend != null && !toResend.isEmpty()) {
-                        FileDataPacket fdp = toResend.poll();
-                        sendPacket(fdp);
-                    } else if (!eofSent) {
-                        sendEof(ConditionCode.NO_ERROR);
+            } else if (offset == request.getFileLength()) {
+                if (toResend != null && !toResend.isEmpty()) {
+                    if (!acquire(toResend.peek())) {
+                        return false;
+                    }
+                    sendPacket(toResend.poll());
+                } else if (!eofSent) {
+                    EofPacket eof = getEofPacket(ConditionCode.NO_ERROR);
+                    if (!acquire(eof)) {
+                        return false;
                     }
+                    eofPacket = eof;
+                    sendEof(true);
                 } else {
-                    end = Math.min(offset + maxDataSize, request.getFileLength());
-                    FileDataPacket nextPacket = getNextFileDataPacket();
-                    sentFileDataPackets.add(nextPacket);
-                    sendPacket(nextPacket);
-                    transferred += (end - offset);
-                    offset = end;
+                    // nothing to send until a NAK or the Finished PDU is received
+                    return false;
+                }
+            } else {
+                end = Math.min(offset + maxDataSize, request.getFileLength());
+                FileDataPacket nextPacket = getNextFileDataPacket();
+                if (!acquire(nextPacket)) {
+                    return false;
                 }
+                sentFileDataPackets.add(nextPacket);
+                sendPacket(nextPacket);
+                transferred += (end - offset);
+                offset = end;
             }
-            monitor.stateChanged(this);
-            break;
-        case COMPLETED:
-            pduSendingSchedule.cancel(true);
-            cancelInactivityTimer();
-            break;
+            return true;
+        case CANCELING:
+            return false;
         default:
             throw new IllegalStateException("unknown/illegal state");
         }
     }
 
+    private boolean acquire(CfdpPacket packet) {
+        return pacer.tryAcquire(packet.getHeader().getLength() + packet.getDataFieldLength());
+    }
+
+    /**
+     * Sends a directive PDU outside of the regular PDU sending schedule (EOF resends, ACKs); if the pacer does not allow
+     * it right away, it is retried after sleepBetweenPdus.
+     */
+    private void sendPaced(CfdpPacket packet) {
+        if (acquire(packet)) {
+            sendPacket(packet);
+        } else {
+            executor.schedule(() -> sendPaced(packet), sleepBetweenPdus, TimeUnit.MILLISECONDS);
+        }
+    }
+
     private void sendEof(ConditionCode code) {
         // remember the EOF sent, we need to resend it in case of suspend/resume
         eofPacket = getEofPacket(code);
-        sendEof();
+        sendEof(false);
     }
 
-    private void sendEof() {
-        sendPacket(eofPacket);
+    /**
+     * @param acquired
+     *            - true if the EOF has already been allowed by the pacer
+     */
+    private void sendEof(boolean acquired) {
+        if (acquired) {
+            sendPacket(eofPacket);
+        } else {
+            sendPaced(eofPacket);
+        }
         eofSent = true;
 
         if (!acknowledged && !metadata.closureRequested()) {
             complete(ConditionCode.NO_ERROR);
         } else {
-            eofTimer.start(() -> sendPacket(eofPacket),
+            eofTimer.start(() -> sendPaced(eofPacket),
                     () -> {
                         sendWarnEvent(ETYPE_EOF_LIMIT_REACHED,
                                 "Resend attempts (" + eofTimer.maxNumAttempts + ") of EOF reached");
@@ -275,7 +336,7 @@ public class CfdpOutgoingTransfer extends OngoingCfdpTransfer {
     }
 
     private void processFinishedPacket(FinishedPacket finishedPacket) {
-        sendPacket(getAckPacket(finishedPacket.getConditionCode()));
+        sendPaced(getAckPacket(finishedPacket.getConditionCode()));
 
         if (outTxState == OutTxState.COMPLETED) {
             return;
@@ -340,7 +401,7 @@ public class CfdpOutgoingTransfer extends OngoingCfdpTransfer {
         sendInfoEvent(ETYPE_TRANSFER_RESUMED, "transfer resumed");
         pduSendingSchedule = executor.scheduleAtFixedRate(() -> sendPDU(), 0, sleepBetweenPdus, TimeUnit.MILLISECONDS);
         if (expectingAck()) {
-            sendEof();
+            sendEof(false);
         }
         if (outTxState == OutTxState.SENDING_DATA && eofAckReceived) {
             rescheduleInactivityTimer();
@@ -3,6 +3,10 @@ package org.yamcs.cfdp;
 import static org.yamcs.cfdp.CompletedTransfer.TDEF;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -27,6 +31,7 @@ import org.yamcs.Spec;
 import org.yamcs.Spec.OptionType;
 import org.yamcs.YConfiguration;
 import org.yamcs.YamcsServer;
+import org.yamcs.YamcsServerInstance;
 import org.yamcs.cfdp.OngoingCfdpTransfer.FaultHandlingAction;
 import org.yamcs.cfdp.pdu.CfdpPacket;
 import org.yamcs.cfdp.pdu.ConditionCode;
@@ -41,10 +46,13 @@ import org.yamcs.filetransfer.FileTransferService;
 import org.yamcs.filetransfer.InvalidRequestException;
 import org.yamcs.filetransfer.TransferMonitor;
 import org.yamcs.filetransfer.TransferOptions;
+import org.yamcs.management.LinkManager;
 import org.yamcs.protobuf.EntityInfo;
 import org.yamcs.protobuf.FileTransferCapabilities;
 import org.yamcs.protobuf.TransferDirection;
 import org.yamcs.protobuf.TransferState;
+import org.yamcs.tctm.AbstractThreadedTcDataLink;
+import org.yamcs.tctm.Link;
 import org.yamcs.utils.StringConverter;
 import org.yamcs.utils.parser.ParseException;
 import org.yamcs.yarch.Bucket;
@@ -58,6 +66,7 @@ import org.yamcs.yarch.streamsql.StreamSqlException;
 import org.yamcs.yarch.streamsql.StreamSqlResult;
 
 import com.google.common.collect.Streams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Implements CCSDS File Delivery Protocol (CFDP) in Yamcs.
@@ -89,6 +98,12 @@ public class CfdpService extends AbstractYamcsService
     Queue<QueuedCfdpTransfer> queuedTransfers = new ConcurrentLinkedQueue<>();
 
     ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+    // the transfers are distributed over the workers; the first worker is the service executor
+    ScheduledThreadPoolExecutor[] workers;
+    // limits the rate of the PDUs sent on the output stream
+    PduPacer uplinkPacer;
+    // limits the rate of the PDUs sent to each remote entity (indexed by entity id)
+    Map<Long, PduPacer> remotePacers = new HashMap<>();
     Map<ConditionCode, FaultHandlingAction> receiverFaultHandlers;
     Map<ConditionCode, FaultHandlingAction> senderFaultHandlers;
     Stream cfdpIn;
@@ -136,6 +151,8 @@ public class CfdpService extends AbstractYamcsService
         entitySpec.addOption("name", OptionType.STRING);
         entitySpec.addOption("id", OptionType.INTEGER);
         entitySpec.addOption("bucket", OptionType.STRING).withDefault(null);
+        entitySpec.addOption("maxPduRate", OptionType.FLOAT);
+        entitySpec.addOption("maxDataRate", OptionType.FLOAT);
 
         Spec spec = new Spec();
         spec.addOption("inStream", OptionType.STRING).withDefault("cfdp_in");
@@ -153,6 +170,12 @@ public class CfdpService extends AbstractYamcsService
         spec.addOption("finAckTimeout", OptionType.INTEGER).withDefault(5000);
         spec.addOption("finAckLimit", OptionType.INTEGER).withDefault(5);
         spec.addOption("sleepBetweenPdus", OptionType.INTEGER).withDefault(500);
+        spec.addOption("pduBurst", OptionType.INTEGER).withDefault(1);
+        spec.addOption("maxPduRate", OptionType.FLOAT);
+        spec.addOption("maxDataRate", OptionType.FLOAT);
+        spec.addOption("uplink", OptionType.STRING);
+        spec.addOption("maxUplinkQueueSize", OptionType.INTEGER).withDefault(10);
+        spec.addOption("numWorkerThreads", OptionType.INTEGER).withDefault(1);
         spec.addOption("localEntities", OptionType.LIST).withElementType(OptionType.MAP).withSpec(entitySpec);
         spec.addOption("remoteEntities", OptionType.LIST).withElementType(OptionType.MAP).withSpec(entitySpec);
         spec.addOption("nakLimit", OptionType.INTEGER).withDefault(-1);
@@ -168,6 +191,7 @@ public class CfdpService extends AbstractYamcsService
         spec.addOption("maxNumPendingDownloads", OptionType.INTEGER).withDefault(100);
         spec.addOption("maxNumPendingUploads", OptionType.INTEGER).withDefault(10);
         spec.addOption("inactivityTimeout", OptionType.INTEGER).withDefault(10000);
+        spec.addOption("receiveBufferDir", OptionType.STRING);
 
         return spec;
     }
@@ -199,8 +223,12 @@ public class CfdpService extends AbstractYamcsService
         queueConcurrentUploads = config.getBoolean("queueConcurrentUploads");
         allowConcurrentFileOverwrites = config.getBoolean("allowConcurrentFileOverwrites");
         directoryTerminators = config.getList("directoryTerminators");
+        if (config.containsKey("receiveBufferDir")) {
+            initReceiveBufferDir(Paths.get(config.getString("receiveBufferDir")));
+        }
 
         initSrcDst(config);
+        initPacing(config);
         eventProducer = EventProducerFactory.getEventProducer(yamcsInstance, "CfdpService", 10000);
         idSeq = ydb.getSequence(SEQUENCE_NAME, true);
         if (config.containsKey("senderFaultHandlers")) {
@@ -217,6 +245,78 @@ public class CfdpService extends AbstractYamcsService
         setupRecording(ydb);
     }
 
+    private void initPacing(YConfiguration config) {
+        int maxPduSize = config.getInt("maxPduSize");
+        int pduBurst = config.getInt("pduBurst");
+        if (pduBurst < 1) {
+            throw new ConfigurationException("pduBurst has to be at least 1");
+        }
+        uplinkPacer = new PduPacer(config.getDouble("maxPduRate", -1), config.getDouble("maxDataRate", -1),
+                pduBurst, maxPduSize, null);
+        if (config.containsKey("uplink")) {
+            String linkName = config.getString("uplink");
+            uplinkPacer.setUplinkQueue(() -> getUplinkQueueSize(linkName), config.getInt("maxUplinkQueueSize"));
+        }
+
+        if (config.containsKey("remoteEntities")) {
+            for (YConfiguration c : config.getConfigList("remoteEntities")) {
+                if (c.containsKey("maxPduRate") || c.containsKey("maxDataRate")) {
+                    remotePacers.put(c.getLong("id"), new PduPacer(c.getDouble("maxPduRate", -1),
+                            c.getDouble("maxDataRate", -1), pduBurst, maxPduSize, uplinkPacer));
+                }
+            }
+        }
+
+        int numWorkerThreads = config.getInt("numWorkerThreads");
+        if (numWorkerThreads < 1) {
+            throw new ConfigurationException("numWorkerThreads has to be at least 1");
+        }
+        workers = new ScheduledThreadPoolExecutor[numWorkerThreads];
+        workers[0] = executor;
+        for (int i = 1; i < numWorkerThreads; i++) {
+            workers[i] = new ScheduledThreadPoolExecutor(1,
+                    new ThreadFactoryBuilder().setNameFormat("cfdp-" + yamcsInstance + "-worker-" + i).build());
+        }
+    }
+
+    // returns 0 if the link does not exist or it does not have a queue
+    private int getUplinkQueueSize(String linkName) {
+        YamcsServerInstance ysi = YamcsServer.getServer().getInstance(yamcsInstance);
+        LinkManager linkManager = ysi == null ? null : ysi.getLinkManager();
+        Link link = linkManager == null ? null : linkManager.getLink(linkName);
+        if (link instanceof AbstractThreadedTcDataLink) {
+            return ((AbstractThreadedTcDataLink) link).getQueueSize();
+        } else {
+            return 0;
+        }
+    }
+
+    // the PDUs of a transfer are all processed in the same thread; the transfers are distributed in a round robin
+    // fashion over the workers
+    private ScheduledThreadPoolExecutor getWorker(long transferId) {
+        return workers[(int) (transferId % workers.length)];
+    }
+
+    private PduPacer getPacer(long destinationId) {
+        return remotePacers.getOrDefault(destinationId, uplinkPacer);
+    }
+
+    // creates the directory if necessary and removes the files left by a previous run
+    private void initReceiveBufferDir(Path dir) throws InitException {
+        try {
+            Files.createDirectories(dir);
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir,
+                    DiskDataFile.TMP_FILE_PREFIX + "*" + DiskDataFile.TMP_FILE_SUFFIX)) {
+                for (Path p : ds) {
+                    log.debug("Removing old receive buffer file {}", p);
+                    Files.delete(p);
+                }
+            }
+        } catch (IOException e) {
+            throw new InitException("Cannot initialize the receive buffer directory " + dir, e);
+        }
+    }
+
     private Map<ConditionCode, FaultHandlingAction> readFaultHandlers(Map<String, String> map) {
         Map<ConditionCode, FaultHandlingAction> m = new HashMap<>();
         for (Map.Entry<String, String> me : map.entrySet()) {
@@ -374,8 +474,9 @@ public class CfdpService extends AbstractYamcsService
     }
 
     private CfdpFileTransfer processPutRequest(long id, long creationTime, PutRequest request) {
-        CfdpOutgoingTransfer transfer = new CfdpOutgoingTransfer(yamcsInstance, id, creationTime, executor, request,
-                cfdpOut, config, eventProducer, this, senderFaultHandlers);
+        CfdpOutgoingTransfer transfer = new CfdpOutgoingTransfer(yamcsInstance, id, creationTime, getWorker(id),
+                request, getPacer(request.getDestinationId()), cfdpOut, config, eventProducer, this,
+                senderFaultHandlers);
 
         dbStream.emitTuple(CompletedTransfer.toInitialTuple(transfer));
 
@@ -517,7 +618,8 @@ public class CfdpService extends AbstractYamcsService
 
         long creationTime = YamcsServer.getTimeService(yamcsInstance).getMissionTime();
 
-        OngoingCfdpTransfer transfer = new CfdpIncomingTransfer(yamcsInstance, idSeq.next(), creationTime, executor,
+        long id = idSeq.next();
+        OngoingCfdpTransfer transfer = new CfdpIncomingTransfer(yamcsInstance, id, creationTime, getWorker(id),
                 config, packet.getHeader(), cfdpOut, bucket, eventProducer, this, receiverFaultHandlers);
         return transfer;
     }
@@ -552,6 +654,14 @@ public class CfdpService extends AbstractYamcsService
 
     @Override
     protected void doStart() {
+        if (config.containsKey("uplink")) {
+            YamcsServerInstance ysi = YamcsServer.getServer().getInstance(yamcsInstance);
+            String linkName = config.getString("uplink");
+            if (ysi != null && !(ysi.getLinkManager().getLink(linkName) instanceof AbstractThreadedTcDataLink)) {
+                log.warn("Link {} does not exist or does not have a command queue; its queue size will be ignored",
+                        linkName);
+            }
+        }
         notifyStarted();
     }
 
@@ -562,7 +672,9 @@ public class CfdpService extends AbstractYamcsService
                 trsf.failTransfer("service shutdown");
             }
         }
-        executor.shutdown();
+        for (ScheduledThreadPoolExecutor worker : workers) {
+            worker.shutdown();
+        }
         notifyStopped();
     }
 
@@ -19,12 +19,19 @@ public class ChecksumCalculator {
      * 
      */
     static long calculateChecksum(byte[] data, long fileOffset, long length) {
+        return calculateChecksum(data, 0, fileOffset, (int) length);
+    }
+
+    /**
+     * Same as {@link #calculateChecksum(byte[], long, long)} but the segment starts at dataOffset in the data buffer.
+     */
+    static long calculateChecksum(byte[] data, int dataOffset, long fileOffset, int length) {
         int k = (int) (fileOffset & 3);
         long checksum = 0;
         int i = 0;
         long x = 0;
         while (i < length) {
-            x = (x << 8) + (data[i] & 0xFF);
+            x = (x << 8) + (data[dataOffset + i] & 0xFF);
             i++;
             k++;
             if (k == 4) {
@@ -205,4 +205,10 @@ public class DataFile {
         return size;
     }
 
+    /**
+     * Releases the resources used to store the data; the object cannot be used after.
+     */
+    public void close() {
+    }
+
 }
@@ -0,0 +1,208 @@
+package org.yamcs.cfdp;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.yamcs.cfdp.pdu.SegmentRequest;
+
+/**
+ * {@link DataFile} storing the received data in a sparse temporary file instead of memory.
+ * <p>
+ * The received ranges are kept in a sorted map (start offset -&gt; end offset) where the adjacent ranges are merged,
+ * such that the memory used depends on the number of gaps and not on the file size. The missing segments (used in the
+ * NAK PDUs) are computed directly from this map.
+ * <p>
+ * When a segment overlaps data already received, only the new parts are written (the data received first wins, as for
+ * the in-memory implementation). The checksum is updated with each new part.
+ * <p>
+ * The temporary file is deleted at the latest when the object is closed (on some platforms it is unlinked as soon as it
+ * is opened).
+ */
+public class DiskDataFile extends DataFile {
+    static final String TMP_FILE_PREFIX = "cfdp-";
+    static final String TMP_FILE_SUFFIX = ".tmp";
+
+    private final Path path;
+    private final FileChannel channel;
+    private final TreeMap<Long, Long> ranges = new TreeMap<>();
+    private long receivedSize = 0;
+    private long checksum = 0;
+
+    /**
+     * Creates a new temporary file in the given directory
+     */
+    public DiskDataFile(Path dir, long size) throws IOException {
+        super(size);
+        this.path = Files.createTempFile(dir, TMP_FILE_PREFIX, TMP_FILE_SUFFIX);
+        this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.SPARSE, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    @Override
+    public void addSegment(DataFileSegment newseg) {
+        long size = getSize();
+        if (size != -1 && newseg.getEndOffset() > size) {
+            throw new IllegalArgumentException("Segment falls beyond the end of the file");
+        }
+        long start = newseg.getOffset();
+        long end = newseg.getEndOffset();
+        if (start == end) {
+            return;
+        }
+        try {
+            // write the parts of the segment not covered by the existing ranges
+            long pos = start;
+            Map.Entry<Long, Long> prev = ranges.floorEntry(start);
+            if (prev != null && prev.getValue() > pos) {
+                pos = prev.getValue();
+            }
+            while (pos < end) {
+                Map.Entry<Long, Long> next = ranges.higherEntry(pos);
+                long gapEnd = (next == null) ? end : Math.min(end, next.getKey());
+                if (gapEnd > pos) {
+                    write(newseg, pos, gapEnd);
+                }
+                if (next == null || next.getKey() >= end) {
+                    break;
+                }
+                pos = next.getValue();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        addRange(start, end);
+    }
+
+    private void write(DataFileSegment seg, long from, long to) throws IOException {
+        int dataOffset = (int) (from - seg.getOffset());
+        int length = (int) (to - from);
+        ByteBuffer buf = ByteBuffer.wrap(seg.getData(), dataOffset, length);
+        long pos = from;
+        while (buf.hasRemaining()) {
+            pos += channel.write(buf, pos);
+        }
+        checksum += ChecksumCalculator.calculateChecksum(seg.getData(), dataOffset, from, length);
+        receivedSize += length;
+    }
+
+    // adds the range [start, end) merging it with the overlapping or adjacent ranges
+    private void addRange(long start, long end) {
+        Map.Entry<Long, Long> prev = ranges.floorEntry(start);
+        if (prev != null && prev.getValue() >= start) {
+            start = prev.getKey();
+            end = Math.max(end, prev.getValue());
+        }
+        Map.Entry<Long, Long> next = ranges.ceilingEntry(start);
+        while (next != null && next.getKey() <= end) {
+            end = Math.max(end, next.getValue());
+            ranges.remove(next.getKey());
+            next = ranges.higherEntry(next.getKey());
+        }
+        ranges.put(start, end);
+    }
+
+    @Override
+    public List<SegmentRequest> getMissingChunks(boolean includeEnd) {
+        long size = getSize();
+        if (includeEnd && size < 0) {
+            throw new IllegalArgumentException("Size is not known, cannot pass includeEnd=true");
+        }
+        List<SegmentRequest> toReturn = new ArrayList<>();
+        long startOffset = 0;
+        for (Map.Entry<Long, Long> me : ranges.entrySet()) {
+            if (me.getKey() != startOffset) {
+                toReturn.add(new SegmentRequest(startOffset, me.getKey()));
+            }
+            startOffset = me.getValue();
+        }
+        if (startOffset != size && includeEnd) {
+            toReturn.add(new SegmentRequest(startOffset, size));
+        }
+        return toReturn;
+    }
+
+    @Override
+    public long getReceivedSize() {
+        return receivedSize;
+    }
+
+    /**
+     * Reads the file from the disk; the missing segments are filled with zeros.
+     */
+    @Override
+    public byte[] getData() {
+        long eof = endOfFileOffset();
+        if (eof > Integer.MAX_VALUE) {
+            throw new IllegalStateException("File too large to be loaded in memory: " + eof + " bytes");
+        }
+        ByteBuffer buf = ByteBuffer.allocate(eof < 0 ? 0 : (int) eof);
+        try {
+            long pos = 0;
+            while (buf.hasRemaining()) {
+                int n = channel.read(buf, pos);
+                if (n < 0) {
+                    break;
+                }
+                pos += n;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buf.array();
+    }
+
+    @Override
+    public boolean isComplete() {
+        long size = getSize();
+        if (size < 0) {
+            return false;
+        }
+        if (ranges.isEmpty()) {
+            return size == 0;
+        }
+        return ranges.size() == 1 && ranges.firstKey() == 0 && ranges.firstEntry().getValue() == size;
+    }
+
+    @Override
+    public long getChecksum() {
+        return checksum & 0xFFFFFFFFl;
+    }
+
+    @Override
+    public long endOfFileOffset() {
+        return ranges.isEmpty() ? -1 : ranges.lastEntry().getValue();
+    }
+
+    /**
+     *
+     * @return the number of disjoint ranges of data received
+     */
+    int getNumRanges() {
+        return ranges.size();
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Closes and deletes the temporary file
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -31,6 +31,7 @@ public abstract class OngoingCfdpTransfer implements CfdpFileTransfer {
     protected final Log log;
     protected final long startTime;
     protected final long wallclockStartTime;
+    protected long wallclockEndTime = -1;
     protected final long creationTime;
     
     final TransferMonitor monitor;
@@ -198,12 +199,25 @@ public abstract class OngoingCfdpTransfer implements CfdpFileTransfer {
 
     protected void changeState(TransferState newState) {
         this.state = newState;
+        if ((state == TransferState.COMPLETED || state == TransferState.FAILED) && wallclockEndTime == -1) {
+            wallclockEndTime = System.currentTimeMillis();
+        }
         if (state != TransferState.RUNNING) {
             cancelInactivityTimer();
         }
         monitor.stateChanged(this);
     }
 
+    @Override
+    public double getThroughput() {
+        long end = wallclockEndTime == -1 ? System.currentTimeMillis() : wallclockEndTime;
+        long duration = end - wallclockStartTime;
+        if (duration <= 0) {
+            return -1;
+        }
+        return getTransferredSize() * 1000.0 / duration;
+    }
+
     @Override
     public String getFailuredReason() {
         return failureReason;
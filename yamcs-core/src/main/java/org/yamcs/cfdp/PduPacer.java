@@ -0,0 +1,119 @@
+package org.yamcs.cfdp;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Limits the rate at which the outgoing transfers send PDUs.
+ * <p>
+ * The limit can be expressed in PDUs per second and/or in bytes per second. It is implemented as a token bucket: the
+ * tokens are refilled continuously at the configured rate, up to a capacity allowing {@code burstSize} PDUs to be sent
+ * in one go. A rate smaller or equal to 0 means that the corresponding dimension is not limited.
+ * <p>
+ * A pacer can have a parent pacer (for example the pacer of a remote entity has as parent the pacer of the uplink); a
+ * PDU can be sent only if both of them allow it.
+ * <p>
+ * In addition, the pacer can hold the PDUs as long as the queue of the uplink is longer than a given size.
+ * <p>
+ * All the PDUs of the outgoing transfers go through the pacer, including the EOF resends and the ACKs of the Finished
+ * PDUs. The directives sent by the incoming transfers (ACK, NAK and Finished PDUs) are not paced: they are few and
+ * delaying them would only slow down the transfers of the remote entities.
+ */
+public class PduPacer {
+    final double maxPduRate;
+    final double maxDataRate;
+    final double pduCapacity;
+    final double dataCapacity;
+    final PduPacer parent;
+
+    private IntSupplier uplinkQueueSize;
+    private int maxUplinkQueueSize;
+
+    private double pduTokens;
+    private double dataTokens;
+    private long lastRefill;
+
+    /**
+     *
+     * @param maxPduRate
+     *            - maximum number of PDUs per second; &lt;=0 means unlimited
+     * @param maxDataRate
+     *            - maximum number of bytes per second; &lt;=0 means unlimited
+     * @param burstSize
+     *            - the maximum number of PDUs which can be sent without waiting
+     * @param maxPduSize
+     *            - the maximum size of the PDUs, used to compute the capacity in bytes of the bucket
+     * @param parent
+     *            - parent pacer, can be null
+     */
+    public PduPacer(double maxPduRate, double maxDataRate, int burstSize, int maxPduSize, PduPacer parent) {
+        if (burstSize < 1) {
+            throw new IllegalArgumentException("The burst size has to be at least 1");
+        }
+        this.maxPduRate = maxPduRate;
+        this.maxDataRate = maxDataRate;
+        this.pduCapacity = burstSize;
+        this.dataCapacity = (double) burstSize * maxPduSize;
+        this.parent = parent;
+        this.pduTokens = pduCapacity;
+        this.dataTokens = dataCapacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Hold the PDUs while the uplink queue contains at least {@code maxQueueSize} elements.
+     *
+     * @param queueSize
+     *            - provides the current size of the uplink queue
+     * @param maxQueueSize
+     */
+    public synchronized void setUplinkQueue(IntSupplier queueSize, int maxQueueSize) {
+        this.uplinkQueueSize = queueSize;
+        this.maxUplinkQueueSize = maxQueueSize;
+    }
+
+    /**
+     * Acquires the tokens for sending a PDU of the given size if they are available (from this pacer and from its
+     * parent).
+     *
+     * @param pduSize
+     *            - size in bytes of the PDU to be sent
+     * @return true if the PDU can be sent, false if the sender has to wait.
+     */
+    public boolean tryAcquire(int pduSize) {
+        return tryAcquire(pduSize, System.nanoTime());
+    }
+
+    synchronized boolean tryAcquire(int pduSize, long nanoTime) {
+        if (uplinkQueueSize != null && uplinkQueueSize.getAsInt() >= maxUplinkQueueSize) {
+            return false;
+        }
+        refill(nanoTime);
+        if (maxPduRate > 0 && pduTokens < 1) {
+            return false;
+        }
+        // a PDU larger than the bucket is allowed when the bucket is full; the tokens become negative
+        if (maxDataRate > 0 && dataTokens < Math.min(pduSize, dataCapacity)) {
+            return false;
+        }
+        if (parent != null && !parent.tryAcquire(pduSize, nanoTime)) {
+            return false;
+        }
+        if (maxPduRate > 0) {
+            pduTokens--;
+        }
+        if (maxDataRate > 0) {
+            dataTokens -= pduSize;
+        }
+        return true;
+    }
+
+    private void refill(long nanoTime) {
+        double dt = (nanoTime - lastRefill) / 1e9;
+        if (dt <= 0) {
+            return;
+        }
+        lastRefill = nanoTime;
+        pduTokens = Math.min(pduCapacity, pduTokens + dt * maxPduRate);
+        dataTokens = Math.min(dataCapacity, dataTokens + dt * maxDataRate);
+    }
+}
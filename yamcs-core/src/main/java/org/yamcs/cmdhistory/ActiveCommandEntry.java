@@ -0,0 +1,106 @@
+package org.yamcs.cmdhistory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.yamcs.parameter.Value;
+import org.yamcs.protobuf.Commanding.CommandHistoryAttribute;
+import org.yamcs.protobuf.Commanding.CommandHistoryEntry;
+import org.yamcs.protobuf.Commanding.CommandId;
+import org.yamcs.utils.ValueUtility;
+
+/**
+ * Command history of one command as kept by the {@link CommandHistoryRequestManager}.
+ * <p>
+ * The attributes are updated in place (an attribute published again replaces the previous value) and the protobuf
+ * {@link CommandHistoryEntry} is only built when requested by a subscriber.
+ * <p>
+ * The object keeps also an estimation of the memory it uses, for the statistics reported as system parameters.
+ */
+class ActiveCommandEntry {
+    static final String COMPLETE_STATUS_KEY = CommandHistoryPublisher.CommandComplete_KEY
+            + CommandHistoryPublisher.SUFFIX_STATUS;
+    // approximate size of the object and of the map entries, excluding the values
+    static final int BASE_SIZE = 128;
+    static final int ATTR_SIZE = 64;
+
+    final CommandId cmdId;
+    private final Map<String, Value> attributes = new LinkedHashMap<>();
+    private long lastUpdate;
+    private long completionTime = -1;
+    private long memoryUsage;
+
+    ActiveCommandEntry(CommandId cmdId, long now) {
+        this.cmdId = cmdId;
+        this.lastUpdate = now;
+        this.memoryUsage = BASE_SIZE + 2 * cmdId.getSerializedSize();
+    }
+
+    /**
+     * Applies the attributes to the entry.
+     *
+     * @param now
+     *            the wall clock time in milliseconds
+     * @return the change of the estimated memory usage
+     */
+    synchronized long update(List<Attribute> attrs, long now) {
+        long oldMemoryUsage = memoryUsage;
+        for (Attribute a : attrs) {
+            Value old = attributes.put(a.getKey(), a.getValue());
+            if (old == null) {
+                memoryUsage += ATTR_SIZE + 2 * a.getKey().length();
+            } else {
+                memoryUsage -= estimateSize(old);
+            }
+            memoryUsage += estimateSize(a.getValue());
+            if (completionTime == -1 && COMPLETE_STATUS_KEY.equals(a.getKey())) {
+                completionTime = now;
+            }
+        }
+        lastUpdate = now;
+        return memoryUsage - oldMemoryUsage;
+    }
+
+    synchronized boolean isCompleted() {
+        return completionTime != -1;
+    }
+
+    /**
+     * Returns true if the entry should be removed at the given time
+     */
+    synchronized boolean isExpired(long now, long retention, long timeout) {
+        if (completionTime != -1) {
+            return now - completionTime >= retention;
+        } else {
+            return now - lastUpdate >= timeout;
+        }
+    }
+
+    synchronized long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    synchronized CommandHistoryEntry toProto() {
+        CommandHistoryEntry.Builder cheb = CommandHistoryEntry.newBuilder().setCommandId(cmdId);
+        for (Map.Entry<String, Value> me : attributes.entrySet()) {
+            cheb.addAttr(CommandHistoryAttribute.newBuilder().setName(me.getKey())
+                    .setValue(ValueUtility.toGbp(me.getValue())));
+        }
+        return cheb.build();
+    }
+
+    static long estimateSize(Value v) {
+        switch (v.getType()) {
+        case BINARY:
+            return 32 + v.getBinaryValue().length;
+        case STRING:
+            return 48 + 2 * v.getStringValue().length();
+        case AGGREGATE:
+        case ARRAY:
+            return 256;
+        default:
+            return 16;
+        }
+    }
+}
@@ -15,7 +15,10 @@ public class CommandHistoryFilter {
     }
 
     public boolean matches(CommandHistoryEntry che) {
-        CommandId cmdId = che.getCommandId();
+        return matches(che.getCommandId());
+    }
+
+    public boolean matches(CommandId cmdId) {
         if (cmdId.getGenerationTime() < commandsSince) {
             return false;
         }
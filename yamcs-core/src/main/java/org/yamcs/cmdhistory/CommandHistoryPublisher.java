@@ -1,8 +1,12 @@
 package org.yamcs.cmdhistory;
 
+import java.util.List;
+
 import org.yamcs.commanding.PreparedCommand;
 import org.yamcs.parameter.ParameterValue;
+import org.yamcs.protobuf.Commanding.CommandHistoryAttribute;
 import org.yamcs.protobuf.Commanding.CommandId;
+import org.yamcs.protobuf.Yamcs.Value;
 
 /**
  * Used by the commanding applications to save commands and commands acknowledgements into a history.
@@ -49,6 +53,33 @@ public interface CommandHistoryPublisher {
     public default void publish(CommandId cmdId, String key, ParameterValue returnPv) {
     };
 
+    /**
+     * Publishes several attributes of a command as one command history update.
+     * <p>
+     * The default implementation publishes the attributes one by one.
+     */
+    public default void publish(CommandId cmdId, List<CommandHistoryAttribute> attributes) {
+        for (CommandHistoryAttribute attr : attributes) {
+            Value value = attr.getValue();
+            switch (value.getType()) {
+            case STRING:
+                publish(cmdId, attr.getName(), value.getStringValue());
+                break;
+            case SINT32:
+                publish(cmdId, attr.getName(), value.getSint32Value());
+                break;
+            case TIMESTAMP:
+                publish(cmdId, attr.getName(), value.getTimestampValue());
+                break;
+            case BINARY:
+                publish(cmdId, attr.getName(), value.getBinaryValue().toByteArray());
+                break;
+            default:
+                throw new IllegalArgumentException("Unexpected value type '" + value.getType() + "'");
+            }
+        }
+    }
+
     public abstract void addCommand(PreparedCommand pc);
 
     default void publishAck(CommandId cmdId, String key, long time, AckStatus state) {
@@ -1,20 +1,29 @@
 package org.yamcs.cmdhistory;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.yamcs.ConfigurationException;
 import org.yamcs.Processor;
+import org.yamcs.ProcessorConfig;
 import org.yamcs.commanding.InvalidCommandId;
 import org.yamcs.commanding.PreparedCommand;
 import org.yamcs.logging.Log;
-import org.yamcs.protobuf.Commanding.CommandHistoryAttribute;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersProducer;
+import org.yamcs.parameter.SystemParametersService;
 import org.yamcs.protobuf.Commanding.CommandHistoryEntry;
 import org.yamcs.protobuf.Commanding.CommandId;
-import org.yamcs.utils.ValueUtility;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.xtce.SystemParameter;
 import org.yamcs.yarch.Stream;
 
 import com.google.common.util.concurrent.AbstractService;
@@ -29,12 +38,22 @@ import com.google.common.util.concurrent.AbstractService;
  * </ul>
  * 
  * It receives commands from the cmd_history stream
+ * <p>
+ * The commands are kept in the list of active commands for a configurable time after they have completed (i.e. the
+ * CommandComplete_Status attribute has been received) or, for those which never complete, after their last update.
+ * The size of the list is also limited, the oldest commands without subscribers being removed first when the limit is
+ * reached. The commands with subscribers (e.g. the command verifiers) are never removed because of the limit. The
+ * removed commands cannot be subscribed to anymore; their history is still available from the archive.
  * 
  * @author nm
  *
  */
-public class CommandHistoryRequestManager extends AbstractService {
-    private ConcurrentHashMap<CommandId, CommandHistoryEntry> activeCommands = new ConcurrentHashMap<>();
+public class CommandHistoryRequestManager extends AbstractService implements SystemParametersProducer {
+    static final long SWEEP_INTERVAL = 10;// seconds
+
+    private ConcurrentHashMap<CommandId, ActiveCommandEntry> activeCommands = new ConcurrentHashMap<>();
+    // the active commands in the order they have been added
+    private ConcurrentLinkedQueue<ActiveCommandEntry> commandQueue = new ConcurrentLinkedQueue<>();
     private ConcurrentHashMap<CommandId, ConcurrentLinkedQueue<CommandHistoryConsumer>> cmdSubcriptions = new ConcurrentHashMap<>();
     private ConcurrentHashMap<CommandHistoryFilter, CommandHistoryConsumer> historySubcriptions = new ConcurrentHashMap<>();
 
@@ -47,11 +66,25 @@ public class CommandHistoryRequestManager extends AbstractService {
     final String instance;
     final Processor processor;
 
+    // milliseconds
+    final long retention;
+    final long timeout;
+    final int maxActiveCommands;
+
+    private final AtomicLong memoryUsage = new AtomicLong();
+    private final AtomicLong numRemoved = new AtomicLong();
+    private ScheduledFuture<?> sweepFuture;
+    private SystemParameter spNumActiveCommands, spMemoryUsage, spNumRemoved;
+
     public CommandHistoryRequestManager(Processor processor) throws ConfigurationException {
         this.processor = processor;
         this.instance = processor.getInstance();
         log = new Log(this.getClass(), instance);
         log.setContext(processor.getName());
+        ProcessorConfig config = processor.getConfig();
+        retention = 1000L * config.getActiveCommandRetention();
+        timeout = 1000L * config.getActiveCommandTimeout();
+        maxActiveCommands = config.getMaxActiveCommands();
     }
 
     /**
@@ -64,11 +97,10 @@ public class CommandHistoryRequestManager extends AbstractService {
      */
     public CommandHistoryEntry subscribeCommand(CommandId cmdId, CommandHistoryConsumer consumer)
             throws InvalidCommandId {
-        CommandHistoryEntry che = activeCommands.get(cmdId);
-        if (che != null) {
-            cmdSubcriptions.putIfAbsent(cmdId, new ConcurrentLinkedQueue<CommandHistoryConsumer>());
-            cmdSubcriptions.get(cmdId).add(consumer);
-            return che;
+        ActiveCommandEntry ace = activeCommands.get(cmdId);
+        if (ace != null) {
+            cmdSubcriptions.computeIfAbsent(cmdId, k -> new ConcurrentLinkedQueue<>()).add(consumer);
+            return ace.toProto();
         }
         log.warn("Received subscribe command for a command not in my active list: ({})", cmdId);
         throw new InvalidCommandId("command " + cmdId + " is not in the list of active commands", cmdId);
@@ -128,23 +160,22 @@ public class CommandHistoryRequestManager extends AbstractService {
      * Called when a new command has to be added to the command history (i.e. when a users sends a telecommand)
      */
     public void addCommand(PreparedCommand pc) {
-        if (activeCommands.containsKey(pc.getCommandId())) {
+        ActiveCommandEntry ace = new ActiveCommandEntry(pc.getCommandId(), System.currentTimeMillis());
+        if (activeCommands.putIfAbsent(pc.getCommandId(), ace) != null) {
             // this happens since Yamcs 5.4.4 - the StreamCommandHistoryProvider will send the command here but also
             // comes directly from the command queue manager
             return;
         }
         log.debug("addCommand cmdId={}", pc);
-        CommandHistoryEntry che = CommandHistoryEntry.newBuilder().setCommandId(pc.getCommandId()).build();
+        added(ace);
 
         // deliver to clients
         for (Iterator<CommandHistoryFilter> it = historySubcriptions.keySet().iterator(); it.hasNext();) {
             CommandHistoryFilter filter = it.next();
-            if (filter.matches(che)) {
+            if (filter.matches(pc.getCommandId())) {
                 historySubcriptions.get(filter).addedCommand(pc);
             }
         }
-
-        activeCommands.put(pc.getCommandId(), che);
     }
 
     /**
@@ -154,28 +185,26 @@ public class CommandHistoryRequestManager extends AbstractService {
      * @param attrs
      * 
      */
-    public void updateCommand(CommandId cmdId, List<Attribute> attrs)  {
-        log.debug("updateCommand cmdId: {} attrs: {}", attrs);
-        CommandHistoryEntry che = activeCommands.get(cmdId);
-        if (che == null) {
+    public void updateCommand(CommandId cmdId, List<Attribute> attrs) {
+        log.debug("updateCommand cmdId: {} attrs: {}", cmdId, attrs);
+        long now = System.currentTimeMillis();
+        ActiveCommandEntry ace = activeCommands.get(cmdId);
+        if (ace == null) {
             // If the commandId is valid, add the command in the active list, this case happens if an old command
             // history is updated.
-            che = CommandHistoryEntry.newBuilder().setCommandId(cmdId).build();
-        }
-
-        CommandHistoryEntry.Builder cheb = CommandHistoryEntry.newBuilder(che);
-
-        for(Attribute a: attrs) {
-            CommandHistoryAttribute cha = CommandHistoryAttribute.newBuilder().setName(a.getKey())
-                    .setValue(ValueUtility.toGbp(a.getValue())).build();
-            cheb.addAttr(cha).build();
+            ActiveCommandEntry ace1 = new ActiveCommandEntry(cmdId, now);
+            ace = activeCommands.putIfAbsent(cmdId, ace1);
+            if (ace == null) {
+                ace = ace1;
+                added(ace);
+            }
         }
-        activeCommands.put(cmdId, cheb.build());
+        memoryUsage.addAndGet(ace.update(attrs, now));
 
         long changeDate = processor.getCurrentTime();
         for (Iterator<CommandHistoryFilter> it = historySubcriptions.keySet().iterator(); it.hasNext();) {
             CommandHistoryFilter filter = it.next();
-            if (filter.matches(che)) {
+            if (filter.matches(cmdId)) {
                 historySubcriptions.get(filter).updatedCommand(cmdId, changeDate, attrs);
             }
         }
@@ -188,13 +217,118 @@ public class CommandHistoryRequestManager extends AbstractService {
         }
     }
 
+    private void added(ActiveCommandEntry ace) {
+        memoryUsage.addAndGet(ace.getMemoryUsage());
+        commandQueue.add(ace);
+        if (activeCommands.size() <= maxActiveCommands) {
+            return;
+        }
+        for (Iterator<ActiveCommandEntry> it = commandQueue.iterator(); it.hasNext()
+                && activeCommands.size() > maxActiveCommands;) {
+            ActiveCommandEntry oldest = it.next();
+            if (oldest == ace) {
+                // the new command is subscribed to right after being added
+                break;
+            }
+            if (hasSubscribers(oldest)) {
+                continue;
+            }
+            if (oldest.isCompleted()) {
+                log.debug("Maximum number of active commands reached, removing {}", oldest.cmdId);
+            } else {
+                log.warn("Maximum number of active commands ({}) reached, removing {} which is not completed",
+                        maxActiveCommands, oldest.cmdId);
+            }
+            it.remove();
+            remove(oldest);
+        }
+    }
+
+    private boolean hasSubscribers(ActiveCommandEntry ace) {
+        ConcurrentLinkedQueue<CommandHistoryConsumer> consumers = cmdSubcriptions.get(ace.cmdId);
+        return consumers != null && !consumers.isEmpty();
+    }
+
+    private void remove(ActiveCommandEntry ace) {
+        if (activeCommands.remove(ace.cmdId, ace)) {
+            cmdSubcriptions.remove(ace.cmdId);
+            memoryUsage.addAndGet(-ace.getMemoryUsage());
+            numRemoved.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes from the list of active commands the ones completed more than the retention time ago and the ones not
+     * completed and not updated for more than the timeout.
+     * <p>
+     * The commands which did not complete are not removed as long as they have subscribers (normally the command
+     * verifiers, which unsubscribe when they finish).
+     */
+    void sweep(long now) {
+        for (Iterator<ActiveCommandEntry> it = commandQueue.iterator(); it.hasNext();) {
+            ActiveCommandEntry ace = it.next();
+            if (!ace.isExpired(now, retention, timeout)) {
+                continue;
+            }
+            if (!ace.isCompleted() && hasSubscribers(ace)) {
+                continue;
+            }
+            it.remove();
+            remove(ace);
+        }
+    }
+
+    /**
+     * 
+     * @return the number of commands in the list of active commands
+     */
+    public int getNumActiveCommands() {
+        return activeCommands.size();
+    }
+
+    /**
+     * 
+     * @return the approximate memory in bytes used by the active commands
+     */
+    public long getMemoryUsage() {
+        return memoryUsage.get();
+    }
+
+    @Override
+    public Collection<ParameterValue> getSystemParameters(long gentime) {
+        return Arrays.asList(SystemParametersService.getPV(spNumActiveCommands, gentime, getNumActiveCommands()),
+                SystemParametersService.getPV(spMemoryUsage, gentime, getMemoryUsage()),
+                SystemParametersService.getPV(spNumRemoved, gentime, numRemoved.get()));
+    }
+
     @Override
     protected void doStart() {
+        sweepFuture = processor.getTimer().scheduleAtFixedRate(() -> sweep(System.currentTimeMillis()),
+                SWEEP_INTERVAL, SWEEP_INTERVAL, TimeUnit.SECONDS);
+        // the replay processors come and go, they do not get system parameters
+        SystemParametersService sps = processor.isPersistent() ? SystemParametersService.getInstance(instance) : null;
+        if (sps != null) {
+            String prefix = "cmdHistory/" + processor.getName();
+            spNumActiveCommands = sps.createSystemParameter(prefix + "/numActiveCommands", Type.SINT64,
+                    "Number of commands kept by the command history manager");
+            spMemoryUsage = sps.createSystemParameter(prefix + "/memoryUsage", Type.SINT64,
+                    "Approximate memory in bytes used by the commands kept by the command history manager");
+            spNumRemoved = sps.createSystemParameter(prefix + "/numRemovedCommands", Type.SINT64,
+                    "Number of commands removed from the command history manager since the processor start");
+            sps.registerProducer(this);
+        }
         notifyStarted();
     }
 
     @Override
     protected void doStop() {
+        if (sweepFuture != null) {
+            sweepFuture.cancel(false);
+        }
+        SystemParametersService sps = SystemParametersService.getInstance(instance);
+        if (sps != null && spNumActiveCommands != null) {
+            sps.unregisterProducer(this);
+        }
         notifyStopped();
     }
 
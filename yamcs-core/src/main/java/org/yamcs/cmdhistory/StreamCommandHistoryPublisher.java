@@ -7,7 +7,9 @@ import java.util.List;
 import org.yamcs.StandardTupleDefinitions;
 import org.yamcs.commanding.PreparedCommand;
 import org.yamcs.parameter.ParameterValue;
+import org.yamcs.protobuf.Commanding.CommandHistoryAttribute;
 import org.yamcs.protobuf.Commanding.CommandId;
+import org.yamcs.utils.ValueUtility;
 import org.yamcs.yarch.DataType;
 import org.yamcs.yarch.Stream;
 import org.yamcs.yarch.Tuple;
@@ -88,6 +90,18 @@ public class StreamCommandHistoryPublisher implements CommandHistoryPublisher {
         stream.emitTuple(t);
     }
 
+    @Override
+    public void publish(CommandId cmdId, List<CommandHistoryAttribute> attributes) {
+        TupleDefinition td = StandardTupleDefinitions.TC.copy();
+        List<Object> vals = new ArrayList<>(Arrays.asList(cmdId.getGenerationTime(), cmdId.getOrigin(),
+                cmdId.getSequenceNumber(), cmdId.getCommandName()));
+        for (CommandHistoryAttribute attr : attributes) {
+            td.addColumn(attr.getName(), ValueUtility.getYarchType(attr.getValue().getType()));
+            vals.add(ValueUtility.getYarchValue(attr.getValue()));
+        }
+        stream.emitTuple(new Tuple(td, vals));
+    }
+
     @Override
     public void publishAck(CommandId cmdId, String key, long time, AckStatus state,
             String message, ParameterValue resultPv) {
@@ -16,7 +16,7 @@ public class ArgumentValue extends RawEngValue {
 
     public ArgumentValue(Argument argument, Value engValue) {
         this.argument = argument;
-        this.engValue = engValue;
+        setEngValue(engValue);
     }
 
     public Argument getArgument() {
@@ -29,11 +29,11 @@ public class ArgumentValue extends RawEngValue {
         sb.append("name: ");
         sb.append(argument.getName());
 
-        if (rawValue != null) {
-            sb.append(" rawValue: {").append(rawValue.toString()).append("}");
+        if (getRawValue() != null) {
+            sb.append(" rawValue: {").append(getRawValue().toString()).append("}");
         }
-        if (engValue != null) {
-            sb.append(" engValue: {").append(engValue.toString()).append("}");
+        if (getEngValue() != null) {
+            sb.append(" engValue: {").append(getEngValue().toString()).append("}");
         }
         return sb.toString();
     }
@@ -41,11 +41,11 @@ public class ArgumentValue extends RawEngValue {
     public ParameterValue toGpb() {
         ParameterValue.Builder gpvb = ParameterValue.newBuilder()
                 .setGenerationTime(TimeEncoding.toProtobufTimestamp(generationTime));
-        if (engValue != null) {
-            gpvb.setEngValue(ValueUtility.toGbp(engValue));
+        if (getEngValue() != null) {
+            gpvb.setEngValue(ValueUtility.toGbp(getEngValue()));
         }
-        if (rawValue != null) {
-            gpvb.setEngValue(ValueUtility.toGbp(rawValue));
+        if (getRawValue() != null) {
+            gpvb.setEngValue(ValueUtility.toGbp(getRawValue()));
         }
 
         return gpvb.build();
@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -36,6 +37,7 @@ import org.yamcs.protobuf.Commanding.QueueState;
 import org.yamcs.protobuf.Yamcs.Value;
 import org.yamcs.security.User;
 import org.yamcs.time.TimeService;
+import org.yamcs.utils.ValueHelper;
 import org.yamcs.xtce.Significance.Levels;
 import org.yamcs.xtce.Parameter;
 import org.yamcs.xtce.TransmissionConstraint;
@@ -80,6 +82,10 @@ public class CommandQueueManager extends AbstractService implements ParameterPro
 
     private TimeService timeService;
 
+    // set while a batch of commands is added; collects the queues to be notified at the end of the batch
+    @GuardedBy("this")
+    private Set<CommandQueue> batchUpdatedQueues;
+
     /**
      * Constructs a Command Queue Manager.
      * 
@@ -222,6 +228,37 @@ public class CommandQueueManager extends AbstractService implements ParameterPro
      * @return the queue the command was added to
      */
     public synchronized CommandQueue addCommand(User user, ActiveCommand activeCommand) {
+        return addCommand(user, activeCommand, false);
+    }
+
+    /**
+     * Adds several commands to their queues, in the given order and without other commands being added in between.
+     * <p>
+     * The monitoring clients receive one queue update per affected queue at the end of the batch (instead of one per
+     * command) and the queue name and queue acknowledgement of each command are published in the command history as
+     * one update.
+     * 
+     * @param user
+     * @param activeCommands
+     * @return the queues the commands were added to, in the same order as the commands; an element is null if no queue
+     *         was found for the corresponding command
+     */
+    public synchronized List<CommandQueue> addCommands(User user, List<ActiveCommand> activeCommands) {
+        List<CommandQueue> result = new ArrayList<>(activeCommands.size());
+        batchUpdatedQueues = new LinkedHashSet<>();
+        try {
+            for (ActiveCommand activeCommand : activeCommands) {
+                result.add(addCommand(user, activeCommand, true));
+            }
+        } finally {
+            Set<CommandQueue> updated = batchUpdatedQueues;
+            batchUpdatedQueues = null;
+            updated.forEach(q -> notifyUpdateQueue(q));
+        }
+        return result;
+    }
+
+    private CommandQueue addCommand(User user, ActiveCommand activeCommand, boolean batch) {
         commandHistoryPublisher.addCommand(activeCommand.getPreparedCommand());
 
         long missionTime = timeService.getMissionTime();
@@ -240,24 +277,21 @@ public class CommandQueueManager extends AbstractService implements ParameterPro
         q.add(activeCommand);
         notifyAdded(q, activeCommand);
 
-        commandHistoryPublisher.publish(activeCommand.getCommandId(), CommandHistoryPublisher.Queue_KEY, q.getName());
+        if (!batch) {
+            commandHistoryPublisher.publish(activeCommand.getCommandId(), CommandHistoryPublisher.Queue_KEY,
+                    q.getName());
+        }
 
         if (q.state == QueueState.DISABLED) {
             q.remove(activeCommand, false);
-            commandHistoryPublisher.publishAck(activeCommand.getCommandId(),
-                    CommandHistoryPublisher.AcknowledgeQueued_KEY,
-                    missionTime, AckStatus.NOK, "Queue disabled");
+            publishQueued(activeCommand, q, missionTime, AckStatus.NOK, "Queue disabled", batch);
             failedCommand(q, activeCommand, "Queue disabled", true);
             notifyUpdateQueue(q);
         } else if (q.state == QueueState.BLOCKED) {
-            commandHistoryPublisher.publishAck(activeCommand.getCommandId(),
-                    CommandHistoryPublisher.AcknowledgeQueued_KEY,
-                    missionTime, AckStatus.OK);
+            publishQueued(activeCommand, q, missionTime, AckStatus.OK, null, batch);
             // notifyAdded(q, pc);
         } else if (q.state == QueueState.ENABLED) {
-            commandHistoryPublisher.publishAck(activeCommand.getCommandId(),
-                    CommandHistoryPublisher.AcknowledgeQueued_KEY,
-                    missionTime, AckStatus.OK);
+            publishQueued(activeCommand, q, missionTime, AckStatus.OK, null, batch);
             preReleaseCommad(q, activeCommand);
 
         }
@@ -265,6 +299,29 @@ public class CommandQueueManager extends AbstractService implements ParameterPro
         return q;
     }
 
+    // in batch mode, the queue name is published together with the queued acknowledgement
+    private void publishQueued(ActiveCommand activeCommand, CommandQueue q, long missionTime, AckStatus status,
+            String message, boolean batch) {
+        if (!batch) {
+            commandHistoryPublisher.publishAck(activeCommand.getCommandId(),
+                    CommandHistoryPublisher.AcknowledgeQueued_KEY, missionTime, status, message);
+            return;
+        }
+        String key = CommandHistoryPublisher.AcknowledgeQueued_KEY;
+        List<CommandHistoryAttribute> attrs = new ArrayList<>(4);
+        attrs.add(CommandHistoryAttribute.newBuilder().setName(CommandHistoryPublisher.Queue_KEY)
+                .setValue(ValueHelper.newValue(q.getName())).build());
+        attrs.add(CommandHistoryAttribute.newBuilder().setName(key + CommandHistoryPublisher.SUFFIX_STATUS)
+                .setValue(ValueHelper.newValue(status.toString())).build());
+        attrs.add(CommandHistoryAttribute.newBuilder().setName(key + CommandHistoryPublisher.SUFFIX_TIME)
+                .setValue(ValueHelper.newTimestampValue(missionTime)).build());
+        if (message != null) {
+            attrs.add(CommandHistoryAttribute.newBuilder().setName(key + CommandHistoryPublisher.SUFFIX_MESSAGE)
+                    .setValue(ValueHelper.newValue(message)).build());
+        }
+        commandHistoryPublisher.publish(activeCommand.getCommandId(), attrs);
+    }
+
     // if there are transmission constrains, start the checker;
     // if not just release the command
     private void preReleaseCommad(CommandQueue q, ActiveCommand pc) {
@@ -361,6 +418,10 @@ public class CommandQueueManager extends AbstractService implements ParameterPro
     }
 
     private void notifyUpdateQueue(CommandQueue q) {
+        if (batchUpdatedQueues != null && Thread.holdsLock(this)) {
+            batchUpdatedQueues.add(q);
+            return;
+        }
         for (CommandQueueListener m : monitoringClients) {
             try {
                 m.updateQueue(q);
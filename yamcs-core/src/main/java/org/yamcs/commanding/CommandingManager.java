@@ -1,5 +1,6 @@
 package org.yamcs.commanding;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -65,12 +66,21 @@ public class CommandingManager extends AbstractService {
      */
     public PreparedCommand buildCommand(MetaCommand mc, List<ArgumentAssignment> argAssignmentList, String origin,
             int seq, User user) throws ErrorInCommand, YamcsException {
+        return buildCommand(mc, argAssignmentList, origin, seq, user, processor.getCurrentTime());
+    }
+
+    /**
+     * Same as {@link #buildCommand(MetaCommand, List, String, int, User)} but with a given generation time, used when
+     * several commands are built at once and have to keep their order.
+     */
+    public PreparedCommand buildCommand(MetaCommand mc, List<ArgumentAssignment> argAssignmentList, String origin,
+            int seq, User user, long generationTime) throws ErrorInCommand, YamcsException {
         log.debug("Building command {} with arguments {}", mc.getName(), argAssignmentList);
 
         CommandBuildResult cbr = metaCommandProcessor.buildCommand(mc, argAssignmentList);
 
         CommandId cmdId = CommandId.newBuilder().setCommandName(mc.getQualifiedName()).setOrigin(origin)
-                .setSequenceNumber(seq).setGenerationTime(processor.getCurrentTime()).build();
+                .setSequenceNumber(seq).setGenerationTime(generationTime).build();
         PreparedCommand pc = new PreparedCommand(cmdId);
         pc.setMetaCommand(mc);
         pc.setBinary(cbr.getCmdPacket());
@@ -95,6 +105,26 @@ public class CommandingManager extends AbstractService {
         return commandQueueManager.addCommand(user, activeCommand);
     }
 
+    /**
+     * Sends several commands at once; see {@link CommandQueueManager#addCommands(User, List)}.
+     * <p>
+     * All the commands are added to the command history before being queued, so their number should not exceed the
+     * maximum number of active commands of the processor.
+     * 
+     * @return the queues that the commands were sent to, in the same order as the commands
+     */
+    public List<CommandQueue> sendCommands(User user, List<PreparedCommand> pcs) {
+        log.debug("sendCommands {} commands", pcs.size());
+        List<ActiveCommand> activeCommands = new ArrayList<>(pcs.size());
+        for (PreparedCommand pc : pcs) {
+            ActiveCommand activeCommand = new ActiveCommand(processor, pc);
+            cmdHistoryManager.addCommand(pc);
+            cmdHistoryManager.subscribeCommand(pc.getCommandId(), activeCommand);
+            activeCommands.add(activeCommand);
+        }
+        return commandQueueManager.addCommands(user, activeCommands);
+    }
+
     public void setCommandAttribute(CommandId commandId, CommandHistoryAttribute attribute) {
         commandQueueManager.addToCommandHistory(commandId, attribute);
     }
@@ -29,6 +29,16 @@ public interface FileTransfer {
 
     long getTransferredSize();
 
+    /**
+     * return the average transfer rate in bytes/second since the start of the transfer.
+     * <p>
+     * Returns -1 if the rate is not known (for example for the transfers which are not running anymore and have been
+     * retrieved from the archive).
+     */
+    default double getThroughput() {
+        return -1;
+    }
+
     long getId();
 
     TransferState getTransferState();
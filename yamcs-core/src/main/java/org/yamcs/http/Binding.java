@@ -18,6 +18,11 @@ import org.yamcs.YConfiguration;
 
 import com.google.common.io.ByteStreams;
 
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolConfig.Protocol;
+import io.netty.handler.ssl.ApplicationProtocolConfig.SelectedListenerFailureBehavior;
+import io.netty.handler.ssl.ApplicationProtocolConfig.SelectorFailureBehavior;
+import io.netty.handler.ssl.ApplicationProtocolNames;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 
@@ -58,7 +63,7 @@ public class Binding {
         return port;
     }
 
-    SslContext createSslContext() throws SSLException, IOException {
+    SslContext createSslContext(boolean http2) throws SSLException, IOException {
         ByteArrayOutputStream buf = new ByteArrayOutputStream();
         for (String cert : tlsCerts) {
             try (InputStream certIn = Files.newInputStream(Paths.get(cert))) {
@@ -68,9 +73,14 @@ public class Binding {
 
         try (InputStream chain = new ByteArrayInputStream(buf.toByteArray());
                 InputStream key = new FileInputStream(tlsKey)) {
-            return SslContextBuilder
-                    .forServer(chain, key)
-                    .build();
+            SslContextBuilder builder = SslContextBuilder.forServer(chain, key);
+            if (http2) {
+                // let the clients select HTTP/2 during the TLS handshake
+                builder.applicationProtocolConfig(new ApplicationProtocolConfig(Protocol.ALPN,
+                        SelectorFailureBehavior.NO_ADVERTISE, SelectedListenerFailureBehavior.ACCEPT,
+                        ApplicationProtocolNames.HTTP_2, ApplicationProtocolNames.HTTP_1_1));
+            }
+            return builder.build();
         }
     }
 
@@ -43,6 +43,9 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.WriteBufferWaterMark;
 import io.netty.handler.codec.DecoderResult;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpContentCompressor;
@@ -54,11 +57,13 @@ import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpStatusClass;
 import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.codec.http.cookie.Cookie;
 import io.netty.handler.codec.http.cookie.ServerCookieDecoder;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.handler.codec.http2.Http2StreamChannel;
 import io.netty.handler.codec.protobuf.ProtobufDecoder;
 import io.netty.handler.codec.protobuf.ProtobufVarint32FrameDecoder;
 import io.netty.handler.ssl.NotSslRecordException;
@@ -94,6 +99,8 @@ public class HttpRequestHandler extends ChannelInboundHandlerAdapter {
     public static final AttributeKey<String> CTX_CONTEXT_PATH = AttributeKey.valueOf("contextPath");
     public static final AttributeKey<HttpRequest> CTX_HTTP_REQUEST = AttributeKey.valueOf("httpRequest");
     public static final AttributeKey<RouteContext> CTX_CONTEXT = AttributeKey.valueOf("routeContext");
+    // set to true once the whole request (including its body) has been received
+    public static final AttributeKey<Boolean> CTX_REQUEST_CONSUMED = AttributeKey.valueOf("requestConsumed");
 
     private static final Log log = new Log(HttpRequestHandler.class);
 
@@ -116,12 +123,6 @@ public class HttpRequestHandler extends ChannelInboundHandlerAdapter {
         contextPath = httpServer.getContextPath();
     }
 
-    @Override
-    public void channelActive(ChannelHandlerContext ctx) throws Exception {
-        httpServer.trackClientChannel(ctx.channel());
-        super.channelActive(ctx);
-    }
-
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         if (msg instanceof HttpMessage) {
@@ -133,10 +134,21 @@ public class HttpRequestHandler extends ChannelInboundHandlerAdapter {
             }
         }
 
+        if (msg instanceof FullHttpRequest) {
+            // The HTTP/2 requests without body and the HTTP/1.1 upgrade requests come aggregated. They are handled as
+            // the other requests: the headers followed by the content.
+            FullHttpRequest fullReq = (FullHttpRequest) msg;
+            channelRead(ctx, new DefaultHttpRequest(fullReq.protocolVersion(), fullReq.method(), fullReq.uri(),
+                    fullReq.headers()));
+            channelRead(ctx, new DefaultLastHttpContent(fullReq.content()));
+            return;
+        }
+
         if (msg instanceof HttpRequest) {
             contentExpected = false;
 
             HttpRequest req = (HttpRequest) msg;
+            ctx.channel().attr(CTX_REQUEST_CONSUMED).set(!hasBody(req));
 
             // We have this also on info level coupled with the HTTP response status
             // code, but this is on debug for an earlier reporting while debugging issues
@@ -154,6 +166,9 @@ public class HttpRequestHandler extends ChannelInboundHandlerAdapter {
 
             ReferenceCountUtil.release(msg);
         } else if (msg instanceof HttpContent) {
+            if (msg instanceof LastHttpContent) {
+                ctx.channel().attr(CTX_REQUEST_CONSUMED).set(true);
+            }
             if (contentExpected) {
                 ctx.fireChannelRead(msg);
                 if (msg instanceof LastHttpContent) {
@@ -163,6 +178,8 @@ public class HttpRequestHandler extends ChannelInboundHandlerAdapter {
                 log.warn("{} unexpected http content received: {}", ctx.channel().id().asShortText(), msg);
                 ReferenceCountUtil.release(msg);
                 ctx.close();
+            } else {
+                ReferenceCountUtil.release(msg);
             }
         } else {
             log.error("{} unexpected message received: {}", ctx.channel().id().asShortText(), msg);
@@ -174,6 +191,10 @@ public class HttpRequestHandler extends ChannelInboundHandlerAdapter {
         cleanPipeline(ctx.pipeline());
         ctx.channel().attr(CTX_CONTEXT_PATH).set(contextPath);
         ctx.channel().attr(CTX_HTTP_REQUEST).set(req);
+        if (ctx.channel() instanceof Http2StreamChannel) {
+            // shown in the list of the client connections
+            ctx.channel().parent().attr(CTX_HTTP_REQUEST).set(req);
+        }
 
         if (!req.uri().startsWith(contextPath)) {
             sendPlainTextError(ctx, req, NOT_FOUND);
@@ -493,12 +514,27 @@ public class HttpRequestHandler extends ChannelInboundHandlerAdapter {
                 log.warn("{} malformed or illegal request. Sending back {}", ctx.channel().id().asShortText(),
                         response.status().code());
             }
+            // after a client error the connection can be reused for the next requests, provided that the client can
+            // find the end of the response and that the body of the request is not still coming
+            boolean keepAlive = req != null && HttpUtil.isKeepAlive(req)
+                    && response.status().codeClass() == HttpStatusClass.CLIENT_ERROR
+                    && response instanceof FullHttpResponse
+                    && Boolean.TRUE.equals(ctx.channel().attr(CTX_REQUEST_CONSUMED).get());
+            if (keepAlive) {
+                HttpUtil.setContentLength(response, ((FullHttpResponse) response).content().readableBytes());
+            }
             ChannelFuture writeFuture = ctx.writeAndFlush(response);
-            writeFuture = writeFuture.addListener(ChannelFutureListener.CLOSE);
+            if (!keepAlive) {
+                writeFuture = writeFuture.addListener(ChannelFutureListener.CLOSE);
+            }
             return writeFuture;
         }
     }
 
+    private static boolean hasBody(HttpRequest req) {
+        return HttpUtil.isTransferEncodingChunked(req) || HttpUtil.getContentLength(req, 0L) > 0;
+    }
+
     private void cleanPipeline(ChannelPipeline pipeline) {
         while (pipeline.last() != this) {
             pipeline.removeLast();
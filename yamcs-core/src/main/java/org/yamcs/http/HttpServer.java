@@ -10,10 +10,13 @@ import java.net.UnknownHostException;
 import java.nio.file.Path;
 import java.security.cert.CertificateException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
@@ -21,6 +24,7 @@ import java.util.function.Supplier;
 import javax.net.ssl.SSLException;
 
 import org.yamcs.AbstractYamcsService;
+import org.yamcs.ConfigurationException;
 import org.yamcs.InitException;
 import org.yamcs.Spec;
 import org.yamcs.Spec.OptionType;
@@ -75,6 +79,7 @@ import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
@@ -106,6 +111,8 @@ public class HttpServer extends AbstractYamcsService {
     // Protobuf weirdness. When unspecified it defaults to "type.googleapis.com" ...
     public static final String TYPE_URL_PREFIX = "";
 
+    private static final String EPOLL_PACKAGE = "io.netty.channel.epoll";
+
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
     private ChannelGroup clientChannels;
@@ -118,8 +125,15 @@ public class HttpServer extends AbstractYamcsService {
 
     private List<Binding> bindings = new ArrayList<>(2);
 
+    // pools executing the offloaded routes, by name
+    private Map<String, WorkerPool> workerPools = new LinkedHashMap<>();
+
     private String contextPath;
     private boolean zeroCopyEnabled;
+    // use the Linux epoll transport instead of NIO
+    private boolean nativeTransport;
+    // accept HTTP/2 (h2 negotiated with ALPN over TLS, or h2c)
+    private boolean http2;
     private List<String> staticRoots = new ArrayList<>(2);
 
     // Cross-origin Resource Sharing (CORS) enables use of the HTTP API in non-official client web applications
@@ -161,6 +175,13 @@ public class HttpServer extends AbstractYamcsService {
                 .withDefault(5);
         websocketSpec.addOption("maxFrameLength", OptionType.INTEGER).withDefault(65536);
 
+        int numCpus = Runtime.getRuntime().availableProcessors();
+        Spec workerPoolSpec = new Spec();
+        workerPoolSpec.addOption("name", OptionType.STRING).withRequired(true);
+        workerPoolSpec.addOption("maxThreads", OptionType.INTEGER).withDefault(2 * numCpus);
+        workerPoolSpec.addOption("maxQueueSize", OptionType.INTEGER).withDefault(1000);
+        workerPoolSpec.addOption("queueTimeout", OptionType.INTEGER).withDefault(60000);
+
         Spec bindingSpec = new Spec();
         bindingSpec.addOption("address", OptionType.STRING);
         bindingSpec.addOption("port", OptionType.INTEGER).withRequired(true);
@@ -175,6 +196,8 @@ public class HttpServer extends AbstractYamcsService {
         spec.addOption("tlsKey", OptionType.STRING);
         spec.addOption("contextPath", OptionType.STRING).withDefault("" /* NOT null */);
         spec.addOption("zeroCopyEnabled", OptionType.BOOLEAN).withDefault(true);
+        spec.addOption("nativeTransport", OptionType.BOOLEAN).withDefault(true);
+        spec.addOption("http2", OptionType.BOOLEAN).withDefault(true);
         spec.addOption("maxContentLength", OptionType.INTEGER).withDefault(65536);
         spec.addOption("gpbExtensions", OptionType.LIST).withElementType(OptionType.MAP).withSpec(gpbSpec);
         spec.addOption("cors", OptionType.MAP).withSpec(corsSpec);
@@ -182,6 +205,9 @@ public class HttpServer extends AbstractYamcsService {
         spec.addOption("bindings", OptionType.LIST)
                 .withElementType(OptionType.MAP)
                 .withSpec(bindingSpec);
+        spec.addOption("workerPools", OptionType.LIST)
+                .withElementType(OptionType.MAP)
+                .withSpec(workerPoolSpec);
 
         // When using multiple bindings, best to avoid confusion and disable the top-level properties
         spec.mutuallyExclusive("address", "bindings");
@@ -228,6 +254,8 @@ public class HttpServer extends AbstractYamcsService {
         }
 
         zeroCopyEnabled = config.getBoolean("zeroCopyEnabled");
+        nativeTransport = config.getBoolean("nativeTransport") && isEpollAvailable();
+        http2 = config.getBoolean("http2");
 
         if (config.containsKey("gpbExtensions")) {
             List<Map<String, Object>> extensionsConf = config.getList("gpbExtensions");
@@ -264,6 +292,8 @@ public class HttpServer extends AbstractYamcsService {
             corsConfig = corsb.build();
         }
 
+        initWorkerPools(config);
+
         addApi(new AlarmsApi());
         addApi(new BucketsApi());
         addApi(new FileTransferApi());
@@ -295,6 +325,41 @@ public class HttpServer extends AbstractYamcsService {
         addHandler("auth", () -> authHandler);
     }
 
+    private void initWorkerPools(YConfiguration config) throws InitException {
+        int numCpus = Runtime.getRuntime().availableProcessors();
+        workerPools.put(WorkerPool.DEFAULT_POOL, new WorkerPool(WorkerPool.DEFAULT_POOL, 2 * numCpus, 1000, 60000));
+        workerPools.put(WorkerPool.ARCHIVE_POOL, new WorkerPool(WorkerPool.ARCHIVE_POOL, numCpus, 100, 60000));
+
+        if (config.containsKey("workerPools")) {
+            for (YConfiguration poolConfig : config.getConfigList("workerPools")) {
+                if (poolConfig.getInt("maxThreads") < 1 || poolConfig.getInt("maxQueueSize") < 1) {
+                    throw new InitException("Worker pool " + poolConfig.getString("name")
+                            + ": maxThreads and maxQueueSize have to be positive");
+                }
+                WorkerPool pool = WorkerPool.fromConfig(poolConfig);
+                WorkerPool old = workerPools.put(pool.getName(), pool);
+                if (old != null) {
+                    old.shutdown();
+                }
+            }
+        }
+    }
+
+    private Route createRoute(Api<Context> api, HttpRoute httpRoute, RpcDescriptor descriptor) {
+        Route route = new Route(api, httpRoute, descriptor, metricRegistry);
+        String poolName = route.getWorkerPoolName();
+        if (poolName != null) {
+            WorkerPool pool = workerPools.get(poolName);
+            if (pool == null) {
+                log.warn("Route {} {} refers to unknown worker pool '{}'; using the default pool",
+                        route.getHttpMethod(), route.getUriTemplate(), poolName);
+                pool = workerPools.get(WorkerPool.DEFAULT_POOL);
+            }
+            route.setWorkerPool(pool);
+        }
+        return route;
+    }
+
     public void addStaticRoot(Path staticRoot) {
         staticRoots.add(staticRoot.toString());
     }
@@ -317,9 +382,9 @@ public class HttpServer extends AbstractYamcsService {
                     topics.add(new Topic(api, topic, descriptor));
                 }
             } else {
-                routes.add(new Route(api, descriptor.getHttpRoute(), descriptor, metricRegistry));
+                routes.add(createRoute(api, descriptor.getHttpRoute(), descriptor));
                 for (HttpRoute route : descriptor.getAdditionalHttpRoutes()) {
-                    routes.add(new Route(api, route, descriptor, metricRegistry));
+                    routes.add(createRoute(api, route, descriptor));
                 }
             }
         }
@@ -353,12 +418,17 @@ public class HttpServer extends AbstractYamcsService {
 
     public void startServer() throws InterruptedException, SSLException, CertificateException, IOException {
         StaticFileHandler.init(staticRoots, zeroCopyEnabled);
-        bossGroup = new NioEventLoopGroup(1);
-
         // Note that by default (i.e. with nThreads = 0), Netty will limit the number
         // of worker threads to 2*number of CPU cores
-        workerGroup = new NioEventLoopGroup(0,
-                new ThreadPerTaskExecutor(new DefaultThreadFactory("YamcsHttpServer")));
+        Executor workerExecutor = new ThreadPerTaskExecutor(new DefaultThreadFactory("YamcsHttpServer"));
+        if (nativeTransport) {
+            log.debug("Using the native epoll transport");
+            bossGroup = newEpollEventLoopGroup(1, null);
+            workerGroup = newEpollEventLoopGroup(0, workerExecutor);
+        } else {
+            bossGroup = new NioEventLoopGroup(1);
+            workerGroup = new NioEventLoopGroup(0, workerExecutor);
+        }
 
         for (Binding binding : bindings) {
             createAndBindBootstrap(workerGroup, binding);
@@ -370,12 +440,12 @@ public class HttpServer extends AbstractYamcsService {
             throws InterruptedException, SSLException, IOException {
         SslContext sslContext = null;
         if (binding.isTLS()) {
-            sslContext = binding.createSslContext();
+            sslContext = binding.createSslContext(http2);
         }
 
         ServerBootstrap bootstrap = new ServerBootstrap();
         bootstrap.group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
+                .channel(nativeTransport ? getEpollServerChannelClass() : NioServerSocketChannel.class)
                 .handler(new LoggingHandler(HttpServer.class, LogLevel.DEBUG))
                 .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
                 .childHandler(new HttpServerChannelInitializer(this, sslContext));
@@ -390,6 +460,38 @@ public class HttpServer extends AbstractYamcsService {
         }
     }
 
+    /**
+     * The epoll transport is optional: it is used only if the netty-transport-native-epoll jar (with the classifier
+     * matching the platform) is on the classpath. The classes are therefore loaded by reflection.
+     */
+    private static boolean isEpollAvailable() {
+        try {
+            Class<?> epollClass = Class.forName(EPOLL_PACKAGE + ".Epoll");
+            return (Boolean) epollClass.getMethod("isAvailable").invoke(null);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static EventLoopGroup newEpollEventLoopGroup(int nThreads, Executor executor) {
+        try {
+            Class<?> groupClass = Class.forName(EPOLL_PACKAGE + ".EpollEventLoopGroup");
+            return (EventLoopGroup) groupClass.getConstructor(int.class, Executor.class)
+                    .newInstance(nThreads, executor);
+        } catch (ReflectiveOperationException e) {
+            throw new ConfigurationException("Cannot create the epoll event loop group", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends ServerChannel> getEpollServerChannelClass() {
+        try {
+            return (Class<? extends ServerChannel>) Class.forName(EPOLL_PACKAGE + ".EpollServerSocketChannel");
+        } catch (ClassNotFoundException e) {
+            throw new ConfigurationException("Cannot load the epoll server channel", e);
+        }
+    }
+
     Handler createHandler(String pathSegment) {
         Supplier<Handler> supplier = extraHandlers.get(pathSegment);
         return supplier != null ? supplier.get() : null;
@@ -407,10 +509,22 @@ public class HttpServer extends AbstractYamcsService {
         return contextPath;
     }
 
+    public boolean isHttp2Enabled() {
+        return http2;
+    }
+
+    public List<Api<Context>> getApis() {
+        return apis;
+    }
+
     public List<Route> getRoutes() {
         return routes;
     }
 
+    public Collection<WorkerPool> getWorkerPools() {
+        return workerPools.values();
+    }
+
     public List<Topic> getTopics() {
         return topics;
     }
@@ -457,6 +571,7 @@ public class HttpServer extends AbstractYamcsService {
             return bossGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS).get();
         });
         closers.shutdown();
+        workerPools.values().forEach(WorkerPool::shutdown);
         Futures.addCallback(Futures.allAsList(future1, future2), new FutureCallback<Object>() {
             @Override
             public void onSuccess(Object result) {
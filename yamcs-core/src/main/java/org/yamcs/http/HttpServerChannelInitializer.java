@@ -1,16 +1,40 @@
 package org.yamcs.http;
 
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
 import io.netty.handler.codec.http.cors.CorsConfig;
 import io.netty.handler.codec.http.cors.CorsHandler;
+import io.netty.handler.codec.http2.CleartextHttp2ServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.traffic.ChannelTrafficShapingHandler;
+import io.netty.util.AsciiString;
 
+/**
+ * Configures the pipeline of the client connections.
+ * <p>
+ * If HTTP/2 is enabled, it is negotiated with ALPN on the TLS connections and with the HTTP/1.1 upgrade mechanism
+ * (or prior knowledge) on the cleartext connections (h2c). Each HTTP/2 stream is a child channel whose frames are
+ * converted to HTTP/1.1 objects, such that the requests are handled by the same {@link HttpRequestHandler} as the
+ * HTTP/1.1 requests.
+ */
 public class HttpServerChannelInitializer extends ChannelInitializer<SocketChannel> {
 
+    // maximum size of the HTTP/1.1 request asking for an upgrade to h2c
+    private static final int MAX_UPGRADE_REQUEST_SIZE = 65536;
+
     private HttpServer httpServer;
     private final SslContext sslCtx;
 
@@ -21,6 +45,8 @@ public class HttpServerChannelInitializer extends ChannelInitializer<SocketChann
 
     @Override
     public void initChannel(SocketChannel ch) {
+        httpServer.trackClientChannel(ch);
+
         ChannelPipeline pipeline = ch.pipeline();
         if (sslCtx != null) {
             pipeline.addLast(sslCtx.newHandler(ch.alloc()));
@@ -28,8 +54,68 @@ public class HttpServerChannelInitializer extends ChannelInitializer<SocketChann
 
         pipeline.addLast(new ChannelTrafficShapingHandler(5000));
 
+        if (!httpServer.isHttp2Enabled()) {
+            configureHttp1(pipeline);
+        } else if (sslCtx != null) {
+            pipeline.addLast(new ApplicationProtocolNegotiationHandler(ApplicationProtocolNames.HTTP_1_1) {
+                @Override
+                protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+                    if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+                        configureHttp2(ctx.pipeline());
+                    } else if (ApplicationProtocolNames.HTTP_1_1.equals(protocol)) {
+                        configureHttp1(ctx.pipeline());
+                    } else {
+                        throw new IllegalStateException("Unsupported protocol: " + protocol);
+                    }
+                }
+            });
+        } else {
+            configureCleartext(pipeline);
+        }
+    }
+
+    private void configureHttp1(ChannelPipeline pipeline) {
         pipeline.addLast(new HttpServerCodec());
+        addRequestHandlers(pipeline);
+    }
+
+    /**
+     * Starts with HTTP/1.1 and switches to HTTP/2 if the first request asks for an upgrade to h2c, or if the client
+     * sends directly the HTTP/2 connection preface.
+     */
+    private void configureCleartext(ChannelPipeline pipeline) {
+        HttpServerCodec sourceCodec = new HttpServerCodec();
+        HttpServerUpgradeHandler upgradeHandler = new HttpServerUpgradeHandler(sourceCodec, protocol -> {
+            if (AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)) {
+                return new Http2ServerUpgradeCodec(Http2FrameCodecBuilder.forServer().build(),
+                        new ChannelInitializer<Channel>() {
+                            @Override
+                            protected void initChannel(Channel ch) {
+                                removeRequestHandlers(ch.pipeline());
+                                ch.pipeline().addLast(new Http2MultiplexHandler(new Http2StreamInitializer()));
+                            }
+                        });
+            }
+            return null;
+        }, MAX_UPGRADE_REQUEST_SIZE);
+
+        pipeline.addLast(new CleartextHttp2ServerUpgradeHandler(sourceCodec, upgradeHandler,
+                new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        removeRequestHandlers(ch.pipeline());
+                        configureHttp2(ch.pipeline());
+                    }
+                }));
+        addRequestHandlers(pipeline);
+    }
 
+    private void configureHttp2(ChannelPipeline pipeline) {
+        pipeline.addLast(Http2FrameCodecBuilder.forServer().build());
+        pipeline.addLast(new Http2MultiplexHandler(new Http2StreamInitializer()));
+    }
+
+    private void addRequestHandlers(ChannelPipeline pipeline) {
         CorsConfig corsConfig = httpServer.getCorsConfig();
         if (corsConfig != null) {
             pipeline.addLast(new CorsHandler(corsConfig));
@@ -38,4 +124,22 @@ public class HttpServerChannelInitializer extends ChannelInitializer<SocketChann
         // this has to be the last handler in the pipeline
         pipeline.addLast(new HttpRequestHandler(httpServer));
     }
+
+    // once the connection is upgraded, the requests are handled in the pipelines of the streams
+    private static void removeRequestHandlers(ChannelPipeline pipeline) {
+        if (pipeline.get(CorsHandler.class) != null) {
+            pipeline.remove(CorsHandler.class);
+        }
+        if (pipeline.get(HttpRequestHandler.class) != null) {
+            pipeline.remove(HttpRequestHandler.class);
+        }
+    }
+
+    private class Http2StreamInitializer extends ChannelInitializer<Http2StreamChannel> {
+        @Override
+        protected void initChannel(Http2StreamChannel ch) {
+            ch.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(true));
+            addRequestHandlers(ch.pipeline());
+        }
+    }
 }
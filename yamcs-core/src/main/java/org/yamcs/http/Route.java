@@ -21,6 +21,7 @@ public class Route implements Comparable<Route> {
     private final String uriTemplate;
     private final HttpMethod httpMethod;
     private final boolean offloaded;
+    private final String workerPoolName;
     private final boolean deprecated;
     private final String body;
     private final String fieldMaskRoot;
@@ -29,6 +30,9 @@ public class Route implements Comparable<Route> {
     // May be unspecified
     private int maxBodySize;
 
+    // set by the HttpServer for the offloaded routes
+    private WorkerPool workerPool;
+
     private Counter requestCounter;
     private Counter errorCounter;
 
@@ -41,7 +45,13 @@ public class Route implements Comparable<Route> {
         errorCounter = metricRegistry.counter(String.format(
                 "yamcs.api.errors.total.%s.%s", descriptor.getService(), descriptor.getMethod()));
 
-        offloaded = httpOptions.getOffloaded();
+        if (httpOptions.hasWorkerPool()) {
+            offloaded = true;
+            workerPoolName = httpOptions.getWorkerPool();
+        } else {
+            offloaded = httpOptions.getOffloaded();
+            workerPoolName = offloaded ? WorkerPool.DEFAULT_POOL : null;
+        }
         deprecated = httpOptions.getDeprecated();
 
         switch (httpOptions.getPatternCase()) {
@@ -137,6 +147,22 @@ public class Route implements Comparable<Route> {
         return offloaded;
     }
 
+    /**
+     * @return the name of the worker pool used to execute the route or null if the route is executed on the Netty
+     *         event loop
+     */
+    public String getWorkerPoolName() {
+        return workerPoolName;
+    }
+
+    public WorkerPool getWorkerPool() {
+        return workerPool;
+    }
+
+    void setWorkerPool(WorkerPool workerPool) {
+        this.workerPool = workerPool;
+    }
+
     public String getUriTemplate() {
         return uriTemplate;
     }
@@ -154,6 +154,10 @@ public class RouteContext extends Context {
         return route.isOffloaded();
     }
 
+    public WorkerPool getWorkerPool() {
+        return route.getWorkerPool();
+    }
+
     /**
      * Deserializes the incoming message extracted from the body. This does not care about what the HTTP method is. Any
      * required checks should be done elsewhere.
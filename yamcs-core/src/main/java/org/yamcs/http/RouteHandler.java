@@ -1,16 +1,11 @@
 package org.yamcs.http;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.yamcs.logging.Log;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.Descriptors.MethodDescriptor;
 import com.google.protobuf.Message;
@@ -26,15 +21,6 @@ public class RouteHandler extends Handler {
     private boolean logSlowRequests = true;
     private ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1);
 
-    // this is used to execute the routes marked as offloaded
-    private final ExecutorService workerPool;
-
-    public RouteHandler() {
-        ThreadFactory tf = new ThreadFactoryBuilder().setNameFormat("YamcsHttpExecutor-%d").setDaemon(false).build();
-        workerPool = new ThreadPoolExecutor(0, 2 * Runtime.getRuntime().availableProcessors(), 60, TimeUnit.SECONDS,
-                new LinkedBlockingQueue<Runnable>(), tf);
-    }
-
     @Override
     public void handle(HandlerContext handlerContext) {
         ChannelHandlerContext nettyContext = handlerContext.getNettyChannelHandlerContext();
@@ -42,11 +28,24 @@ public class RouteHandler extends Handler {
         ctx.setFullNettyRequest(handlerContext.getNettyFullHttpRequest());
 
         if (ctx.isOffloaded()) {
+            WorkerPool workerPool = ctx.getWorkerPool();
             ctx.getBody().retain();
-            workerPool.execute(() -> {
-                dispatch(ctx);
+            try {
+                workerPool.execute(() -> {
+                    dispatch(ctx);
+                    ctx.getBody().release();
+                }, () -> {
+                    ServiceUnavailableException e = new ServiceUnavailableException(
+                            "Request timed out in the queue of the worker pool '" + workerPool.getName() + "'");
+                    handleException(ctx, e);
+                    ctx.requestFuture.completeExceptionally(e);
+                    ctx.getBody().release();
+                });
+            } catch (ServiceUnavailableException e) {
                 ctx.getBody().release();
-            });
+                handleException(ctx, e);
+                ctx.requestFuture.completeExceptionally(e);
+            }
         } else {
             dispatch(ctx);
         }
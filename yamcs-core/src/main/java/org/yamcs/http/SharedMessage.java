@@ -0,0 +1,41 @@
+package org.yamcs.http;
+
+import com.google.protobuf.Any;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+
+/**
+ * Message sent to several WebSocket calls at once.
+ * <p>
+ * The serialized forms (the packed protobuf and the JSON text) are computed on first use and reused for all the
+ * calls; only the envelope (call id and sequence number) is specific to each call.
+ */
+public class SharedMessage {
+
+    private final Message message;
+    private Any any;
+    private String json;
+
+    public SharedMessage(Message message) {
+        this.message = message;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    synchronized Any getAny() {
+        if (any == null) {
+            any = Any.pack(message, HttpServer.TYPE_URL_PREFIX);
+        }
+        return any;
+    }
+
+    synchronized String getJson(JsonFormat.Printer printer) throws InvalidProtocolBufferException {
+        if (json == null) {
+            json = printer.print(getAny());
+        }
+        return json;
+    }
+}
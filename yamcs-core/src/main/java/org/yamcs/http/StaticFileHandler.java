@@ -37,6 +37,7 @@ import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.Http2StreamChannel;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.stream.ChunkedFile;
 import io.netty.handler.stream.ChunkedWriteHandler;
@@ -117,7 +118,9 @@ public class StaticFileHandler {
             }
         }
 
-        boolean zeroCopy = zeroCopyEnabled && ctx.pipeline().get(SslHandler.class) == null;
+        // the file regions cannot be sent over TLS nor in HTTP/2 frames
+        boolean zeroCopy = zeroCopyEnabled && ctx.pipeline().get(SslHandler.class) == null
+                && !(ctx.channel() instanceof Http2StreamChannel);
 
         long fileLength = file.length();
 
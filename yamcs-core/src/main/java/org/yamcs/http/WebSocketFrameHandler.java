@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.yamcs.api.Observer;
 import org.yamcs.logging.Log;
@@ -20,6 +21,7 @@ import org.yamcs.security.User;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
 import com.google.protobuf.Any;
 import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.InvalidProtocolBufferException;
@@ -53,6 +55,7 @@ public class WebSocketFrameHandler extends SimpleChannelInboundHandler<WebSocket
 
     private List<TopicContext> contexts = new ArrayList<>();
     private Map<Integer, Observer<Message>> clientObserversByCall = new HashMap<>();
+    private List<Runnable> writabilityListeners = new CopyOnWriteArrayList<>();
 
     public WebSocketFrameHandler(HttpServer httpServer, HttpRequest req, User user,
             WriteBufferWaterMark writeBufferWaterMark) {
@@ -262,6 +265,54 @@ public class WebSocketFrameHandler extends SimpleChannelInboundHandler<WebSocket
         }
     }
 
+    /**
+     * Writes a message whose data is shared with other calls. The data is serialized only once; the envelope is
+     * assembled around it.
+     */
+    void writeSharedMessage(ChannelHandlerContext nettyContext, String type, int call, int seq, SharedMessage data)
+            throws IOException {
+        if (protobuf) {
+            writeMessage(nettyContext, ServerMessage.newBuilder()
+                    .setType(type)
+                    .setCall(call)
+                    .setSeq(seq)
+                    .setData(data.getAny())
+                    .build());
+        } else {
+            // Same fields as printed by the JSON printer, which omits the default values
+            StringBuilder buf = new StringBuilder("{\"type\": ").append(new JsonPrimitive(type));
+            if (call != 0) {
+                buf.append(", \"call\": ").append(call);
+            }
+            if (seq != 0) {
+                buf.append(", \"seq\": ").append(seq);
+            }
+            buf.append(", \"data\": ").append(data.getJson(httpServer.getJsonPrinter())).append("}");
+            nettyContext.channel().writeAndFlush(new TextWebSocketFrame(buf.toString()));
+        }
+    }
+
+    /**
+     * Registers a listener called on the event loop each time the channel becomes writable.
+     */
+    void addWritabilityListener(Runnable listener) {
+        writabilityListeners.add(listener);
+    }
+
+    void removeWritabilityListener(Runnable listener) {
+        writabilityListeners.remove(listener);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext nettyContext) throws Exception {
+        if (nettyContext.channel().isWritable()) {
+            for (Runnable listener : writabilityListeners) {
+                listener.run();
+            }
+        }
+        super.channelWritabilityChanged(nettyContext);
+    }
+
     /**
      * Called when the client abruptly closes the connection
      */
@@ -276,6 +327,7 @@ public class WebSocketFrameHandler extends SimpleChannelInboundHandler<WebSocket
         log.info("Channel {} closed", remoteAddress);
         contexts.forEach(TopicContext::close);
         contexts.clear();
+        writabilityListeners.clear();
     }
 
     private Topic matchTopic(String topicName) {
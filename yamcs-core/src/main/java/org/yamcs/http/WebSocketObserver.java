@@ -2,7 +2,9 @@ package org.yamcs.http;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 
 import org.yamcs.api.Observer;
@@ -30,6 +32,11 @@ public class WebSocketObserver implements Observer<Message> {
     private boolean replied;
     private List<Message> pendingMessages = new ArrayList<>(); // Messages received while not yet replied
 
+    // Messages received while the channel is not writable, sent when it becomes writable again
+    private int maxBufferedMessages = 0;
+    private Deque<Message> bufferedMessages = new ArrayDeque<>();
+    private Runnable writabilityListener;
+
     public WebSocketObserver(TopicContext ctx, WebSocketFrameHandler frameHandler) {
         this.ctx = ctx;
         this.frameHandler = frameHandler;
@@ -57,6 +64,24 @@ public class WebSocketObserver implements Observer<Message> {
         sendMessage(type, message);
     }
 
+    /**
+     * Keeps up to the given number of messages while the channel is not writable, instead of dropping them. The
+     * messages are sent in order as soon as the channel becomes writable again. When the buffer is full, the new
+     * messages are dropped following the usual drop policy.
+     * <p>
+     * This is meant for the calls whose messages cannot be skipped and which can produce bursts larger than the write
+     * buffer of the channel.
+     */
+    public void setMaxBufferedMessages(int maxBufferedMessages) {
+        synchronized (this) {
+            this.maxBufferedMessages = maxBufferedMessages;
+            if (maxBufferedMessages > 0 && writabilityListener == null && !cancelled) {
+                writabilityListener = this::flushBufferedMessages;
+                frameHandler.addWritabilityListener(writabilityListener);
+            }
+        }
+    }
+
     @Override
     public void next(Message message) {
         synchronized (this) {
@@ -64,30 +89,96 @@ public class WebSocketObserver implements Observer<Message> {
                 pendingMessages.add(message);
                 return;
             }
+            if (maxBufferedMessages > 0 && ctx.nettyContext.channel().isOpen()
+                    && (!bufferedMessages.isEmpty() || !ctx.nettyContext.channel().isWritable())) {
+                if (bufferedMessages.size() >= maxBufferedMessages) {
+                    // sending it now would overtake the buffered messages
+                    messageCount++;
+                    drop("Skipping frame because the buffer is full");
+                    return;
+                }
+                bufferedMessages.add(message);
+                if (ctx.nettyContext.channel().isWritable()) {
+                    // the channel may have become writable before the message was added
+                    ctx.nettyContext.executor().execute(this::flushBufferedMessages);
+                }
+                return;
+            }
+        }
+        if (checkWritable()) {
+            sendMessage(ctx.getTopic().getName(), message);
+            dropCount = 0;
+        }
+    }
+
+    /**
+     * Same as {@link #next(Message)} but reuses the serialized form of a message sent to multiple calls.
+     */
+    public void nextShared(SharedMessage message) {
+        synchronized (this) {
+            if (!replied) {
+                pendingMessages.add(message.getMessage());
+                return;
+            }
         }
+        if (checkWritable()) {
+            try {
+                frameHandler.writeSharedMessage(ctx.nettyContext, ctx.getTopic().getName(), ctx.getId(),
+                        messageCount, message);
+            } catch (IOException e) {
+                cancelCall(e.getMessage());
+                throw new UncheckedIOException(e);
+            }
+            dropCount = 0;
+        }
+    }
+
+    /**
+     * Sends the buffered messages for as long as the channel is writable.
+     */
+    private synchronized void flushBufferedMessages() {
+        while (!cancelled && !bufferedMessages.isEmpty() && ctx.nettyContext.channel().isWritable()) {
+            messageCount++;
+            sendMessage(ctx.getTopic().getName(), bufferedMessages.poll());
+        }
+        if (cancelled) {
+            bufferedMessages.clear();
+        }
+    }
+
+    private synchronized void removeWritabilityListener() {
+        if (writabilityListener != null) {
+            frameHandler.removeWritabilityListener(writabilityListener);
+            writabilityListener = null;
+        }
+        bufferedMessages.clear();
+    }
 
+    private boolean checkWritable() {
         // Increase even if it not sent.
         messageCount++;
 
         boolean isOpen = ctx.nettyContext.channel().isOpen();
         boolean isWritable = ctx.nettyContext.channel().isWritable();
         if (!isOpen || !isWritable) {
-            dropCount++;
             if (!isOpen) {
-                log.warn("Skipping frame because channel is not open");
+                drop("Skipping frame because channel is not open");
             } else {
-                log.warn("Skipping frame because channel is not writable");
+                drop("Skipping frame because channel is not writable");
             }
-            if (dropCount >= maxDrops) {
-                log.warn("Too many ({}) dropped messages. Forcing disconnect", dropCount);
-                ctx.cancel(null); // Cancel the call first, to avoid log messages going beyond maxDrops
-                ctx.nettyContext.close();
-            }
-            return;
+            return false;
         }
+        return true;
+    }
 
-        sendMessage(ctx.getTopic().getName(), message);
-        dropCount = 0;
+    private void drop(String reason) {
+        dropCount++;
+        log.warn(reason);
+        if (dropCount >= maxDrops) {
+            log.warn("Too many ({}) dropped messages. Forcing disconnect", dropCount);
+            ctx.cancel(null); // Cancel the call first, to avoid log messages going beyond maxDrops
+            ctx.nettyContext.close();
+        }
     }
 
     private void sendMessage(String type, Message data) {
@@ -113,6 +204,7 @@ public class WebSocketObserver implements Observer<Message> {
                 log.debug("Cancelling {} call", ctx.getTopic().getName());
             }
             cancelled = true;
+            removeWritabilityListener();
             if (cancelHandler != null) {
                 cancelHandler.run();
             }
@@ -0,0 +1,148 @@
+package org.yamcs.http;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.yamcs.YConfiguration;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Pool of threads executing the routes which may block (for example archive retrievals), such that they do not block
+ * the Netty event loop.
+ * <p>
+ * The number of threads and the number of requests waiting for a thread are bounded; the requests which cannot be
+ * queued or which have waited in the queue for more than the configured timeout are answered with
+ * {@link ServiceUnavailableException}.
+ */
+public class WorkerPool {
+
+    public static final String DEFAULT_POOL = "default";
+    public static final String ARCHIVE_POOL = "archive";
+
+    private final String name;
+    private final int maxThreads;
+    private final int maxQueueSize;
+    private final long queueTimeoutMillis;
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder executedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder timedOutCount = new LongAdder();
+    private final LongAdder totalQueueTimeNanos = new LongAdder();
+    private final AtomicLong maxQueueTimeNanos = new AtomicLong();
+
+    public WorkerPool(String name, int maxThreads, int maxQueueSize, long queueTimeoutMillis) {
+        this.name = name;
+        this.maxThreads = maxThreads;
+        this.maxQueueSize = maxQueueSize;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+
+        ThreadFactory tf = new ThreadFactoryBuilder().setNameFormat("YamcsHttpExecutor-" + name + "-%d")
+                .setDaemon(false).build();
+        // with a bounded queue, the pool would create more than the core threads only when the queue is full; the
+        // core size is therefore the maximum size, and the idle threads time out
+        executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(maxQueueSize), tf);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    static WorkerPool fromConfig(YConfiguration config) {
+        return new WorkerPool(config.getString("name"), config.getInt("maxThreads"), config.getInt("maxQueueSize"),
+                config.getLong("queueTimeout"));
+    }
+
+    /**
+     * Executes the task on one of the threads of the pool.
+     *
+     * @param task
+     *            - the task to execute
+     * @param onTimeout
+     *            - executed (on the pool thread) instead of the task, if the task has waited too long in the queue
+     * @throws ServiceUnavailableException
+     *             if the queue is full
+     */
+    public void execute(Runnable task, Runnable onTimeout) {
+        long queuedNanos = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long queueTime = System.nanoTime() - queuedNanos;
+                totalQueueTimeNanos.add(queueTime);
+                maxQueueTimeNanos.accumulateAndGet(queueTime, Math::max);
+                executedCount.increment();
+                if (queueTimeoutMillis > 0 && queueTime > TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis)) {
+                    timedOutCount.increment();
+                    onTimeout.run();
+                } else {
+                    task.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCount.increment();
+            throw new ServiceUnavailableException("Too many requests queued in the worker pool '" + name + "'");
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    public long getQueueTimeout() {
+        return queueTimeoutMillis;
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return the number of requests taken out of the queue (including the ones which have timed out)
+     */
+    public long getExecutedCount() {
+        return executedCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getTimedOutCount() {
+        return timedOutCount.sum();
+    }
+
+    /**
+     * @return the average time in milliseconds spent by the requests in the queue
+     */
+    public double getAverageQueueTime() {
+        long n = executedCount.sum();
+        return n == 0 ? 0 : totalQueueTimeNanos.sum() / 1e6 / n;
+    }
+
+    /**
+     * @return the maximum time in milliseconds spent by a request in the queue
+     */
+    public double getMaxQueueTime() {
+        return maxQueueTimeNanos.get() / 1e6;
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -6,6 +6,11 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -32,7 +37,10 @@ import org.yamcs.http.ForbiddenException;
 import org.yamcs.http.InternalServerErrorException;
 import org.yamcs.http.MediaType;
 import org.yamcs.http.NotFoundException;
+import org.yamcs.http.WebSocketObserver;
 import org.yamcs.protobuf.AbstractCommandsApi;
+import org.yamcs.protobuf.BatchIssueCommandsRequest;
+import org.yamcs.protobuf.BatchIssueCommandsResponse;
 import org.yamcs.protobuf.Commanding.CommandHistoryAttribute;
 import org.yamcs.protobuf.Commanding.CommandHistoryEntry;
 import org.yamcs.protobuf.Commanding.CommandId;
@@ -66,14 +74,26 @@ import org.yamcs.yarch.YarchDatabase;
 import org.yamcs.yarch.YarchDatabaseInstance;
 import org.yaml.snakeyaml.util.UriEncoder;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Empty;
 
 public class CommandsApi extends AbstractCommandsApi<Context> {
 
+    // Command history updates kept for a websocket client while its channel is not writable
+    private static final int MAX_BUFFERED_COMMAND_HISTORY = 10000;
+
     private static final Pattern PATTERN_COMMAND_ID = Pattern.compile("([0-9]+)(-(.*))?-([0-9]+)");
 
+    // Validates and encodes the commands of the batch requests
+    private static final ExecutorService commandBuilder = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            new ThreadFactoryBuilder().setNameFormat("YamcsCommandBuilder-%d").setDaemon(true).build());
+
+    // Sequence numbers given to the commands of the batch requests which do not specify one
+    private static final AtomicInteger batchSequenceNumber = new AtomicInteger();
+
     @Override
     public void issueCommand(Context ctx, IssueCommandRequest request, Observer<IssueCommandResponse> observer) {
         ctx.checkSystemPrivilege(SystemPrivilege.Command);
@@ -84,13 +104,111 @@ public class CommandsApi extends AbstractCommandsApi<Context> {
         }
 
         String requestCommandName = UriEncoder.decode(request.getName());
+        PreparedCommand preparedCommand = prepareCommand(ctx, processor, requestCommandName, request);
+
+        // Good, now send
+        CommandQueue queue;
+        if (request.hasDryRun() && request.getDryRun()) {
+            CommandQueueManager mgr = processor.getCommandingManager().getCommandQueueManager();
+            queue = mgr.getQueue(ctx.user, preparedCommand);
+        } else {
+            queue = processor.getCommandingManager().sendCommand(ctx.user, preparedCommand);
+        }
+
+        observer.complete(toIssueCommandResponse(preparedCommand, queue));
+    }
+
+    @Override
+    public void batchIssueCommands(Context ctx, BatchIssueCommandsRequest request,
+            Observer<BatchIssueCommandsResponse> observer) {
+        ctx.checkSystemPrivilege(SystemPrivilege.Command);
+
+        Processor processor = ProcessingApi.verifyProcessor(request.getInstance(), request.getProcessor());
+        if (!processor.hasCommanding()) {
+            throw new BadRequestException("Commanding not activated for this processor");
+        }
+
+        // The commands of the batch are all in the list of active commands of the command history until they are
+        // queued; a larger batch would not fit.
+        List<IssueCommandRequest> requests = request.getCommandsList();
+        int maxActiveCommands = processor.getConfig().getMaxActiveCommands();
+        if (requests.size() > maxActiveCommands) {
+            throw new BadRequestException("Too many commands in the batch (" + requests.size() + "), the maximum is "
+                    + maxActiveCommands);
+        }
+
+        // Validate and encode the commands in parallel. The generation times are taken in the order of the request.
+        // The commands without sequence number get a distinct one, otherwise identical commands would have the same
+        // id. The command names are body fields, so unlike in issueCommand they are not URI-decoded.
+        List<CompletableFuture<PreparedCommand>> futures = new ArrayList<>(requests.size());
+        for (IssueCommandRequest commandRequest : requests) {
+            long cmdGenerationTime = processor.getCurrentTime();
+            int sequenceNumber = commandRequest.hasSequenceNumber() ? commandRequest.getSequenceNumber()
+                    : batchSequenceNumber.incrementAndGet();
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> prepareCommand(ctx, processor, commandRequest.getName(), commandRequest, sequenceNumber,
+                            cmdGenerationTime),
+                    commandBuilder));
+        }
+
+        BatchIssueCommandsResponse.Result.Builder[] results = new BatchIssueCommandsResponse.Result.Builder[requests
+                .size()];
+        List<PreparedCommand> toSend = new ArrayList<>();
+        List<Integer> toSendIdx = new ArrayList<>();
+        CommandingManager commandingManager = processor.getCommandingManager();
+        for (int i = 0; i < requests.size(); i++) {
+            results[i] = BatchIssueCommandsResponse.Result.newBuilder();
+            PreparedCommand preparedCommand;
+            try {
+                preparedCommand = futures.get(i).join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                results[i].setError(cause.getMessage() != null ? cause.getMessage() : cause.toString());
+                continue;
+            }
+            IssueCommandRequest commandRequest = requests.get(i);
+            if (commandRequest.hasDryRun() && commandRequest.getDryRun()) {
+                CommandQueue queue = commandingManager.getCommandQueueManager().getQueue(ctx.user, preparedCommand);
+                results[i].setResponse(toIssueCommandResponse(preparedCommand, queue));
+            } else {
+                toSend.add(preparedCommand);
+                toSendIdx.add(i);
+            }
+        }
+
+        // Good, now send all of them at once
+        if (!toSend.isEmpty()) {
+            List<CommandQueue> queues = commandingManager.sendCommands(ctx.user, toSend);
+            for (int j = 0; j < toSend.size(); j++) {
+                results[toSendIdx.get(j)].setResponse(toIssueCommandResponse(toSend.get(j), queues.get(j)));
+            }
+        }
+
+        BatchIssueCommandsResponse.Builder responseb = BatchIssueCommandsResponse.newBuilder();
+        for (BatchIssueCommandsResponse.Result.Builder result : results) {
+            responseb.addResults(result);
+        }
+        observer.complete(responseb.build());
+    }
+
+    /**
+     * Validates the request and builds the command, checking the privileges of the user.
+     */
+    private PreparedCommand prepareCommand(Context ctx, Processor processor, String requestCommandName,
+            IssueCommandRequest request) {
+        int sequenceNumber = request.hasSequenceNumber() ? request.getSequenceNumber() : 0;
+        return prepareCommand(ctx, processor, requestCommandName, request, sequenceNumber,
+                processor.getCurrentTime());
+    }
+
+    private PreparedCommand prepareCommand(Context ctx, Processor processor, String requestCommandName,
+            IssueCommandRequest request, int sequenceNumber, long generationTime) {
         XtceDb mdb = XtceDbFactory.getInstance(processor.getInstance());
         MetaCommand cmd = MdbApi.verifyCommand(mdb, requestCommandName);
 
         ctx.checkObjectPrivileges(ObjectPrivilegeType.Command, cmd.getQualifiedName());
 
         String origin = ctx.getClientAddress();
-        int sequenceNumber = 0;
         boolean dryRun = false;
         String comment = null;
         List<ArgumentAssignment> assignments = new ArrayList<>();
@@ -101,9 +219,6 @@ public class CommandsApi extends AbstractCommandsApi<Context> {
         if (request.hasDryRun()) {
             dryRun = request.getDryRun();
         }
-        if (request.hasSequenceNumber()) {
-            sequenceNumber = request.getSequenceNumber();
-        }
         if (request.hasComment()) {
             comment = request.getComment();
         }
@@ -115,7 +230,7 @@ public class CommandsApi extends AbstractCommandsApi<Context> {
         PreparedCommand preparedCommand;
         try {
             preparedCommand = processor.getCommandingManager().buildCommand(cmd, assignments, origin, sequenceNumber,
-                    ctx.user);
+                    ctx.user, generationTime);
             if (comment != null && !comment.trim().isEmpty()) {
                 preparedCommand.setComment(comment);
             }
@@ -206,15 +321,10 @@ public class CommandsApi extends AbstractCommandsApi<Context> {
             }
         }
 
-        // Good, now send
-        CommandQueue queue;
-        if (dryRun) {
-            CommandQueueManager mgr = processor.getCommandingManager().getCommandQueueManager();
-            queue = mgr.getQueue(ctx.user, preparedCommand);
-        } else {
-            queue = processor.getCommandingManager().sendCommand(ctx.user, preparedCommand);
-        }
+        return preparedCommand;
+    }
 
+    private static IssueCommandResponse toIssueCommandResponse(PreparedCommand preparedCommand, CommandQueue queue) {
         IssueCommandResponse.Builder responseb = IssueCommandResponse.newBuilder()
                 .setId(toStringIdentifier(preparedCommand.getCommandId()))
                 .setGenerationTime(TimeEncoding.toProtobufTimestamp(preparedCommand.getGenerationTime()))
@@ -234,7 +344,7 @@ public class CommandsApi extends AbstractCommandsApi<Context> {
             responseb.setQueue(queue.getName());
         }
 
-        observer.complete(responseb.build());
+        return responseb.build();
     }
 
     private boolean hasVerifier(MetaCommand cmd, String stage) {
@@ -502,6 +612,11 @@ public class CommandsApi extends AbstractCommandsApi<Context> {
                 observer.next(entry.build());
             }
         };
+        Object wsObserver = observer;
+        if (wsObserver instanceof WebSocketObserver) {
+            // the batch requests add many commands at once; keep them rather than dropping the subscriber
+            ((WebSocketObserver) wsObserver).setMaxBufferedMessages(MAX_BUFFERED_COMMAND_HISTORY);
+        }
         CommandHistoryFilter subscription = requestManager.subscribeCommandHistory(null, since, listener);
         observer.setCancelHandler(() -> requestManager.unsubscribeCommandHistory(subscription.subscriptionId));
     }
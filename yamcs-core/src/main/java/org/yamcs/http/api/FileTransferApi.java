@@ -295,6 +295,16 @@ public class FileTransferApi extends AbstractFileTransferApi<Context> {
             tib.setCreationTime(TimeEncoding.toProtobufTimestamp(transfer.getCreationTime()));
         }
 
+        if (transfer.getStartTime() != TimeEncoding.INVALID_INSTANT
+                && transfer.getCreationTime() != TimeEncoding.INVALID_INSTANT) {
+            tib.setQueueTime(Math.max(0, transfer.getStartTime() - transfer.getCreationTime()));
+        }
+
+        double throughput = transfer.getThroughput();
+        if (throughput >= 0) {
+            tib.setThroughput(throughput);
+        }
+
         String failureReason = transfer.getFailuredReason();
         if (failureReason != null) {
             tib.setFailureReason(failureReason);
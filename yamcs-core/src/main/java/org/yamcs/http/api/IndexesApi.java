@@ -7,19 +7,29 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
+import org.yamcs.StandardTupleDefinitions;
 import org.yamcs.YamcsServer;
 import org.yamcs.api.Observer;
 import org.yamcs.archive.CcsdsTmIndex;
+import org.yamcs.archive.CommandHistoryRecorder;
+import org.yamcs.archive.EventRecorder;
 import org.yamcs.archive.IndexRequestListener;
 import org.yamcs.archive.IndexRequestProcessor;
 import org.yamcs.archive.IndexRequestProcessor.InvalidTokenException;
+import org.yamcs.archive.ParameterRecorder;
 import org.yamcs.archive.TmIndexService;
+import org.yamcs.archive.XtceTmRecorder;
 import org.yamcs.http.BadRequestException;
 import org.yamcs.http.Context;
 import org.yamcs.http.HttpException;
 import org.yamcs.http.InternalServerErrorException;
 import org.yamcs.protobuf.AbstractIndexesApi;
+import org.yamcs.protobuf.GetIndexCountsRequest;
+import org.yamcs.protobuf.IndexCountsBucket;
+import org.yamcs.protobuf.IndexCountsGroup;
+import org.yamcs.protobuf.IndexCountsResponse;
 import org.yamcs.protobuf.IndexEntry;
 import org.yamcs.protobuf.IndexGroup;
 import org.yamcs.protobuf.IndexResponse;
@@ -42,6 +52,13 @@ import org.yamcs.protobuf.Yamcs.NamedObjectId;
 import org.yamcs.security.SystemPrivilege;
 import org.yamcs.utils.TimeEncoding;
 import org.yamcs.utils.TimeInterval;
+import org.yamcs.yarch.ColumnDefinition;
+import org.yamcs.yarch.ColumnSerializer;
+import org.yamcs.yarch.HistogramAggregate;
+import org.yamcs.yarch.HistogramAggregate.Resolution;
+import org.yamcs.yarch.TableDefinition;
+import org.yamcs.yarch.YarchDatabase;
+import org.yamcs.yarch.YarchDatabaseInstance;
 import org.yamcs.yarch.YarchException;
 
 import com.google.protobuf.Empty;
@@ -355,6 +372,90 @@ public class IndexesApi extends AbstractIndexesApi<Context> {
         streamArchiveRecords(indexServer, requestb.build(), observer);
     }
 
+    @Override
+    public void getIndexCounts(Context ctx, GetIndexCountsRequest request, Observer<IndexCountsResponse> observer) {
+        String instance = ManagementApi.verifyInstance(request.getInstance());
+
+        String tableName;
+        String columnName;
+        String type = request.hasType() ? request.getType().toLowerCase() : "tm";
+        switch (type) {
+        case "tm":
+            tableName = XtceTmRecorder.TABLE_NAME;
+            columnName = XtceTmRecorder.PNAME_COLUMN;
+            break;
+        case "pp":
+            tableName = ParameterRecorder.TABLE_NAME;
+            columnName = StandardTupleDefinitions.PARAMETER_COL_GROUP;
+            break;
+        case "commands":
+            tableName = CommandHistoryRecorder.TABLE_NAME;
+            columnName = StandardTupleDefinitions.CMDHIST_TUPLE_COL_CMDNAME;
+            break;
+        case "events":
+            tableName = EventRecorder.TABLE_NAME;
+            columnName = "source";
+            break;
+        default:
+            throw new BadRequestException("Unknown type '" + request.getType() + "'");
+        }
+
+        Resolution resolution = Resolution.HOUR;
+        if (request.hasResolution()) {
+            try {
+                resolution = Resolution.valueOf(request.getResolution().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Unknown resolution '" + request.getResolution() + "'");
+            }
+        }
+
+        TimeInterval interval = new TimeInterval();
+        if (request.hasStart()) {
+            interval.setStart(TimeEncoding.fromProtobufTimestamp(request.getStart()));
+        }
+        if (request.hasStop()) {
+            interval.setEnd(TimeEncoding.fromProtobufTimestamp(request.getStop()));
+        }
+        Set<String> names = new HashSet<>();
+        for (String name : request.getNameList()) {
+            names.add(name.trim());
+        }
+
+        IndexCountsResponse.Builder responseb = IndexCountsResponse.newBuilder();
+        YarchDatabaseInstance ydb = YarchDatabase.getInstance(instance);
+        TableDefinition tblDef = ydb.getTable(tableName);
+        if (tblDef == null) {
+            observer.complete(responseb.build());
+            return;
+        }
+        ColumnSerializer<String> serializer = tblDef.getColumnSerializer(columnName);
+        ColumnDefinition colDef = tblDef.getColumnDefinition(columnName);
+
+        List<HistogramAggregate> aggregates;
+        try {
+            aggregates = ydb.getStorageEngine(tblDef).getHistogramAggregates(ydb, tblDef, columnName, resolution,
+                    interval);
+        } catch (YarchException e) {
+            throw new InternalServerErrorException(e);
+        }
+
+        Map<String, IndexCountsGroup.Builder> groupBuilders = new TreeMap<>();
+        for (HistogramAggregate ha : aggregates) {
+            String name = serializer.fromByteArray(ha.getColumnv(), colDef);
+            if (!names.isEmpty() && !names.contains(name)) {
+                continue;
+            }
+            IndexCountsGroup.Builder groupb = groupBuilders.computeIfAbsent(name,
+                    n -> IndexCountsGroup.newBuilder().setId(NamedObjectId.newBuilder().setName(n)));
+            groupb.addBucket(IndexCountsBucket.newBuilder()
+                    .setTime(TimeEncoding.toProtobufTimestamp(ha.getBucketStart()))
+                    .setCount(ha.getCount())
+                    .setSize(ha.getSize()));
+        }
+        groupBuilders.values().forEach(groupb -> responseb.addGroup(groupb));
+        observer.complete(responseb.build());
+    }
+
     @Override
     public void rebuildCcsdsIndex(Context ctx, RebuildCcsdsIndexRequest request, Observer<Empty> observer) {
         ctx.checkSystemPrivilege(SystemPrivilege.ControlArchiving);
@@ -5,8 +5,11 @@ import java.io.ObjectOutputStream;
 import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -22,6 +25,7 @@ import org.yamcs.http.InternalServerErrorException;
 import org.yamcs.http.NotFoundException;
 import org.yamcs.http.api.MdbPageBuilder.MdbPage;
 import org.yamcs.http.api.MdbSearchHelpers.EntryMatch;
+import org.yamcs.http.api.MdbSearchIndex.ScoredParameter;
 import org.yamcs.http.api.XtceToGpbAssembler.DetailLevel;
 import org.yamcs.logging.Log;
 import org.yamcs.parameter.ParameterWithId;
@@ -198,17 +202,39 @@ public class MdbApi extends AbstractMdbApi<Context> {
             return ctx.user.hasObjectPrivilege(ObjectPrivilegeType.ReadParameter, p.getQualifiedName());
         };
 
-        // Determine search scope within the tree
+        Predicate<Parameter> typeAndSourceMatch = p -> parameterTypeMatches(p, request.getTypeList())
+                && (!request.hasSource() || parameterSourceMatches(p, request.getSource()));
+
         List<SpaceSystem> spaceSystems = new ArrayList<>();
-        final List<Parameter> candidates = new ArrayList<>();
-        if (request.hasSystem()) {
-            if (request.hasQ()) { // get candidates for deep search starting from the system
-                mdb.getParameters().stream().filter(hasPrivilege).forEach(parameter -> {
-                    if (parameter.getQualifiedName().startsWith(request.getSystem())) {
-                        candidates.add(parameter);
+        List<NameDescription> matches = new ArrayList<>();
+        Map<NameDescription, Integer> scores = new HashMap<>();
+        if (request.hasQ()) {
+            // Determine search scope within the tree: deep search starting from the system
+            Predicate<Parameter> inScope = typeAndSourceMatch;
+            if (request.hasSystem()) {
+                inScope = inScope.and(hasPrivilege)
+                        .and(parameter -> parameter.getQualifiedName().startsWith(request.getSystem()));
+            }
+
+            MdbSearchIndex index = MdbSearchIndex.get(mdb);
+            for (ScoredParameter match : index.searchParameters(request.getQ())) {
+                if (inScope.test(match.getParameter())) {
+                    matches.add(match.getParameter());
+                    scores.put(match.getParameter(), match.getScore());
+                }
+            }
+
+            // If requested, match also member paths inside parameters
+            if (request.getSearchMembers()) {
+                for (Parameter parameter : index.getMemberCandidates(request.getQ())) {
+                    if (inScope.test(parameter)) {
+                        matches.addAll(MdbSearchHelpers.searchEntries(parameter, request.getQ()));
                     }
-                });
-            } else { // get direct children of the system
+                }
+            }
+        } else {
+            final List<Parameter> candidates = new ArrayList<>();
+            if (request.hasSystem()) { // get direct children of the system
                 List<SpaceSystem> filteredSpaceSystems = mdb.getSpaceSystems().stream()
                         .filter(spaceSystem -> spaceSystem.getParameterCount(true) > 0)
                         .collect(Collectors.toList());
@@ -221,34 +247,20 @@ public class MdbApi extends AbstractMdbApi<Context> {
                         }
                     }
                 }
+            } else {
+                candidates.addAll(mdb.getParameters());
             }
-        } else {
-            candidates.addAll(mdb.getParameters());
-        }
-
-        // Now do the actual brute-force search
-        List<Parameter> filteredCandidates = candidates.stream()
-                .filter(p -> parameterTypeMatches((Parameter) p, request.getTypeList()))
-                .filter(p -> !request.hasSource() || parameterSourceMatches((Parameter) p, request.getSource()))
-                .collect(Collectors.toList());
-
-        // Match parameters
-        NameDescriptionSearchMatcher matcher = request.hasQ() ? new NameDescriptionSearchMatcher(request.getQ()) : null;
-        List<NameDescription> matches = filteredCandidates.stream()
-                .filter(item -> matcher == null || matcher.matches(item))
-                .collect(Collectors.toList());
-
-        // If requested, match also member paths inside parameters
-        if (request.getSearchMembers() && request.hasQ()) {
-            List<NameDescription> memberMatches = new ArrayList<>();
-            for (Parameter parameter : filteredCandidates) {
-                memberMatches.addAll(MdbSearchHelpers.searchEntries(parameter, request.getQ()));
-            }
-            matches.addAll(memberMatches);
+            candidates.stream().filter(typeAndSourceMatch).forEach(matches::add);
         }
 
         // We got the results now, only response formatting remaining
-        MdbPageBuilder<NameDescription> pageBuilder = new MdbPageBuilder<>(spaceSystems, matches);
+        Comparator<NameDescription> ranking = null;
+        if (request.hasQ() && request.getRank()) {
+            // member matches come after the parameter matches
+            ranking = Comparator.<NameDescription> comparingInt(item -> -scores.getOrDefault(item, 0))
+                    .thenComparing(NameDescription::getQualifiedName, String.CASE_INSENSITIVE_ORDER);
+        }
+        MdbPageBuilder<NameDescription> pageBuilder = new MdbPageBuilder<>(spaceSystems, matches, ranking);
         pageBuilder.setNext(request.hasNext() ? request.getNext() : null);
         pageBuilder.setPos(request.hasPos() ? request.getPos() : 0);
         pageBuilder.setLimit(request.hasLimit() ? request.getLimit() : 100);
@@ -2,6 +2,7 @@ package org.yamcs.http.api;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import org.yamcs.xtce.NameDescription;
@@ -10,7 +11,7 @@ import org.yamcs.xtce.SpaceSystem;
 /**
  * Builds a page result for a collection of matching space systems and other items.
  * <p>
- * Results are sorted in lexicographical order, with space systems on top.
+ * Results are sorted in lexicographical order, with space systems on top, unless a ranking is specified.
  */
 public class MdbPageBuilder<T extends NameDescription> {
 
@@ -20,17 +21,32 @@ public class MdbPageBuilder<T extends NameDescription> {
     private String next;
     private int pos;
     private int limit;
+    private boolean ranked;
 
     public MdbPageBuilder(List<SpaceSystem> spaceSystems, List<T> items) {
+        this(spaceSystems, items, null);
+    }
+
+    /**
+     * @param ranking
+     *            - if not null, the items are sorted with this comparator instead of alphabetically, and the
+     *            continuation tokens refer to the position in the results.
+     */
+    public MdbPageBuilder(List<SpaceSystem> spaceSystems, List<T> items, Comparator<T> ranking) {
         this.spaceSystems = spaceSystems;
         this.items = items;
+        this.ranked = ranking != null;
 
         Collections.sort(spaceSystems, (s1, s2) -> {
             return s1.getQualifiedName().compareToIgnoreCase(s2.getQualifiedName());
         });
-        Collections.sort(items, (i1, i2) -> {
-            return i1.getQualifiedName().compareToIgnoreCase(i2.getQualifiedName());
-        });
+        if (ranking != null) {
+            Collections.sort(items, ranking);
+        } else {
+            Collections.sort(items, (i1, i2) -> {
+                return i1.getQualifiedName().compareToIgnoreCase(i2.getQualifiedName());
+            });
+        }
     }
 
     public void setNext(String next) {
@@ -49,6 +65,13 @@ public class MdbPageBuilder<T extends NameDescription> {
         int totalSize = spaceSystems.size() + items.size();
         MdbPage<T> page = new MdbPage<>(totalSize);
 
+        if (next != null && ranked) {
+            NamedObjectPageToken pageToken = NamedObjectPageToken.decode(next);
+            next = null;
+            pos = pageToken.pos != null ? pageToken.pos : 0;
+        }
+        // the result may have changed since the position was given
+        pos = Math.max(0, Math.min(pos, totalSize));
         if (next != null) {
             NamedObjectPageToken pageToken = NamedObjectPageToken.decode(next);
             if (pageToken.spaceSystem) {
@@ -69,14 +92,14 @@ public class MdbPageBuilder<T extends NameDescription> {
             if (pos < spaceSystems.size()) {
                 page.addSpaceSystems(spaceSystems.subList(pos, spaceSystems.size()));
             }
-            int itemPos = pos - spaceSystems.size();
+            int itemPos = Math.max(0, pos - spaceSystems.size());
             page.addItems(items.subList(itemPos, items.size()));
         } else {
             page.addSpaceSystems(spaceSystems);
             page.addItems(items);
         }
 
-        page.applyLimit(limit);
+        page.applyLimit(limit, ranked ? pos : -1);
         return page;
     }
 
@@ -122,7 +145,24 @@ public class MdbPageBuilder<T extends NameDescription> {
             return continuationToken;
         }
 
-        void applyLimit(int limit) {
+        /**
+         * @param pos
+         *            - position of the first result of the page, if the continuation token is position based;
+         *            otherwise -1
+         */
+        void applyLimit(int limit, int pos) {
+            if (pos >= 0) {
+                if (limit < spaceSystems.size() + items.size()) {
+                    continuationToken = new NamedObjectPageToken(pos + limit).encodeAsString();
+                }
+                if (limit < spaceSystems.size()) {
+                    spaceSystems = spaceSystems.subList(0, limit);
+                    items.clear();
+                } else {
+                    items = items.subList(0, Math.min(items.size(), limit - spaceSystems.size()));
+                }
+                return;
+            }
             if (limit < spaceSystems.size()) {
                 spaceSystems = spaceSystems.subList(0, limit);
                 SpaceSystem lastMatch = spaceSystems.get(limit - 1);
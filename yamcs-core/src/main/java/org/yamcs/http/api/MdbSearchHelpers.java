@@ -41,6 +41,19 @@ public class MdbSearchHelpers {
                 .map(entry -> new EntryMatch(entry)).collect(Collectors.toList());
     }
 
+    /**
+     * Returns the qualified names of the entries inside a parameter (aggregate members and array elements, with [-1]
+     * placeholders for the array indexes), as matched by {@link #searchEntries(Parameter, String)}.
+     */
+    static List<String> getEntryNames(Parameter parameter) {
+        ParameterType ptype = parameter.getParameterType();
+        if (ptype == null || (!(ptype instanceof AggregateParameterType) && !(ptype instanceof ArrayParameterType))) {
+            return Collections.emptyList();
+        }
+        return new Entry(parameter).findSubEntries().stream()
+                .map(Entry::getQualifiedName).collect(Collectors.toList());
+    }
+
     private static class SearchTerm {
         String term;
         PathElement[] searchPath;
@@ -0,0 +1,323 @@
+package org.yamcs.http.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.yamcs.logging.Log;
+import org.yamcs.utils.AggregateUtil;
+import org.yamcs.utils.IntArray;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.PathElement;
+import org.yamcs.xtce.XtceDb;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Trigram index over the parameters of an MDB, used for answering the parameter searches without scanning all the
+ * parameters.
+ * <p>
+ * The indexed texts are the qualified names, the short descriptions and the aliases of the parameters and, for the
+ * aggregate and array parameters, the paths of their members. A search term of at least three characters is looked up
+ * by intersecting the lists of parameters containing each of its trigrams; the remaining candidates are then checked
+ * with the same rules as the {@link NameDescriptionSearchMatcher}.
+ * <p>
+ * The index is built on first use for each {@link XtceDb} and rebuilt in the background when parameters are added to
+ * the MDB (for example the system parameters created at runtime).
+ */
+public class MdbSearchIndex {
+
+    private static final Log log = new Log(MdbSearchIndex.class);
+
+    private static final Map<XtceDb, IndexHolder> indexes = new WeakHashMap<>();
+
+    // rebuilds the indexes of the MDBs to which parameters have been added
+    private static final ExecutorService rebuilder = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("MdbSearchIndexBuilder-%d").setDaemon(true).build());
+
+    private final Parameter[] parameters;
+    private final String[] names;
+    private final String[] descriptions;
+    private final String[][] aliases;
+    private final Map<Long, int[]> postings;
+
+    // the qualified names of the members, for the parameters having members
+    private final String[] memberNames;
+    private final Map<Long, int[]> memberPostings;
+
+    /**
+     * Returns the index of the given MDB, building it if necessary.
+     * <p>
+     * When parameters have been added to the MDB since the index was built, the index is rebuilt in the background and
+     * the previous one is returned until the new one is ready.
+     */
+    public static MdbSearchIndex get(XtceDb mdb) {
+        IndexHolder holder;
+        synchronized (indexes) {
+            holder = indexes.computeIfAbsent(mdb, k -> new IndexHolder());
+        }
+        int numParameters = mdb.getParameters().size();
+        MdbSearchIndex index = holder.index;
+        if (index == null) {
+            synchronized (holder) {
+                if (holder.index == null) {
+                    holder.index = build(mdb);
+                }
+                return holder.index;
+            }
+        }
+        if (index.parameters.length != numParameters) {
+            synchronized (holder) {
+                if (!holder.rebuilding) {
+                    holder.rebuilding = true;
+                    rebuilder.execute(() -> {
+                        try {
+                            holder.index = build(mdb);
+                        } catch (RuntimeException e) {
+                            log.warn("Failed to rebuild the search index", e);
+                        } finally {
+                            synchronized (holder) {
+                                holder.rebuilding = false;
+                            }
+                        }
+                    });
+                }
+            }
+        }
+        return index;
+    }
+
+    private static MdbSearchIndex build(XtceDb mdb) {
+        long t0 = System.currentTimeMillis();
+        Collection<Parameter> parameters = mdb.getParameters();
+        MdbSearchIndex index = new MdbSearchIndex(parameters);
+        log.debug("Indexed {} parameters in {} ms", index.parameters.length, System.currentTimeMillis() - t0);
+        return index;
+    }
+
+    MdbSearchIndex(Collection<Parameter> parameterList) {
+        int n = parameterList.size();
+        parameters = parameterList.toArray(new Parameter[n]);
+        names = new String[n];
+        descriptions = new String[n];
+        aliases = new String[n][];
+        memberNames = new String[n];
+
+        Map<Long, IntArray> nameTrigrams = new HashMap<>();
+        Map<Long, IntArray> memberTrigrams = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            Parameter p = parameters[i];
+            names[i] = p.getQualifiedName().toLowerCase();
+            addTrigrams(nameTrigrams, names[i], i);
+            if (p.getShortDescription() != null) {
+                descriptions[i] = p.getShortDescription().toLowerCase();
+                addTrigrams(nameTrigrams, descriptions[i], i);
+            }
+            if (p.getAliasSet() != null) {
+                Collection<String> values = p.getAliasSet().getAliases().values();
+                aliases[i] = new String[values.size()];
+                int k = 0;
+                for (String alias : values) {
+                    String lcAlias = alias.toLowerCase();
+                    aliases[i][k++] = lcAlias;
+                    addTrigrams(nameTrigrams, lcAlias, i);
+                }
+            }
+            List<String> entryNames = MdbSearchHelpers.getEntryNames(p);
+            if (!entryNames.isEmpty()) {
+                memberNames[i] = String.join("\n", entryNames).toLowerCase();
+                addTrigrams(memberTrigrams, memberNames[i], i);
+            }
+        }
+        postings = toPostings(nameTrigrams);
+        memberPostings = toPostings(memberTrigrams);
+    }
+
+    /**
+     * Returns the parameters matching all the search terms (separated by whitespace), with their relevance score.
+     * <p>
+     * The result is not sorted; {@link ScoredParameter} is ordered by decreasing score.
+     */
+    public List<ScoredParameter> searchParameters(String q) {
+        String[] terms = splitTerms(q);
+        int[] candidates = null;
+        for (String term : terms) {
+            candidates = lookup(postings, term, candidates);
+        }
+
+        List<ScoredParameter> result = new ArrayList<>();
+        int n = candidates == null ? parameters.length : candidates.length;
+        for (int k = 0; k < n; k++) {
+            int i = candidates == null ? k : candidates[k];
+            int score = 0;
+            for (String term : terms) {
+                int termScore = score(i, term);
+                if (termScore == 0) {
+                    score = 0;
+                    break;
+                }
+                score += termScore;
+            }
+            if (score > 0 || terms.length == 0) {
+                result.add(new ScoredParameter(parameters[i], score));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the parameters which may have members matching the search term, as done by
+     * {@link MdbSearchHelpers#searchEntries(Parameter, String)}. The members of the returned parameters have to be
+     * searched with that method.
+     */
+    public List<Parameter> getMemberCandidates(String q) {
+        PathElement[] searchPath;
+        try {
+            searchPath = AggregateUtil.parseReference(q.toLowerCase());
+        } catch (IllegalArgumentException e) {
+            return Collections.emptyList();
+        }
+        List<String> fragments = new ArrayList<>();
+        int[] candidates = null;
+        for (PathElement el : searchPath) {
+            if (el.getName() != null && !el.getName().isEmpty()) {
+                fragments.add(el.getName());
+                candidates = lookup(memberPostings, el.getName(), candidates);
+            }
+        }
+        List<Parameter> result = new ArrayList<>();
+        int n = candidates == null ? parameters.length : candidates.length;
+        for (int k = 0; k < n; k++) {
+            int i = candidates == null ? k : candidates[k];
+            if (memberNames[i] != null && fragments.stream().allMatch(memberNames[i]::contains)) {
+                result.add(parameters[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the score of the term for the parameter with the given index, or 0 if the term does not match.
+     */
+    private int score(int i, String term) {
+        String name = names[i];
+        int idx = name.indexOf(term);
+        if (idx >= 0) {
+            int shortNameIdx = name.lastIndexOf('/') + 1;
+            if (name.startsWith(term, shortNameIdx)) {
+                return name.length() - shortNameIdx == term.length() ? 16 : 8;
+            } else if (idx > 0 && name.charAt(idx - 1) == '/') {
+                return 4;
+            } else {
+                return 3;
+            }
+        }
+        if (aliases[i] != null) {
+            for (String alias : aliases[i]) {
+                if (alias.contains(term)) {
+                    return 2;
+                }
+            }
+        }
+        if (descriptions[i] != null && descriptions[i].contains(term)) {
+            return 1;
+        }
+        return 0;
+    }
+
+    private static String[] splitTerms(String q) {
+        return Arrays.stream(q.toLowerCase().split("\\s+")).filter(t -> !t.isEmpty()).toArray(String[]::new);
+    }
+
+    /**
+     * Intersects the candidates with the documents containing all the trigrams of the term. The terms shorter than a
+     * trigram do not restrict the candidates.
+     */
+    private static int[] lookup(Map<Long, int[]> postings, String term, int[] candidates) {
+        for (int k = 0; k + 3 <= term.length(); k++) {
+            int[] list = postings.get(trigram(term, k));
+            if (list == null) {
+                return new int[0];
+            }
+            candidates = candidates == null ? list : intersect(candidates, list);
+        }
+        return candidates;
+    }
+
+    private static void addTrigrams(Map<Long, IntArray> trigrams, String s, int docId) {
+        for (int k = 0; k + 3 <= s.length(); k++) {
+            IntArray list = trigrams.computeIfAbsent(trigram(s, k), x -> new IntArray(4));
+            // the documents are added in increasing order
+            if (list.size() == 0 || list.get(list.size() - 1) != docId) {
+                list.add(docId);
+            }
+        }
+    }
+
+    private static long trigram(String s, int k) {
+        return ((long) s.charAt(k) << 32) | ((long) s.charAt(k + 1) << 16) | s.charAt(k + 2);
+    }
+
+    private static Map<Long, int[]> toPostings(Map<Long, IntArray> trigrams) {
+        Map<Long, int[]> result = new HashMap<>(trigrams.size() * 2);
+        trigrams.forEach((t, list) -> result.put(t, list.toArray()));
+        return result;
+    }
+
+    static int[] intersect(int[] a, int[] b) {
+        int[] r = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                r[k++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(r, k);
+    }
+
+    public static class ScoredParameter implements Comparable<ScoredParameter> {
+        final Parameter parameter;
+        final int score;
+
+        ScoredParameter(Parameter parameter, int score) {
+            this.parameter = parameter;
+            this.score = score;
+        }
+
+        public Parameter getParameter() {
+            return parameter;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        @Override
+        public int compareTo(ScoredParameter o) {
+            int c = Integer.compare(o.score, score);
+            return c != 0 ? c : parameter.getQualifiedName().compareToIgnoreCase(o.parameter.getQualifiedName());
+        }
+    }
+
+    private static class IndexHolder {
+        volatile MdbSearchIndex index;
+        // guarded by the holder
+        boolean rebuilding;
+    }
+}
@@ -23,11 +23,21 @@ public class NamedObjectPageToken {
      */
     public boolean spaceSystem;
 
+    /**
+     * Position of the next result, used instead of the name when the results are not in alphabetic order (for
+     * example when ranked by relevance).
+     */
+    public Integer pos;
+
     public NamedObjectPageToken(String name, boolean spaceSystem) {
         this.name = name;
         this.spaceSystem = spaceSystem;
     }
 
+    public NamedObjectPageToken(int pos) {
+        this.pos = pos;
+    }
+
     public static NamedObjectPageToken decode(String encoded) {
         String decoded = new String(Base64.getUrlDecoder().decode(encoded));
         return new Gson().fromJson(decoded, NamedObjectPageToken.class);
@@ -1,13 +1,17 @@
 package org.yamcs.http.api;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
-import java.util.function.Consumer;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.rocksdb.RocksDBException;
 import org.yamcs.Processor;
+import org.yamcs.YamcsServer;
 import org.yamcs.YamcsServerInstance;
 import org.yamcs.api.Observer;
 import org.yamcs.http.BadRequestException;
@@ -16,21 +20,21 @@ import org.yamcs.http.HttpException;
 import org.yamcs.http.InternalServerErrorException;
 import org.yamcs.http.NotFoundException;
 import org.yamcs.http.api.Downsampler.Sample;
+import org.yamcs.http.api.ParameterHistoryCursor.PageToken;
 import org.yamcs.http.api.ParameterRanger.Range;
 import org.yamcs.logging.Log;
 import org.yamcs.parameter.ParameterCache;
-import org.yamcs.parameter.ParameterValue;
 import org.yamcs.parameter.ParameterValueWithId;
 import org.yamcs.parameter.ParameterWithId;
-import org.yamcs.parameterarchive.ConsumerAbortException;
-import org.yamcs.parameterarchive.MultiParameterRetrieval;
+import org.yamcs.parameterarchive.BackFiller;
+import org.yamcs.parameterarchive.BackFiller.BackFillJob;
 import org.yamcs.parameterarchive.MultipleParameterRequest;
 import org.yamcs.parameterarchive.ParameterArchive;
 import org.yamcs.parameterarchive.ParameterArchive.Partition;
+import org.yamcs.parameterarchive.ParameterArchiveException;
 import org.yamcs.parameterarchive.ParameterGroupIdDb;
 import org.yamcs.parameterarchive.ParameterId;
 import org.yamcs.parameterarchive.ParameterIdDb;
-import org.yamcs.parameterarchive.ParameterIdValueList;
 import org.yamcs.parameterarchive.ParameterInfoRetrieval;
 import org.yamcs.parameterarchive.ParameterRequest;
 import org.yamcs.protobuf.AbstractParameterArchiveApi;
@@ -41,28 +45,35 @@ import org.yamcs.protobuf.ArchivedParameterGroupResponse;
 import org.yamcs.protobuf.ArchivedParameterInfo;
 import org.yamcs.protobuf.ArchivedParameterSegmentsResponse;
 import org.yamcs.protobuf.ArchivedParametersInfoResponse;
+import org.yamcs.protobuf.BackfillingJob;
+import org.yamcs.protobuf.BackfillingStatus;
+import org.yamcs.protobuf.DeleteParameterHistoryRequest;
 import org.yamcs.protobuf.DeletePartitionsRequest;
+import org.yamcs.protobuf.ExportParameterColumnsRequest;
 import org.yamcs.protobuf.GetArchivedParameterGroupRequest;
 import org.yamcs.protobuf.GetArchivedParameterSegmentsRequest;
 import org.yamcs.protobuf.GetArchivedParametersInfoRequest;
+import org.yamcs.protobuf.GetBackfillingStatusRequest;
 import org.yamcs.protobuf.GetParameterRangesRequest;
+import org.yamcs.protobuf.ParameterColumns;
+import org.yamcs.protobuf.Pvalue.ParameterData;
 import org.yamcs.protobuf.Pvalue.Ranges;
 import org.yamcs.protobuf.Pvalue.TimeSeries;
 import org.yamcs.protobuf.RebuildRangeRequest;
-import org.yamcs.protobuf.Yamcs.NamedObjectId;
+import org.yamcs.protobuf.StreamParameterHistoryRequest;
 import org.yamcs.protobuf.Yamcs.StringMessage;
 import org.yamcs.security.SystemPrivilege;
-import org.yamcs.utils.AggregateUtil;
-import org.yamcs.utils.DecodingException;
 import org.yamcs.utils.IntArray;
-import org.yamcs.utils.MutableLong;
 import org.yamcs.utils.SortedIntArray;
 import org.yamcs.utils.TimeEncoding;
 import org.yamcs.utils.ValueUtility;
 import org.yamcs.xtce.XtceDb;
 import org.yamcs.xtceproc.XtceDbFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.protobuf.Empty;
+import com.google.protobuf.util.Timestamps;
 
 public class ParameterArchiveApi extends AbstractParameterArchiveApi<Context> {
 
@@ -71,6 +82,23 @@ public class ParameterArchiveApi extends AbstractParameterArchiveApi<Context> {
 
     private StreamArchiveApi streamArchiveApi = new StreamArchiveApi();
 
+    // how long a cursor for the paged parameter history is kept open (in seconds) after the last page was retrieved
+    static final int CURSOR_IDLE_TIMEOUT = 60;
+    static final int MAX_CURSORS = 1000;
+    static final int STREAM_BATCH_SIZE = 500;
+    // number of parameters retrieved in parallel by one export
+    static final int EXPORT_THREADS = 4;
+
+    private final Cache<String, ParameterHistoryCursor> cursors = CacheBuilder.newBuilder()
+            .expireAfterAccess(CURSOR_IDLE_TIMEOUT, TimeUnit.SECONDS)
+            .maximumSize(MAX_CURSORS)
+            .<String, ParameterHistoryCursor> removalListener(n -> {
+                if (n.wasEvicted()) {
+                    n.getValue().close();
+                }
+            }).build();
+    private ScheduledFuture<?> cursorCleanup;
+
     @Override
     public void rebuildRange(Context ctx, RebuildRangeRequest request, Observer<Empty> observer) {
         YamcsServerInstance ysi = ManagementApi.verifyInstanceObj(request.getInstance());
@@ -96,6 +124,38 @@ public class ParameterArchiveApi extends AbstractParameterArchiveApi<Context> {
         observer.complete(Empty.getDefaultInstance());
     }
 
+    @Override
+    public void getBackfillingStatus(Context ctx, GetBackfillingStatusRequest request,
+            Observer<BackfillingStatus> observer) {
+        YamcsServerInstance ysi = ManagementApi.verifyInstanceObj(request.getInstance());
+        ctx.checkSystemPrivilege(SystemPrivilege.ControlArchiving);
+
+        ParameterArchive parchive = getParameterArchive(ysi);
+        BackfillingStatus.Builder statusb = BackfillingStatus.newBuilder();
+        BackFiller backFiller = parchive.getBackFiller();
+        if (backFiller != null) {
+            for (BackFillJob job : backFiller.getJobs()) {
+                BackfillingJob.Builder jobb = BackfillingJob.newBuilder()
+                        .setTotalChunks(job.getTotalChunks())
+                        .setCompletedChunks(job.getCompletedChunks())
+                        .setFailedChunks(job.getFailedChunks())
+                        .setCreationTime(Timestamps.fromMillis(job.getCreationTime()))
+                        .setResumed(job.isResumed())
+                        .setFinished(job.isFinished());
+                if (job.getTotalChunks() > 0) {
+                    jobb.setStart(TimeEncoding.toProtobufTimestamp(job.getStart()));
+                    jobb.setStop(TimeEncoding.toProtobufTimestamp(job.getStop()));
+                }
+                long eta = job.getEta();
+                if (eta != -1 && !job.isFinished()) {
+                    jobb.setEta(Timestamps.fromMillis(eta));
+                }
+                statusb.addJobs(jobb);
+            }
+        }
+        observer.complete(statusb.build());
+    }
+
     @Override
     public void deletePartitions(Context ctx, DeletePartitionsRequest request,
             Observer<StringMessage> observer) {
@@ -135,6 +195,32 @@ public class ParameterArchiveApi extends AbstractParameterArchiveApi<Context> {
         }
     }
 
+    @Override
+    public void deleteParameterHistory(Context ctx, DeleteParameterHistoryRequest request,
+            Observer<Empty> observer) {
+        YamcsServerInstance ysi = ManagementApi.verifyInstanceObj(request.getInstance());
+        ctx.checkSystemPrivilege(SystemPrivilege.ControlArchiving);
+
+        XtceDb mdb = XtceDbFactory.getInstance(ysi.getName());
+        ParameterWithId pid = MdbApi.verifyParameterWithId(ctx, mdb, request.getName());
+        if (pid.getPath() != null) {
+            throw new BadRequestException("Cannot delete the history of an aggregate member or array element");
+        }
+        long stop = request.hasStop() ? TimeEncoding.fromProtobufTimestamp(request.getStop())
+                : TimeEncoding.MAX_INSTANT;
+
+        ParameterArchive parchive = getParameterArchive(ysi);
+        try {
+            parchive.deleteParameterHistory(pid.getParameter().getQualifiedName(), stop);
+        } catch (RocksDBException e) {
+            throw new InternalServerErrorException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerErrorException(e);
+        }
+        observer.complete(Empty.getDefaultInstance());
+    }
+
     @Override
     public void getParameterSamples(Context ctx, GetParameterSamplesRequest request,
             Observer<TimeSeries> observer) {
@@ -263,8 +349,6 @@ public class ParameterArchiveApi extends AbstractParameterArchiveApi<Context> {
         XtceDb mdb = XtceDbFactory.getInstance(ysi.getName());
         ParameterWithId requestedParamWithId = MdbApi.verifyParameterWithId(ctx, mdb, request.getName());
 
-        NamedObjectId requestedId = requestedParamWithId.getId();
-
         int limit = request.hasLimit() ? request.getLimit() : 100;
 
         long start = 0;
@@ -277,15 +361,126 @@ public class ParameterArchiveApi extends AbstractParameterArchiveApi<Context> {
         }
 
         boolean ascending = request.getOrder().equals("asc");
+        // the request without the paging parameters; a cursor can only be continued by the same request
+        ListParameterHistoryRequest requestKey = request.toBuilder().clearNext().clearLimit().clearPos().build();
+        ParameterHistoryCursor cursor = null;
         if (request.hasNext()) {
-            TimeSortedPageToken token = TimeSortedPageToken.decode(request.getNext());
-            if (ascending) {
-                start = token.time;
-            } else {
-                stop = token.time;
+            PageToken token = PageToken.decode(request.getNext());
+            if (token.cursor != null) {
+                cursor = cursors.asMap().remove(token.cursor);
+                if (cursor != null && !requestKey.equals(cursor.requestKey)) {
+                    cursors.put(token.cursor, cursor);
+                    cursor = null;
+                }
+            }
+            if (cursor == null) {
+                // the cursor has expired, restart the retrieval from the token time
+                if (ascending) {
+                    start = token.time;
+                } else {
+                    stop = token.time;
+                }
+            }
+        }
+
+        if (cursor == null) {
+            cursor = newCursor(ysi, requestedParamWithId, start, stop, ascending, request.getNorepeat(),
+                    request.getNorealtime() ? null : request.getProcessor());
+            cursor.requestKey = requestKey;
+        }
+
+        ListParameterHistoryResponse.Builder resultb = ListParameterHistoryResponse.newBuilder();
+        boolean registered = false;
+        try {
+            for (ParameterValueWithId pvwid : cursor.next(limit)) {
+                resultb.addParameter(pvwid.toGbpParameterValue());
+            }
+            if (cursor.hasNext()) {
+                String cursorId = UUID.randomUUID().toString();
+                registerCursor(cursorId, cursor);
+                registered = true;
+                resultb.setContinuationToken(new PageToken(cursor.nextTime(), cursorId).encodeAsString());
+            }
+        } catch (ParameterArchiveException e) {
+            throw new InternalServerErrorException(e);
+        } finally {
+            if (!registered) {
+                cursor.close();
+            }
+        }
+
+        observer.complete(resultb.build());
+    }
+
+    @Override
+    public void streamParameterHistory(Context ctx, StreamParameterHistoryRequest request,
+            Observer<ParameterData> observer) {
+        YamcsServerInstance ysi = ManagementApi.verifyInstanceObj(request.getInstance());
+
+        XtceDb mdb = XtceDbFactory.getInstance(ysi.getName());
+        ParameterWithId requestedParamWithId = MdbApi.verifyParameterWithId(ctx, mdb, request.getName());
+
+        long start = request.hasStart() ? TimeEncoding.fromProtobufTimestamp(request.getStart()) : 0;
+        long stop = request.hasStop() ? TimeEncoding.fromProtobufTimestamp(request.getStop())
+                : TimeEncoding.getWallclockTime();
+        boolean ascending = !request.getOrder().equals("desc");
+
+        // the observer blocks when the client does not read fast enough, so the cursor is read at the client pace
+        try (ParameterHistoryCursor cursor = newCursor(ysi, requestedParamWithId, start, stop, ascending,
+                request.getNorepeat(), request.getNorealtime() ? null : request.getProcessor())) {
+            while (!observer.isCancelled()) {
+                List<ParameterValueWithId> pvlist = cursor.next(STREAM_BATCH_SIZE);
+                if (!pvlist.isEmpty()) {
+                    ParameterData.Builder pdatab = ParameterData.newBuilder();
+                    for (ParameterValueWithId pvwid : pvlist) {
+                        pdatab.addParameter(pvwid.toGbpParameterValue());
+                    }
+                    observer.next(pdatab.build());
+                }
+                if (pvlist.size() < STREAM_BATCH_SIZE) {
+                    break;
+                }
+            }
+            observer.complete();
+        } catch (ParameterArchiveException e) {
+            observer.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void exportParameterColumns(Context ctx, ExportParameterColumnsRequest request,
+            Observer<ParameterColumns> observer) {
+        YamcsServerInstance ysi = ManagementApi.verifyInstanceObj(request.getInstance());
+        ParameterArchive parchive = getParameterArchive(ysi);
+
+        XtceDb mdb = XtceDbFactory.getInstance(ysi.getName());
+        List<String[]> parameters = new ArrayList<>();
+        for (String name : request.getParametersList()) {
+            ParameterWithId pid = MdbApi.verifyParameterWithId(ctx, mdb, name);
+            if (pid.getPath() != null) {
+                throw new BadRequestException("Cannot export aggregate members or array elements: " + name);
             }
+            parameters.add(new String[] { name, pid.getParameter().getQualifiedName() });
+        }
+        if (parameters.isEmpty()) {
+            throw new BadRequestException("No parameter specified");
         }
+        long start = request.hasStart() ? TimeEncoding.fromProtobufTimestamp(request.getStart()) : 0;
+        long stop = request.hasStop() ? TimeEncoding.fromProtobufTimestamp(request.getStop())
+                : TimeEncoding.MAX_INSTANT;
 
+        ParameterColumnExporter exporter = new ParameterColumnExporter(parchive, parameters, start, stop,
+                EXPORT_THREADS);
+        try {
+            exporter.export(observer);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            observer.completeExceptionally(e);
+        }
+    }
+
+    private ParameterHistoryCursor newCursor(YamcsServerInstance ysi, ParameterWithId requestedParamWithId,
+            long start, long stop, boolean ascending, boolean noRepeat, String processorName) {
         ParameterArchive parchive = getParameterArchive(ysi);
         ParameterIdDb piddb = parchive.getParameterIdDb();
         IntArray pidArray = new IntArray();
@@ -320,50 +515,29 @@ public class ParameterArchiveApi extends AbstractParameterArchiveApi<Context> {
                 pgidArray.toArray(), ascending, true, retrieveRawValues, true);
         // do not use set limit because the data can be filtered down (e.g. noRepeat) and the limit applies the final
         // filtered data not to the input
-        // one day the parameter archive will be smarter and do the filtering inside
-        // mpvr.setLimit(limit);
 
         ParameterCache pcache = null;
-        if (!request.getNorealtime()) {
-            String processorName = request.hasProcessor() ? request.getProcessor() : DEFAULT_PROCESSOR;
+        if (processorName != null) {
+            if (processorName.isEmpty()) {
+                processorName = DEFAULT_PROCESSOR;
+            }
             Processor processor = ysi.getProcessor(processorName);
-            pcache = processor.getParameterCache();
-        }
-
-        ListParameterHistoryResponse.Builder resultb = ListParameterHistoryResponse.newBuilder();
-        final int fLimit = limit + 1; // one extra to detect continuation token
-
-        ParameterReplayListener replayListener = new ParameterReplayListener(0, fLimit) {
-            @Override
-            public void onParameterData(ParameterValueWithId pvwid) {
-                if (resultb.getParameterCount() < fLimit - 1) {
-                    resultb.addParameter(pvwid.toGbpParameterValue());
-                } else {
-                    TimeSortedPageToken token = new TimeSortedPageToken(pvwid.getParameterValue().getGenerationTime());
-                    resultb.setContinuationToken(token.encodeAsString());
-                }
+            if (processor != null) {
+                pcache = processor.getParameterCache();
             }
+        }
 
-            @Override
-            public void replayFinished() {
-                throw new UnsupportedOperationException();
-            }
+        return new ParameterHistoryCursor(parchive, pcache, requestedParamWithId, mpvr, noRepeat);
+    }
 
-            @Override
-            public void replayFailed(Throwable t) {
-                throw new UnsupportedOperationException();
+    private void registerCursor(String cursorId, ParameterHistoryCursor cursor) {
+        synchronized (cursors) {
+            if (cursorCleanup == null) {
+                cursorCleanup = YamcsServer.getServer().getThreadPoolExecutor().scheduleWithFixedDelay(
+                        () -> cursors.cleanUp(), CURSOR_IDLE_TIMEOUT, CURSOR_IDLE_TIMEOUT, TimeUnit.SECONDS);
             }
-        };
-
-        replayListener.setNoRepeat(request.getNorepeat());
-        try {
-            // FIXME - make async
-            retrieveParameterData(parchive, pcache, requestedParamWithId, mpvr, replayListener);
-        } catch (DecodingException | RocksDBException | IOException e) {
-            throw new InternalServerErrorException(e);
         }
-
-        observer.complete(resultb.build());
+        cursors.put(cursorId, cursor);
     }
 
     private ParameterArchive getParameterArchive(YamcsServerInstance ysi) throws BadRequestException {
@@ -376,100 +550,6 @@ public class ParameterArchiveApi extends AbstractParameterArchiveApi<Context> {
         return l.get(0);
     }
 
-    private void retrieveParameterData(ParameterArchive parchive, ParameterCache pcache, ParameterWithId pid,
-            MultipleParameterRequest mpvr, ParameterReplayListener replayListener)
-            throws RocksDBException, DecodingException, IOException {
-
-        MutableLong lastParameterTime = new MutableLong(TimeEncoding.INVALID_INSTANT);
-        Consumer<ParameterIdValueList> consumer = new Consumer<ParameterIdValueList>() {
-            boolean first = true;
-
-            @Override
-            public void accept(ParameterIdValueList pidvList) {
-                lastParameterTime.setLong(pidvList.getValues().get(0).getGenerationTime());
-                if (first && !mpvr.isAscending() && (pcache != null)) { // retrieve data from cache first
-                    first = false;
-                    sendFromCache(pid, pcache, false, lastParameterTime.getLong(), mpvr.getStop(), replayListener);
-                }
-                ParameterValue pv = pidvList.getValues().get(0);
-                replayListener.update(new ParameterValueWithId(pv, pid.getId()));
-                if (replayListener.isReplayAbortRequested()) {
-                    throw new ConsumerAbortException();
-                }
-            }
-        };
-        MultiParameterRetrieval mpdr = new MultiParameterRetrieval(parchive, mpvr);
-        mpdr.retrieve(consumer);
-
-        // now add some data from cache
-        if (pcache != null) {
-            if (mpvr.isAscending()) {
-                long start = (lastParameterTime.getLong() == TimeEncoding.INVALID_INSTANT) ? mpvr.getStart() - 1
-                        : lastParameterTime.getLong();
-                sendFromCache(pid, pcache, true, start, mpvr.getStop(), replayListener);
-            } else if (lastParameterTime.getLong() == TimeEncoding.INVALID_INSTANT) {
-                // no data retrieved from archive, but maybe there is still something in the cache to send
-                sendFromCache(pid, pcache, false, mpvr.getStart(), mpvr.getStop(), replayListener);
-            }
-        }
-    }
-
-    // send data from cache with timestamps in (start, stop) if ascending or (start, stop] if descending interval
-    private void sendFromCache(ParameterWithId pid, ParameterCache pcache, boolean ascending, long start,
-            long stop, ParameterReplayListener replayListener) {
-        List<ParameterValue> pvlist = pcache.getAllValues(pid.getParameter());
-
-        if (pvlist == null) {
-            return;
-        }
-        if (ascending) {
-            int n = pvlist.size();
-            for (int i = n - 1; i >= 0; i--) {
-                ParameterValue pv = pvlist.get(i);
-                if (pv.getGenerationTime() >= stop) {
-                    break;
-                }
-                if (pv.getGenerationTime() > start) {
-                    sendToListener(pv, pid, replayListener);
-                    if (replayListener.isReplayAbortRequested()) {
-                        break;
-                    }
-                }
-            }
-        } else {
-            for (ParameterValue pv : pvlist) {
-                if (pv.getGenerationTime() > stop) {
-                    continue;
-                }
-                if (pv.getGenerationTime() <= start) {
-                    break;
-                }
-                sendToListener(pv, pid, replayListener);
-                if (replayListener.isReplayAbortRequested()) {
-                    break;
-                }
-            }
-        }
-    }
-
-    private void sendToListener(ParameterValue pv, ParameterWithId pid, ParameterReplayListener replayListener) {
-        ParameterValue pv1;
-        if (pid.getPath() != null) {
-            try {
-                pv1 = AggregateUtil.extractMember(pv, pid.getPath());
-                if (pv1 == null) { // could be that we reference an element of an array that doesn't exist
-                    return;
-                }
-            } catch (Exception e) {
-                log.error("Failed to extract {} from parameter value {}", Arrays.toString(pid.getPath()), pv, e);
-                return;
-            }
-        } else {
-            pv1 = pv;
-        }
-        replayListener.update(new ParameterValueWithId(pv1, pid.getId()));
-    }
-
     private boolean isReplayAsked(String source) throws HttpException {
         if (source.equalsIgnoreCase("ParameterArchive")) {
             return false;
@@ -0,0 +1,208 @@
+package org.yamcs.http.api;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.yamcs.api.Observer;
+import org.yamcs.logging.Log;
+import org.yamcs.parameter.ValueArray;
+import org.yamcs.parameterarchive.ConsumerAbortException;
+import org.yamcs.parameterarchive.ParameterArchive;
+import org.yamcs.parameterarchive.ParameterRequest;
+import org.yamcs.parameterarchive.ParameterValueArray;
+import org.yamcs.parameterarchive.SingleParameterRetrieval;
+import org.yamcs.protobuf.ParameterColumns;
+import org.yamcs.utils.TimeEncoding;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.ByteString;
+
+/**
+ * Exports the values of a list of parameters from the parameter archive in columnar form.
+ * <p>
+ * The parameters are retrieved in parallel by a number of workers, each worker taking the next parameter from the list
+ * when it finished the previous one. The blocks of values (one per archive segment) are passed to the calling thread
+ * via a bounded queue such that the memory used is limited to a few segments per worker regardless of the amount of
+ * data exported; the workers block when the client does not read fast enough.
+ * <p>
+ * The workers of all the exports share a pool with a bounded number of threads; when it is busy, the workers wait in
+ * the pool queue. They do not run in the worker pool of the route: the export waits for its workers, so it could
+ * deadlock if they were queued behind it.
+ */
+class ParameterColumnExporter {
+    private static final Log log = new Log(ParameterColumnExporter.class);
+
+    static final int QUEUE_SIZE = 16;
+    static final int MAX_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    static final ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("ParameterArchive-Export-%d").setDaemon(true).build());
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    final ParameterArchive parchive;
+    final long start, stop;
+    final int numWorkers;
+
+    private final Queue<String[]> parameters = new ConcurrentLinkedQueue<>();
+    private final BlockingQueue<ParameterColumns> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final AtomicInteger runningWorkers = new AtomicInteger();
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+    private volatile boolean cancelled = false;
+
+    /**
+     *
+     * @param parameters
+     *            list of (name, fully qualified name) for each parameter to be exported; the name is the one sent in
+     *            the result
+     */
+    ParameterColumnExporter(ParameterArchive parchive, List<String[]> parameters, long start, long stop,
+            int numWorkers) {
+        this.parchive = parchive;
+        this.parameters.addAll(parameters);
+        this.start = start;
+        this.stop = stop;
+        this.numWorkers = Math.max(1, Math.min(numWorkers, parameters.size()));
+    }
+
+    /**
+     * Runs the export sending the data to the observer; returns when all the data has been sent or the export has
+     * been cancelled.
+     */
+    void export(Observer<ParameterColumns> observer) throws InterruptedException {
+        runningWorkers.set(numWorkers);
+        for (int i = 0; i < numWorkers; i++) {
+            executor.submit(this::runWorker);
+        }
+        try {
+            while (!cancelled && !observer.isCancelled()) {
+                ParameterColumns pc = queue.poll(1, TimeUnit.SECONDS);
+                if (pc != null) {
+                    observer.next(pc);
+                } else if (runningWorkers.get() == 0 && queue.isEmpty()) {
+                    break;
+                }
+            }
+        } finally {
+            cancelled = true;
+        }
+        if (observer.isCancelled()) {
+            return;
+        }
+        if (error.get() != null) {
+            observer.completeExceptionally(error.get());
+        } else {
+            observer.complete();
+        }
+    }
+
+    private void runWorker() {
+        try {
+            String[] p;
+            while (!cancelled && (p = parameters.poll()) != null) {
+                String name = p[0];
+                ParameterRequest req = new ParameterRequest(start, stop, true, true, false, false);
+                SingleParameterRetrieval spr = new SingleParameterRetrieval(parchive, p[1], req);
+                spr.retrieve(pva -> put(toColumns(name, pva)));
+            }
+        } catch (ConsumerAbortException e) {
+            // cancelled
+        } catch (Exception e) {
+            log.error("Error exporting parameter data", e);
+            error.compareAndSet(null, e);
+            cancelled = true;
+        } finally {
+            runningWorkers.decrementAndGet();
+        }
+    }
+
+    private void put(ParameterColumns pc) {
+        try {
+            while (!queue.offer(pc, 1, TimeUnit.SECONDS)) {
+                if (cancelled) {
+                    throw new ConsumerAbortException();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConsumerAbortException();
+        }
+    }
+
+    static ParameterColumns toColumns(String name, ParameterValueArray pva) {
+        ParameterColumns.Builder pcb = ParameterColumns.newBuilder().setParameter(name);
+        for (long t : pva.getTimestamps()) {
+            pcb.addTimes(TimeEncoding.toUnixMillisec(t));
+        }
+        ValueArray va = pva.getEngValues();
+        pcb.setType(va.getType());
+        int n = va.size();
+        switch (va.getType()) {
+        case FLOAT:
+            float[] fa = va.getFloatArray();
+            for (int i = 0; i < n; i++) {
+                pcb.addDoubleValues(fa[i]);
+            }
+            break;
+        case DOUBLE:
+            double[] da = va.getDoubleArray();
+            for (int i = 0; i < n; i++) {
+                pcb.addDoubleValues(da[i]);
+            }
+            break;
+        case SINT32:
+            int[] ia = va.getIntArray();
+            for (int i = 0; i < n; i++) {
+                pcb.addLongValues(ia[i]);
+            }
+            break;
+        case UINT32:
+            int[] uia = va.getIntArray();
+            for (int i = 0; i < n; i++) {
+                pcb.addLongValues(uia[i] & 0xFFFFFFFFL);
+            }
+            break;
+        case SINT64:
+        case UINT64:
+            long[] la = va.getLongArray();
+            for (int i = 0; i < n; i++) {
+                pcb.addLongValues(la[i]);
+            }
+            break;
+        case TIMESTAMP:
+            long[] ta = va.getLongArray();
+            for (int i = 0; i < n; i++) {
+                pcb.addLongValues(TimeEncoding.toUnixMillisec(ta[i]));
+            }
+            break;
+        case BOOLEAN:
+            for (int i = 0; i < n; i++) {
+                pcb.addBooleanValues(va.getValue(i).getBooleanValue());
+            }
+            break;
+        case STRING:
+        case ENUMERATED:
+            for (int i = 0; i < n; i++) {
+                pcb.addStringValues(va.getValue(i).getStringValue());
+            }
+            break;
+        case BINARY:
+            for (int i = 0; i < n; i++) {
+                pcb.addBinaryValues(ByteString.copyFrom(va.getValue(i).getBinaryValue()));
+            }
+            break;
+        default:
+            throw new IllegalStateException("Unexpected type " + va.getType());
+        }
+        return pcb.build();
+    }
+}
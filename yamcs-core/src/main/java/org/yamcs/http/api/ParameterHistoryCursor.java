@@ -0,0 +1,227 @@
+package org.yamcs.http.api;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.List;
+
+import org.yamcs.logging.Log;
+import org.yamcs.parameter.ParameterCache;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.ParameterValueWithId;
+import org.yamcs.parameter.ParameterWithId;
+import org.yamcs.parameter.Value;
+import org.yamcs.parameterarchive.MultiParameterCursor;
+import org.yamcs.parameterarchive.MultipleParameterRequest;
+import org.yamcs.parameterarchive.ParameterArchive;
+import org.yamcs.parameterarchive.ParameterIdValueList;
+import org.yamcs.utils.AggregateUtil;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.ValueUtility;
+
+import com.google.gson.Gson;
+
+/**
+ * Retrieves the values of one parameter from the parameter archive merged with the values from the parameter cache.
+ * <p>
+ * The retrieval is done in batches; between the batches the cursor keeps open the parameter archive iterators such
+ * that the paged requests and the streaming requests do not have to reopen them and decode again the segments.
+ * <p>
+ * When retrieving in descending order, the values from the cache newer than the newest value from the archive are sent
+ * first. When retrieving in ascending order, the values from the cache newer than the newest value from the archive
+ * are sent at the end.
+ * <p>
+ * This class is not thread safe.
+ */
+class ParameterHistoryCursor implements AutoCloseable {
+    private static final Log log = new Log(ParameterHistoryCursor.class);
+
+    final ParameterWithId pid;
+    final ParameterCache pcache;
+    final MultiParameterCursor archiveCursor;
+    final long start, stop;
+    final boolean ascending;
+    final boolean noRepeat;
+
+    // used to validate that a continuation token is used with the same request
+    Object requestKey;
+
+    private final Deque<ParameterValueWithId> pending = new ArrayDeque<>();
+    private long lastArchiveTime = TimeEncoding.INVALID_INSTANT;
+    private boolean archiveDone = false;
+    private boolean cacheDone = false;
+    private Value lastValue;
+
+    ParameterHistoryCursor(ParameterArchive parchive, ParameterCache pcache, ParameterWithId pid,
+            MultipleParameterRequest mpvr, boolean noRepeat) {
+        this.pid = pid;
+        this.pcache = pcache;
+        this.start = mpvr.getStart();
+        this.stop = mpvr.getStop();
+        this.ascending = mpvr.isAscending();
+        this.noRepeat = noRepeat;
+        this.archiveCursor = new MultiParameterCursor(parchive, mpvr);
+    }
+
+    /**
+     * Returns maximum n values.
+     * <p>
+     * If the returned list contains less than n values, the cursor is exhausted.
+     */
+    List<ParameterValueWithId> next(int n) {
+        List<ParameterValueWithId> result = new ArrayList<>(Math.min(n, 1000));
+        while (result.size() < n) {
+            fill();
+            ParameterValueWithId pvwid = pending.poll();
+            if (pvwid == null) {
+                break;
+            }
+            result.add(pvwid);
+        }
+        return result;
+    }
+
+    boolean hasNext() {
+        fill();
+        return !pending.isEmpty();
+    }
+
+    /**
+     *
+     * @return the generation time of the next value
+     */
+    long nextTime() {
+        fill();
+        ParameterValueWithId pvwid = pending.peek();
+        return pvwid == null ? TimeEncoding.INVALID_INSTANT : pvwid.getParameterValue().getGenerationTime();
+    }
+
+    private void fill() {
+        while (pending.isEmpty() && !(archiveDone && cacheDone)) {
+            if (!archiveDone) {
+                ParameterIdValueList pvlist = archiveCursor.peek();
+                if (pvlist == null) {
+                    archiveDone = true;
+                    archiveCursor.close();
+                    continue;
+                }
+                long t = pvlist.getValues().get(0).getGenerationTime();
+                if (!ascending && !cacheDone) {
+                    // retrieve data from cache first
+                    cacheDone = true;
+                    addFromCache(t, stop);
+                    if (!pending.isEmpty()) {
+                        continue;
+                    }
+                }
+                archiveCursor.next();
+                lastArchiveTime = t;
+                add(new ParameterValueWithId(pvlist.getValues().get(0), pid.getId()));
+            } else {
+                cacheDone = true;
+                if (ascending) {
+                    long cstart = (lastArchiveTime == TimeEncoding.INVALID_INSTANT) ? start - 1 : lastArchiveTime;
+                    addFromCache(cstart, stop);
+                } else if (lastArchiveTime == TimeEncoding.INVALID_INSTANT) {
+                    // no data retrieved from archive, but maybe there is still something in the cache to send
+                    addFromCache(start, stop);
+                }
+            }
+        }
+    }
+
+    // add data from cache with timestamps in (start, stop) if ascending or (start, stop] if descending interval
+    private void addFromCache(long cstart, long cstop) {
+        if (pcache == null) {
+            return;
+        }
+        List<ParameterValue> pvlist = pcache.getAllValues(pid.getParameter());
+        if (pvlist == null) {
+            return;
+        }
+        if (ascending) {
+            for (int i = pvlist.size() - 1; i >= 0; i--) {
+                ParameterValue pv = pvlist.get(i);
+                if (pv.getGenerationTime() >= cstop) {
+                    break;
+                }
+                if (pv.getGenerationTime() > cstart) {
+                    addFromCache(pv);
+                }
+            }
+        } else {
+            for (ParameterValue pv : pvlist) {
+                if (pv.getGenerationTime() > cstop) {
+                    continue;
+                }
+                if (pv.getGenerationTime() <= cstart) {
+                    break;
+                }
+                addFromCache(pv);
+            }
+        }
+    }
+
+    private void addFromCache(ParameterValue pv) {
+        ParameterValue pv1;
+        if (pid.getPath() != null) {
+            try {
+                pv1 = AggregateUtil.extractMember(pv, pid.getPath());
+                if (pv1 == null) { // could be that we reference an element of an array that doesn't exist
+                    return;
+                }
+            } catch (Exception e) {
+                log.error("Failed to extract {} from parameter value {}", Arrays.toString(pid.getPath()), pv, e);
+                return;
+            }
+        } else {
+            pv1 = pv;
+        }
+        add(new ParameterValueWithId(pv1, pid.getId()));
+    }
+
+    private void add(ParameterValueWithId pvwid) {
+        if (noRepeat) {
+            Value v = pvwid.getParameterValue().getEngValue();
+            if (ValueUtility.equals(lastValue, v)) {
+                return;
+            }
+            lastValue = v;
+        }
+        pending.add(pvwid);
+    }
+
+    @Override
+    public void close() {
+        archiveCursor.close();
+        pending.clear();
+    }
+
+    /**
+     * Continuation token for the paged parameter history.
+     * <p>
+     * The time allows continuing the retrieval if the cursor is not available anymore (expired or the request reached
+     * another server).
+     */
+    static class PageToken {
+        long time;
+        String cursor;
+
+        PageToken(long time, String cursor) {
+            this.time = time;
+            this.cursor = cursor;
+        }
+
+        static PageToken decode(String encoded) {
+            String decoded = new String(Base64.getUrlDecoder().decode(encoded));
+            return new Gson().fromJson(decoded, PageToken.class);
+        }
+
+        String encodeAsString() {
+            String json = new Gson().toJson(this);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes());
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package org.yamcs.http.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.yamcs.InvalidIdentification;
+import org.yamcs.NoPermissionException;
+import org.yamcs.Processor;
+import org.yamcs.http.SharedMessage;
+import org.yamcs.logging.Log;
+import org.yamcs.parameter.ParameterValueWithId;
+import org.yamcs.parameter.ParameterWithId;
+import org.yamcs.parameter.ParameterWithIdRequestHelper;
+import org.yamcs.protobuf.SubscribeParametersData;
+import org.yamcs.protobuf.Yamcs.NamedObjectId;
+import org.yamcs.security.ObjectPrivilegeType;
+import org.yamcs.security.User;
+
+/**
+ * Shares the parameter subscriptions between the clients.
+ * <p>
+ * The clients subscribing to the same set of parameters from the same processor with the same options are attached
+ * to a single subscription of the parameter request manager. Each delivery is converted once to a
+ * {@link SubscribeParametersData} message whose serialized form is shared by all the attached clients.
+ * <p>
+ * The numeric ids sent to the clients instead of the full parameter ids are allocated from one table common to all
+ * the subscriptions, such that a client keeps the same numeric id for a parameter when it moves from one shared
+ * subscription to another (for example after adding or removing parameters). The numeric ids are allocated when a
+ * shared subscription to a (valid) parameter is created and released when no shared subscription refers to the
+ * parameter anymore.
+ */
+public class ParameterSubscriptionHub {
+
+    private static final Log log = new Log(ParameterSubscriptionHub.class);
+
+    // modified under the lock of the hub; read without lock when delivering the updates
+    private final ConcurrentHashMap<NamedObjectId, NumericId> numericIds = new ConcurrentHashMap<>();
+    private final AtomicInteger numericIdGenerator = new AtomicInteger();
+
+    private final Map<Key, SharedSubscription> subscriptions = new HashMap<>();
+
+    /**
+     * Returns the numeric id of a parameter id which is part of a current subscription, or null if there is none.
+     */
+    public Integer getNumericId(NamedObjectId id) {
+        NumericId numericId = numericIds.get(id);
+        return numericId == null ? null : numericId.id;
+    }
+
+    /**
+     * Finds or creates the shared subscription to the given parameters.
+     * <p>
+     * The user is checked for permission to read all the parameters also when the subscription exists already. The
+     * caller starts receiving the values by calling {@link SharedSubscription#attach(Consumer)} and has to release
+     * the subscription with {@link #unsubscribe(SharedSubscription, Consumer)}.
+     */
+    public synchronized SharedSubscription subscribe(Processor processor, Collection<NamedObjectId> ids,
+            boolean updateOnExpiration, User user) throws InvalidIdentification, NoPermissionException {
+        Key key = new Key(processor, new HashSet<>(ids), updateOnExpiration);
+        SharedSubscription subscription = subscriptions.get(key);
+        if (subscription == null) {
+            subscription = new SharedSubscription(key);
+            // this checks the ids and the permissions
+            subscription.subscriptionId = subscription.pidrm.addRequest(new ArrayList<>(key.ids),
+                    updateOnExpiration, user);
+            subscriptions.put(key, subscription);
+            for (NamedObjectId id : key.ids) {
+                numericIds.computeIfAbsent(id, k -> new NumericId(numericIdGenerator.incrementAndGet())).refCount++;
+            }
+            log.debug("Created shared subscription to {} parameters of processor {}", key.ids.size(),
+                    processor.getName());
+        } else {
+            List<ParameterWithId> plist = ParameterWithIdRequestHelper
+                    .checkNames(processor.getParameterRequestManager(), new ArrayList<>(key.ids));
+            for (ParameterWithId pwid : plist) {
+                String name = pwid.getParameter().getQualifiedName();
+                if (!user.hasObjectPrivilege(ObjectPrivilegeType.ReadParameter, name)) {
+                    throw new NoPermissionException("User " + user + " has no permission for parameter " + name);
+                }
+            }
+        }
+        subscription.refCount++;
+        return subscription;
+    }
+
+    /**
+     * Detaches the consumer from the subscription and releases the subscription. The subscription to the parameter
+     * request manager is removed when it is released by all its users.
+     */
+    public synchronized void unsubscribe(SharedSubscription subscription, Consumer<SharedMessage> consumer) {
+        subscription.consumers.remove(consumer);
+        if (--subscription.refCount == 0) {
+            subscriptions.remove(subscription.key);
+            subscription.pidrm.quit();
+            for (NamedObjectId id : subscription.key.ids) {
+                NumericId numericId = numericIds.get(id);
+                if (--numericId.refCount == 0) {
+                    numericIds.remove(id);
+                }
+            }
+            log.debug("Removed shared subscription to {} parameters of processor {}", subscription.key.ids.size(),
+                    subscription.key.processor.getName());
+        }
+    }
+
+    /**
+     * Returns the number of shared subscriptions.
+     */
+    public synchronized int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Returns the number of parameter ids having a numeric id allocated.
+     */
+    public int getNumericIdCount() {
+        return numericIds.size();
+    }
+
+    public class SharedSubscription {
+        final Key key;
+        final ParameterWithIdRequestHelper pidrm;
+        final Set<Consumer<SharedMessage>> consumers = new CopyOnWriteArraySet<>();
+        int subscriptionId;
+        int refCount;
+
+        SharedSubscription(Key key) {
+            this.key = key;
+            pidrm = new ParameterWithIdRequestHelper(key.processor.getParameterRequestManager(),
+                    (subscriptionId, params) -> deliver(params));
+        }
+
+        /**
+         * Starts sending the parameter updates to the consumer.
+         */
+        public void attach(Consumer<SharedMessage> consumer) {
+            consumers.add(consumer);
+        }
+
+        public List<ParameterValueWithId> getValuesFromCache() {
+            return pidrm.getValuesFromCache(subscriptionId);
+        }
+
+        private void deliver(List<ParameterValueWithId> params) {
+            if (params.isEmpty() || consumers.isEmpty()) {
+                return;
+            }
+            SubscribeParametersData.Builder datab = SubscribeParametersData.newBuilder();
+            for (ParameterValueWithId pvwi : params) {
+                NumericId numericId = numericIds.get(pvwi.getId());
+                if (numericId != null) {
+                    datab.addValues(pvwi.getParameterValue().toGpb(numericId.id));
+                }
+            }
+            SharedMessage message = new SharedMessage(datab.build());
+            for (Consumer<SharedMessage> consumer : consumers) {
+                try {
+                    consumer.accept(message);
+                } catch (RuntimeException e) {
+                    log.warn("Failed to send parameter update", e);
+                }
+            }
+        }
+    }
+
+    static final class NumericId {
+        final int id;
+        // number of shared subscriptions containing the parameter
+        int refCount;
+
+        NumericId(int id) {
+            this.id = id;
+        }
+    }
+
+    static final class Key {
+        final Processor processor;
+        final Set<NamedObjectId> ids;
+        final boolean updateOnExpiration;
+
+        Key(Processor processor, Set<NamedObjectId> ids, boolean updateOnExpiration) {
+            this.processor = processor;
+            this.ids = ids;
+            this.updateOnExpiration = updateOnExpiration;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(processor, ids, updateOnExpiration);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return processor == other.processor && updateOnExpiration == other.updateOnExpiration
+                    && ids.equals(other.ids);
+        }
+    }
+}
@@ -88,6 +88,12 @@ import com.google.protobuf.Empty;
 
 public class ProcessingApi extends AbstractProcessingApi<Context> {
 
+    private ParameterSubscriptionHub parameterSubscriptionHub = new ParameterSubscriptionHub();
+
+    public ParameterSubscriptionHub getParameterSubscriptionHub() {
+        return parameterSubscriptionHub;
+    }
+
     @Override
     public void listProcessorTypes(Context ctx, Empty request, Observer<ListProcessorTypesResponse> observer) {
         ListProcessorTypesResponse.Builder response = ListProcessorTypesResponse.newBuilder();
@@ -291,7 +297,8 @@ public class ProcessingApi extends AbstractProcessingApi<Context> {
     @Override
     public Observer<SubscribeParametersRequest> subscribeParameters(Context ctx,
             Observer<SubscribeParametersData> observer) {
-        SubscribeParameterObserver clientObserver = new SubscribeParameterObserver(ctx.user, observer);
+        SubscribeParameterObserver clientObserver = new SubscribeParameterObserver(ctx.user, observer,
+                parameterSubscriptionHub);
         observer.setCancelHandler(() -> clientObserver.complete());
         return clientObserver;
     }
@@ -33,6 +33,7 @@ import org.yamcs.http.NotFoundException;
 import org.yamcs.http.Route;
 import org.yamcs.http.RpcDescriptor;
 import org.yamcs.http.Topic;
+import org.yamcs.http.WorkerPool;
 import org.yamcs.protobuf.AbstractServerApi;
 import org.yamcs.protobuf.ClientConnectionInfo;
 import org.yamcs.protobuf.ClientConnectionInfo.HttpRequestInfo;
@@ -46,11 +47,13 @@ import org.yamcs.protobuf.ListRoutesResponse;
 import org.yamcs.protobuf.ListThreadsRequest;
 import org.yamcs.protobuf.ListThreadsResponse;
 import org.yamcs.protobuf.ListTopicsResponse;
+import org.yamcs.protobuf.ListWorkerPoolsResponse;
 import org.yamcs.protobuf.RouteInfo;
 import org.yamcs.protobuf.ThreadGroupInfo;
 import org.yamcs.protobuf.ThreadInfo;
 import org.yamcs.protobuf.TopicInfo;
 import org.yamcs.protobuf.TraceElementInfo;
+import org.yamcs.protobuf.WorkerPoolInfo;
 import org.yamcs.security.SystemPrivilege;
 
 import com.google.protobuf.ByteString;
@@ -157,6 +160,9 @@ public class ServerApi extends AbstractServerApi<Context> {
                     routeb.setDeprecated(true);
                 }
             }
+            if (route.getWorkerPoolName() != null) {
+                routeb.setWorkerPool(route.getWorkerPool().getName());
+            }
             result.add(routeb.build());
         }
 
@@ -170,6 +176,26 @@ public class ServerApi extends AbstractServerApi<Context> {
         observer.complete(responseb.build());
     }
 
+    @Override
+    public void listWorkerPools(Context ctx, Empty request, Observer<ListWorkerPoolsResponse> observer) {
+        ListWorkerPoolsResponse.Builder responseb = ListWorkerPoolsResponse.newBuilder();
+        for (WorkerPool pool : httpServer.getWorkerPools()) {
+            responseb.addPools(WorkerPoolInfo.newBuilder()
+                    .setName(pool.getName())
+                    .setMaxThreads(pool.getMaxThreads())
+                    .setActiveThreads(pool.getActiveCount())
+                    .setMaxQueueSize(pool.getMaxQueueSize())
+                    .setQueueSize(pool.getQueueSize())
+                    .setQueueTimeout(pool.getQueueTimeout())
+                    .setExecutedCount(pool.getExecutedCount())
+                    .setRejectedCount(pool.getRejectedCount())
+                    .setTimedOutCount(pool.getTimedOutCount())
+                    .setAverageQueueTime(pool.getAverageQueueTime())
+                    .setMaxQueueTime(pool.getMaxQueueTime()));
+        }
+        observer.complete(responseb.build());
+    }
+
     @Override
     public void listTopics(Context ctx, Empty request, Observer<ListTopicsResponse> observer) {
         List<TopicInfo> result = new ArrayList<>();
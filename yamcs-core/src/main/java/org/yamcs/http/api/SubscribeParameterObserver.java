@@ -4,23 +4,23 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import org.yamcs.InvalidIdentification;
 import org.yamcs.NoPermissionException;
 import org.yamcs.Processor;
 import org.yamcs.api.Observer;
 import org.yamcs.http.BadRequestException;
+import org.yamcs.http.SharedMessage;
+import org.yamcs.http.WebSocketObserver;
+import org.yamcs.http.api.ParameterSubscriptionHub.SharedSubscription;
 import org.yamcs.logging.Log;
-import org.yamcs.parameter.ParameterRequestManager;
 import org.yamcs.parameter.ParameterValue;
 import org.yamcs.parameter.ParameterValueWithId;
-import org.yamcs.parameter.ParameterWithIdRequestHelper;
 import org.yamcs.protobuf.SubscribeParametersData;
 import org.yamcs.protobuf.SubscribeParametersRequest;
 import org.yamcs.protobuf.SubscribeParametersRequest.Action;
@@ -35,37 +35,32 @@ public class SubscribeParameterObserver implements Observer<SubscribeParametersR
 
     private User user;
     private Observer<SubscribeParametersData> responseObserver;
-
-    private int subscriptionId = -1;
-    private ParameterWithIdRequestHelper pidrm;
-
-    private ConcurrentMap<NamedObjectId, Integer> numericIdMap = new ConcurrentHashMap<>();
-    private AtomicInteger numericIdGenerator = new AtomicInteger();
-
-    public SubscribeParameterObserver(User user, Observer<SubscribeParametersData> responseObserver) {
+    private ParameterSubscriptionHub hub;
+    private Consumer<SharedMessage> consumer = this::send;
+
+    private Processor processor;
+    private boolean subscribed;
+    private boolean updateOnExpiration;
+    private Set<NamedObjectId> ids = new LinkedHashSet<>();
+    private SharedSubscription subscription;
+
+    // the updates received while a mapping is being sent are held until it is out; guarded by stateLock, which is
+    // never held while writing to the client
+    private final Object stateLock = new Object();
+    private boolean mappingPending;
+    private List<SharedMessage> heldMessages = new ArrayList<>();
+
+    public SubscribeParameterObserver(User user, Observer<SubscribeParametersData> responseObserver,
+            ParameterSubscriptionHub hub) {
         this.user = user;
         this.responseObserver = responseObserver;
+        this.hub = hub;
     }
 
     @Override
-    public void next(SubscribeParametersRequest request) {
-        if (pidrm == null) {
-            Processor processor = ProcessingApi.verifyProcessor(request.getInstance(), request.getProcessor());
-            ParameterRequestManager requestManager = processor.getParameterRequestManager();
-            pidrm = new ParameterWithIdRequestHelper(requestManager, (subscriptionId, params) -> {
-                if (params.isEmpty()) {
-                    return;
-                }
-                SubscribeParametersData.Builder datab = SubscribeParametersData.newBuilder();
-                for (ParameterValueWithId pvwi : params) {
-                    ParameterValue pval = pvwi.getParameterValue();
-                    Integer numericId = numericIdMap.get(pvwi.getId());
-                    if (numericId != null) {
-                        datab.addValues(pval.toGpb(numericId));
-                    }
-                }
-                responseObserver.next(datab.build());
-            });
+    public synchronized void next(SubscribeParametersRequest request) {
+        if (processor == null) {
+            processor = ProcessingApi.verifyProcessor(request.getInstance(), request.getProcessor());
         }
 
         Action action = Action.REPLACE;
@@ -73,6 +68,11 @@ public class SubscribeParameterObserver implements Observer<SubscribeParametersR
             action = request.getAction();
         }
 
+        // The updates come from another thread and are held by send() until the mapping is out (we want the client to
+        // know a mapping before receiving a value for it).
+        synchronized (stateLock) {
+            mappingPending = true;
+        }
         try {
             List<NamedObjectId> idList = request.getIdList();
             List<NamedObjectId> invalid = new ArrayList<>();
@@ -109,70 +109,143 @@ public class SubscribeParameterObserver implements Observer<SubscribeParametersR
             SubscribeParametersData.Builder datab = SubscribeParametersData.newBuilder()
                     .addAllInvalid(invalid);
 
-            Map<NamedObjectId, Integer> mappingUpdate = new HashMap<>(idList.size());
+            // only the subscribed ids have a numeric id (the removed ones may have none)
+            Map<NamedObjectId, Integer> mappingUpdate = new HashMap<>();
             for (NamedObjectId id : idList) {
-                int numericId = numericIdGenerator.incrementAndGet();
-                mappingUpdate.put(id, numericId);
-                datab.putMapping(numericId, id);
+                Integer numericId = hub.getNumericId(id);
+                if (numericId != null && ids.contains(id)) {
+                    mappingUpdate.put(id, numericId);
+                    datab.putMapping(numericId, id);
+                }
             }
-            if (subscriptionId != -1 && (!request.hasSendFromCache() || request.getSendFromCache())) {
-                for (ParameterValueWithId rec : pidrm.getValuesFromCache(subscriptionId)) {
-                    ParameterValue pval = rec.getParameterValue();
+            if (subscription != null && (!request.hasSendFromCache() || request.getSendFromCache())) {
+                for (ParameterValueWithId rec : subscription.getValuesFromCache()) {
                     Integer numericId = mappingUpdate.get(rec.getId());
                     if (numericId != null) {
+                        ParameterValue pval = rec.getParameterValue();
                         datab.addValues(pval.toGpb(numericId));
                     }
                 }
             }
-
             responseObserver.next(datab.build());
-
-            // After having sent out the mapping, update internal state
-            // (updates come from another thread, and we want to client to
-            // know a mapping before receiving a value for it)
-            numericIdMap.putAll(mappingUpdate);
         } catch (InvalidIdentification e) {
             log.warn("Invalid identification: {}", e.getMessage());
             responseObserver.completeExceptionally(e);
         } catch (NoPermissionException e) {
             log.warn("No permission for parameters: {}", e.getMessage());
             responseObserver.completeExceptionally(e);
+        } finally {
+            releaseHeldMessages();
         }
     }
 
     private void updateSubscription(Action action, List<NamedObjectId> idList, boolean updateOnExpiration)
             throws NoPermissionException, InvalidIdentification {
+        Set<NamedObjectId> newIds;
+        boolean newUpdateOnExpiration = this.updateOnExpiration;
         if (action == Action.REPLACE) {
-            if (subscriptionId != -1) {
-                pidrm.removeRequest(subscriptionId);
-                subscriptionId = -1;
-            }
-            subscriptionId = pidrm.addRequest(idList, updateOnExpiration, user);
+            newIds = new LinkedHashSet<>(idList);
+            newUpdateOnExpiration = updateOnExpiration;
         } else if (action == Action.ADD) {
-            if (subscriptionId == -1) {
-                subscriptionId = pidrm.addRequest(idList, updateOnExpiration, user);
-            } else {
-                pidrm.addItemsToRequest(subscriptionId, idList, user);
+            newIds = new LinkedHashSet<>(ids);
+            newIds.addAll(idList);
+            if (!subscribed) {
+                newUpdateOnExpiration = updateOnExpiration;
             }
         } else if (action == Action.REMOVE) {
-            if (subscriptionId != -1) {
-                pidrm.removeItemsFromRequest(subscriptionId, idList, user);
+            if (!subscribed) {
+                return;
+            }
+            newIds = new LinkedHashSet<>(ids);
+            newIds.removeAll(idList);
+        } else {
+            return;
+        }
+        if (subscribed && newIds.equals(ids) && newUpdateOnExpiration == this.updateOnExpiration) {
+            return;
+        }
+
+        // clients with the same parameters share the subscription; subscribe to the new set before leaving the old
+        // one such that nothing is changed if the new set is not valid. The new subscription is attached before
+        // detaching from the old one such that no update is lost in between (some may be received twice).
+        SharedSubscription newSubscription = null;
+        if (!newIds.isEmpty()) {
+            newSubscription = hub.subscribe(processor, newIds, newUpdateOnExpiration, user);
+            newSubscription.attach(consumer);
+        }
+        if (subscription != null) {
+            hub.unsubscribe(subscription, consumer);
+        }
+        subscription = newSubscription;
+        ids = newIds;
+        this.updateOnExpiration = newUpdateOnExpiration;
+        subscribed = true;
+    }
+
+    private void send(SharedMessage message) {
+        synchronized (stateLock) {
+            if (mappingPending) {
+                heldMessages.add(message);
+                return;
+            }
+        }
+        write(message);
+    }
+
+    /**
+     * Sends the updates held while the mapping was being sent, including the ones arriving meanwhile, then lets the
+     * updates go directly to the client.
+     */
+    private void releaseHeldMessages() {
+        while (true) {
+            List<SharedMessage> messages;
+            synchronized (stateLock) {
+                if (heldMessages.isEmpty()) {
+                    mappingPending = false;
+                    return;
+                }
+                messages = heldMessages;
+                heldMessages = new ArrayList<>();
+            }
+            try {
+                for (SharedMessage message : messages) {
+                    write(message);
+                }
+            } catch (RuntimeException e) {
+                // the call is cancelled, the remaining updates are not sent
+                synchronized (stateLock) {
+                    heldMessages.clear();
+                    mappingPending = false;
+                }
+                throw e;
             }
         }
     }
 
+    private void write(SharedMessage message) {
+        Object observer = responseObserver;
+        if (observer instanceof WebSocketObserver) {
+            ((WebSocketObserver) observer).nextShared(message);
+        } else {
+            responseObserver.next((SubscribeParametersData) message.getMessage());
+        }
+    }
+
+    private synchronized void unsubscribe() {
+        if (subscription != null) {
+            hub.unsubscribe(subscription, consumer);
+            subscription = null;
+        }
+    }
+
     @Override
     public void completeExceptionally(Throwable t) {
         log.error("Parameter subscription errored", t);
-        if (pidrm != null) {
-            pidrm.quit();
-        }
+        unsubscribe();
     }
 
     @Override
     public void complete() {
-        if (pidrm != null) {
-            pidrm.quit();
-        }
+        unsubscribe();
     }
 }
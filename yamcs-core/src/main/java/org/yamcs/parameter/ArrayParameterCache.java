@@ -183,6 +183,8 @@ public class ArrayParameterCache implements ParameterCache {
         // check expiration
         for (ParameterValue pv : result) {
             if ((pv.getAcquisitionStatus() == AcquisitionStatus.ACQUIRED) && pv.isExpired(now)) {
+                // the status is the one stored in the cache, it is copied before being modified
+                pv.setStatus(new ParameterStatus(pv.getStatus()));
                 pv.setAcquisitionStatus(AcquisitionStatus.EXPIRED);
             }
         }
@@ -361,11 +363,8 @@ public class ArrayParameterCache implements ParameterCache {
         }
 
         public void add(ParameterValue pv) {
-            Value engValue = pv.getEngValue();
-            Value rawValue = pv.getRawValue();
-
-            Type engType = (engValue == null) ? null : engValue.getType();
-            Type rawType = (rawValue == null) ? null : rawValue.getType();
+            Type engType = pv.getEngType();
+            Type rawType = pv.getRawType();
             int parameterId = parameterIdMap.createAndGet(pv.getParameter(), engType, rawType);
 
             int pos = parameterIdArray.insert(parameterId);
@@ -428,13 +427,13 @@ public class ArrayParameterCache implements ParameterCache {
             this.generationTimeColumn = new long[INITIAL_CAPACITY];
             for (int i = 0; i < sortedPvList.size(); i++) {
                 ParameterValue pv = sortedPvList.get(i);
-                Value v = pv.getEngValue();
-                if (v != null) {
-                    engValueColumns[i] = getNewColumn(v.getType());
+                Type engType = pv.getEngType();
+                if (engType != null) {
+                    engValueColumns[i] = getNewColumn(engType);
                 }
-                Value rawV = pv.getRawValue();
-                if (rawV != null) {
-                    rawValueColumns[i] = getNewColumn(rawV.getType());
+                Type rawType = pv.getRawType();
+                if (rawType != null) {
+                    rawValueColumns[i] = getNewColumn(rawType);
                 }
                 statusColumns[i] = new ParameterStatus[INITIAL_CAPACITY];
                 acquisitionTimeColumns[i] = new long[INITIAL_CAPACITY];
@@ -580,14 +579,11 @@ public class ArrayParameterCache implements ParameterCache {
         }
 
         private void storeParameter(int col, int row, ParameterValue pv) {
-            Value v = pv.getEngValue();
-            if (v != null) {
-                storeValue(engValueColumns[col], row, v);
+            if (pv.hasEngValue()) {
+                storeValue(engValueColumns[col], row, pv, false);
             }
-
-            v = pv.getRawValue();
-            if (v != null) {
-                storeValue(rawValueColumns[col], row, v);
+            if (pv.hasRawValue()) {
+                storeValue(rawValueColumns[col], row, pv, true);
             }
             ParameterStatus status = pv.getStatus();
 
@@ -601,6 +597,29 @@ public class ArrayParameterCache implements ParameterCache {
             acquisitionTimeColumns[col][row] = pv.getAcquisitionTime();
         }
 
+        // stores the numeric values without creating the Value object
+        private void storeValue(Object o, int pos, ParameterValue pv, boolean raw) {
+            Type type = raw ? pv.getRawType() : pv.getEngType();
+            switch (type) {
+            case DOUBLE:
+                ((double[]) o)[pos] = raw ? pv.getRawDouble() : pv.getEngDouble();
+                break;
+            case FLOAT:
+                ((float[]) o)[pos] = (float) (raw ? pv.getRawDouble() : pv.getEngDouble());
+                break;
+            case SINT32:
+            case UINT32:
+                ((int[]) o)[pos] = (int) (raw ? pv.getRawLong() : pv.getEngLong());
+                break;
+            case SINT64:
+            case UINT64:
+                ((long[]) o)[pos] = raw ? pv.getRawLong() : pv.getEngLong();
+                break;
+            default:
+                storeValue(o, pos, raw ? pv.getRawValue() : pv.getEngValue());
+            }
+        }
+
         private void storeValue(Object o, int pos, Value v) {
             Type type = v.getType();
 
@@ -36,22 +36,23 @@ public class BasicParameterValue extends RawEngValue {
 
 
     public void setExpireMillis(long em) {
-        changeNominalStatus();
-        status.setExpireMillis(em);
+        if (status.isSimple()) {
+            status = ParameterStatus.getSharedStatus(status.getAcquisitionStatus(), em);
+        } else {
+            changeNominalStatus();
+            status.setExpireMillis(em);
+        }
     }
 
     public long getExpireMills() {
         return status.getExpireMills();
     }
 
-    public void setEngValue(Value engValue) {
-        this.engValue = engValue;
-    }
-
     // *********** parameter status
+    // copy the status before modifying it if it is shared
     private void changeNominalStatus() {
-        if (status == ParameterStatus.NOMINAL) {
-            status = new ParameterStatus();
+        if (status.isShared()) {
+            status = new ParameterStatus(status);
         }
     }
 
@@ -96,10 +97,15 @@ public class BasicParameterValue extends RawEngValue {
     }
 
     public void setAcquisitionStatus(AcquisitionStatus a) {
-        if (status.getAcquisitionStatus() != a) {
+        if (status.getAcquisitionStatus() == a) {
+            return;
+        }
+        if (status.isSimple()) {
+            status = ParameterStatus.getSharedStatus(a, status.getExpireMills());
+        } else {
             changeNominalStatus();
+            status.setAcquisitionStatus(a);
         }
-        status.setAcquisitionStatus(a);
     }
 
     public DoubleRange getDistressRange() {
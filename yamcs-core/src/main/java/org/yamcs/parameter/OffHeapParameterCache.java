@@ -0,0 +1,546 @@
+package org.yamcs.parameter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.yamcs.logging.Log;
+import org.yamcs.parameter.ArrayParameterCache.ParameterId;
+import org.yamcs.parameter.ArrayParameterCache.SimpleParameterIdMap;
+import org.yamcs.parameter.ArrayParameterCache.SortedParameterList;
+import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.utils.SortedIntArray;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.ValueUtility;
+import org.yamcs.xtce.Parameter;
+
+/**
+ * Parameter cache storing the values outside the Java heap.
+ * <p>
+ * As in the {@link ArrayParameterCache}, the parameters updated together with the same generation time form a group.
+ * The values of a group are appended to a list of blocks, each block covering a slice of the cache duration. Inside a
+ * block the values are stored by column (generation time, and for each parameter the acquisition time, the
+ * engineering and the raw value) in a direct {@link ByteBuffer}. The values which do not have a fixed size (strings,
+ * binary, enumerated, aggregates and arrays) and the parameter status are kept in arrays on the heap; since most
+ * parameters share the same status instance (see {@link ParameterStatus#getSharedStatus(AcquisitionStatus, long)}),
+ * these arrays hold mostly references to the same object.
+ * <p>
+ * The blocks are written by one thread at a time and the rows already written are never modified. The number of rows
+ * of a block and the list of blocks of a group are published through volatile fields such that the readers do not
+ * need any lock. When all the values of the oldest block fall outside the cache duration (or the group holds more than
+ * maxNumEntries values), the block is dropped as a whole from the list; its memory is released when the buffer is
+ * garbage collected.
+ */
+public class OffHeapParameterCache implements ParameterCache {
+    // each block covers maximum 1/NUM_SLICES of the cache duration and of the maxNumEntries
+    static final int NUM_SLICES = 8;
+    static final int MAX_BLOCK_ROWS = 1024;
+
+    final SimpleParameterIdMap pidMap = new SimpleParameterIdMap();
+    final Log log;
+    final ConcurrentHashMap<SortedIntArray, ParameterGroup> groups = new ConcurrentHashMap<>();
+    final ConcurrentHashMap<Parameter, Boolean> parametersToCache;
+    final ParameterCacheConfig cacheConfig;
+    final long sliceDuration;
+    final int blockRows;
+
+    OffHeapParameterCache(String instance, ParameterCacheConfig cacheConfig) {
+        log = new Log(this.getClass(), instance);
+        this.cacheConfig = cacheConfig;
+        parametersToCache = cacheConfig.cacheAll ? null : new ConcurrentHashMap<>();
+        sliceDuration = Math.max(1, cacheConfig.maxDuration / NUM_SLICES);
+        blockRows = Math.max(1, Math.min(MAX_BLOCK_ROWS, cacheConfig.maxNumEntries / NUM_SLICES));
+    }
+
+    @Override
+    public void update(Collection<ParameterValue> pvs) {
+        Map<Long, SortedParameterList> m = new HashMap<>();
+        for (ParameterValue pv : pvs) {
+            if (!(cacheConfig.cacheAll || parametersToCache.containsKey(pv.getParameter()))) {
+                continue;
+            }
+            long t = pv.getGenerationTime();
+            SortedParameterList l = m.get(t);
+            if (l == null) {
+                l = new SortedParameterList(pidMap);
+                m.put(t, l);
+            }
+            l.add(pv);
+        }
+        for (Map.Entry<Long, SortedParameterList> entry : m.entrySet()) {
+            SortedParameterList pvList = entry.getValue();
+            SortedIntArray sia = pvList.getParameterIdArray();
+            ParameterGroup group = groups.get(sia);
+            if (group == null) {
+                group = new ParameterGroup(sia, pvList.getParameterValueList());
+                ParameterGroup group1 = groups.putIfAbsent(sia, group);
+                if (group1 != null) {
+                    group = group1;
+                }
+            }
+            group.add(entry.getKey(), pvList.getParameterValueList());
+        }
+    }
+
+    @Override
+    public ParameterValue getLastValue(Parameter pdef) {
+        ParameterValue result = null;
+        for (ParameterId p : getParameterIds(pdef)) {
+            ParameterValue pv = getLastValue(p);
+            if (pv != null && (result == null || pv.getGenerationTime() > result.getGenerationTime())) {
+                result = pv;
+            }
+        }
+        return result;
+    }
+
+    private ParameterValue getLastValue(ParameterId p) {
+        Block block = null;
+        int col = -1;
+        for (ParameterGroup group : groups.values()) {
+            int c = group.pids.search(p.id);
+            if (c < 0) {
+                continue;
+            }
+            Block b = group.lastBlock();
+            if (b != null && (block == null || b.lastTime() > block.lastTime())) {
+                block = b;
+                col = c;
+            }
+        }
+        if (block == null) {
+            return null;
+        }
+        return block.getParameterValue(p.pdef, col, block.numRows - 1);
+    }
+
+    @Override
+    public List<ParameterValue> getValues(List<Parameter> plist) {
+        List<ParameterValue> result = new ArrayList<>(plist.size());
+        for (Parameter p : plist) {
+            ParameterValue pv = getLastValue(p);
+            if (pv != null) {
+                result.add(pv);
+            }
+        }
+
+        long now = TimeEncoding.getWallclockTime();
+        // check expiration
+        for (ParameterValue pv : result) {
+            if ((pv.getAcquisitionStatus() == AcquisitionStatus.ACQUIRED) && pv.isExpired(now)) {
+                // the status is shared with the rows of the cache, it is copied before being modified
+                pv.setStatus(new ParameterStatus(pv.getStatus()));
+                pv.setAcquisitionStatus(AcquisitionStatus.EXPIRED);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<ParameterValue> getAllValues(Parameter pdef) {
+        return getAllValues(pdef, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public List<ParameterValue> getAllValues(Parameter pdef, long start, long stop) {
+        List<ParameterValue> result = new ArrayList<>();
+        int n = 0;
+        for (ParameterId p : getParameterIds(pdef)) {
+            for (ParameterGroup group : groups.values()) {
+                int col = group.pids.search(p.id);
+                if (col >= 0) {
+                    n++;
+                    group.retrieveAll(p.pdef, col, start, stop, result);
+                }
+            }
+        }
+        if (result.isEmpty()) {
+            return null;
+        }
+        // if values are retrieved from multiple groups, we need to sort them by generation time
+        // (in reverse order such that the newest is first)
+        if (n > 1) {
+            Collections.sort(result, (pv1, pv2) -> Long.compare(pv2.getGenerationTime(), pv1.getGenerationTime()));
+        }
+        return result;
+    }
+
+    private List<ParameterId> getParameterIds(Parameter pdef) {
+        List<ParameterId> result = new ArrayList<>();
+        Map<Integer, Integer> m;
+        synchronized (pidMap) {
+            m = pidMap.get(pdef);
+            if (m != null) {
+                for (Map.Entry<Integer, Integer> me : m.entrySet()) {
+                    int type = me.getKey();
+                    result.add(new ParameterId(pdef, me.getValue(), SimpleParameterIdMap.getRawType(type),
+                            SimpleParameterIdMap.getEngType(type)));
+                }
+            }
+        }
+        if (m == null && !cacheConfig.cacheAll) {
+            parametersToCache.put(pdef, Boolean.TRUE);
+        }
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        groups.clear();
+    }
+
+    /**
+     * size in bytes of a value of the given type stored in the off-heap buffer or -1 if the value is kept on the heap
+     */
+    static int fixedSize(Type type) {
+        switch (type) {
+        case BOOLEAN:
+            return 1;
+        case FLOAT:
+        case SINT32:
+        case UINT32:
+            return 4;
+        case DOUBLE:
+        case SINT64:
+        case UINT64:
+        case TIMESTAMP:
+            return 8;
+        default:
+            return -1;
+        }
+    }
+
+    /**
+     * The list of blocks storing the values of a group of parameters.
+     * <p>
+     * For each parameter (column), the position of the acquisition time, engineering and raw value columns inside the
+     * block buffer, or if the values are kept on the heap, the index of the heap column is computed when the group is
+     * created.
+     */
+    class ParameterGroup {
+        final SortedIntArray pids;
+        final int numParams;
+        final Type[] engTypes;
+        final Type[] rawTypes;
+        // byte offset of the off-heap columns inside the buffer; -1 if the column does not exist or is on the heap
+        final int[] acqPos;
+        final int[] engPos;
+        final int[] rawPos;
+        // index of the heap columns; -1 if the value is stored off-heap or it does not exist
+        final int[] engHeap;
+        final int[] rawHeap;
+        final int numHeapColumns;
+        final int blockRows = OffHeapParameterCache.this.blockRows;
+        final int bufferSize;
+
+        volatile Block[] blocks = new Block[0];
+        // total number of rows in all blocks; only accessed by the writer
+        int numRows;
+
+        ParameterGroup(SortedIntArray pids, List<ParameterValue> sortedPvList) {
+            this.pids = pids;
+            this.numParams = pids.size();
+            engTypes = new Type[numParams];
+            rawTypes = new Type[numParams];
+            acqPos = new int[numParams];
+            engPos = new int[numParams];
+            rawPos = new int[numParams];
+            engHeap = new int[numParams];
+            rawHeap = new int[numParams];
+
+            int pos = 8 * blockRows; // the generation time column is at the beginning
+            int heapCol = 0;
+            for (int i = 0; i < numParams; i++) {
+                ParameterValue pv = sortedPvList.get(i);
+                acqPos[i] = pos;
+                pos += 8 * blockRows;
+
+                engTypes[i] = pv.getEngType();
+                engPos[i] = engHeap[i] = -1;
+                if (engTypes[i] != null) {
+                    int size = fixedSize(engTypes[i]);
+                    if (size > 0) {
+                        engPos[i] = pos;
+                        pos += size * blockRows;
+                    } else {
+                        engHeap[i] = heapCol++;
+                    }
+                }
+
+                rawTypes[i] = pv.getRawType();
+                rawPos[i] = rawHeap[i] = -1;
+                if (rawTypes[i] != null) {
+                    int size = fixedSize(rawTypes[i]);
+                    if (size > 0) {
+                        rawPos[i] = pos;
+                        pos += size * blockRows;
+                    } else {
+                        rawHeap[i] = heapCol++;
+                    }
+                }
+            }
+            this.numHeapColumns = heapCol;
+            this.bufferSize = pos;
+        }
+
+        Block lastBlock() {
+            Block[] b = blocks;
+            return b.length == 0 ? null : b[b.length - 1];
+        }
+
+        synchronized void add(long t, List<ParameterValue> sortedPvList) {
+            Block[] b = blocks;
+            Block last = b.length == 0 ? null : b[b.length - 1];
+            if (last != null) {
+                if (t < last.lastTime()) {
+                    // parameter older than the last one in the group -> ignore
+                    return;
+                }
+                if (last.numRows == blockRows || t - last.firstTime >= sliceDuration) {
+                    last = null;
+                }
+            }
+            if (last == null) {
+                // the block is published only after it contains one row
+                last = new Block(this, t);
+                last.add(t, sortedPvList);
+                b = expire(b, t);
+                Block[] b1 = new Block[b.length + 1];
+                System.arraycopy(b, 0, b1, 0, b.length);
+                b1[b.length] = last;
+                blocks = b1;
+            } else {
+                last.add(t, sortedPvList);
+            }
+            numRows++;
+        }
+
+        /**
+         * returns the blocks remaining after removing the old blocks: a block is removed if the next block starts
+         * before the cache duration from t or if keeping it, the new block could bring the number of rows above
+         * maxNumEntries
+         */
+        private Block[] expire(Block[] b, long t) {
+            int k = 0;
+            while (k < b.length) {
+                boolean tooOld = k + 1 < b.length && b[k + 1].firstTime <= t - cacheConfig.maxDuration;
+                boolean tooMany = numRows + blockRows > cacheConfig.maxNumEntries;
+                if (!tooOld && !tooMany) {
+                    break;
+                }
+                numRows -= b[k].numRows;
+                k++;
+            }
+            if (k == 0) {
+                return b;
+            }
+            Block[] b1 = new Block[b.length - k];
+            System.arraycopy(b, k, b1, 0, b1.length);
+            return b1;
+        }
+
+        void retrieveAll(Parameter pdef, int col, long start, long stop, List<ParameterValue> result) {
+            Block[] b = blocks;
+            for (int k = b.length - 1; k >= 0; k--) {
+                Block block = b[k];
+                if (block.firstTime > stop) {
+                    continue;
+                }
+                for (int row = block.numRows - 1; row >= 0; row--) {
+                    long t = block.getGenerationTime(row);
+                    if (t <= start) {
+                        return;
+                    }
+                    if (t <= stop) {
+                        result.add(block.getParameterValue(pdef, col, row));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Append-only block of values.
+     * <p>
+     * The writer fills a row and then increments the volatile {@link #numRows}; the readers access only the rows below
+     * numRows using absolute get operations on the buffer.
+     */
+    static class Block {
+        final ParameterGroup group;
+        final long firstTime;
+        final ByteBuffer buf;
+        final ParameterStatus[][] status;
+        final Object[][] heapColumns;
+        volatile int numRows;
+
+        Block(ParameterGroup group, long firstTime) {
+            this.group = group;
+            this.firstTime = firstTime;
+            int n = group.blockRows;
+            this.buf = ByteBuffer.allocateDirect(group.bufferSize);
+            this.status = new ParameterStatus[group.numParams][n];
+            this.heapColumns = new Object[group.numHeapColumns][n];
+        }
+
+        long getGenerationTime(int row) {
+            return buf.getLong(8 * row);
+        }
+
+        long lastTime() {
+            return getGenerationTime(numRows - 1);
+        }
+
+        // called with the group lock held
+        void add(long t, List<ParameterValue> sortedPvList) {
+            int row = numRows;
+            buf.putLong(8 * row, t);
+            for (int i = 0; i < group.numParams; i++) {
+                ParameterValue pv = sortedPvList.get(i);
+                buf.putLong(group.acqPos[i] + 8 * row, pv.getAcquisitionTime());
+                if (group.engTypes[i] != null) {
+                    store(pv, false, group.engTypes[i], group.engPos[i], group.engHeap[i], row);
+                }
+                if (group.rawTypes[i] != null) {
+                    store(pv, true, group.rawTypes[i], group.rawPos[i], group.rawHeap[i], row);
+                }
+                ParameterStatus st = pv.getStatus();
+                if (row > 0 && st.equals(status[i][row - 1])) { // avoid filling up memory with identical statuses
+                    st = status[i][row - 1];
+                }
+                status[i][row] = st;
+            }
+            numRows = row + 1;
+        }
+
+        private void store(ParameterValue pv, boolean raw, Type type, int pos, int heapCol, int row) {
+            switch (type) {
+            case BOOLEAN:
+                buf.put(pos + row, (byte) (getValue(pv, raw).getBooleanValue() ? 1 : 0));
+                break;
+            case FLOAT:
+                buf.putFloat(pos + 4 * row, (float) (raw ? pv.getRawDouble() : pv.getEngDouble()));
+                break;
+            case SINT32:
+            case UINT32:
+                buf.putInt(pos + 4 * row, (int) (raw ? pv.getRawLong() : pv.getEngLong()));
+                break;
+            case DOUBLE:
+                buf.putDouble(pos + 8 * row, raw ? pv.getRawDouble() : pv.getEngDouble());
+                break;
+            case SINT64:
+            case UINT64:
+                buf.putLong(pos + 8 * row, raw ? pv.getRawLong() : pv.getEngLong());
+                break;
+            case TIMESTAMP:
+                buf.putLong(pos + 8 * row, getValue(pv, raw).getTimestampValue());
+                break;
+            case STRING:
+                heapColumns[heapCol][row] = getValue(pv, raw).getStringValue();
+                break;
+            case BINARY:
+                heapColumns[heapCol][row] = getValue(pv, raw).getBinaryValue();
+                break;
+            default:
+                heapColumns[heapCol][row] = getValue(pv, raw);
+            }
+        }
+
+        private static Value getValue(ParameterValue pv, boolean raw) {
+            return raw ? pv.getRawValue() : pv.getEngValue();
+        }
+
+        ParameterValue getParameterValue(Parameter pdef, int col, int row) {
+            ParameterValue pv = new ParameterValue(pdef);
+            if (group.rawTypes[col] != null) {
+                setRawValue(pv, group.rawTypes[col], group.rawPos[col], group.rawHeap[col], row);
+            }
+            if (group.engTypes[col] != null) {
+                setEngValue(pv, group.engTypes[col], group.engPos[col], group.engHeap[col], row);
+            }
+            pv.setGenerationTime(getGenerationTime(row));
+            pv.setAcquisitionTime(buf.getLong(group.acqPos[col] + 8 * row));
+            pv.setStatus(status[col][row]);
+            return pv;
+        }
+
+        private void setEngValue(ParameterValue pv, Type type, int pos, int heapCol, int row) {
+            switch (type) {
+            case BOOLEAN:
+                pv.setBooleanValue(buf.get(pos + row) != 0);
+                break;
+            case FLOAT:
+                pv.setFloatValue(buf.getFloat(pos + 4 * row));
+                break;
+            case SINT32:
+                pv.setSignedIntegerValue(buf.getInt(pos + 4 * row));
+                break;
+            case UINT32:
+                pv.setUnsignedIntegerValue(buf.getInt(pos + 4 * row));
+                break;
+            case DOUBLE:
+                pv.setDoubleValue(buf.getDouble(pos + 8 * row));
+                break;
+            case SINT64:
+                pv.setSignedLongValue(buf.getLong(pos + 8 * row));
+                break;
+            case UINT64:
+                pv.setUnsignedLongValue(buf.getLong(pos + 8 * row));
+                break;
+            case TIMESTAMP:
+                pv.setEngValue(ValueUtility.getTimestampValue(buf.getLong(pos + 8 * row)));
+                break;
+            case STRING:
+                pv.setStringValue((String) heapColumns[heapCol][row]);
+                break;
+            case BINARY:
+                pv.setBinaryValue((byte[]) heapColumns[heapCol][row]);
+                break;
+            default:
+                pv.setEngValue((Value) heapColumns[heapCol][row]);
+            }
+        }
+
+        private void setRawValue(ParameterValue pv, Type type, int pos, int heapCol, int row) {
+            switch (type) {
+            case BOOLEAN:
+                pv.setRawValue(buf.get(pos + row) != 0);
+                break;
+            case FLOAT:
+                pv.setRawFloatValue(buf.getFloat(pos + 4 * row));
+                break;
+            case SINT32:
+                pv.setRawSignedInteger(buf.getInt(pos + 4 * row));
+                break;
+            case UINT32:
+                pv.setRawUnsignedInteger(buf.getInt(pos + 4 * row));
+                break;
+            case DOUBLE:
+                pv.setRawDoubleValue(buf.getDouble(pos + 8 * row));
+                break;
+            case SINT64:
+                pv.setRawSignedLong(buf.getLong(pos + 8 * row));
+                break;
+            case UINT64:
+                pv.setRawUnsignedLong(buf.getLong(pos + 8 * row));
+                break;
+            case TIMESTAMP:
+                pv.setRawValue(ValueUtility.getTimestampValue(buf.getLong(pos + 8 * row)));
+                break;
+            case STRING:
+                pv.setRawValue((String) heapColumns[heapCol][row]);
+                break;
+            case BINARY:
+                pv.setRawValue((byte[]) heapColumns[heapCol][row]);
+                break;
+            default:
+                pv.setRawValue((Value) heapColumns[heapCol][row]);
+            }
+        }
+    }
+}
@@ -6,19 +6,38 @@ import org.yamcs.YConfiguration;
 import org.yamcs.logging.Log;
 
 public class ParameterCacheConfig {
-   
+    /**
+     * The available cache implementations
+     */
+    public enum Implementation {
+        /**
+         * {@link ArrayParameterCache}
+         */
+        ARRAY,
+        /**
+         * {@link OffHeapParameterCache}
+         */
+        OFFHEAP
+    }
 
     final boolean enabled;
     final boolean cacheAll;
     //maximum duration of the cache
     final long maxDuration;
     final int maxNumEntries;
-    
+    final Implementation implementation;
+
     public ParameterCacheConfig(boolean enabled, boolean cacheAll, long duration, int maxNumEntries) {
+        this(enabled, cacheAll, duration, maxNumEntries, Implementation.ARRAY);
+    }
+
+    public ParameterCacheConfig(boolean enabled, boolean cacheAll, long duration, int maxNumEntries,
+            Implementation implementation) {
         this.enabled = enabled;
         this.cacheAll = cacheAll;
         this.maxDuration = duration;
         this.maxNumEntries = maxNumEntries;
+        this.implementation = implementation;
     }
     
     public ParameterCacheConfig() {
@@ -26,6 +45,7 @@ public class ParameterCacheConfig {
         this.cacheAll = false;
         this.maxDuration = 0;
         this.maxNumEntries = 0;
+        this.implementation = Implementation.ARRAY;
     }
 
     public ParameterCacheConfig(YConfiguration cacheConfig, Log log) {
@@ -43,11 +63,12 @@ public class ParameterCacheConfig {
         cacheAll = cacheConfig.getBoolean("cacheAll", false);
         maxDuration = 1000L * cacheConfig.getInt("duration", 300);
         maxNumEntries = cacheConfig.getInt("maxNumEntries", 512);
+        implementation = cacheConfig.getEnum("implementation", Implementation.class, Implementation.ARRAY);
     }
 
     @Override
     public String toString() {
         return "ParameterCacheConfig [enabled=" + enabled + ", cacheAll=" + cacheAll + ", maxDuration=" + maxDuration
-                + ", maxNumEntries=" + maxNumEntries + "]";
+                + ", maxNumEntries=" + maxNumEntries + ", implementation=" + implementation + "]";
     }
 }
@@ -1,5 +1,6 @@
 package org.yamcs.parameter;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
@@ -13,6 +14,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.yamcs.ConfigurationException;
 import org.yamcs.InvalidIdentification;
 import org.yamcs.Processor;
+import org.yamcs.alarms.AlarmNotification;
 import org.yamcs.alarms.AlarmServer;
 import org.yamcs.alarms.ParameterAlarmStreamer;
 import org.yamcs.logging.Log;
@@ -92,7 +94,11 @@ public class ParameterProcessorManager extends AbstractService implements Parame
         }
 
         if (cacheConfig.enabled) {
-            parameterCache = new ArrayParameterCache(proc.getInstance(), cacheConfig);
+            if (cacheConfig.implementation == ParameterCacheConfig.Implementation.OFFHEAP) {
+                parameterCache = new OffHeapParameterCache(proc.getInstance(), cacheConfig);
+            } else {
+                parameterCache = new ArrayParameterCache(proc.getInstance(), cacheConfig);
+            }
         }
         prm = new ParameterRequestManager(this);
     }
@@ -211,8 +217,10 @@ public class ParameterProcessorManager extends AbstractService implements Parame
     public void process(ProcessingData processingData) {
         ParameterValueList pvlist = processingData.getTmParams();
         log.trace("Received TM data with {} parameters", pvlist.size);
+        // collects the alarm notifications from the whole delivery, they are published at the end
+        List<AlarmNotification<ParameterValue>> alarmBatch = new ArrayList<>();
         if (alarmChecker != null) {
-            alarmChecker.performAlarmChecking(processingData, pvlist.iterator());
+            alarmChecker.performAlarmChecking(processingData, pvlist.iterator(), alarmBatch);
         }
         BitSet bitset = new BitSet();
         bitset.or(subscribeAll);
@@ -237,7 +245,7 @@ public class ParameterProcessorManager extends AbstractService implements Parame
 
             for (int id = bitset.nextSetBit(0); id != -1; id = bitset.nextSetBit(id + 1)) {
                 finished = false;
-                sendToProcessor(parameterProcessors[id], processingData);
+                sendToProcessor(parameterProcessors[id], processingData, alarmBatch);
             }
 
             // check the new parameters added in the loop above
@@ -264,10 +272,15 @@ public class ParameterProcessorManager extends AbstractService implements Parame
             parameterCache.update(pvlist);
         }
         lastValueCache.addAll(pvlist);
+
+        if (parameterAlarmServer != null) {
+            parameterAlarmServer.publish(alarmBatch);
+        }
     }
 
     // sends the parameter to processor
-    private void sendToProcessor(ParameterProcessor paramProcessor, ProcessingData processingData) {
+    private void sendToProcessor(ParameterProcessor paramProcessor, ProcessingData processingData,
+            List<AlarmNotification<ParameterValue>> alarmBatch) {
         log.trace("Sending data to parameter processor {}", paramProcessor.getClass());
         ParameterValueList pvlist = processingData.getTmParams();
 
@@ -279,7 +292,7 @@ public class ParameterProcessorManager extends AbstractService implements Parame
             log.error("Parameter processor exception ", e);
         }
         if (alarmChecker != null) {
-            alarmChecker.performAlarmChecking(processingData, tailIt);
+            alarmChecker.performAlarmChecking(processingData, tailIt, alarmBatch);
         }
     }
 
@@ -378,7 +391,8 @@ public class ParameterProcessorManager extends AbstractService implements Parame
                 notifyFailed(new ConfigurationException("Cannot find a stream named '" + REALTIME_ALARM_SERVER + "'"));
                 return;
             }
-            parameterAlarmServer.addAlarmListener(new ParameterAlarmStreamer(s));
+            // the alarms are recorded from the processor timer thread such that the processing is not blocked
+            parameterAlarmServer.addAlarmListener(new ParameterAlarmStreamer(s, processor.getTimer()));
             parameterAlarmServer.startAsync();
         }
 
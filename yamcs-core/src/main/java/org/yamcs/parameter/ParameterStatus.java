@@ -1,14 +1,38 @@
 package org.yamcs.parameter;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.yamcs.protobuf.Mdb.AlarmLevelType;
 import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
 import org.yamcs.protobuf.Pvalue.MonitoringResult;
 import org.yamcs.protobuf.Pvalue.RangeCondition;
 import org.yamcs.xtce.util.DoubleRange;
 
+/**
+ * Status of a parameter value: acquisition status, monitoring results, alarm ranges and expiration.
+ * <p>
+ * Most parameter values only have the acquisition status and possibly the expiration set; for those, shared instances
+ * are obtained with {@link #getSharedStatus(AcquisitionStatus, long)} instead of allocating a new object for each
+ * value. The shared instances cannot be modified, {@link BasicParameterValue} copies them before modification.
+ */
 public class ParameterStatus {
-    public static final ParameterStatus NOMINAL = new ParameterStatus();
+    static final AcquisitionStatus[] ACQ_STATUS_VALUES = AcquisitionStatus.values();
+    // shared instances without expiration, indexed by the acquisition status ordinal
+    static final ParameterStatus[] SHARED = new ParameterStatus[ACQ_STATUS_VALUES.length];
+    static {
+        for (AcquisitionStatus as : ACQ_STATUS_VALUES) {
+            SHARED[as.ordinal()] = new ParameterStatus(as, -1, true);
+        }
+    }
+    public static final ParameterStatus NOMINAL = SHARED[AcquisitionStatus.ACQUIRED.ordinal()];
 
+    // shared instances with expiration; there are normally only a few different expiration values (one per container
+    // rate in stream) but we limit the size of the map just in case
+    static final int MAX_SHARED_EXPIRATIONS = 1024;
+    static final Map<Long, ParameterStatus[]> sharedWithExpiration = new ConcurrentHashMap<>();
+
+    private final boolean shared;
 
     private AcquisitionStatus acquisitionStatus = AcquisitionStatus.ACQUIRED;
     private MonitoringResult monitoringResult;
@@ -24,10 +48,91 @@ public class ParameterStatus {
     //-1 means it's not set.
     private long expireMillis = -1;
 
+    public ParameterStatus() {
+        this.shared = false;
+    }
+
+    /**
+     * Copy constructor; the new object is not shared even if the original one is.
+     */
+    public ParameterStatus(ParameterStatus other) {
+        this.shared = false;
+        this.acquisitionStatus = other.acquisitionStatus;
+        this.monitoringResult = other.monitoringResult;
+        this.deltaMonitoringResult = other.deltaMonitoringResult;
+        this.rangeCondition = other.rangeCondition;
+        this.watchRange = other.watchRange;
+        this.warningRange = other.warningRange;
+        this.distressRange = other.distressRange;
+        this.criticalRange = other.criticalRange;
+        this.severeRange = other.severeRange;
+        this.expireMillis = other.expireMillis;
+    }
+
+    private ParameterStatus(AcquisitionStatus acquisitionStatus, long expireMillis, boolean shared) {
+        this.acquisitionStatus = acquisitionStatus;
+        this.expireMillis = expireMillis;
+        this.shared = shared;
+    }
+
+    /**
+     * Returns a status having only the acquisition status and the expiration set. The returned object is normally
+     * shared and cannot be modified.
+     * 
+     * @param acquisitionStatus
+     * @param expireMillis
+     *            -1 if the expiration is not set
+     * @return
+     */
+    public static ParameterStatus getSharedStatus(AcquisitionStatus acquisitionStatus, long expireMillis) {
+        if (expireMillis == -1) {
+            return SHARED[acquisitionStatus.ordinal()];
+        }
+        ParameterStatus[] a = sharedWithExpiration.get(expireMillis);
+        if (a == null) {
+            if (sharedWithExpiration.size() >= MAX_SHARED_EXPIRATIONS) {
+                return new ParameterStatus(acquisitionStatus, expireMillis, false);
+            }
+            a = sharedWithExpiration.computeIfAbsent(expireMillis, em -> {
+                ParameterStatus[] a1 = new ParameterStatus[ACQ_STATUS_VALUES.length];
+                for (AcquisitionStatus as : ACQ_STATUS_VALUES) {
+                    a1[as.ordinal()] = new ParameterStatus(as, em, true);
+                }
+                return a1;
+            });
+        }
+        return a[acquisitionStatus.ordinal()];
+    }
+
+    /**
+     * 
+     * @return true if this object is shared between multiple parameter values and cannot be modified
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * 
+     * @return true if only the acquisition status and the expiration are set
+     */
+    public boolean isSimple() {
+        return monitoringResult == null && deltaMonitoringResult == null && rangeCondition == null
+                && watchRange == null && warningRange == null && distressRange == null && criticalRange == null
+                && severeRange == null;
+    }
+
+    private void checkModifiable() {
+        if (shared) {
+            throw new UnsupportedOperationException("Shared parameter status cannot be modified");
+        }
+    }
+
     public AcquisitionStatus getAcquisitionStatus() {
         return acquisitionStatus;
     }
     public void setAcquisitionStatus(AcquisitionStatus acquisitionStatus) {
+        checkModifiable();
         this.acquisitionStatus = acquisitionStatus;
     }
 
@@ -35,51 +140,60 @@ public class ParameterStatus {
         return monitoringResult;
     }
     public void setMonitoringResult(MonitoringResult monitoringResult) {
+        checkModifiable();
         this.monitoringResult = monitoringResult;
     }
     public MonitoringResult getDeltaMonitoringResult() {
         return deltaMonitoringResult;
     }
     public void setDeltaMonitoringResult(MonitoringResult deltaMonitoringResult) {
+        checkModifiable();
         this.deltaMonitoringResult = deltaMonitoringResult;
     }
     public RangeCondition getRangeCondition() {
         return rangeCondition;
     }
     public void setRangeCondition(RangeCondition rangeCondition) {
+        checkModifiable();
         this.rangeCondition = rangeCondition;
     }
     public DoubleRange getWatchRange() {
         return watchRange;
     }
     public void setWatchRange(DoubleRange watchRange) {
+        checkModifiable();
         this.watchRange = watchRange;
     }
     public DoubleRange getWarningRange() {
         return warningRange;
     }
     public void setWarningRange(DoubleRange warningRange) {
+        checkModifiable();
         this.warningRange = warningRange;
     }
     public DoubleRange getDistressRange() {
         return distressRange;
     }
     public void setDistressRange(DoubleRange distressRange) {
+        checkModifiable();
         this.distressRange = distressRange;
     }
     public DoubleRange getCriticalRange() {
         return criticalRange;
     }
     public void setCriticalRange(DoubleRange criticalRange) {
+        checkModifiable();
         this.criticalRange = criticalRange;
     }
     public DoubleRange getSevereRange() {
         return severeRange;
     }
     public void setSevereRange(DoubleRange severeRange) {
+        checkModifiable();
         this.severeRange = severeRange;
     }
     public void setExpireMillis(long em) {
+        checkModifiable();
         this.expireMillis = em;
     }
 
@@ -117,6 +117,7 @@ public class ParameterValue extends BasicParameterValue {
                 gpvb.setAcquisitionTimeUTC(TimeEncoding.toString(getAcquisitionTime()));
             }
         }
+        Value engValue = getEngValue();
         if (engValue != null) {
             gpvb.setEngValue(ValueUtility.toGbp(engValue));
         }
@@ -151,6 +152,7 @@ public class ParameterValue extends BasicParameterValue {
             gpvb.addAlarmRange(toGpbAlarmRange(AlarmLevelType.SEVERE, getSevereRange()));
         }
 
+        Value rawValue = getRawValue();
         if (rawValue != null) {
             gpvb.setRawValue(ValueUtility.toGbp(rawValue));
         }
@@ -181,11 +183,11 @@ public class ParameterValue extends BasicParameterValue {
             sb.append(paramFqn);
         }
         sb.append(" genTime: {").append(TimeEncoding.toString(generationTime)).append("}");
-        if (rawValue != null) {
-            sb.append(" rawValue: {").append(rawValue.toString()).append("}");
+        if (hasRawValue()) {
+            sb.append(" rawValue: {").append(getRawValue().toString()).append("}");
         }
-        if (engValue != null) {
-            sb.append(" engValue: {").append(engValue.toString()).append("}");
+        if (hasEngValue()) {
+            sb.append(" engValue: {").append(getEngValue().toString()).append("}");
         }
         return sb.toString();
     }
@@ -1,19 +1,32 @@
 package org.yamcs.parameter;
 
 import org.yamcs.commanding.ArgumentValue;
+import org.yamcs.protobuf.Yamcs.Value.Type;
 import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.ValueUtility;
 
 /**
  * Abstract class storing a raw value, engineering value and a generation time.
  * <p>
  * It used as base class by {@link ParameterValue} and {@link ArgumentValue}
+ * <p>
+ * The numeric values set with the primitive setters (e.g. {@link #setDoubleValue(double)}) are stored inline and the
+ * corresponding {@link Value} object is only created when {@link #getEngValue()} or {@link #getRawValue()} is called.
+ * The consumers able to work with primitives can use {@link #getEngType()} together with {@link #getEngLong()} or
+ * {@link #getEngDouble()} (respectively the raw equivalents) to avoid the creation.
  *
  */
 public abstract class RawEngValue {
-    protected Value rawValue;
-    protected Value engValue;
+    private Value rawValue;
+    private Value engValue;
     protected long generationTime = TimeEncoding.INVALID_INSTANT;
 
+    // if the type is not null and the value is null, the value is stored in the bits
+    private Type rawType;
+    private long rawBits;
+    private Type engType;
+    private long engBits;
+
     public RawEngValue() {
     }
 
@@ -21,15 +34,88 @@ public abstract class RawEngValue {
     public RawEngValue(RawEngValue pv) {
         this.rawValue = pv.rawValue;
         this.engValue = pv.engValue;
+        this.rawType = pv.rawType;
+        this.rawBits = pv.rawBits;
+        this.engType = pv.engType;
+        this.engBits = pv.engBits;
         this.generationTime = pv.generationTime;
     }
 
     public Value getEngValue() {
-        return engValue;
+        Value v = engValue;
+        if (v == null && engType != null) {
+            // concurrent callers may create different but equal objects
+            v = toValue(engType, engBits);
+            engValue = v;
+        }
+        return v;
     }
 
     public Value getRawValue() {
-        return rawValue;
+        Value v = rawValue;
+        if (v == null && rawType != null) {
+            v = toValue(rawType, rawBits);
+            rawValue = v;
+        }
+        return v;
+    }
+
+    /**
+     * 
+     * @return the type of the engineering value or null if there is no engineering value
+     */
+    public Type getEngType() {
+        Value v = engValue;
+        return v == null ? engType : v.getType();
+    }
+
+    /**
+     * 
+     * @return the type of the raw value or null if there is no raw value
+     */
+    public Type getRawType() {
+        Value v = rawValue;
+        return v == null ? rawType : v.getType();
+    }
+
+    /**
+     * Returns the engineering value of an integer type (SINT32, UINT32, SINT64, UINT64) without creating a
+     * {@link Value} object. For the 32 bits types, the int value (as returned by {@link Value#getUint32Value()} or
+     * {@link Value#getSint32Value()}) is returned.
+     * 
+     * @throws UnsupportedOperationException
+     *             if the engineering value is not of an integer type
+     */
+    public long getEngLong() {
+        Value v = engValue;
+        return v == null ? toLong(engType, engBits) : toLong(v);
+    }
+
+    /**
+     * Returns the engineering value of a FLOAT or DOUBLE type without creating a {@link Value} object.
+     * 
+     * @throws UnsupportedOperationException
+     *             if the engineering value is not of a floating point type
+     */
+    public double getEngDouble() {
+        Value v = engValue;
+        return v == null ? toDouble(engType, engBits) : toDouble(v);
+    }
+
+    /**
+     * Same as {@link #getEngLong()} but for the raw value.
+     */
+    public long getRawLong() {
+        Value v = rawValue;
+        return v == null ? toLong(rawType, rawBits) : toLong(v);
+    }
+
+    /**
+     * Same as {@link #getEngDouble()} but for the raw value.
+     */
+    public double getRawDouble() {
+        Value v = rawValue;
+        return v == null ? toDouble(rawType, rawBits) : toDouble(v);
     }
 
     public long getGenerationTime() {
@@ -38,6 +124,7 @@ public abstract class RawEngValue {
 
     public void setRawValue(Value rv) {
         this.rawValue = rv;
+        this.rawType = null;
     }
 
     public void setGenerationTime(long instant) {
@@ -45,79 +132,89 @@ public abstract class RawEngValue {
     }
 
     public void setRawValue(byte[] b) {
-        rawValue = new BinaryValue(b);
+        setRawValue(new BinaryValue(b));
     }
 
     public void setRawFloatValue(float f) {
-        rawValue = new FloatValue(f);
+        setRaw(Type.FLOAT, Float.floatToRawIntBits(f));
     }
 
     public void setRawDoubleValue(double d) {
-        rawValue = new DoubleValue(d);
+        setRaw(Type.DOUBLE, Double.doubleToRawLongBits(d));
     }
 
     public void setRawValue(boolean b) {
-        rawValue = new BooleanValue(b);
+        setRawValue(ValueUtility.getBooleanValue(b));
     }
 
     public void setRawValue(String s) {
-        rawValue = new StringValue(s);
+        setRawValue(new StringValue(s));
     }
 
     public void setRawSignedInteger(int x) {
-        rawValue = new SInt32Value(x);
+        setRaw(Type.SINT32, x);
     }
 
     public void setRawUnsignedInteger(int x) {
-        rawValue = new UInt32Value(x);
+        setRaw(Type.UINT32, x);
     }
 
     public void setRawSignedLong(long x) {
-        rawValue = new SInt64Value(x);
+        setRaw(Type.SINT64, x);
     }
 
     public void setRawUnsignedLong(long x) {
-        rawValue = new UInt64Value(x);
+        setRaw(Type.UINT64, x);
     }
 
     public void setStringValue(String s) {
-        engValue = new StringValue(s);
+        setEngValue(new StringValue(s));
     }
 
     public void setBinaryValue(byte[] v) {
-        engValue = new BinaryValue(v);
+        setEngValue(new BinaryValue(v));
     }
 
     public void setBooleanValue(boolean b) {
-        engValue = new BooleanValue(b);
+        setEngValue(ValueUtility.getBooleanValue(b));
     }
 
     public void setDoubleValue(double v) {
-        engValue = new DoubleValue(v);
+        setEng(Type.DOUBLE, Double.doubleToRawLongBits(v));
     }
 
     public void setFloatValue(float v) {
-        engValue = new FloatValue(v);
+        setEng(Type.FLOAT, Float.floatToRawIntBits(v));
     }
 
     public void setSignedIntegerValue(int v) {
-        engValue = new SInt32Value(v);
+        setEng(Type.SINT32, v);
     }
 
     public void setUnsignedIntegerValue(int v) {
-        engValue = new UInt32Value(v);
+        setEng(Type.UINT32, v);
     }
 
     public void setSignedLongValue(long v) {
-        engValue = new SInt64Value(v);
+        setEng(Type.SINT64, v);
     }
 
     public void setUnsignedLongValue(long v) {
-        engValue = new UInt64Value(v);
+        setEng(Type.UINT64, v);
     }
 
     public void setEngValue(Value ev) {
         this.engValue = ev;
+        this.engType = null;
+    }
+
+    /**
+     * Sets the engineering value to be the same as the raw value, without creating any {@link Value} object.
+     */
+    public void setEngValueFromRaw() {
+        this.engValue = rawValue;
+        this.engType = rawType;
+        this.engBits = rawBits;
     }
 
     @Deprecated
@@ -126,10 +223,99 @@ public abstract class RawEngValue {
      * @deprecated use {@link #setEngValue(Value)} (for consistency with the getter)
      */
     public void setEngineeringValue(Value ev) {
-        this.engValue = ev;
+        setEngValue(ev);
+    }
+
+    private void setRaw(Type type, long bits) {
+        this.rawValue = null;
+        this.rawType = type;
+        this.rawBits = bits;
+    }
+
+    private void setEng(Type type, long bits) {
+        this.engValue = null;
+        this.engType = type;
+        this.engBits = bits;
+    }
+
+    private static Value toValue(Type type, long bits) {
+        switch (type) {
+        case SINT32:
+            return new SInt32Value((int) bits);
+        case UINT32:
+            return new UInt32Value((int) bits);
+        case SINT64:
+            return new SInt64Value(bits);
+        case UINT64:
+            return new UInt64Value(bits);
+        case FLOAT:
+            return new FloatValue(Float.intBitsToFloat((int) bits));
+        case DOUBLE:
+            return new DoubleValue(Double.longBitsToDouble(bits));
+        default:
+            throw new IllegalStateException("Unexpected type " + type);
+        }
+    }
+
+    private static long toLong(Type type, long bits) {
+        if (type == Type.SINT32 || type == Type.UINT32 || type == Type.SINT64 || type == Type.UINT64) {
+            return bits;
+        }
+        throw new UnsupportedOperationException("Cannot get a long from a " + type + " value");
+    }
+
+    private static long toLong(Value v) {
+        switch (v.getType()) {
+        case SINT32:
+            return v.getSint32Value();
+        case UINT32:
+            return v.getUint32Value();
+        case SINT64:
+            return v.getSint64Value();
+        case UINT64:
+            return v.getUint64Value();
+        default:
+            throw new UnsupportedOperationException("Cannot get a long from a " + v.getType() + " value");
+        }
+    }
+
+    private static double toDouble(Type type, long bits) {
+        if (type == Type.FLOAT) {
+            return Float.intBitsToFloat((int) bits);
+        } else if (type == Type.DOUBLE) {
+            return Double.longBitsToDouble(bits);
+        }
+        throw new UnsupportedOperationException("Cannot get a double from a " + type + " value");
+    }
+
+    private static double toDouble(Value v) {
+        switch (v.getType()) {
+        case FLOAT:
+            return v.getFloatValue();
+        case DOUBLE:
+            return v.getDoubleValue();
+        default:
+            throw new UnsupportedOperationException("Cannot get a double from a " + v.getType() + " value");
+        }
     }
 
     public boolean hasGenerationTime() {
         return generationTime != TimeEncoding.INVALID_INSTANT;
     }
+
+    /**
+     * 
+     * @return true if there is a raw value (stored inline or as a {@link Value} object)
+     */
+    public boolean hasRawValue() {
+        return rawValue != null || rawType != null;
+    }
+
+    /**
+     * 
+     * @return true if there is an engineering value (stored inline or as a {@link Value} object)
+     */
+    public boolean hasEngValue() {
+        return engValue != null || engType != null;
+    }
 }
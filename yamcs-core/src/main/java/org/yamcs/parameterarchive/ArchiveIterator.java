@@ -36,6 +36,12 @@ import org.yamcs.yarch.rocksdb.DescendingRangeIterator;
  * 
  * <p>
  * The iterator also sends data from RealtimeFiller if that is enabled.
+ * <p>
+ * The partitions which certainly do not contain data for the parameter and group are skipped without opening a
+ * RocksDB iterator, see {@link PartitionSummary}.
+ * <p>
+ * If the parameter archive has a {@link SegmentCache}, the decoded segments are looked up in the cache before being
+ * read from the database.
  * 
  *
  */
@@ -72,6 +78,7 @@ public class ArchiveIterator implements AutoCloseable {
         this.retrieveParameterStatus = req.isRetrieveParameterStatus();
 
         partitions = parchive.getPartitions(getIntervalStart(req.start), getIntervalEnd(req.stop), req.ascending);
+        partitions.removeIf(p -> !parchive.mightContain(p, parameterId, parameterGroupId));
         topIt = partitions.iterator();
         rangeStart = new SegmentKey(parameterId, parameterGroupId, ParameterArchive.getIntervalStart(req.start),
                 (byte) 0).encode();
@@ -163,14 +170,16 @@ public class ArchiveIterator implements AutoCloseable {
         final Partition partition;
         private SegmentKey currentKey;
         SegmentEncoderDecoder segmentEncoder = new SegmentEncoderDecoder();
-        private byte[] currentEngValueSegment;
-        private byte[] currentRawValueSegment;
-        private byte[] currentStatusSegment;
+        final SegmentCache segmentCache;
+        private ValueSegment currentEngValueSegment;
+        private ValueSegment currentRawValueSegment;
+        private ParameterStatusSegment currentStatusSegment;
         DbIterator dbIterator;
         boolean valid;
 
         public PartitionIterator(Partition partition) {
             this.partition = partition;
+            this.segmentCache = parchive.getSegmentCache();
             RocksIterator iterator;
             try {
                 iterator = parchive.getIterator(partition);
@@ -190,6 +199,9 @@ public class ArchiveIterator implements AutoCloseable {
                 valid = false;
                 return;
             }
+            currentEngValueSegment = null;
+            currentRawValueSegment = null;
+            currentStatusSegment = null;
             if (ascending) {
                 nextAscending();
             } else {
@@ -231,13 +243,29 @@ public class ArchiveIterator implements AutoCloseable {
 
         private void loadSegment(byte type) {
             if ((type == SegmentKey.TYPE_ENG_VALUE) && (retrieveEngValues || retrieveRawValues)) {
-                currentEngValueSegment = dbIterator.value();
+                currentEngValueSegment = (ValueSegment) getSegment(type);
             }
             if ((type == SegmentKey.TYPE_RAW_VALUE) && retrieveRawValues) {
-                currentRawValueSegment = dbIterator.value();
+                currentRawValueSegment = (ValueSegment) getSegment(type);
             }
             if ((type == SegmentKey.TYPE_PARAMETER_STATUS) && retrieveParameterStatus) {
-                currentStatusSegment = dbIterator.value();
+                currentStatusSegment = (ParameterStatusSegment) getSegment(type);
+            }
+        }
+
+        private BaseSegment getSegment(byte type) {
+            long segStart = currentKey.segmentStart;
+            try {
+                if (segmentCache != null) {
+                    return segmentCache.get(partition, parameterId, parameterGroupId, segStart, type,
+                            dbIterator::value);
+                } else {
+                    return segmentEncoder.decode(dbIterator.value(), segStart);
+                }
+            } catch (DecodingException e) {
+                throw new DatabaseCorruptionException(e);
+            } catch (RocksDBException | IOException e) {
+                throw new ParameterArchiveException("Failded extracting data from the parameter archive", e);
             }
         }
 
@@ -261,27 +289,17 @@ public class ArchiveIterator implements AutoCloseable {
                     throw new DatabaseCorruptionException(msg);
                 }
 
-                ValueSegment engValueSegment = null;
-                if (currentEngValueSegment != null) {
-                    engValueSegment = (ValueSegment) segmentEncoder.decode(currentEngValueSegment, segStart);
-                }
                 if (retrieveEngValues) {
-                    pvs.engValueSegment = engValueSegment;
+                    pvs.engValueSegment = currentEngValueSegment;
                 }
 
                 if (currentRawValueSegment != null) {
-                    pvs.rawValueSegment = (ValueSegment) segmentEncoder.decode(currentRawValueSegment, segStart);
+                    pvs.rawValueSegment = currentRawValueSegment;
                 } else if (retrieveRawValues) {
-                    pvs.rawValueSegment = engValueSegment;
+                    pvs.rawValueSegment = currentEngValueSegment;
                 }
 
-                if (currentStatusSegment != null) {
-                    pvs.parameterStatusSegment = (ParameterStatusSegment) segmentEncoder.decode(currentStatusSegment,
-                            segStart);
-                }
-
-            } catch (DecodingException e) {
-                throw new DatabaseCorruptionException(e);
+                pvs.parameterStatusSegment = currentStatusSegment;
             } catch (RocksDBException | IOException e) {
                 throw new ParameterArchiveException("Failded extracting data from the parameter archive", e);
             }
@@ -1,10 +1,17 @@
 package org.yamcs.parameterarchive;
 
+import static org.yamcs.yarch.rocksdb.RdbStorageEngine.TBS_INDEX_SIZE;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -22,19 +29,34 @@ import org.yamcs.YConfiguration;
 import org.yamcs.YamcsServer;
 import org.yamcs.Spec.OptionType;
 import org.yamcs.logging.Log;
+import org.rocksdb.RocksDBException;
 import org.yamcs.time.TimeService;
+import org.yamcs.utils.ByteArrayUtils;
 import org.yamcs.utils.TimeEncoding;
 import org.yamcs.yarch.Stream;
 import org.yamcs.yarch.StreamSubscriber;
 import org.yamcs.yarch.Tuple;
 import org.yamcs.yarch.YarchDatabase;
 import org.yamcs.yarch.YarchDatabaseInstance;
+import org.yamcs.yarch.YarchException;
+import org.yamcs.yarch.rocksdb.AscendingRangeIterator;
+import org.yamcs.yarch.rocksdb.Tablespace;
+import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord;
+import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord.Type;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Back-fills the parameter archive by triggering replays: - either regularly scheduled replays - or monitor data
  * streams (tm, param) and keep track of which segments have to be rebuild
+ * <p>
+ * Each filling job is split into chunks made of consecutive parameter archive intervals. The chunks are independent
+ * (each is rebuilt by its own replay starting warmupTime before the chunk) and they are processed in parallel by
+ * numThreads threads. The number of intervals in a chunk is chosen such that each thread gets a few chunks to
+ * process; small jobs have one interval per chunk.
+ * <p>
+ * The chunks not yet processed are persisted in the tablespace such that if Yamcs is stopped during a long rebuild,
+ * the remaining chunks are processed when the back filler is started again.
  * 
  * 
  * @author nm
@@ -60,17 +82,41 @@ public class BackFiller implements StreamSubscriber {
     // how often (in seconds) the fillup based on the stream monitoring is started
     long streamUpdateFillFrequency;
 
+    // max number of finished jobs kept for reporting
+    static final int MAX_FINISHED_JOBS = 10;
+    // how many chunks per thread a job is split into
+    static final int CHUNKS_PER_THREAD = 4;
+
+    // executes the chunks
+    final ExecutorService chunkExecutor;
+    final int numThreads;
+    // tbsIndex of the record under which the chunks still to be processed are stored
+    final int tbsIndex;
+    // jobs running or recently finished, in the order of creation
+    final List<BackFillJob> jobs = new ArrayList<>();
+    final Set<BackFillerTask> runningTasks = ConcurrentHashMap.newKeySet();
+    volatile boolean shuttingDown = false;
+
     BackFiller(ParameterArchive parchive, YConfiguration config) {
         this.parchive = parchive;
         this.log = new Log(BackFiller.class, parchive.getYamcsInstance());
-     //   YamcsServer.getServer().getThreadPoolExecutor()
         if (config != null) {
             parseConfig(config);
+            numThreads = config.getInt("numThreads", getDefaultNumThreads());
+        } else {
+            numThreads = getDefaultNumThreads();
         }
         timeService = YamcsServer.getTimeService(parchive.getYamcsInstance());
         executor = new ScheduledThreadPoolExecutor(1,
                 new ThreadFactoryBuilder().setNameFormat("ParameterArchive-BackFiller-"+parchive.getYamcsInstance()).build());
+        log.debug("Starting executor for back filling with {} threads", numThreads);
+        chunkExecutor = Executors.newFixedThreadPool(numThreads, new ThreadFactoryBuilder()
+                .setNameFormat("ParameterArchive-BackFiller-" + parchive.getYamcsInstance() + "-%d").build());
+        tbsIndex = getTbsIndex();
+    }
 
+    static int getDefaultNumThreads() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
     }
 
     public static Spec getSpec() {
@@ -80,6 +126,7 @@ public class BackFiller implements StreamSubscriber {
         spec.addOption("warmupTime", OptionType.INTEGER).withDefault(60);
         spec.addOption("monitorStreams", OptionType.LIST).withElementType(OptionType.STRING);
         spec.addOption("streamUpdateFillFrequency", OptionType.INTEGER).withDefault(600);
+        spec.addOption("numThreads", OptionType.INTEGER);
 
         Spec schedSpec = new Spec();
         schedSpec.addOption("startInterval", OptionType.INTEGER);
@@ -91,6 +138,7 @@ public class BackFiller implements StreamSubscriber {
 
     }
     void start() {
+        resumeChunks();
         if (schedules != null && !schedules.isEmpty()) {
             int c = 0;
             for (Schedule s : schedules) {
@@ -160,18 +208,84 @@ public class BackFiller implements StreamSubscriber {
         }
     }
 
+    /**
+     * Schedules the rebuild of the intervals overlapping with [start, stop].
+     * 
+     * @return a future which completes when all the intervals have been processed
+     */
     public Future<?> scheduleFillingTask(long start, long stop) {
-        return executor.schedule(() -> runTask(start, stop), 0, TimeUnit.SECONDS);
+        return submitJob(getChunks(start, stop, numThreads), false).future;
     }
 
+    /**
+     * Runs the filling of the intervals overlapping with [start, stop] and waits for it to finish.
+     * <p>
+     * Called from the scheduler thread such that the scheduled fillings do not overlap each other.
+     */
     private void runTask(long start, long stop) {
         try {
-            start = ParameterArchive.getIntervalStart(start);
-            stop = ParameterArchive.getIntervalEnd(stop) + 1;
+            submitJob(getChunks(start, stop, numThreads), false).future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Error when running the archive filler task", e.getCause());
+        }
+    }
 
-            BackFillerTask bft = new BackFillerTask(parchive);
+    /**
+     * Splits the intervals overlapping with [start, stop] into chunks of consecutive intervals
+     */
+    static List<Chunk> getChunks(long start, long stop, int numThreads) {
+        List<Chunk> chunks = new ArrayList<>();
+        long first = ParameterArchive.getIntervalStart(start);
+        long last = ParameterArchive.getIntervalStart(stop);
+        if (last < first) {
+            return chunks;
+        }
+        long intervalDuration = ParameterArchive.getIntervalDuration();
+        long numIntervals = (last - first) / intervalDuration + 1;
+        long maxChunks = (long) CHUNKS_PER_THREAD * numThreads;
+        long intervalsPerChunk = (numIntervals + maxChunks - 1) / maxChunks;
+
+        for (long t = first; t <= last; t += intervalsPerChunk * intervalDuration) {
+            long chunkStop = Math.min(last, t + (intervalsPerChunk - 1) * intervalDuration);
+            chunks.add(new Chunk(t, ParameterArchive.getIntervalEnd(chunkStop)));
+        }
+        return chunks;
+    }
+
+    BackFillJob submitJob(List<Chunk> chunks, boolean resumed) {
+        BackFillJob job = new BackFillJob(chunks, resumed);
+        synchronized (jobs) {
+            jobs.add(job);
+            removeOldJobs();
+        }
+        if (!resumed) {
+            for (Chunk chunk : chunks) {
+                persistChunk(chunk);
+            }
+        }
+        if (chunks.isEmpty()) {
+            job.future.complete(null);
+        }
+        for (Chunk chunk : chunks) {
+            chunkExecutor.execute(() -> runChunk(job, chunk));
+        }
+        return job;
+    }
+
+    private void runChunk(BackFillJob job, Chunk chunk) {
+        if (shuttingDown) {
+            job.chunkDone(chunk, false);
+            return;
+        }
+        long start = chunk.start;
+        long stop = chunk.stop + 1;
+        String timePeriod = '[' + TimeEncoding.toString(start) + "-" + TimeEncoding.toString(stop) + ')';
+        boolean success = false;
+        BackFillerTask bft = new BackFillerTask(parchive);
+        try {
             bft.setCollectionStart(start);
-            String timePeriod = '[' + TimeEncoding.toString(start) + "-" + TimeEncoding.toString(stop) + ')';
             log.debug("Starting parameter archive fillup for interval {}", timePeriod);
             long t0 = System.nanoTime();
             ReplayOptions rrb = ReplayOptions.getAfapReplay(start - warmupTime, stop);
@@ -180,22 +294,128 @@ public class BackFiller implements StreamSubscriber {
                     rrb);
             bft.setProcessor(proc);
             proc.getParameterRequestManager().subscribeAll(bft);
+            runningTasks.add(bft);
 
             proc.start();
             proc.awaitTerminated();
-            if (bft.aborted) {
+            if (bft.isAborted() || shuttingDown) {
                 log.warn("Parameter archive fillup for interval {} aborted", timePeriod);
             } else {
                 bft.flush();
+                job.pending.remove(chunk);
+                removeChunk(chunk);
+                success = true;
                 long t1 = System.nanoTime();
                 log.debug("Parameter archive fillup for interval {} finished, processed {} samples in {} millisec",
                         timePeriod, bft.getNumProcessedParameters(), (t1 - t0) / 1_000_000);
             }
         } catch (Exception e) {
-            log.error("Error when running the archive filler task", e);
+            log.error("Error when running the archive filler task for interval {}", timePeriod, e);
+        } finally {
+            runningTasks.remove(bft);
+            job.chunkDone(chunk, success);
+        }
+    }
+
+    /**
+     * Schedules the chunks left over from the previous run
+     */
+    private void resumeChunks() {
+        List<Chunk> chunks = new ArrayList<>();
+        byte[] range = new byte[TBS_INDEX_SIZE];
+        ByteArrayUtils.encodeInt(tbsIndex, range, 0);
+        try (AscendingRangeIterator it = new AscendingRangeIterator(parchive.getTablespace().getRdb().newIterator(),
+                range, range)) {
+            while (it.isValid()) {
+                byte[] key = it.key();
+                chunks.add(new Chunk(ByteArrayUtils.decodeLong(key, TBS_INDEX_SIZE),
+                        ByteArrayUtils.decodeLong(key, TBS_INDEX_SIZE + 8)));
+                it.next();
+            }
+        } catch (RocksDBException e) {
+            log.error("Failed to load the back filling chunks left over from the previous run", e);
+            return;
+        }
+        if (!chunks.isEmpty()) {
+            log.info("Resuming the parameter archive back filling of {} chunks left over from the previous run",
+                    chunks.size());
+            submitJob(chunks, true);
+        }
+    }
+
+    // the chunk is stored with the key (tbsIndex, start, stop) and an empty value; the stop is part of the key such
+    // that the chunks of different jobs starting at the same time do not overwrite each other
+    private void persistChunk(Chunk chunk) {
+        try {
+            parchive.getTablespace().putData(getChunkKey(chunk), new byte[0]);
+        } catch (RocksDBException e) {
+            log.warn("Failed to persist the back filling chunk {}", chunk, e);
+        }
+    }
+
+    private void removeChunk(Chunk chunk) {
+        // the same chunk may be part of another job still to be processed
+        synchronized (jobs) {
+            for (BackFillJob job : jobs) {
+                if (!job.future.isDone() && job.pending.contains(chunk)) {
+                    return;
+                }
+            }
+        }
+        try {
+            parchive.getTablespace().remove(getChunkKey(chunk));
+        } catch (RocksDBException e) {
+            log.warn("Failed to remove the back filling chunk {}", chunk, e);
+        }
+    }
+
+    private byte[] getChunkKey(Chunk chunk) {
+        byte[] key = new byte[TBS_INDEX_SIZE + 16];
+        ByteArrayUtils.encodeInt(tbsIndex, key, 0);
+        ByteArrayUtils.encodeLong(chunk.start, key, TBS_INDEX_SIZE);
+        ByteArrayUtils.encodeLong(chunk.stop, key, TBS_INDEX_SIZE + 8);
+        return key;
+    }
+
+    private int getTbsIndex() {
+        Tablespace tablespace = parchive.getTablespace();
+        String yamcsInstance = parchive.getYamcsInstance();
+        try {
+            List<TablespaceRecord> trl = tablespace.filter(Type.PARCHIVE_BACKFILL, yamcsInstance, trb -> true);
+            if (trl.isEmpty()) {
+                TablespaceRecord.Builder trb = TablespaceRecord.newBuilder().setType(Type.PARCHIVE_BACKFILL);
+                return tablespace.createMetadataRecord(yamcsInstance, trb).getTbsIndex();
+            } else {
+                return trl.get(0).getTbsIndex();
+            }
+        } catch (RocksDBException | YarchException e) {
+            throw new ParameterArchiveException("Cannot load the back filling record", e);
+        }
+    }
+
+    private void removeOldJobs() {
+        int numFinished = 0;
+        for (int i = jobs.size() - 1; i >= 0; i--) {
+            if (jobs.get(i).future.isDone() && ++numFinished > MAX_FINISHED_JOBS) {
+                jobs.remove(i);
+            }
         }
     }
 
+    /**
+     * 
+     * @return the running and the most recently finished jobs
+     */
+    public List<BackFillJob> getJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs);
+        }
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
     private void runSchedule(Schedule s) {
         long start, stop;
         long intervalDuration = ParameterArchive.getIntervalDuration();
@@ -264,8 +484,14 @@ public class BackFiller implements StreamSubscriber {
                 s.removeSubscriber(this);
             }
         }
+        shuttingDown = true;
+        for (BackFillerTask bft : runningTasks) {
+            bft.abort();
+        }
         executor.shutdown();
+        chunkExecutor.shutdown();
         executor.awaitTermination(10, TimeUnit.SECONDS);
+        chunkExecutor.awaitTermination(10, TimeUnit.SECONDS);
     }
 
     @Override
@@ -285,4 +511,128 @@ public class BackFiller implements StreamSubscriber {
     public void streamClosed(Stream stream) {
         log.debug("Stream {} closed", stream.getName());
     }
+
+    /**
+     * A set of consecutive intervals rebuilt by one replay
+     */
+    static final class Chunk {
+        final long start; // start of the first interval
+        final long stop; // end of the last interval (inclusive)
+
+        Chunk(long start, long stop) {
+            this.start = start;
+            this.stop = stop;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(start) + Long.hashCode(stop);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            Chunk other = (Chunk) obj;
+            return start == other.start && stop == other.stop;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + TimeEncoding.toString(start) + " - " + TimeEncoding.toString(stop) + "]";
+        }
+    }
+
+    /**
+     * A filling job, split in chunks.
+     */
+    public static class BackFillJob {
+        final List<Chunk> chunks;
+        final boolean resumed;
+        final long creationTime;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        final Set<Chunk> pending = ConcurrentHashMap.newKeySet();
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+
+        BackFillJob(List<Chunk> chunkList, boolean resumed) {
+            this.chunks = new ArrayList<>(chunkList);
+            this.chunks.sort((c1, c2) -> Long.compare(c1.start, c2.start));
+            this.resumed = resumed;
+            this.creationTime = System.currentTimeMillis();
+            pending.addAll(chunkList);
+        }
+
+        void chunkDone(Chunk chunk, boolean success) {
+            pending.remove(chunk);
+            if (success) {
+                completed.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+            if (completed.get() + failed.get() == chunks.size()) {
+                future.complete(null);
+            }
+        }
+
+        public long getStart() {
+            return chunks.isEmpty() ? TimeEncoding.INVALID_INSTANT : chunks.get(0).start;
+        }
+
+        public long getStop() {
+            return chunks.isEmpty() ? TimeEncoding.INVALID_INSTANT : chunks.get(chunks.size() - 1).stop;
+        }
+
+        public int getTotalChunks() {
+            return chunks.size();
+        }
+
+        public int getCompletedChunks() {
+            return completed.get();
+        }
+
+        public int getFailedChunks() {
+            return failed.get();
+        }
+
+        /**
+         * 
+         * @return the wall clock time (Java time) when the job has been created
+         */
+        public long getCreationTime() {
+            return creationTime;
+        }
+
+        public boolean isResumed() {
+            return resumed;
+        }
+
+        public boolean isFinished() {
+            return future.isDone();
+        }
+
+        /**
+         * Estimates the completion time based on the average rate of the chunks completed so far.
+         * 
+         * @return the estimated wall clock time (Java time) of completion or -1 if no chunk has been completed yet
+         */
+        public long getEta() {
+            int done = completed.get() + failed.get();
+            if (done == 0) {
+                return -1;
+            }
+            long elapsed = System.currentTimeMillis() - creationTime;
+            return creationTime + elapsed * chunks.size() / done;
+        }
+
+        @Override
+        public String toString() {
+            return "BackFillJob [" + TimeEncoding.toString(getStart()) + " - " + TimeEncoding.toString(getStop())
+                    + "], completed: " + completed + "/" + chunks.size() + ", failed: " + failed;
+        }
+    }
 }
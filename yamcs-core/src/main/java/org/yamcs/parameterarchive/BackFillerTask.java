@@ -19,7 +19,6 @@ class BackFillerTask extends AbstractArchiveFiller {
 
 
     private Processor processor;
-    boolean aborted = false;
 
     public BackFillerTask(ParameterArchive parameterArchive) {
         super(parameterArchive);
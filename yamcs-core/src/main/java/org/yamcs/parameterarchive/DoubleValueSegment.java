@@ -1,8 +1,10 @@
 package org.yamcs.parameterarchive;
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.List;
 
+import org.yamcs.parameter.BasicParameterValue;
 import org.yamcs.parameter.Value;
 import org.yamcs.parameter.ValueArray;
 import org.yamcs.utils.DecodingException;
@@ -13,6 +15,7 @@ import org.yamcs.utils.VarIntUtil;
 
 public class DoubleValueSegment extends BaseSegment implements ValueSegment {
     final static byte SUBFORMAT_ID_RAW = 0;
+    final static byte SUBFORMAT_ID_COMPRESSED = 1; // compressed with the DoubleCompressor
     
     DoubleArray values;
     
@@ -24,6 +27,25 @@ public class DoubleValueSegment extends BaseSegment implements ValueSegment {
             
     @Override
     public void writeTo(ByteBuffer bb) {
+        int position = bb.position();
+
+        // try to write it compressed, if we get an buffer overflow or it is not smaller, revert to raw encoding
+        bb.put(SUBFORMAT_ID_COMPRESSED);
+        VarIntUtil.writeVarInt32(bb, values.size());
+        boolean compressed;
+        try {
+            DoubleCompressor.compress(values.array(), values.size(), bb);
+            compressed = bb.position() - position < 1 + VarIntUtil.getEncodedSize(values.size()) + 8 * values.size();
+        } catch (BufferOverflowException e) {
+            compressed = false;
+        }
+        if (!compressed) {
+            bb.position(position);
+            writeRaw(bb);
+        }
+    }
+
+    private void writeRaw(ByteBuffer bb) {
         bb.put(SUBFORMAT_ID_RAW);
         int n = values.size();
         VarIntUtil.writeVarInt32(bb, n);
@@ -34,14 +56,16 @@ public class DoubleValueSegment extends BaseSegment implements ValueSegment {
 
     private void parse(ByteBuffer bb) throws DecodingException {
         byte fid = bb.get();
-        if(fid!=SUBFORMAT_ID_RAW) {
-            throw new DecodingException("Uknown sub format id: "+fid);
-        }
         int n = VarIntUtil.readVarInt32(bb);
-        values = new DoubleArray(n);
-        
-        for(int i=0;i<n;i++) {
-            values.add(bb.getDouble());
+        if (fid == SUBFORMAT_ID_RAW) {
+            values = new DoubleArray(n);
+            for (int i = 0; i < n; i++) {
+                values.add(bb.getDouble());
+            }
+        } else if (fid == SUBFORMAT_ID_COMPRESSED) {
+            values = DoubleArray.wrap(DoubleCompressor.decompress(bb, n));
+        } else {
+            throw new DecodingException("Uknown sub format id: " + fid);
         }
     }
     public static DoubleValueSegment parseFrom(ByteBuffer bb) throws DecodingException {
@@ -97,6 +121,11 @@ public class DoubleValueSegment extends BaseSegment implements ValueSegment {
         values.add(pos, engValue.getDoubleValue());
     }
 
+    @Override
+    public void add(int pos, BasicParameterValue pv, boolean raw) {
+        values.add(pos, raw ? pv.getRawDouble() : pv.getEngDouble());
+    }
+
     @Override
     public DoubleValueSegment consolidate() {
         return this;
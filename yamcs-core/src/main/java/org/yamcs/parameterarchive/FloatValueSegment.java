@@ -4,6 +4,7 @@ import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.List;
 
+import org.yamcs.parameter.BasicParameterValue;
 import org.yamcs.parameter.Value;
 import org.yamcs.parameter.ValueArray;
 import org.yamcs.utils.DecodingException;
@@ -122,6 +123,11 @@ public class FloatValueSegment extends BaseSegment implements ValueSegment {
         
     }
 
+    @Override
+    public void add(int pos, BasicParameterValue pv, boolean raw) {
+        values.add(pos, (float) (raw ? pv.getRawDouble() : pv.getEngDouble()));
+    }
+
     @Override
     public BaseSegment consolidate() {
         return this;
@@ -4,6 +4,7 @@ import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.List;
 
+import org.yamcs.parameter.BasicParameterValue;
 import org.yamcs.parameter.Value;
 import org.yamcs.parameter.ValueArray;
 import org.yamcs.protobuf.Yamcs.Value.Type;
@@ -224,6 +225,11 @@ public class IntValueSegment extends BaseSegment implements ValueSegment {
         }
     }
 
+    @Override
+    public void add(int pos, BasicParameterValue pv, boolean raw) {
+        values.add(pos, (int) (raw ? pv.getRawLong() : pv.getEngLong()));
+    }
+
     @Override
     public IntValueSegment consolidate() {
         return this;
@@ -1,8 +1,10 @@
 package org.yamcs.parameterarchive;
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.List;
 
+import org.yamcs.parameter.BasicParameterValue;
 import org.yamcs.parameter.Value;
 import org.yamcs.parameter.ValueArray;
 import org.yamcs.protobuf.Yamcs.Value.Type;
@@ -11,9 +13,25 @@ import org.yamcs.utils.LongArray;
 import org.yamcs.utils.ValueUtility;
 import org.yamcs.utils.VarIntUtil;
 
+import me.lemire.integercompression.FastPFOR128;
+import me.lemire.integercompression.IntWrapper;
+
+/**
+ * 64 bit integers and timestamps
+ * <p>
+ * Encoded as deltas of deltas zigzag encoded (see {@link IntValueSegment}). The first number is written as a 64 bit
+ * varint; if all the following numbers fit into 32 bits they are compressed with FastPFOR128 plus VariableByte for
+ * the remaining ones, otherwise they are written as 64 bit varints. If the compressed data does not fit into the size
+ * of the raw encoding, the raw encoding is used.
+ *
+ */
 public class LongValueSegment extends BaseSegment implements ValueSegment {
 
     final static int SUBFORMAT_ID_RAW = 0;
+    final static int SUBFORMAT_ID_DELTAZG_FPF128_VB = 1; // compressed with DeltaZigzag and then FastPFOR128 plus
+                                                         // VariableByte for remaining
+    final static int SUBFORMAT_ID_DELTAZG_VB = 2; // compressed with DeltaZigzag plus VariableByte
+    final static int SUBFORMAT_ID_DELTAZG_VB64 = 3; // compressed with DeltaZigzag plus 64 bit VariableByte
     LongArray values;
 
     // all possible types that can be stored by this segment
@@ -36,11 +54,73 @@ public class LongValueSegment extends BaseSegment implements ValueSegment {
     }
 
     private LongValueSegment() {
-        super(FORMAT_ID_IntValueSegment);
+        super(FORMAT_ID_LongValueSegment);
     }
 
     @Override
     public void writeTo(ByteBuffer bb) {
+        int position = bb.position();
+        // try first to write compressed, if we fail (for random data we may exceed the buffer) then write in raw format
+        try {
+            writeCompressed(bb);
+        } catch (IndexOutOfBoundsException | BufferOverflowException e) {
+            bb.position(position);
+            writeRaw(bb);
+        }
+    }
+
+    // the first value is written as a 64 bit varint, the following ones depending on the subformat
+    private void writeCompressed(ByteBuffer bb) {
+        long[] ddz = VarIntUtil.encodeDeltaDeltaZigZag(values);
+        int size = ddz.length;
+
+        boolean fitsInt = true;
+        for (int i = 1; i < size; i++) {
+            if ((ddz[i] >>> 32) != 0) {
+                fitsInt = false;
+                break;
+            }
+        }
+        if (!fitsInt) {
+            writeHeader(SUBFORMAT_ID_DELTAZG_VB64, bb);
+            VarIntUtil.writeVarInt32(bb, size);
+            for (int i = 0; i < size; i++) {
+                VarIntUtil.writeVarInt64(bb, ddz[i]);
+            }
+            return;
+        }
+
+        int[] ddzi = new int[size - 1];
+        for (int i = 1; i < size; i++) {
+            ddzi[i - 1] = (int) ddz[i];
+        }
+        FastPFOR128 fastpfor = FastPFORFactory.get();
+        IntWrapper inputoffset = new IntWrapper(0);
+        IntWrapper outputoffset = new IntWrapper(0);
+        int[] xc = new int[ddzi.length];
+
+        fastpfor.compress(ddzi, inputoffset, ddzi.length, xc, outputoffset);
+        if (outputoffset.get() == 0) {
+            // fastpfor didn't compress anything, probably there were too few datapoints
+            writeHeader(SUBFORMAT_ID_DELTAZG_VB, bb);
+        } else {
+            writeHeader(SUBFORMAT_ID_DELTAZG_FPF128_VB, bb);
+        }
+        VarIntUtil.writeVarInt32(bb, size);
+        if (size > 0) {
+            VarIntUtil.writeVarInt64(bb, ddz[0]);
+        }
+        int length = outputoffset.get();
+        for (int i = 0; i < length; i++) {
+            bb.putInt(xc[i]);
+        }
+        // write the remaining bytes varint compressed
+        for (int i = inputoffset.get(); i < ddzi.length; i++) {
+            VarIntUtil.writeVarInt32(bb, ddzi[i]);
+        }
+    }
+
+    private void writeRaw(ByteBuffer bb) {
         writeHeader(SUBFORMAT_ID_RAW, bb);
         int n = values.size();
         VarIntUtil.writeVarInt32(bb, n);
@@ -60,13 +140,62 @@ public class LongValueSegment extends BaseSegment implements ValueSegment {
     private void parse(ByteBuffer bb) throws DecodingException {
         byte x = bb.get();
         int subFormatId = x & 0xF;
-        if (subFormatId != SUBFORMAT_ID_RAW)
-            throw new DecodingException("Unknown subformatId " + subFormatId + " for LongValueSegment");
-        
         numericType = (x >> 4) & 3;
-
         int n = VarIntUtil.readVarInt32(bb);
 
+        switch (subFormatId) {
+        case SUBFORMAT_ID_RAW:
+            parseRaw(bb, n);
+            break;
+        case SUBFORMAT_ID_DELTAZG_FPF128_VB: // intentional fall through
+        case SUBFORMAT_ID_DELTAZG_VB:
+            parseCompressed(bb, n, subFormatId);
+            break;
+        case SUBFORMAT_ID_DELTAZG_VB64:
+            long[] ddz = new long[n];
+            for (int i = 0; i < n; i++) {
+                ddz[i] = VarIntUtil.readVarInt64(bb);
+            }
+            values = LongArray.wrap(VarIntUtil.decodeDeltaDeltaZigZag(ddz));
+            break;
+        default:
+            throw new DecodingException("Unknown subformatId " + subFormatId + " for LongValueSegment");
+        }
+    }
+
+    private void parseCompressed(ByteBuffer bb, int n, int subFormatId) throws DecodingException {
+        long[] ddz = new long[n];
+        if (n == 0) {
+            values = new LongArray(0);
+            return;
+        }
+        ddz[0] = VarIntUtil.readVarInt64(bb);
+        int[] ddzi = new int[n - 1];
+
+        IntWrapper inputoffset = new IntWrapper(0);
+        IntWrapper outputoffset = new IntWrapper(0);
+        int position = bb.position();
+
+        if (subFormatId == SUBFORMAT_ID_DELTAZG_FPF128_VB) {
+            int[] x = new int[(bb.limit() - bb.position()) / 4];
+            for (int i = 0; i < x.length; i++) {
+                x[i] = bb.getInt();
+            }
+            FastPFOR128 fastpfor = FastPFORFactory.get();
+            fastpfor.uncompress(x, inputoffset, x.length, ddzi, outputoffset);
+            bb.position(position + inputoffset.get() * 4);
+        }
+
+        for (int i = outputoffset.get(); i < ddzi.length; i++) {
+            ddzi[i] = VarIntUtil.readVarInt32(bb);
+        }
+        for (int i = 1; i < n; i++) {
+            ddz[i] = ddzi[i - 1] & 0xFFFFFFFFL;
+        }
+        values = LongArray.wrap(VarIntUtil.decodeDeltaDeltaZigZag(ddz));
+    }
+
+    private void parseRaw(ByteBuffer bb, int n) throws DecodingException {
         if (bb.limit() - bb.position() < 8 * n) {
             throw new DecodingException("Cannot decode long segment: expected " + (8 * n) + " bytes and only "
                     + (bb.limit() - bb.position()) + " available");
@@ -155,6 +284,16 @@ public class LongValueSegment extends BaseSegment implements ValueSegment {
         }
     }
 
+    @Override
+    public void add(int pos, BasicParameterValue pv, boolean raw) {
+        Type type = raw ? pv.getRawType() : pv.getEngType();
+        if (type == Type.TIMESTAMP) {
+            add(pos, raw ? pv.getRawValue() : pv.getEngValue());
+        } else {
+            values.add(pos, raw ? pv.getRawLong() : pv.getEngLong());
+        }
+    }
+
     @Override
     public LongValueSegment consolidate() {
         return this;
@@ -0,0 +1,104 @@
+package org.yamcs.parameterarchive;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.yamcs.parameterarchive.MultiParameterRetrieval.ArchiveIteratorComparator;
+import org.yamcs.parameterarchive.MultiParameterRetrieval.SegmentMerger;
+
+/**
+ * Pull version of the {@link MultiParameterRetrieval}: the data is retrieved in batches and the archive iterators
+ * (together with the segment currently being decoded) are kept open between the batches.
+ * <p>
+ * This allows paging through large amounts of data without reopening the iterators and decoding again the segment
+ * where the previous page ended.
+ * <p>
+ * The cursor has to be closed if not used until the end.
+ * <p>
+ * This class is not thread safe.
+ */
+public class MultiParameterCursor implements AutoCloseable {
+    final MultipleParameterRequest mpvr;
+    final PriorityQueue<ArchiveIterator> queue;
+    final Map<ArchiveIterator, String> iterator2ParameterName = new HashMap<>();
+    final SegmentMerger merger;
+
+    // values merged but not yet delivered
+    final Deque<ParameterIdValueList> pending = new ArrayDeque<>();
+    boolean flushed = false;
+
+    public MultiParameterCursor(ParameterArchive parchive, MultipleParameterRequest mpvr) {
+        this.mpvr = mpvr;
+        queue = new PriorityQueue<>(new ArchiveIteratorComparator(mpvr.ascending));
+        for (int i = 0; i < mpvr.parameterIds.length; i++) {
+            ParameterRequest req = new ParameterRequest(mpvr.start, mpvr.stop, mpvr.ascending, mpvr.retrieveEngValues,
+                    mpvr.retrieveRawValues.get(i), mpvr.retrieveParamStatus);
+
+            ArchiveIterator it = new ArchiveIterator(parchive, mpvr.parameterIds[i], mpvr.parameterGroupIds[i], req);
+            if (it.isValid()) {
+                queue.add(it);
+                iterator2ParameterName.put(it, mpvr.parameterNames[i]);
+            } else {
+                it.close();
+            }
+        }
+        merger = new SegmentMerger(mpvr, pending::add);
+    }
+
+    /**
+     *
+     * @return true if there is more data to be retrieved
+     */
+    public boolean hasNext() {
+        fill();
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Returns the next value list without consuming it.
+     *
+     * @return the next value list or null if there is no more data
+     */
+    public ParameterIdValueList peek() {
+        fill();
+        return pending.peek();
+    }
+
+    /**
+     * Returns and consumes the next value list.
+     *
+     * @return the next value list or null if there is no more data
+     */
+    public ParameterIdValueList next() {
+        fill();
+        return pending.poll();
+    }
+
+    // processes segments until at least one value list is available or there is no more data
+    private void fill() {
+        while (pending.isEmpty() && !queue.isEmpty()) {
+            ArchiveIterator it = queue.poll();
+            merger.process(iterator2ParameterName.get(it), it.getParameterId(), it.getParameterGroupId(), it.value());
+            it.next();
+            if (it.isValid()) {
+                queue.add(it);
+            } else {
+                it.close();
+            }
+        }
+        if (pending.isEmpty() && !flushed) {
+            flushed = true;
+            merger.flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        queue.forEach(it -> it.close());
+        queue.clear();
+        pending.clear();
+    }
+}
@@ -4,7 +4,6 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.yamcs.parameter.BasicParameterValue;
-import org.yamcs.parameter.Value;
 import org.yamcs.protobuf.Yamcs.Value.Type;
 import org.yamcs.utils.IntArray;
 import org.yamcs.utils.TimeEncoding;
@@ -42,15 +41,15 @@ public class PGSegment {
             ParameterValueSegment pvs = new ParameterValueSegment(timeSegment);
 
             BasicParameterValue pv = sortedPvList.get(i);
-            Value v = pv.getEngValue();
-            if (v != null) {
-                pvs.engValueSegment = getNewSegment(v.getType());
+            Type engType = pv.getEngType();
+            if (engType != null) {
+                pvs.engValueSegment = getNewSegment(engType);
             }
             pvs.parameterStatusSegment = new ParameterStatusSegment(true);
-            Value rawV = pv.getRawValue();
+            Type rawType = pv.getRawType();
             if (storeRawValues) {
-                if (rawV != null) {
-                    pvs.rawValueSegment = getNewSegment(rawV.getType());
+                if (rawType != null) {
+                    pvs.rawValueSegment = getNewSegment(rawType);
                 }
             }
 
@@ -111,10 +110,9 @@ public class PGSegment {
         for (int i = 0; i < pvSegments.size(); i++) {
             ParameterValueSegment pvs = pvSegments.get(i);
             BasicParameterValue pv = sortedPvList.get(i);
-            pvs.engValueSegment.add(pos, pv.getEngValue());
-            Value rawValue = pv.getRawValue();
-            if (storeRawValues && (rawValue != null)) {
-                pvs.rawValueSegment.add(pos, rawValue);
+            pvs.engValueSegment.add(pos, pv, false);
+            if (storeRawValues && pv.hasRawValue()) {
+                pvs.rawValueSegment.add(pos, pv, true);
             }
             pvs.parameterStatusSegment.addParameterValue(pos, pv);
         }
@@ -8,7 +8,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
@@ -21,6 +25,7 @@ import org.yamcs.Spec;
 import org.yamcs.Spec.OptionType;
 import org.yamcs.YConfiguration;
 import org.yamcs.YamcsServer;
+import org.yamcs.parameter.SystemParametersService;
 import org.yamcs.time.TimeService;
 import org.yamcs.utils.ByteArrayUtils;
 import org.yamcs.utils.DatabaseCorruptionException;
@@ -40,6 +45,8 @@ import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord;
 import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord.Type;
 import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TimeBasedPartition;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * 
  * The parameter archive stores data in partitions(optional) -> intervals -> segments.
@@ -77,12 +84,19 @@ public class ParameterArchive extends AbstractYamcsService {
 
     TimeService timeService;
     private BackFiller backFiller;
+
+    // builds the partition summaries, one partition at a time; the thread stops when idle
+    private final ExecutorService summaryLoader = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("ParameterArchive-SummaryLoader-%d").setDaemon(true).build());
     private RealtimeArchiveFiller realtimeFiller;
     YConfiguration realtimeFillerConfig;
     YConfiguration backFillerConfig;
     boolean realtimeFillerEnabled;
     boolean backFillerEnabled;
     int maxSegmentSize;
+    SegmentCache segmentCache;
+    private RetentionManager retentionManager;
 
     @Override
     public Spec getSpec() {
@@ -92,6 +106,8 @@ public class ParameterArchive extends AbstractYamcsService {
         spec.addOption("partitioningSchema", OptionType.STRING).withDefault("YYYY")
                 .withChoices("YYYY/DOY", "YYYY/MM", "YYYY", "none");
         spec.addOption("maxSegmentSize", OptionType.INTEGER).withDefault(5000);
+        spec.addOption("segmentCacheSize", OptionType.INTEGER).withDefault(64);
+        spec.addOption("retention", OptionType.MAP).withSpec(RetentionManager.getSpec());
 
         return spec;
     }
@@ -104,6 +120,10 @@ public class ParameterArchive extends AbstractYamcsService {
         YarchDatabaseInstance ydb = YarchDatabase.getInstance(yamcsInstance);
         tablespace = RdbStorageEngine.getInstance().getTablespace(ydb);
         this.maxSegmentSize = config.getInt("maxSegmentSize");
+        int segmentCacheSize = config.getInt("segmentCacheSize");
+        if (segmentCacheSize > 0) {
+            segmentCache = new SegmentCache(segmentCacheSize * 1024L * 1024);
+        }
 
         if (config.containsKey("backFiller")) {
             backFillerConfig = config.getConfig("backFiller");
@@ -116,6 +136,9 @@ public class ParameterArchive extends AbstractYamcsService {
             log.debug("realtimeFillerConfig: {}", realtimeFillerConfig);
         }
 
+        retentionManager = new RetentionManager(this,
+                config.containsKey("retention") ? config.getConfig("retention") : null);
+
         String schema = config.getString("partitioningSchema");
         if (!"none".equalsIgnoreCase(schema)) {
             partitioningSchema = TimePartitionSchema.getInstance(schema);
@@ -204,13 +227,27 @@ public class ParameterArchive extends AbstractYamcsService {
         return parameterGroupIdMap;
     }
 
-    public void writeToArchive(PGSegment pgs) throws RocksDBException, IOException {
+    /**
+     * Writes the segment to the archive.
+     * 
+     * @param pgs
+     * @return the size in bytes of the encoded segments written (keys and values)
+     * @throws RocksDBException
+     * @throws IOException
+     */
+    public int writeToArchive(PGSegment pgs) throws RocksDBException, IOException {
         pgs.consolidate();
         Partition p = createAndGetPartition(getIntervalStart(pgs.getSegmentStart()));
+        int size;
         try (WriteBatch writeBatch = new WriteBatch(); WriteOptions wo = new WriteOptions()) {
-            writeToBatch(writeBatch, p, pgs);
+            size = writeToBatch(writeBatch, p, pgs);
             tablespace.getRdb(p.partitionDir, false).getDb().write(wo, writeBatch);
         }
+        updateSummary(p, pgs);
+        if (segmentCache != null) {
+            segmentCache.invalidate(p, pgs, parameterIdMap.timeParameterId);
+        }
+        return size;
     }
 
     public void writeToArchive(long segStart, Collection<PGSegment> pgList) throws RocksDBException, IOException {
@@ -224,15 +261,25 @@ public class ParameterArchive extends AbstractYamcsService {
             }
             tablespace.getRdb(p.partitionDir, false).getDb().write(wo, writeBatch);
         }
+        for (PGSegment pgs : pgList) {
+            updateSummary(p, pgs);
+        }
+        if (segmentCache != null) {
+            for (PGSegment pgs : pgList) {
+                segmentCache.invalidate(p, pgs, parameterIdMap.timeParameterId);
+            }
+        }
     }
 
-    private void writeToBatch(WriteBatch writeBatch, Partition p, PGSegment pgs) throws RocksDBException {
+    // returns the number of bytes (keys and values) written
+    private int writeToBatch(WriteBatch writeBatch, Partition p, PGSegment pgs) throws RocksDBException {
         // write the time segment
         SortedTimeSegment timeSegment = pgs.getTimeSegment();
         byte[] timeKey = new SegmentKey(parameterIdMap.timeParameterId, pgs.getParameterGroupId(),
                 pgs.getSegmentStart(), SegmentKey.TYPE_ENG_VALUE).encode();
         byte[] timeValue = vsEncoder.encode(timeSegment);
         writeBatch.put(timeKey, timeValue);
+        int size = timeKey.length + timeValue.length;
 
         // and then the consolidated value segments
         List<BaseSegment> consolidated = pgs.getConsolidatedValueSegments();
@@ -256,6 +303,7 @@ public class ParameterArchive extends AbstractYamcsService {
                     SegmentKey.TYPE_ENG_VALUE).encode();
             byte[] engValue = vsEncoder.encode(vs);
             writeBatch.put(engKey, engValue);
+            size += engKey.length + engValue.length;
             if (STORE_RAW_VALUES && consolidatedRawValues != null) {
                 BaseSegment rvs = consolidatedRawValues.get(i);
                 if (rvs != null) {
@@ -272,6 +320,7 @@ public class ParameterArchive extends AbstractYamcsService {
                             SegmentKey.TYPE_RAW_VALUE).encode();
                     byte[] rawValue = vsEncoder.encode(rvs);
                     writeBatch.put(rawKey, rawValue);
+                    size += rawKey.length + rawValue.length;
 
                 }
             }
@@ -288,6 +337,81 @@ public class ParameterArchive extends AbstractYamcsService {
                     SegmentKey.TYPE_PARAMETER_STATUS).encode();
             byte[] pssValue = vsEncoder.encode(pss);
             writeBatch.put(pssKey, pssValue);
+            size += pssKey.length + pssValue.length;
+        }
+        return size;
+    }
+
+    // the summary is updated after the data has been written such that a summary loaded concurrently is either loaded
+    // with the data or updated here
+    private void updateSummary(Partition p, PGSegment pgs) {
+        PartitionSummary summary;
+        synchronized (p) {
+            summary = p.summary != null ? p.summary : p.loadingSummary;
+        }
+        if (summary == null) {
+            return;
+        }
+        int pgid = pgs.getParameterGroupId();
+        summary.add(parameterIdMap.timeParameterId, pgid);
+        for (int i = 0; i < pgs.getConsolidatedValueSegments().size(); i++) {
+            summary.add(pgs.getParameterId(i), pgid);
+        }
+    }
+
+    /**
+     * Checks if the partition might contain segments for the given parameter and group.
+     * <p>
+     * A false answer is certain, a true one might be wrong (see {@link PartitionSummary}). The first call for a
+     * partition starts building its summary from the database in the background; until it is ready, the answer is
+     * true.
+     */
+    boolean mightContain(Partition p, int parameterId, int parameterGroupId) {
+        PartitionSummary summary;
+        PartitionSummary loadingSummary = null;
+        synchronized (p) {
+            summary = p.summary;
+            if (summary == null && p.loadingSummary == null) {
+                loadingSummary = p.loadingSummary = new PartitionSummary();
+            }
+        }
+        if (summary != null) {
+            return summary.mightContain(parameterId, parameterGroupId);
+        }
+        if (loadingSummary != null) {
+            PartitionSummary ps = loadingSummary;
+            summaryLoader.execute(() -> loadSummary(p, ps));
+        }
+        return true;
+    }
+
+    /**
+     * Builds the summary of the partition if it is not built or being built already.
+     */
+    void loadSummary(Partition p) {
+        PartitionSummary ps;
+        synchronized (p) {
+            if (p.summary != null || p.loadingSummary != null) {
+                return;
+            }
+            ps = p.loadingSummary = new PartitionSummary();
+        }
+        loadSummary(p, ps);
+    }
+
+    // runs without the partition lock such that the data can be written meanwhile
+    private void loadSummary(Partition p, PartitionSummary ps) {
+        try {
+            ps.load(this, p);
+        } catch (Exception e) {
+            // the summary is only an optimization, the partition is searched without it. It is not built again
+            // until the next restart.
+            log.warn("Failed to load the summary of {}", p, e);
+            return;
+        }
+        synchronized (p) {
+            p.summary = ps;
+            p.loadingSummary = null;
         }
     }
 
@@ -306,6 +430,9 @@ public class ParameterArchive extends AbstractYamcsService {
                 p = new Partition(pinfo.getStart(), pinfo.getEnd(), pinfo.getDir());
                 p = partitions.insert(p, 60000L);
                 assert p != null;
+                synchronized (p) {
+                    p.summary = new PartitionSummary();
+                }
                 TimeBasedPartition tbp = TimeBasedPartition.newBuilder().setPartitionDir(p.partitionDir)
                         .setPartitionStart(p.getStart()).setPartitionEnd(p.getEnd()).build();
                 byte[] key = new byte[TBS_INDEX_SIZE + 8];
@@ -357,12 +484,22 @@ public class ParameterArchive extends AbstractYamcsService {
             realtimeFiller = new RealtimeArchiveFiller(this, realtimeFillerConfig);
             realtimeFiller.start();
         }
+        retentionManager.start();
+        SystemParametersService sps = SystemParametersService.getInstance(yamcsInstance);
+        if (segmentCache != null && sps != null) {
+            segmentCache.setupSystemParameters(sps, serviceName + "/segmentCache");
+            sps.registerProducer(segmentCache);
+        }
         notifyStarted();
     }
 
     @Override
     protected void doStop() {
         log.debug("Stopping ParameterArchive service for instance {}", yamcsInstance);
+        SystemParametersService sps = SystemParametersService.getInstance(yamcsInstance);
+        if (segmentCache != null && sps != null) {
+            sps.unregisterProducer(segmentCache);
+        }
         try {
             if (backFiller != null) {
                 backFiller.shutDown();
@@ -370,6 +507,8 @@ public class ParameterArchive extends AbstractYamcsService {
             if (realtimeFiller != null) {
                 realtimeFiller.shutDown();
             }
+            retentionManager.shutDown();
+            summaryLoader.shutdownNow();
         } catch (Exception e) {
             log.error("Error stopping realtime filler", e);
             notifyFailed(e);
@@ -411,19 +550,49 @@ public class ParameterArchive extends AbstractYamcsService {
         throw new UnsupportedOperationException("operation not supported");
     }
 
+    /**
+     * Removes the history of one parameter (all its engineering, raw and status segments) from the beginning of the
+     * archive until the start of the interval containing stop.
+     * <p>
+     * The data is removed with range deletions, one for each parameter group and partition.
+     * 
+     * @param fqn
+     *            - fully qualified name of the parameter
+     * @param stop
+     *            - the data before the interval containing this instant is removed; use
+     *            {@link TimeEncoding#MAX_INSTANT} to remove all the data
+     * @throws RocksDBException
+     * @throws InterruptedException
+     */
+    public void deleteParameterHistory(String fqn, long stop) throws RocksDBException, InterruptedException {
+        retentionManager.deleteParameterHistory(fqn, stop);
+    }
+
+    public RetentionManager getRetentionManager() {
+        return retentionManager;
+    }
+
     public RocksIterator getIterator(Partition p) throws RocksDBException, IOException {
         return tablespace.getRdb(p.partitionDir, false).newIterator();
     }
 
     public SortedTimeSegment getTimeSegment(Partition p, long segmentStart, int parameterGroupId)
             throws RocksDBException, IOException {
-        byte[] timeKey = new SegmentKey(parameterIdMap.timeParameterId, parameterGroupId, segmentStart,
-                SegmentKey.TYPE_ENG_VALUE).encode();
-        byte[] tv = tablespace.getRdb(p.partitionDir, false).get(timeKey);
-        if (tv == null) {
-            return null;
-        }
+        int timeParameterId = parameterIdMap.timeParameterId;
+        SegmentCache.SegmentLoader loader = () -> {
+            byte[] timeKey = new SegmentKey(timeParameterId, parameterGroupId, segmentStart,
+                    SegmentKey.TYPE_ENG_VALUE).encode();
+            return tablespace.getRdb(p.partitionDir, false).get(timeKey);
+        };
         try {
+            if (segmentCache != null) {
+                return (SortedTimeSegment) segmentCache.get(p, timeParameterId, parameterGroupId, segmentStart,
+                        SegmentKey.TYPE_ENG_VALUE, loader);
+            }
+            byte[] tv = loader.load();
+            if (tv == null) {
+                return null;
+            }
             return (SortedTimeSegment) vsEncoder.decode(tv, segmentStart);
         } catch (DecodingException e) {
             throw new DatabaseCorruptionException(e);
@@ -475,6 +644,10 @@ public class ParameterArchive extends AbstractYamcsService {
 
     public static class Partition extends TimeInterval {
         final String partitionDir;
+        // loaded on first use, guarded by the partition object
+        PartitionSummary summary;
+        // the summary being loaded, updated by the writers until it replaces the summary above
+        PartitionSummary loadingSummary;
 
         Partition() {
             super();
@@ -501,6 +674,22 @@ public class ParameterArchive extends AbstractYamcsService {
         return maxSegmentSize;
     }
 
+    /**
+     * 
+     * @return the cache of decoded segments or null if the cache is disabled
+     */
+    public SegmentCache getSegmentCache() {
+        return segmentCache;
+    }
+
+    /**
+     * 
+     * @return the back filler or null if back filling is not enabled
+     */
+    public BackFiller getBackFiller() {
+        return backFiller;
+    }
+
     public RealtimeArchiveFiller getRealtimeFiller() {
         return realtimeFiller;
     }
@@ -123,6 +123,18 @@ public class ParameterGroupIdDb {
         }
     }
 
+    /**
+     * 
+     * @return a map from parameter group id to the parameter ids of the group
+     */
+    public synchronized Map<Integer, IntArray> getGroups() {
+        Map<Integer, IntArray> r = new HashMap<>();
+        for (Map.Entry<IntArray, Integer> e : pg2pgidCache.entrySet()) {
+            r.put(e.getValue(), e.getKey());
+        }
+        return r;
+    }
+
     /**
      * get all parameter group ids for the parameters from which this parameter id is part of
      * 
@@ -0,0 +1,108 @@
+package org.yamcs.parameterarchive;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.yamcs.utils.ByteArrayUtils;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+/**
+ * Summary of the (parameter id, parameter group id) pairs which have segments in one partition of the parameter
+ * archive.
+ * <p>
+ * It is used by the {@link ArchiveIterator} to skip the partitions which do not contain data for the parameter and
+ * group retrieved, without creating a RocksDB iterator. This makes a difference for the sparse parameters which appear
+ * only in a few groups and partitions.
+ * <p>
+ * The pairs are kept in a bloom filter: a negative answer is certain whereas a positive one may be wrong with a small
+ * probability (in which case the partition is searched for nothing, as without the summary).
+ * <p>
+ * The summary is not stored in the database; it is built in the background the first time it is needed by seeking in
+ * the partition once for each pair (the first 8 bytes of the segment keys; the keys shorter than a segment key are
+ * skipped) and then kept up to date when data is written to the partition. The data written while it is being built is
+ * added to it as well. The data deleted from the partition is not removed from the summary, it only increases the
+ * false positive rate until the next restart.
+ */
+class PartitionSummary {
+    static final double FPP = 0.01;
+    static final int MIN_CAPACITY = 4096;
+
+    // when the last filter is full, a new one with double capacity is appended
+    private final List<BloomFilter<Long>> filters = new ArrayList<>();
+    private long capacity;
+    private long count;
+
+    /**
+     * Creates an empty summary; used for the new partitions.
+     */
+    PartitionSummary() {
+        capacity = MIN_CAPACITY;
+        filters.add(BloomFilter.create(Funnels.longFunnel(), capacity, FPP));
+    }
+
+    /**
+     * Adds to the summary the keys of the partition
+     */
+    void load(ParameterArchive parchive, ParameterArchive.Partition p) throws RocksDBException, IOException {
+        byte[] prefix = new byte[8];
+        try (RocksIterator it = parchive.getIterator(p)) {
+            it.seekToFirst();
+            while (it.isValid()) {
+                byte[] key = it.key();
+                if (key.length < SegmentKey.KEY_SIZE) {
+                    // not a segment key; without partitioning, the partition is the main database of the instance
+                    // which contains also the keys of the other tables
+                    it.next();
+                    continue;
+                }
+                long k = ByteArrayUtils.decodeLong(key, 0);
+                synchronized (this) {
+                    add(k);
+                }
+                if (k == -1) {
+                    break;
+                }
+                ByteArrayUtils.encodeLong(k + 1, prefix, 0);
+                it.seek(prefix);
+            }
+        }
+    }
+
+    synchronized void add(int parameterId, int parameterGroupId) {
+        add(key(parameterId, parameterGroupId));
+    }
+
+    synchronized boolean mightContain(int parameterId, int parameterGroupId) {
+        long k = key(parameterId, parameterGroupId);
+        for (BloomFilter<Long> f : filters) {
+            if (f.mightContain(k)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void add(long k) {
+        for (BloomFilter<Long> f : filters) {
+            if (f.mightContain(k)) {
+                return;
+            }
+        }
+        if (count == capacity) {
+            capacity *= 2;
+            count = 0;
+            filters.add(BloomFilter.create(Funnels.longFunnel(), capacity, FPP));
+        }
+        filters.get(filters.size() - 1).put(k);
+        count++;
+    }
+
+    static long key(int parameterId, int parameterGroupId) {
+        return ((long) parameterId << 32) | (parameterGroupId & 0xFFFFFFFFL);
+    }
+}
@@ -40,7 +40,11 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
  * Max two segments are kept open for each group, one in each interval.
  * 
  * <p>
- * If the group reaches its max size, it is archived and a new one opened.
+ * If the group reaches its max size or age, it is archived and a new one opened.
+ * <p>
+ * The max size of the segments is adapted for each group such that the encoded segments are close to the configured
+ * segmentTargetSize: narrow or well compressible groups get larger segments (fewer writes, better compression) while
+ * wide groups get smaller segments (less memory, shorter writes).
  * 
  * @author nm
  *
@@ -68,6 +72,15 @@ public class RealtimeArchiveFiller extends AbstractArchiveFiller {
 
     int numThreads;
 
+    // target size in bytes of the encoded segments; 0 means that the segments are limited to maxSegmentSize samples
+    long segmentTargetSize;
+
+    // segments spanning more than this (in milliseconds) are written to the archive; 0 means no limit
+    long maxSegmentAge;
+
+    // the adaptive segment size is kept within [maxSegmentSize/factor, maxSegmentSize*factor]
+    static final int SEGMENT_SIZE_FACTOR = 8;
+
     public RealtimeArchiveFiller(ParameterArchive parameterArchive, YConfiguration config) {
         super(parameterArchive);
         this.parameterArchive = parameterArchive;
@@ -81,6 +94,11 @@ public class RealtimeArchiveFiller extends AbstractArchiveFiller {
         sortingThreshold = config.getInt("sortingThreshold");
         numThreads = config.getInt("numThreads", getDefaultNumThreads());
         pastJumpThreshold = config.getLong("pastJumpThreshold") * 1000;
+        segmentTargetSize = config.getLong("segmentTargetSize");
+        maxSegmentAge = config.getLong("maxSegmentAge") * 1000;
+
+        executor = Executors.newFixedThreadPool(numThreads,
+                new ThreadFactoryBuilder().setNameFormat("realtime-parameter-archive-writer-%d").build());
     }
 
     static Spec getSpec() {
@@ -95,6 +113,8 @@ public class RealtimeArchiveFiller extends AbstractArchiveFiller {
                         + "by more than this threshold in seconds, the old segments are flushed to archinve and a new one is started. "
                         + "This is to avoid that the data is rejected because the time is reinitialized on-board for example.")
                 .withDefault(86400);
+        spec.addOption("segmentTargetSize", OptionType.INTEGER).withDefault(1024 * 1024);
+        spec.addOption("maxSegmentAge", OptionType.INTEGER).withDefault(0);
 
         return spec;
     }
@@ -112,14 +132,13 @@ public class RealtimeArchiveFiller extends AbstractArchiveFiller {
                     processorName);
         }
         subscriptionId = realtimeProcessor.getParameterRequestManager().subscribeAll(this);
-
-        log.debug("Starting executor for archive writing with {} threads", numThreads);
-        executor = Executors.newFixedThreadPool(numThreads,
-                new ThreadFactoryBuilder().setNameFormat("realtime-parameter-archive-writer-%d").build());
+        log.debug("Using {} threads for archive writing", numThreads);
     }
 
     public void shutDown() throws InterruptedException {
-        realtimeProcessor.getParameterRequestManager().unsubscribeAll(subscriptionId);
+        if (realtimeProcessor != null) {
+            realtimeProcessor.getParameterRequestManager().unsubscribeAll(subscriptionId);
+        }
 
         log.info("Shutting down, writing all pending segments");
         for (SegmentQueue queue : queues.values()) {
@@ -198,10 +217,11 @@ public class RealtimeArchiveFiller extends AbstractArchiveFiller {
      * 
      * <p>
      * theoretically if the data comes at the high frequency and the sortingThreshold is high, we can accumulate lots of
-     * segments in memory. There is however a limit of 16 hardcoded for now.
+     * segments in memory. The queue starts with 16 elements and grows when the segments are not written fast enough,
+     * up to {@link #MAX_QSIZE} elements.
      * <p>
-     * Sometimes the maxSegmentSize is exceeded because if a segment is full and new unsorted data fits inside, it is
-     * still added.
+     * The segment size limit is derived from the encoded size per record of the segments already written. Sometimes
+     * the limit is exceeded because if a segment is full and new unsorted data fits inside, it is still added.
      * 
      * <p>
      * 
@@ -209,14 +229,18 @@ public class RealtimeArchiveFiller extends AbstractArchiveFiller {
      */
     class SegmentQueue {
         static final int QSIZE = 16; // has to be a power of 2!
-        static final int MASK = QSIZE - 1;
-        final PGSegment[] segments = new PGSegment[QSIZE];
+        static final int MAX_QSIZE = 1024;
+        PGSegment[] segments = new PGSegment[QSIZE];
+        int mask = QSIZE - 1;
         int head = 0;
         int tail = 0;
 
         final int parameterGroupId;
         final IntArray parameterIds;
 
+        // encoded bytes per record, exponential moving average over the written segments; -1 if not yet known
+        double bytesPerRecord = -1;
+
         public SegmentQueue(int parameterGroupId, IntArray parameterIds) {
             this.parameterGroupId = parameterGroupId;
             this.parameterIds = parameterIds;
@@ -245,7 +269,7 @@ public class RealtimeArchiveFiller extends AbstractArchiveFiller {
             int k = head;
             long tintv = getInterval(t);
 
-            for (; k != tail; k = (k + 1) & MASK) {
+            for (; k != tail; k = (k + 1) & mask) {
                 PGSegment seg = segments[k];
                 long kintv = seg.getInterval();
                 if (kintv < tintv) {
@@ -255,7 +279,7 @@ public class RealtimeArchiveFiller extends AbstractArchiveFiller {
                 }
                 assert (t >= seg.getSegmentStart());
 
-                if (t <= seg.getSegmentEnd() || seg.size() < maxSegmentSize) {
+                if (t <= seg.getSegmentEnd() || !isFull(seg, t)) {
                     // when the first condition is met only, the segment will become bigger than the maxSegmentSize
                     // could be split in two
                     seg.addRecord(t, values);
@@ -265,14 +289,17 @@ public class RealtimeArchiveFiller extends AbstractArchiveFiller {
             }
 
             if (!added) {// to be added on position k
-                if (segments[tail] != null) {
-                    log.warn("Realtime parameter archive queue full."
-                            + "Consider increasing the writerThreads (if CPUs are available) or using a back filler");
-                    return;
+                if (segments[tail] != null || ((tail + 1) & mask) == head) {
+                    if (segments.length >= MAX_QSIZE) {
+                        log.warn("Realtime parameter archive queue full."
+                                + "Consider increasing the numThreads (if CPUs are available) or using a back filler");
+                        return;
+                    }
+                    k = grow(k);
                 }
 
                 long segStart = t - sortingThreshold;
-                PGSegment prev = segments[k - 1 & MASK];
+                PGSegment prev = segments[k - 1 & mask];
                 if (prev != null) {
                     if (segStart <= prev.getSegmentEnd()) {
                         segStart = prev.getSegmentEnd() + 1;
@@ -285,10 +312,10 @@ public class RealtimeArchiveFiller extends AbstractArchiveFiller {
                 seg.addRecord(t, values);
 
                 // shift everything between k and tail to the right
-                for (int i = k; i < tail; i = (i + 1) & MASK) {
-                    segments[(i + 1) & MASK] = segments[i];
+                for (int i = (tail - 1) & mask; i != ((k - 1) & mask); i = (i - 1) & mask) {
+                    segments[(i + 1) & mask] = segments[i];
                 }
-                tail = (tail + 1) & MASK;
+                tail = (tail + 1) & mask;
 
                 // insert on position k
                 segments[k] = seg;
@@ -310,11 +337,11 @@ public class RealtimeArchiveFiller extends AbstractArchiveFiller {
                 PGSegment seg = segments[head];
 
                 if (seg.getInterval() >= getInterval(t1)
-                        && (seg.size() < maxSegmentSize || seg.getSegmentEnd() >= t1)) {
+                        && (!isFull(seg, t) || seg.getSegmentEnd() >= t1)) {
                     break;
                 }
                 int _head = head;
-                head = (head + 1) & MASK;
+                head = (head + 1) & mask;
                 sendToExecutor(_head);
             }
         }
@@ -322,27 +349,90 @@ public class RealtimeArchiveFiller extends AbstractArchiveFiller {
         public synchronized void flush() {
             while (head != tail) {
                 sendToExecutor(head);
-                head = (head + 1) & MASK;
+                head = (head + 1) & mask;
             }
         }
 
         private void sendToExecutor(int idx) {
+            PGSegment seg = segments[idx];
             executor.submit(() -> {
                 try {
-                    PGSegment seg = segments[idx];
                     long t0 = System.nanoTime();
-                    parameterArchive.writeToArchive(seg);
+                    int size = parameterArchive.writeToArchive(seg);
                     long d = System.nanoTime() - t0;
-                    log.debug("Wrote segment {} to archive in {} millisec", seg, d / 1000_000);
+                    log.debug("Wrote segment {} ({} bytes) to archive in {} millisec", seg, size, d / 1000_000);
+                    written(seg, size);
                 } catch (RocksDBException | IOException e) {
                     log.error("Error writing segment to the parameter archive", e);
+                    written(seg, -1);
                 }
-                segments[idx] = null;
             });
         }
 
+        /**
+         * called from the executor after a segment has been written; the slot is released and the size per record is
+         * updated
+         */
+        private synchronized void written(PGSegment seg, int size) {
+            for (int i = 0; i < segments.length; i++) {
+                if (segments[i] == seg) {
+                    segments[i] = null;
+                    break;
+                }
+            }
+            if (size > 0 && seg.size() > 0) {
+                double bpr = (double) size / seg.size();
+                bytesPerRecord = bytesPerRecord < 0 ? bpr : (bytesPerRecord + bpr) / 2;
+            }
+        }
+
+        /**
+         * 
+         * @return the maximum number of records in a segment
+         */
+        synchronized int getSegmentLimit() {
+            if (segmentTargetSize <= 0 || bytesPerRecord <= 0) {
+                return maxSegmentSize;
+            }
+            long n = (long) (segmentTargetSize / bytesPerRecord);
+            long min = Math.max(1, maxSegmentSize / SEGMENT_SIZE_FACTOR);
+            long max = (long) maxSegmentSize * SEGMENT_SIZE_FACTOR;
+            return (int) Math.max(min, Math.min(max, n));
+        }
+
+        /**
+         * A segment is full if it reached the size limit or if it spans more than maxSegmentAge. t is the timestamp
+         * of the newest received data.
+         */
+        private boolean isFull(PGSegment seg, long t) {
+            return seg.size() >= getSegmentLimit() || (maxSegmentAge > 0 && t - seg.getSegmentStart() >= maxSegmentAge);
+        }
+
+        /**
+         * doubles the size of the queue, keeping the order of the elements (including those being written to the
+         * archive, located before head)
+         * 
+         * @return the new position of the element k
+         */
+        private int grow(int k) {
+            int n = segments.length;
+            int size = size();
+            PGSegment[] newSegments = new PGSegment[2 * n];
+            // the oldest element is at tail (the slots are reused in order)
+            for (int i = 0; i < n; i++) {
+                newSegments[i] = segments[(tail + i) & mask];
+            }
+            int newk = n - size + ((k - head) & mask);
+            segments = newSegments;
+            mask = 2 * n - 1;
+            head = n - size;
+            tail = n;
+            log.debug("Parameter group {}: increased the segment queue size to {}", parameterGroupId, 2 * n);
+            return newk;
+        }
+
         public int size() {
-            return (tail - head) & MASK;
+            return (tail - head) & mask;
         }
 
         public boolean isEmpty() {
@@ -365,8 +455,8 @@ public class RealtimeArchiveFiller extends AbstractArchiveFiller {
             List<ParameterValueSegment> r = new ArrayList<>();
 
             int k = head;
-            while (k != tail && segments[(k - 1) & MASK] != null) {
-                k = (k - 1) & MASK;
+            while (k != tail && segments[(k - 1) & mask] != null) {
+                k = (k - 1) & mask;
             }
 
             while (k != tail) {
@@ -378,7 +468,7 @@ public class RealtimeArchiveFiller extends AbstractArchiveFiller {
                 if (pvs != null) {
                     r.add(pvs);
                 }
-                k = (k + 1) & MASK;
+                k = (k + 1) & mask;
             }
 
             return r;
@@ -387,7 +477,7 @@ public class RealtimeArchiveFiller extends AbstractArchiveFiller {
         private List<ParameterValueSegment> getSegmentsDescending(int pid) {
             List<ParameterValueSegment> r = new ArrayList<>();
 
-            int k = (tail - 1) & MASK;
+            int k = (tail - 1) & mask;
 
             while (true) {
                 PGSegment seg = segments[k];
@@ -398,7 +488,7 @@ public class RealtimeArchiveFiller extends AbstractArchiveFiller {
                 if (pvs != null) {
                     r.add(pvs);
                 }
-                k = (k - 1) & MASK;
+                k = (k - 1) & mask;
             }
 
             return r;
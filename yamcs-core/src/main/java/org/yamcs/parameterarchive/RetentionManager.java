@@ -0,0 +1,266 @@
+package org.yamcs.parameterarchive;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+import org.yamcs.Spec;
+import org.yamcs.Spec.OptionType;
+import org.yamcs.YConfiguration;
+import org.yamcs.YamcsServer;
+import org.yamcs.logging.Log;
+import org.yamcs.parameterarchive.ParameterArchive.Partition;
+import org.yamcs.time.TimeService;
+import org.yamcs.utils.IntArray;
+import org.yamcs.utils.TimeEncoding;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Removes from the parameter archive the data older than the retention duration configured for each parameter.
+ * <p>
+ * The segment keys start with the parameter id followed by the parameter group id and the segment start, such that
+ * the history of one parameter in one group is a contiguous key range in each partition. The expired data is removed
+ * with one range deletion for each such range instead of deleting the segments one by one.
+ * <p>
+ * The time segments of a parameter group are removed only if all the parameters of the group have a retention policy;
+ * they are kept for the longest of the retention durations of these parameters.
+ * <p>
+ * The range deletions leave tombstones in the database which are only cleaned up by the RocksDB compaction. To avoid
+ * the sweep competing with the archive filling for disk I/O, the ranges deleted are compacted one by one from a single
+ * low priority thread, with a pause between two consecutive compactions.
+ */
+public class RetentionManager {
+    final ParameterArchive parchive;
+    final TimeService timeService;
+    final List<RetentionPolicy> policies = new ArrayList<>();
+    final long sweepInterval;
+    final long compactionPause;
+    private ScheduledThreadPoolExecutor executor;
+    private final Log log;
+
+    RetentionManager(ParameterArchive parchive, YConfiguration config) {
+        this.parchive = parchive;
+        this.log = new Log(RetentionManager.class, parchive.getYamcsInstance());
+        this.timeService = YamcsServer.getTimeService(parchive.getYamcsInstance());
+        if (config != null) {
+            sweepInterval = config.getLong("sweepInterval");
+            compactionPause = config.getLong("compactionPause");
+            for (YConfiguration pconf : config.getConfigList("policies")) {
+                policies.add(new RetentionPolicy(pconf.getList("parameters"), 1000L * pconf.getLong("duration")));
+            }
+        } else {
+            sweepInterval = 3600;
+            compactionPause = 1000;
+        }
+    }
+
+    public static Spec getSpec() {
+        Spec policySpec = new Spec();
+        policySpec.addOption("parameters", OptionType.LIST_OR_ELEMENT).withElementType(OptionType.STRING)
+                .withRequired(true);
+        policySpec.addOption("duration", OptionType.INTEGER).withRequired(true);
+
+        Spec spec = new Spec();
+        spec.addOption("sweepInterval", OptionType.INTEGER).withDefault(3600);
+        spec.addOption("compactionPause", OptionType.INTEGER).withDefault(1000);
+        spec.addOption("policies", OptionType.LIST).withElementType(OptionType.MAP).withSpec(policySpec)
+                .withDefault(new ArrayList<>());
+        return spec;
+    }
+
+    void start() {
+        if (!policies.isEmpty()) {
+            executor = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                    .setNameFormat("ParameterArchive-Retention-" + parchive.getYamcsInstance())
+                    .setPriority(Thread.MIN_PRIORITY).build());
+            executor.scheduleWithFixedDelay(this::sweep, sweepInterval, sweepInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    void shutDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void sweep() {
+        try {
+            doSweep(timeService.getMissionTime());
+        } catch (Exception e) {
+            log.error("Error when removing the expired data from the parameter archive", e);
+        }
+    }
+
+    /**
+     * Removes all the data that expired at the given time
+     */
+    void doSweep(long now) throws RocksDBException, InterruptedException {
+        Map<Integer, Long> cutoffs = new HashMap<>();
+        parchive.getParameterIdDb().iterate((fqn, pid) -> {
+            RetentionPolicy policy = getPolicy(fqn);
+            if (policy != null) {
+                cutoffs.put(pid.pid, ParameterArchive.getIntervalStart(now - policy.duration));
+            }
+            return true;
+        });
+        if (cutoffs.isEmpty()) {
+            return;
+        }
+        int timeParameterId = parchive.getParameterIdDb().getTimeParameterId();
+
+        Map<Integer, List<KeyRange>> ranges = new HashMap<>();
+        for (Map.Entry<Integer, Long> me : cutoffs.entrySet()) {
+            int pid = me.getKey();
+            for (int pgid : parchive.getParameterGroupIdDb().getAllGroups(pid)) {
+                ranges.computeIfAbsent(pid, k -> new ArrayList<>()).add(new KeyRange(pid, pgid, me.getValue()));
+            }
+        }
+        for (Map.Entry<Integer, IntArray> me : parchive.getParameterGroupIdDb().getGroups().entrySet()) {
+            long groupCutoff = getGroupCutoff(me.getValue(), cutoffs);
+            if (groupCutoff != TimeEncoding.INVALID_INSTANT) {
+                ranges.computeIfAbsent(timeParameterId, k -> new ArrayList<>())
+                        .add(new KeyRange(timeParameterId, me.getKey(), groupCutoff));
+            }
+        }
+        deleteRanges(ranges, true);
+    }
+
+    /**
+     * Removes the history of one parameter, from the beginning of the archive until the start of the interval
+     * containing stop.
+     * <p>
+     * The time segments of the groups are kept. The range tombstones are left to the RocksDB background compaction.
+     */
+    void deleteParameterHistory(String fqn, long stop) throws RocksDBException, InterruptedException {
+        ParameterId[] pids = parchive.getParameterIdDb().get(fqn);
+        if (pids == null) {
+            return;
+        }
+        long cutoff = stop == TimeEncoding.MAX_INSTANT ? stop : ParameterArchive.getIntervalStart(stop);
+        Map<Integer, List<KeyRange>> ranges = new HashMap<>();
+        for (ParameterId pid : pids) {
+            List<KeyRange> l = new ArrayList<>();
+            for (int pgid : parchive.getParameterGroupIdDb().getAllGroups(pid.pid)) {
+                l.add(new KeyRange(pid.pid, pgid, cutoff));
+            }
+            ranges.put(pid.pid, l);
+        }
+        deleteRanges(ranges, false);
+    }
+
+    // returns the oldest cutoff of the parameters of the group or INVALID_INSTANT if any of them has no policy
+    static long getGroupCutoff(IntArray group, Map<Integer, Long> cutoffs) {
+        long groupCutoff = TimeEncoding.MAX_INSTANT;
+        for (int i = 0; i < group.size(); i++) {
+            Long c = cutoffs.get(group.get(i));
+            if (c == null) {
+                return TimeEncoding.INVALID_INSTANT;
+            }
+            groupCutoff = Math.min(groupCutoff, c);
+        }
+        return groupCutoff;
+    }
+
+    private void deleteRanges(Map<Integer, List<KeyRange>> ranges, boolean compact)
+            throws RocksDBException, InterruptedException {
+        long maxCutoff = ranges.values().stream().flatMap(List::stream).mapToLong(r -> r.cutoff).max()
+                .orElse(TimeEncoding.INVALID_INSTANT);
+        if (maxCutoff == TimeEncoding.INVALID_INSTANT) {
+            return;
+        }
+        List<Partition> partitions = parchive.getPartitions(TimeEncoding.MIN_INSTANT, maxCutoff, true);
+        for (Partition p : partitions) {
+            RocksDB db = parchive.getTablespace().getRdb(p.getPartitionDir(), false).getDb();
+            List<KeyRange> deleted = new ArrayList<>();
+            try (WriteBatch writeBatch = new WriteBatch(); WriteOptions wo = new WriteOptions()) {
+                for (List<KeyRange> l : ranges.values()) {
+                    for (KeyRange r : l) {
+                        if (p.getStart() < r.cutoff) {
+                            writeBatch.deleteRange(r.begin(), r.end());
+                            deleted.add(r);
+                        }
+                    }
+                }
+                if (deleted.isEmpty()) {
+                    continue;
+                }
+                db.write(wo, writeBatch);
+            }
+            log.debug("Partition {}: removed {} expired key ranges", p, deleted.size());
+            if (parchive.getSegmentCache() != null) {
+                parchive.getSegmentCache().invalidateAll();
+            }
+            if (!compact) {
+                continue;
+            }
+            for (KeyRange r : deleted) {
+                Thread.sleep(compactionPause);
+                db.compactRange(r.begin(), r.end());
+            }
+        }
+    }
+
+    RetentionPolicy getPolicy(String fqn) {
+        for (RetentionPolicy policy : policies) {
+            if (policy.matches(fqn)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+    static class RetentionPolicy {
+        final List<Pattern> patterns = new ArrayList<>();
+        // milliseconds
+        final long duration;
+
+        RetentionPolicy(List<String> parameters, long duration) {
+            for (String p : parameters) {
+                patterns.add(Pattern.compile(p));
+            }
+            this.duration = duration;
+        }
+
+        boolean matches(String fqn) {
+            for (Pattern p : patterns) {
+                if (p.matcher(fqn).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The keys of one parameter and parameter group with the segment start before the cutoff
+     */
+    static class KeyRange {
+        final int parameterId;
+        final int parameterGroupId;
+        final long cutoff;
+
+        KeyRange(int parameterId, int parameterGroupId, long cutoff) {
+            this.parameterId = parameterId;
+            this.parameterGroupId = parameterGroupId;
+            this.cutoff = cutoff;
+        }
+
+        byte[] begin() {
+            return ByteBuffer.allocate(8).putInt(parameterId).putInt(parameterGroupId).array();
+        }
+
+        byte[] end() {
+            return new SegmentKey(parameterId, parameterGroupId, cutoff, SegmentKey.TYPE_ENG_VALUE).encode();
+        }
+    }
+}
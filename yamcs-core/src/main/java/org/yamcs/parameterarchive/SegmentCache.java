@@ -0,0 +1,209 @@
+package org.yamcs.parameterarchive;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.rocksdb.RocksDBException;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersProducer;
+import org.yamcs.parameter.SystemParametersService;
+import org.yamcs.parameterarchive.ParameterArchive.Partition;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.utils.DecodingException;
+import org.yamcs.xtce.Parameter;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Bounded LRU cache of decoded segments read from the parameter archive.
+ * <p>
+ * The cache is shared by all the retrievals; the entries are keyed by (partition, parameter id, parameter group id,
+ * segment start, segment type) such that the time segment of a group is shared by all the parameters of that group and
+ * the engineering/raw/status segments are shared by requests retrieving different combinations of them.
+ * <p>
+ * The weight of an entry is the largest of the serialized (compressed) size and the maximum uncompressed serialized
+ * size of the segment which is a rough approximation of the memory it uses once decoded.
+ * <p>
+ * The segments written to the archive are invalidated after the write. To avoid a concurrent reader putting back a
+ * segment decoded from data read before the write, a segment is only added to the cache if no invalidation took place
+ * since the reader started loading it.
+ */
+public class SegmentCache implements SystemParametersProducer {
+    // rough memory used by the key and the cache internal structures for each entry
+    static final int ENTRY_OVERHEAD = 100;
+
+    final Cache<Key, CachedSegment> cache;
+    final SegmentEncoderDecoder segmentEncoder = new SegmentEncoderDecoder();
+    final AtomicLong memoryUsage = new AtomicLong();
+    final AtomicLong version = new AtomicLong();
+
+    private Parameter spHits, spMisses, spMemoryUsage, spNumEntries;
+
+    /**
+     * Provides the serialized segment if it is not found in the cache
+     */
+    @FunctionalInterface
+    interface SegmentLoader {
+        byte[] load() throws RocksDBException, IOException;
+    }
+
+    /**
+     *
+     * @param maxSize
+     *            - maximum memory (in bytes) used by the cached segments
+     */
+    public SegmentCache(long maxSize) {
+        cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxSize)
+                .<Key, CachedSegment> weigher((k, v) -> v.weight)
+                .removalListener(n -> memoryUsage.addAndGet(-n.getValue().weight))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the decoded segment from the cache or if not found, loads it with the loader, decodes it and adds it to
+     * the cache.
+     *
+     * @return the decoded segment or null if the loader returns null
+     */
+    BaseSegment get(Partition p, int parameterId, int parameterGroupId, long segmentStart, byte type,
+            SegmentLoader loader) throws RocksDBException, IOException, DecodingException {
+        Key key = new Key(p.partitionDir, parameterId, parameterGroupId, segmentStart, type);
+        CachedSegment cs = cache.getIfPresent(key);
+        if (cs != null) {
+            return cs.segment;
+        }
+        long v = version.get();
+        byte[] data = loader.load();
+        if (data == null) {
+            return null;
+        }
+        BaseSegment segment = segmentEncoder.decode(data, segmentStart);
+        cs = new CachedSegment(segment, ENTRY_OVERHEAD + Math.max(data.length, segment.getMaxSerializedSize()));
+        synchronized (this) {
+            if (version.get() == v) {
+                memoryUsage.addAndGet(cs.weight);
+                cache.put(key, cs);
+            }
+        }
+        return segment;
+    }
+
+    /**
+     * Removes from the cache the segments of the parameter group segment.
+     * <p>
+     * Has to be called after the segments have been written to the archive.
+     */
+    void invalidate(Partition p, PGSegment pgs, int timeParameterId) {
+        int pgid = pgs.getParameterGroupId();
+        long segStart = pgs.getSegmentStart();
+        synchronized (this) {
+            version.incrementAndGet();
+            cache.invalidate(new Key(p.partitionDir, timeParameterId, pgid, segStart, SegmentKey.TYPE_ENG_VALUE));
+            for (int i = 0; i < pgs.parameterIds.size(); i++) {
+                int pid = pgs.parameterIds.get(i);
+                cache.invalidate(new Key(p.partitionDir, pid, pgid, segStart, SegmentKey.TYPE_ENG_VALUE));
+                cache.invalidate(new Key(p.partitionDir, pid, pgid, segStart, SegmentKey.TYPE_RAW_VALUE));
+                cache.invalidate(new Key(p.partitionDir, pid, pgid, segStart, SegmentKey.TYPE_PARAMETER_STATUS));
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (this) {
+            version.incrementAndGet();
+            cache.invalidateAll();
+        }
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     *
+     * @return the approximate memory (in bytes) used by the cached segments
+     */
+    public long getMemoryUsage() {
+        return memoryUsage.get();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    void setupSystemParameters(SystemParametersService sps, String prefix) {
+        spHits = sps.createSystemParameter(prefix + "/hits", Type.SINT64,
+                "Number of parameter archive segments retrieved from the cache");
+        spMisses = sps.createSystemParameter(prefix + "/misses", Type.SINT64,
+                "Number of parameter archive segments which had to be read and decoded from the archive");
+        spMemoryUsage = sps.createSystemParameter(prefix + "/memoryUsage", Type.SINT64,
+                "Approximate memory in bytes used by the cached segments");
+        spNumEntries = sps.createSystemParameter(prefix + "/numEntries", Type.SINT64,
+                "Number of segments in the cache");
+    }
+
+    @Override
+    public Collection<ParameterValue> getSystemParameters(long gentime) {
+        CacheStats stats = cache.stats();
+        return Arrays.asList(SystemParametersService.getPV(spHits, gentime, stats.hitCount()),
+                SystemParametersService.getPV(spMisses, gentime, stats.missCount()),
+                SystemParametersService.getPV(spMemoryUsage, gentime, getMemoryUsage()),
+                SystemParametersService.getPV(spNumEntries, gentime, size()));
+    }
+
+    static final class CachedSegment {
+        final BaseSegment segment;
+        final int weight;
+
+        CachedSegment(BaseSegment segment, int weight) {
+            this.segment = segment;
+            this.weight = weight;
+        }
+    }
+
+    static final class Key {
+        final String partitionDir;
+        final int parameterId;
+        final int parameterGroupId;
+        final long segmentStart;
+        final byte type;
+
+        Key(String partitionDir, int parameterId, int parameterGroupId, long segmentStart, byte type) {
+            this.partitionDir = partitionDir;
+            this.parameterId = parameterId;
+            this.parameterGroupId = parameterGroupId;
+            this.segmentStart = segmentStart;
+            this.type = type;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Objects.hashCode(partitionDir);
+            result = 31 * result + parameterId;
+            result = 31 * result + parameterGroupId;
+            result = 31 * result + Long.hashCode(segmentStart);
+            return 31 * result + type;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return parameterId == other.parameterId && parameterGroupId == other.parameterGroupId
+                    && segmentStart == other.segmentStart && type == other.type
+                    && Objects.equals(partitionDir, other.partitionDir);
+        }
+    }
+}
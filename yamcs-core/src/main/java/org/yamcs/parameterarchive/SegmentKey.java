@@ -18,6 +18,10 @@ public class SegmentKey {
     public static final byte TYPE_ENG_VALUE = 0;
     public static final byte TYPE_RAW_VALUE = 1;
     public static final byte TYPE_PARAMETER_STATUS = 2;
+    /**
+     * size in bytes of the encoded key
+     */
+    public static final int KEY_SIZE = 17;
     
     public SegmentKey(int parameterId, int parameterGroupId, long segmentStart, byte type) {
         this.parameterId = parameterId;
@@ -28,7 +32,7 @@ public class SegmentKey {
     
 
     public byte[] encode() {
-        ByteBuffer bb = ByteBuffer.allocate(17);
+        ByteBuffer bb = ByteBuffer.allocate(KEY_SIZE);
         bb.putInt(parameterId);
         bb.putInt(parameterGroupId);
         bb.putLong(segmentStart);
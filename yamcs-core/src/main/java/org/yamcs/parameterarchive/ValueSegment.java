@@ -1,5 +1,6 @@
 package org.yamcs.parameterarchive;
 
+import org.yamcs.parameter.BasicParameterValue;
 import org.yamcs.parameter.Value;
 import org.yamcs.parameter.ValueArray;
 
@@ -14,6 +15,15 @@ public interface ValueSegment {
 
     public abstract void add(int pos, Value engValue);
 
+    /**
+     * Adds the engineering or the raw value of the parameter value.
+     * <p>
+     * The segments storing primitive values override this to avoid the creation of the {@link Value} object.
+     */
+    public default void add(int pos, BasicParameterValue pv, boolean raw) {
+        add(pos, raw ? pv.getRawValue() : pv.getEngValue());
+    }
+
     public abstract BaseSegment consolidate();
 
     public abstract int size();
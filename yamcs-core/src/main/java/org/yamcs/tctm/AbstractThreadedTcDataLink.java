@@ -96,6 +96,14 @@ public abstract class AbstractThreadedTcDataLink extends AbstractTcDataLink impl
         }
     }
 
+    /**
+     *
+     * @return the number of commands waiting in the queue to be uplinked
+     */
+    public int getQueueSize() {
+        return commandQueue.size();
+    }
+
     @Override
     public void run() {
         if (initialDelay > 0) {
@@ -56,7 +56,7 @@ public class VarIntUtil {
         long v = b &0x7F;
         for (int shift = 7; (b & 0x80) != 0; shift += 7) {
             b = bb.get();
-            v |= (b & 0x7F) << shift;
+            v |= (long) (b & 0x7F) << shift;
         }
         return v;
     }
@@ -132,6 +132,14 @@ public class VarIntUtil {
         return (x << 1) ^ (x >> 31);
     }
 
+    public static long decodeZigZag(long x) {
+        return (x >>> 1) ^ -(x & 1);
+    }
+
+    public static long encodeZigZag(long x) {
+        return (x << 1) ^ (x >> 63);
+    }
+
     public static void writeSizeDelimitedString(ByteBuffer bb, String s) {
         byte[]b = s.getBytes(StandardCharsets.UTF_8);
         writeVarInt32(bb,  b.length);
@@ -209,6 +217,36 @@ public class VarIntUtil {
         }
         return ddz;
     }
+    // same as above for 64 bits
+    public static long[] encodeDeltaDeltaZigZag(LongArray a) {
+        int n = a.size();
+        long[] ddz = new long[n];
+        if(n>0) {
+            ddz[0] = encodeZigZag(a.get(0));
+            long d = 0;
+            for(int i=1; i<n; i++) {
+                long d1 = a.get(i)-a.get(i-1);
+                ddz[i] = encodeZigZag(d1-d);
+                d=d1;
+            }
+        }
+        return ddz;
+    }
+
+    public static long[] decodeDeltaDeltaZigZag(long ddz[]) {
+        int n = ddz.length;
+        long[] x = new long[n];
+        if(n>0) {
+            x[0] = decodeZigZag(ddz[0]);
+            long d = 0;
+            for(int i=1; i<n; i++) {
+                d = d + decodeZigZag(ddz[i]);
+                x[i] = x[i-1] + d;
+            }
+        }
+        return x;
+    }
+
     /**
      * get the number of bytes necessary to encode value
      * @param value
@@ -0,0 +1,221 @@
+package org.yamcs.xtceproc;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.yamcs.ErrorInCommand;
+import org.yamcs.commanding.ArgumentValue;
+import org.yamcs.parameter.Value;
+import org.yamcs.utils.BitBuffer;
+import org.yamcs.xtce.Argument;
+import org.yamcs.xtce.ArgumentAssignment;
+import org.yamcs.xtce.ArgumentEntry;
+import org.yamcs.xtce.ArgumentType;
+import org.yamcs.xtce.BaseDataType;
+import org.yamcs.xtce.CommandContainer;
+import org.yamcs.xtce.DataEncoding;
+import org.yamcs.xtce.FixedValueEntry;
+import org.yamcs.xtce.MetaCommand;
+import org.yamcs.xtce.NumericDataEncoding;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.ParameterEntry;
+import org.yamcs.xtce.SequenceEntry;
+
+/**
+ * The parts of the command building which do not depend on the values provided by the user, computed once per
+ * {@link MetaCommand}.
+ * <p>
+ * These are the flattened list of container entries, the values of the parameters from the container restriction
+ * criteria, the values of the arguments assigned by inheritance and of the arguments with default values, and the
+ * encoded bits of the leading entries whose content is constant (typically the packet header). The entries following
+ * the first variable one are encoded for each command because their position depends on the size of the previous
+ * ones.
+ * <p>
+ * The template does not keep a reference to the {@link MetaCommand} such that it can be cached in a weak map.
+ */
+class CommandTemplate {
+    final Map<Parameter, Value> params;
+
+    // the inheritance assignments, used to check that they are not overwritten by the user
+    final Map<String, String> inheritedAssignment = new HashMap<>();
+
+    // the inheritance assignments which could not be validated here; they are processed like the user input
+    final Map<String, String> uncheckedAssignment = new HashMap<>();
+
+    // the argument values which do not change from one command to another
+    final Map<Argument, Value> constantArgs = new LinkedHashMap<>();
+
+    // the default values of the arguments not assigned by the user
+    final Map<Argument, Value> defaultArgs = new LinkedHashMap<>();
+
+    // null for the commands without container
+    final List<SequenceEntry> entries;
+
+    // the encoded constant entries
+    byte[] prefix;
+    int prefixEntries;
+    int prefixBitPosition;
+    Map<Argument, Value> prefixRawValues = Collections.emptyMap();
+
+    private CommandTemplate(Map<Parameter, Value> params, List<SequenceEntry> entries) {
+        this.params = params;
+        this.entries = entries;
+    }
+
+    static CommandTemplate compile(ProcessorData pdata, MetaCommand mc) throws ErrorInCommand {
+        Map<Parameter, Value> params = new HashMap<>();
+        CommandContainer cmdContainer = mc.getCommandContainer();
+        List<SequenceEntry> entries = null;
+        if (cmdContainer != null) {
+            MetaCommandProcessor.collectParameters(cmdContainer, params);
+            entries = MetaCommandContainerProcessor.getEntries(mc);
+        }
+        CommandTemplate template = new CommandTemplate(params, entries);
+        BitBuffer bitbuf = new BitBuffer(new byte[pdata.getProcessorConfig().getMaxCommandSize()]);
+        TcProcessingContext pcontext = new TcProcessingContext(mc, pdata, new HashMap<>(params), bitbuf, 0);
+        template.collectArguments(mc, pcontext.argumentTypeProcessor);
+        if (entries != null) {
+            template.encodePrefix(pcontext);
+        }
+        return template;
+    }
+
+    private void collectArguments(MetaCommand mc, ArgumentTypeProcessor atp) {
+        for (ArgumentAssignment aa : mc.getEffectiveArgumentAssignmentList()) {
+            String name = aa.getArgumentName();
+            inheritedAssignment.put(name, aa.getArgumentValue());
+            Argument a = mc.getEffectiveArgument(name);
+            Value v = a == null ? null : getConstantValue(atp, a.getArgumentType(), aa.getArgumentValue());
+            if (v == null) {
+                uncheckedAssignment.put(name, aa.getArgumentValue());
+            } else {
+                constantArgs.put(a, v);
+            }
+        }
+
+        List<Argument> argList = mc.getEffectiveArgumentList();
+        if (argList == null) {
+            return;
+        }
+        // array arguments may assign the arguments giving their size, in which case the default value is not used
+        for (Argument a : argList) {
+            if (!(a.getArgumentType() instanceof BaseDataType)) {
+                return;
+            }
+        }
+        for (Argument a : argList) {
+            if (inheritedAssignment.containsKey(a.getName())) {
+                continue;
+            }
+            Object argObj = a.getInitialValue();
+            if (argObj == null) {
+                argObj = a.getArgumentType().getInitialValue();
+            }
+            if (argObj != null) {
+                Value v = getValue(atp, a.getArgumentType(), argObj);
+                if (v != null) {
+                    defaultArgs.put(a, v);
+                }
+            }
+        }
+    }
+
+    private static Value getConstantValue(ArgumentTypeProcessor atp, ArgumentType type, String stringValue) {
+        if (!(type instanceof BaseDataType)) {
+            return null;
+        }
+        try {
+            return getValue(atp, type, type.parseString(stringValue));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the value for the argument or null if it is out of range (the error is then reported when building the
+     * command).
+     */
+    private static Value getValue(ArgumentTypeProcessor atp, ArgumentType type, Object argObj) {
+        try {
+            atp.checkRange(type, argObj);
+            return DataTypeProcessor.getValueForType(type, argObj);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Encodes the leading entries which are the same for all the commands: fixed values, parameters from the
+     * restriction criteria and arguments assigned by inheritance.
+     */
+    private void encodePrefix(TcProcessingContext pcontext) {
+        BitBuffer bitbuf = pcontext.bitbuf;
+        constantArgs.forEach(pcontext::addArgumentValue);
+        int n = 0;
+        try {
+            while (n < entries.size() && isConstant(entries.get(n))) {
+                pcontext.mccProcessor.encode(entries.get(n));
+                n++;
+            }
+        } catch (RuntimeException e) {
+            // the entries will be encoded for each command and the error reported then
+            return;
+        }
+        if (n == 0) {
+            return;
+        }
+        prefixRawValues = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            SequenceEntry se = entries.get(i);
+            if (se instanceof ArgumentEntry) {
+                Argument a = ((ArgumentEntry) se).getArgument();
+                ArgumentValue argValue = pcontext.getCmdArgument(a);
+                prefixRawValues.put(a, argValue.getRawValue());
+            }
+        }
+        prefix = Arrays.copyOf(bitbuf.array(), pcontext.getSize());
+        prefixEntries = n;
+        prefixBitPosition = bitbuf.getPosition();
+    }
+
+    private boolean isConstant(SequenceEntry se) {
+        if (se instanceof FixedValueEntry) {
+            return true;
+        } else if (se instanceof ParameterEntry) {
+            return params.containsKey(((ParameterEntry) se).getParameter());
+        } else if (se instanceof ArgumentEntry) {
+            Argument a = ((ArgumentEntry) se).getArgument();
+            if (!constantArgs.containsKey(a)) {
+                return false;
+            }
+            DataEncoding encoding = ((BaseDataType) a.getArgumentType()).getEncoding();
+            if (encoding == null || encoding.getToBinaryTransformAlgorithm() != null) {
+                return false;
+            }
+            // the context calibrators are selected based on the current parameter values
+            return !(encoding instanceof NumericDataEncoding)
+                    || ((NumericDataEncoding) encoding).getContextCalibratorList() == null;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Copies the encoded constant entries in the buffer of the processing context and returns the index of the first
+     * entry which remains to be encoded.
+     */
+    int applyPrefix(TcProcessingContext pcontext) {
+        if (prefix == null) {
+            return 0;
+        }
+        System.arraycopy(prefix, 0, pcontext.bitbuf.array(), 0, prefix.length);
+        pcontext.bitbuf.setPosition(prefixBitPosition);
+        pcontext.setSize(prefix.length);
+        prefixRawValues.forEach((a, rawValue) -> pcontext.getCmdArgument(a).setRawValue(rawValue));
+        return prefixEntries;
+    }
+}
@@ -0,0 +1,112 @@
+package org.yamcs.xtceproc;
+
+import org.yamcs.parameter.ContainerParameterValue;
+import org.yamcs.utils.BitBuffer;
+import org.yamcs.xtce.ParameterEntry;
+
+/**
+ * Base class for the container decoders generated by the {@link SequenceContainerCompiler}.
+ * <p>
+ * A decoder extracts the first {@link #getNumEntries()} entries of a {@link SubscribedContainer}; the remaining entries
+ * are extracted by the {@link SequenceContainerProcessor}.
+ */
+public abstract class CompiledContainerDecoder {
+    protected final ParameterEntry[] entries;
+
+    protected CompiledContainerDecoder(ParameterEntry[] entries) {
+        this.entries = entries;
+    }
+
+    /**
+     *
+     * @return the number of entries extracted by this decoder
+     */
+    public int getNumEntries() {
+        return entries.length;
+    }
+
+    /**
+     * Extracts the entries starting from the current position of the buffer.
+     *
+     * @param pcontext
+     * @param maxposition
+     *            the maximum buffer position reached so far
+     * @return the new maximum position or, if the processing has to stop because one entry falls outside the container
+     *         and the option ignoreOutOfContainerEntries is set, the bitwise complement (negative) of the maximum
+     *         position.
+     */
+    public int extract(ContainerProcessingContext pcontext, int maxposition) {
+        return doExtract(pcontext, pcontext.buffer, pcontext.options.ignoreOutOfContainerEntries(), maxposition);
+    }
+
+    protected abstract int doExtract(ContainerProcessingContext pcontext, BitBuffer buf, boolean ignoreOut,
+            int maxposition);
+
+    protected final void addUint32(ContainerProcessingContext pcontext, int idx, int offset, int x) {
+        ContainerParameterValue pv = new ContainerParameterValue(entries[idx].getParameter());
+        pv.setRawUnsignedInteger(x);
+        addParameter(pcontext, idx, offset, pv);
+    }
+
+    protected final void addSint32(ContainerProcessingContext pcontext, int idx, int offset, int x) {
+        ContainerParameterValue pv = new ContainerParameterValue(entries[idx].getParameter());
+        pv.setRawSignedInteger(x);
+        addParameter(pcontext, idx, offset, pv);
+    }
+
+    protected final void addUint64(ContainerProcessingContext pcontext, int idx, int offset, long x) {
+        ContainerParameterValue pv = new ContainerParameterValue(entries[idx].getParameter());
+        pv.setRawUnsignedLong(x);
+        addParameter(pcontext, idx, offset, pv);
+    }
+
+    protected final void addSint64(ContainerProcessingContext pcontext, int idx, int offset, long x) {
+        ContainerParameterValue pv = new ContainerParameterValue(entries[idx].getParameter());
+        pv.setRawSignedLong(x);
+        addParameter(pcontext, idx, offset, pv);
+    }
+
+    protected final void addFloat(ContainerProcessingContext pcontext, int idx, int offset, float x) {
+        ContainerParameterValue pv = new ContainerParameterValue(entries[idx].getParameter());
+        pv.setRawFloatValue(x);
+        addParameter(pcontext, idx, offset, pv);
+    }
+
+    protected final void addDouble(ContainerProcessingContext pcontext, int idx, int offset, double x) {
+        ContainerParameterValue pv = new ContainerParameterValue(entries[idx].getParameter());
+        pv.setRawDoubleValue(x);
+        addParameter(pcontext, idx, offset, pv);
+    }
+
+    /**
+     * Completes the parameter value for the entry idx having the raw value set and adds it to the result; it performs
+     * the same steps as the {@link SequenceEntryProcessor}
+     */
+    private void addParameter(ContainerProcessingContext pcontext, int idx, int offset, ContainerParameterValue pv) {
+        ParameterEntry pe = entries[idx];
+        ContainerProcessingResult result = pcontext.result;
+        pcontext.currentEntry = pe;
+
+        pv.setAbsoluteBitOffset(pcontext.containerAbsoluteByteOffset + offset);
+        pv.setBitSize(pcontext.buffer.getPosition() - offset);
+        pcontext.proccessorData.parameterTypeProcessor.calibrate(result, pv);
+
+        pv.setAcquisitionTime(result.acquisitionTime);
+        pv.setGenerationTime(result.generationTime);
+        pv.setExpireMillis(result.expireMillis);
+        pv.setSequenceEntry(pe);
+        result.addTmParam(pv);
+
+        pcontext.currentEntry = null;
+    }
+
+    protected final XtceProcessingException outOfContainer(int idx, int position, BitBuffer buf) {
+        ParameterEntry pe = entries[idx];
+        return new XtceProcessingException(
+                "Could not extract parameter " + pe.getParameter().getQualifiedName()
+                        + " from container " + pe.getContainer().getQualifiedName()
+                        + " at position " + position
+                        + " because it falls beyond the end of the container. Container size in bits: "
+                        + buf.sizeInBits());
+    }
+}
@@ -29,12 +29,20 @@ public class ContainerProcessingOptions {
 
     int maxArraySize = 10000;
 
+    /**
+     * If set to true, the leading fixed layout entries of the containers are extracted by generated code instead of
+     * being interpreted.
+     * 
+     * @see SequenceContainerCompiler
+     */
+    boolean compileContainers = false;
 
     public ContainerProcessingOptions(YConfiguration config) {
         if (config != null) {
             ignoreOutOfContainerEntries = config.getBoolean("ignoreOutOfContainerEntries", false);
             expirationTolerance = config.getDouble("expirationTolerance", expirationTolerance);
             maxArraySize = config.getInt("maxArraySize", maxArraySize);
+            compileContainers = config.getBoolean("compileContainers", compileContainers);
         }
     }
 
@@ -43,6 +51,7 @@ public class ContainerProcessingOptions {
         spec.addOption("ignoreOutOfContainerEntries", OptionType.BOOLEAN).withDefault(false);
         spec.addOption("expirationTolerance", OptionType.FLOAT).withDefault(1.9);
         spec.addOption("maxArraySize", OptionType.INTEGER).withDefault(10000);
+        spec.addOption("compileContainers", OptionType.BOOLEAN).withDefault(false);
 
         return spec;
     }
@@ -81,4 +90,12 @@ public class ContainerProcessingOptions {
     public int getMaxArraySize() {
         return maxArraySize;
     }
+
+    public boolean compileContainers() {
+        return compileContainers;
+    }
+
+    public void setCompileContainers(boolean compileContainers) {
+        this.compileContainers = compileContainers;
+    }
 }
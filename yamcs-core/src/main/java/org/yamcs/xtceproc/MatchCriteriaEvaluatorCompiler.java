@@ -0,0 +1,227 @@
+package org.yamcs.xtceproc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.janino.SimpleCompiler;
+import org.yamcs.logging.Log;
+import org.yamcs.xtce.MatchCriteria;
+import org.yamcs.xtce.OperatorType;
+import org.yamcs.xtceproc.MatchCriteriaEvaluatorFactory.ANDedConditionsEvaluator;
+import org.yamcs.xtceproc.MatchCriteriaEvaluatorFactory.ORedConditionsEvaluator;
+import org.yamcs.xtceproc.MatchCriteriaEvaluatorFactory.RefValueEvaluator;
+
+/**
+ * Compiles {@link MatchCriteria} into Java classes using Janino.
+ * <p>
+ * The evaluators produced by the {@link MatchCriteriaEvaluatorFactory} are interpreting a tree of objects and switch on
+ * the operator type for each evaluation. The compiled evaluator contains one method for each node of the tree with the
+ * operator and the constant inlined, such that the JIT can inline the whole evaluation in the caller.
+ * <p>
+ * Only the reference/value comparisons with integer, float, string and boolean values and the AND/OR combinations of
+ * those are compiled. For everything else (including the case when the value type at runtime does not correspond to
+ * the type of the constant), the generated code falls back to the interpreted evaluator, such that the results are
+ * always the same as the ones of the interpreted version.
+ */
+public class MatchCriteriaEvaluatorCompiler {
+    static final String PACKAGE = "org.yamcs.xtceproc.mcec";
+    static final AtomicInteger counter = new AtomicInteger();
+    private static Log log = new Log(MatchCriteriaEvaluatorCompiler.class);
+
+    /**
+     * Compiles the match criteria into a new evaluator. If the compilation fails, a warning is logged and the
+     * interpreted evaluator is returned.
+     *
+     * @param matchCriteria
+     * @return the compiled evaluator
+     */
+    public static MatchCriteriaEvaluator compile(MatchCriteria matchCriteria) {
+        MatchCriteriaEvaluator interpreted = MatchCriteriaEvaluatorFactory.getEvaluator(matchCriteria);
+        String className = "CompiledMatchCriteria" + counter.incrementAndGet();
+        Generator gen = new Generator();
+        String code = gen.generate(className, interpreted);
+        try {
+            SimpleCompiler compiler = new SimpleCompiler();
+            compiler.cook(code);
+            Class<?> clazz = compiler.getClassLoader().loadClass(PACKAGE + "." + className);
+            return (MatchCriteriaEvaluator) clazz.getConstructor(Object[].class)
+                    .newInstance(new Object[] { gen.args.toArray() });
+        } catch (Exception e) {
+            log.warn("Cannot compile match criteria '{}', using the interpreted evaluator",
+                    interpreted.toExpressionString(), e);
+            if (log.isDebugEnabled()) {
+                log.debug("Generated code:\n{}", code);
+            }
+            return interpreted;
+        }
+    }
+
+    static class Generator {
+        final List<Object> args = new ArrayList<>();
+        final StringBuilder fields = new StringBuilder();
+        final StringBuilder init = new StringBuilder();
+        final StringBuilder methods = new StringBuilder();
+
+        String generate(String className, MatchCriteriaEvaluator root) {
+            addField("MatchCriteriaEvaluator", "interpreted", root);
+            String rootMethod = generateNode(root);
+
+            StringBuilder sb = new StringBuilder();
+            sb.append("package ").append(PACKAGE).append(";\n")
+                    .append("import org.yamcs.parameter.Value;\n")
+                    .append("import org.yamcs.protobuf.Yamcs.Value.Type;\n")
+                    .append("import org.yamcs.xtce.ParameterOrArgumentRef;\n")
+                    .append("import org.yamcs.xtceproc.MatchCriteriaEvaluator;\n")
+                    .append("import org.yamcs.xtceproc.MatchCriteriaEvaluatorFactory;\n")
+                    .append("import org.yamcs.xtceproc.ProcessingData;\n")
+                    .append("public class ").append(className).append(" implements MatchCriteriaEvaluator {\n")
+                    .append(fields)
+                    .append("  public ").append(className).append("(Object[] args) {\n")
+                    .append(init)
+                    .append("  }\n")
+                    .append("  public MatchCriteriaEvaluator.MatchResult evaluate(ProcessingData input) {\n")
+                    .append("    return ").append(rootMethod).append("(input);\n")
+                    .append("  }\n")
+                    .append("  public String toExpressionString() {\n")
+                    .append("    return interpreted.toExpressionString();\n")
+                    .append("  }\n")
+                    .append(methods)
+                    .append("}\n");
+            return sb.toString();
+        }
+
+        private String addField(String type, String name, Object value) {
+            int idx = args.size();
+            args.add(value);
+            fields.append("  private final ").append(type).append(" ").append(name).append(";\n");
+            init.append("    ").append(name).append(" = ");
+            switch (type) {
+            case "long":
+                init.append("((Long) args[").append(idx).append("]).longValue()");
+                break;
+            case "double":
+                init.append("((Double) args[").append(idx).append("]).doubleValue()");
+                break;
+            case "boolean":
+                init.append("((Boolean) args[").append(idx).append("]).booleanValue()");
+                break;
+            default:
+                init.append("(").append(type).append(") args[").append(idx).append("]");
+            }
+            init.append(";\n");
+            return name;
+        }
+
+        private String generateNode(MatchCriteriaEvaluator evaluator) {
+            int n = args.size();
+            String method = "e" + n;
+            String fallback = addField("MatchCriteriaEvaluator", "f" + n, evaluator);
+
+            methods.append("  private MatchCriteriaEvaluator.MatchResult ").append(method)
+                    .append("(ProcessingData input) {\n");
+            if (evaluator instanceof RefValueEvaluator) {
+                generateRefValue(n, (RefValueEvaluator) evaluator, fallback);
+            } else if (evaluator instanceof ANDedConditionsEvaluator) {
+                generateCombination(((ANDedConditionsEvaluator) evaluator).evaluatorList, "NOK", "OK");
+            } else if (evaluator instanceof ORedConditionsEvaluator) {
+                generateCombination(((ORedConditionsEvaluator) evaluator).evaluatorList, "OK", "NOK");
+            } else {
+                methods.append("    return ").append(fallback).append(".evaluate(input);\n");
+            }
+            methods.append("  }\n");
+            return method;
+        }
+
+        /**
+         * the result is the first terminal result found, otherwise UNDEF if any of the evaluators returned UNDEF,
+         * otherwise the default
+         */
+        private void generateCombination(List<MatchCriteriaEvaluator> list, String terminal, String dflt) {
+            List<String> children = new ArrayList<>(list.size());
+            StringBuilder body = new StringBuilder();
+            // generate the children first, the methods cannot be nested
+            for (MatchCriteriaEvaluator mce : list) {
+                children.add(generateNode(mce));
+            }
+            body.append("    boolean undef = false;\n");
+            body.append("    MatchCriteriaEvaluator.MatchResult r;\n");
+            for (String child : children) {
+                body.append("    r = ").append(child).append("(input);\n")
+                        .append("    if (r == MatchCriteriaEvaluator.MatchResult.").append(terminal)
+                        .append(") return r;\n")
+                        .append("    if (r == MatchCriteriaEvaluator.MatchResult.UNDEF) undef = true;\n");
+            }
+            body.append("    return undef ? MatchCriteriaEvaluator.MatchResult.UNDEF")
+                    .append(" : MatchCriteriaEvaluator.MatchResult.").append(dflt).append(";\n");
+            methods.append(body);
+        }
+
+        private void generateRefValue(int n, RefValueEvaluator evaluator, String fallback) {
+            ResolvedValue rv = evaluator.rValue;
+            Object value = rv.value;
+            String op = getOperator(evaluator.comparisonOperator);
+
+            String cmp;
+            StringBuilder extract = new StringBuilder();
+            if (value instanceof Long) {
+                String c = addField("long", "c" + n, value);
+                extract.append("    long l;\n")
+                        .append("    Type t = v.getType();\n")
+                        .append("    if (t == Type.SINT32) l = v.getSint32Value();\n")
+                        .append("    else if (t == Type.SINT64) l = v.getSint64Value();\n")
+                        .append("    else if (t == Type.UINT32) l = v.getUint32Value();\n")
+                        .append("    else if (t == Type.UINT64) l = v.getUint64Value();\n")
+                        .append("    else return ").append(fallback).append(".evaluate(input);\n");
+                cmp = "l " + op + " " + c;
+            } else if (value instanceof Double) {
+                String c = addField("double", "c" + n, value);
+                extract.append("    double d;\n")
+                        .append("    Type t = v.getType();\n")
+                        .append("    if (t == Type.FLOAT) d = v.getFloatValue();\n")
+                        .append("    else if (t == Type.DOUBLE) d = v.getDoubleValue();\n")
+                        .append("    else return ").append(fallback).append(".evaluate(input);\n");
+                cmp = "d " + op + " " + c;
+            } else if (value instanceof String) {
+                String c = addField("String", "c" + n, value);
+                extract.append("    Type t = v.getType();\n")
+                        .append("    if (t != Type.STRING && t != Type.ENUMERATED) return ")
+                        .append(fallback).append(".evaluate(input);\n");
+                cmp = "v.getStringValue().compareTo(" + c + ") " + op + " 0";
+            } else if (value instanceof Boolean) {
+                String c = addField("boolean", "c" + n, value);
+                extract.append("    if (v.getType() != Type.BOOLEAN) return ")
+                        .append(fallback).append(".evaluate(input);\n");
+                cmp = "Boolean.compare(v.getBooleanValue(), " + c + ") " + op + " 0";
+            } else { // binary
+                methods.append("    return ").append(fallback).append(".evaluate(input);\n");
+                return;
+            }
+            String ref = addField("ParameterOrArgumentRef", "ref" + n, evaluator.ref);
+            methods.append("    Value v = MatchCriteriaEvaluatorFactory.getValue(").append(ref).append(", input);\n")
+                    .append("    if (v == null) return MatchCriteriaEvaluator.MatchResult.UNDEF;\n")
+                    .append(extract)
+                    .append("    return (").append(cmp)
+                    .append(") ? MatchCriteriaEvaluator.MatchResult.OK : MatchCriteriaEvaluator.MatchResult.NOK;\n");
+        }
+
+        static String getOperator(OperatorType op) {
+            switch (op) {
+            case EQUALITY:
+                return "==";
+            case INEQUALITY:
+                return "!=";
+            case LARGERTHAN:
+                return ">";
+            case LARGEROREQUALTHAN:
+                return ">=";
+            case SMALLERTHAN:
+                return "<";
+            case SMALLEROREQUALTHAN:
+                return "<=";
+            default:
+                throw new IllegalStateException("Unknown operator " + op);
+            }
+        }
+    }
+}
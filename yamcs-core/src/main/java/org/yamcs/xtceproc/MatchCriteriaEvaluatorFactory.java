@@ -297,14 +297,25 @@ public class MatchCriteriaEvaluatorFactory {
     }
 
     static ResolvedValue resolveValue(ParameterOrArgumentRef ref, ProcessingData input) {
+        return getResolvedValue(getValue(ref, input));
+    }
+
+    /**
+     * Returns the value (raw or engineering as specified in the reference) of the referenced parameter or argument.
+     * <p>
+     * Also used from the code generated by the {@link MatchCriteriaEvaluatorCompiler}.
+     *
+     * @return the value or null if the parameter or argument is not available.
+     */
+    public static Value getValue(ParameterOrArgumentRef ref, ProcessingData input) {
         if (ref instanceof ParameterInstanceRef) {
-            return resolveParameter((ParameterInstanceRef) ref, input);
+            return getParameterValue((ParameterInstanceRef) ref, input);
         } else {
-            return resolveArgument((ArgumentInstanceRef) ref, input.cmdArgs);
+            return getArgumentValue((ArgumentInstanceRef) ref, input.cmdArgs);
         }
     }
 
-    static ResolvedValue resolveParameter(ParameterInstanceRef paramRef, ProcessingData input) {
+    static Value getParameterValue(ParameterInstanceRef paramRef, ProcessingData input) {
         ParameterValue pv = null;
         Parameter p = paramRef.getParameter();
         if (p.getDataSource() == DataSource.COMMAND || p.getDataSource() == DataSource.COMMAND_HISTORY) {
@@ -334,10 +345,10 @@ public class MatchCriteriaEvaluatorFactory {
             }
             v = AggregateUtil.getMemberValue(v, path);
         }
-        return getResolvedValue(v);
+        return v;
     }
 
-    static ResolvedValue resolveArgument(ArgumentInstanceRef argRef, Map<Argument, ArgumentValue> cmdArgs) {
+    static Value getArgumentValue(ArgumentInstanceRef argRef, Map<Argument, ArgumentValue> cmdArgs) {
         Argument arg = argRef.getArgument();
         ArgumentValue argv = cmdArgs.get(arg);
 
@@ -358,7 +369,7 @@ public class MatchCriteriaEvaluatorFactory {
             }
             v = AggregateUtil.getMemberValue(v, path);
         }
-        return getResolvedValue(v);
+        return v;
     }
 
     static ResolvedValue getResolvedValue(Value v) {
@@ -1,5 +1,8 @@
 package org.yamcs.xtceproc;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yamcs.ErrorInCommand;
@@ -19,9 +22,60 @@ public class MetaCommandContainerProcessor {
     }
 
     public void encode(MetaCommand metaCommand) throws ErrorInCommand {
+        encode(getEntries(metaCommand), 0);
+    }
+
+    /**
+     * Encodes the entries of the list starting with the one at the given index.
+     * <p>
+     * The entries preceding the index are supposed to be already encoded in the buffer (whose position is after the
+     * last one of them).
+     */
+    void encode(List<SequenceEntry> entries, int fromIndex) {
+        for (int i = fromIndex; i < entries.size(); i++) {
+            encode(entries.get(i));
+        }
+    }
+
+    void encode(SequenceEntry se) {
+        int size = 0;
+        BitBuffer bitbuf = pcontext.bitbuf;
+        switch (se.getReferenceLocation()) {
+        case PREVIOUS_ENTRY:
+            bitbuf.setPosition(bitbuf.getPosition() + se.getLocationInContainerInBits());
+            break;
+        case CONTAINER_START:
+            bitbuf.setPosition(se.getLocationInContainerInBits());
+        }
+        if (se instanceof ArgumentEntry) {
+            fillInArgumentEntry((ArgumentEntry) se, pcontext);
+            size = (bitbuf.getPosition() + 7) / 8;
+        } else if (se instanceof FixedValueEntry) {
+            fillInFixedValueEntry((FixedValueEntry) se, pcontext);
+            size = (bitbuf.getPosition() + 7) / 8;
+        } else if (se instanceof ParameterEntry) {
+            fillInParameterEntry((ParameterEntry) se, pcontext);
+            size = (bitbuf.getPosition() + 7) / 8;
+        }
+        if (size > pcontext.getSize()) {
+            pcontext.setSize(size);
+        }
+    }
+
+    /**
+     * Returns the entries of the command in the order in which they are encoded: the entries of the parent commands
+     * (or of the base containers) come before the entries of the command container.
+     */
+    static List<SequenceEntry> getEntries(MetaCommand metaCommand) throws ErrorInCommand {
+        List<SequenceEntry> entries = new ArrayList<>();
+        addEntries(metaCommand, entries);
+        return entries;
+    }
+
+    private static void addEntries(MetaCommand metaCommand, List<SequenceEntry> entries) throws ErrorInCommand {
         MetaCommand parent = metaCommand.getBaseMetaCommand();
         if (parent != null) {
-            encode(parent);
+            addEntries(parent, entries);
         }
 
         CommandContainer container = metaCommand.getCommandContainer();
@@ -32,66 +86,18 @@ public class MetaCommandContainerProcessor {
         if (parent == null) { // strange case for inheriting only the container without a command
             Container baseContainer = container.getBaseContainer();
             if (baseContainer != null) {
-                encode(baseContainer);
-            }
-        }
-
-        for (SequenceEntry se : container.getEntryList()) {
-
-            int size = 0;
-            BitBuffer bitbuf = pcontext.bitbuf;
-            switch (se.getReferenceLocation()) {
-            case PREVIOUS_ENTRY:
-                bitbuf.setPosition(bitbuf.getPosition() + se.getLocationInContainerInBits());
-                break;
-            case CONTAINER_START:
-                bitbuf.setPosition(se.getLocationInContainerInBits());
-            }
-            if (se instanceof ArgumentEntry) {
-                fillInArgumentEntry((ArgumentEntry) se, pcontext);
-                size = (bitbuf.getPosition() + 7) / 8;
-            } else if (se instanceof FixedValueEntry) {
-                fillInFixedValueEntry((FixedValueEntry) se, pcontext);
-                size = (bitbuf.getPosition() + 7) / 8;
-            } else if (se instanceof ParameterEntry) {
-                fillInParameterEntry((ParameterEntry) se, pcontext);
-                size = (bitbuf.getPosition() + 7) / 8;
-            }
-            if (size > pcontext.getSize()) {
-                pcontext.setSize(size);
+                addEntries(baseContainer, entries);
             }
         }
+        entries.addAll(container.getEntryList());
     }
 
-    private void encode(Container container) {
+    private static void addEntries(Container container, List<SequenceEntry> entries) {
         Container baseContainer = container.getBaseContainer();
         if (baseContainer != null) {
-            encode(baseContainer);
-        }
-        for (SequenceEntry se : container.getEntryList()) {
-            int size = 0;
-            BitBuffer bitbuf = pcontext.bitbuf;
-            switch (se.getReferenceLocation()) {
-            case PREVIOUS_ENTRY:
-                bitbuf.setPosition(bitbuf.getPosition() + se.getLocationInContainerInBits());
-                break;
-            case CONTAINER_START:
-                bitbuf.setPosition(se.getLocationInContainerInBits());
-            }
-            if (se instanceof ArgumentEntry) {
-                fillInArgumentEntry((ArgumentEntry) se, pcontext);
-                size = (bitbuf.getPosition() + 7) / 8;
-            } else if (se instanceof FixedValueEntry) {
-                fillInFixedValueEntry((FixedValueEntry) se, pcontext);
-                size = (bitbuf.getPosition() + 7) / 8;
-            } else if (se instanceof ParameterEntry) {
-                fillInParameterEntry((ParameterEntry) se, pcontext);
-                size = (bitbuf.getPosition() + 7) / 8;
-            }
-            if (size > pcontext.getSize()) {
-                pcontext.setSize(size);
-            }
+            addEntries(baseContainer, entries);
         }
+        entries.addAll(container.getEntryList());
     }
 
     private void fillInArgumentEntry(ArgumentEntry argEntry, TcProcessingContext pcontext) {
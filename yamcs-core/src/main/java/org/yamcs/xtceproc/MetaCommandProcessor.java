@@ -1,9 +1,11 @@
 package org.yamcs.xtceproc;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.stream.Collectors;
 
 import org.yamcs.ErrorInCommand;
@@ -13,7 +15,6 @@ import org.yamcs.parameter.Value;
 import org.yamcs.utils.BitBuffer;
 import org.yamcs.xtce.Argument;
 import org.yamcs.xtce.ArgumentAssignment;
-import org.yamcs.xtce.CommandContainer;
 import org.yamcs.xtce.Comparison;
 import org.yamcs.xtce.ComparisonList;
 import org.yamcs.xtce.Container;
@@ -23,37 +24,73 @@ import org.yamcs.xtce.OperatorType;
 import org.yamcs.xtce.Parameter;
 import org.yamcs.xtce.ParameterInstanceRef;
 
+/**
+ * Builds the binary commands.
+ * <p>
+ * The parts of the command building not depending on the argument values provided by the user are computed once per
+ * command definition and cached (see {@link CommandTemplate}). The cache is cleared when the type overrides of the
+ * processor change.
+ */
 public class MetaCommandProcessor {
     final ProcessorData pdata;
 
+    // weak keys such that the templates of the commands removed from the MDB do not stay in memory
+    private final Map<MetaCommand, CommandTemplate> templates = Collections.synchronizedMap(new WeakHashMap<>());
+    private volatile int overridesVersion;
+
     public MetaCommandProcessor(ProcessorData pdata) {
         this.pdata = pdata;
+        this.overridesVersion = pdata.getOverridesVersion();
     }
 
     public CommandBuildResult buildCommand(MetaCommand mc, List<ArgumentAssignment> argAssignmentList)
             throws ErrorInCommand {
-        return buildCommand(pdata, mc, argAssignmentList);
+        checkCommand(pdata, mc);
+        return buildCommand(pdata, mc, getTemplate(mc), argAssignmentList);
     }
 
+    /**
+     * Builds the command without using the cached templates.
+     */
     public static CommandBuildResult buildCommand(ProcessorData pdata, MetaCommand mc,
             List<ArgumentAssignment> argAssignmentList) throws ErrorInCommand {
-        if (mc.isAbstract()) {
-            throw new ErrorInCommand("Will not build command " + mc.getQualifiedName() + " because it is abstract");
-        }
+        checkCommand(pdata, mc);
+        return buildCommand(pdata, mc, CommandTemplate.compile(pdata, mc), argAssignmentList);
+    }
 
-        ProcessorConfig procConf = pdata.getProcessorConfig();
+    private CommandTemplate getTemplate(MetaCommand mc) throws ErrorInCommand {
+        int version = pdata.getOverridesVersion();
+        if (version != overridesVersion) {
+            templates.clear();
+            overridesVersion = version;
+        }
+        CommandTemplate template = templates.get(mc);
+        if (template == null) {
+            template = CommandTemplate.compile(pdata, mc);
+            templates.put(mc, template);
+        }
+        return template;
+    }
 
-        Map<Parameter, Value> params = new HashMap<>();
+    int getTemplateCount() {
+        return templates.size();
+    }
 
-        CommandContainer cmdContainer = mc.getCommandContainer();
-        if (cmdContainer == null && !procConf.allowContainerlessCommands()) {
+    private static void checkCommand(ProcessorData pdata, MetaCommand mc) throws ErrorInCommand {
+        if (mc.isAbstract()) {
+            throw new ErrorInCommand("Will not build command " + mc.getQualifiedName() + " because it is abstract");
+        }
+        if (mc.getCommandContainer() == null && !pdata.getProcessorConfig().allowContainerlessCommands()) {
             throw new ErrorInCommand("MetaCommand " + mc.getName()
                     + " has no container (and the processor option allowContainerlessCommands is set to false)");
         }
+    }
 
-        if (cmdContainer != null) {
-            collectParameters(cmdContainer, params);
-        }
+    private static CommandBuildResult buildCommand(ProcessorData pdata, MetaCommand mc, CommandTemplate template,
+            List<ArgumentAssignment> argAssignmentList) throws ErrorInCommand {
+        ProcessorConfig procConf = pdata.getProcessorConfig();
+
+        Map<Parameter, Value> params = new HashMap<>(template.params);
         BitBuffer bitbuf = new BitBuffer(new byte[procConf.getMaxCommandSize()]);
         TcProcessingContext pcontext = new TcProcessingContext(mc, pdata, params, bitbuf, 0);
 
@@ -61,22 +98,27 @@ public class MetaCommandProcessor {
         for (ArgumentAssignment aa : argAssignmentList) {
             argAssignment.put(aa.getArgumentName(), aa.getArgumentValue());
         }
-        List<ArgumentAssignment> inheritedAssignment = mc.getEffectiveArgumentAssignmentList();
-
-        for (ArgumentAssignment aa : inheritedAssignment) {
-            if (argAssignment.containsKey(aa.getArgumentName())) {
-                throw new ErrorInCommand("Cannot overwrite the argument " + aa.getArgumentName()
+        for (String argName : template.inheritedAssignment.keySet()) {
+            if (argAssignment.containsKey(argName)) {
+                throw new ErrorInCommand("Cannot overwrite the argument " + argName
                         + " which is defined in the inheritance assignment list");
             }
-            argAssignment.put(aa.getArgumentName(), aa.getArgumentValue());
+        }
+        argAssignment.putAll(template.uncheckedAssignment);
+        template.constantArgs.forEach(pcontext::addArgumentValue);
+        for (Map.Entry<Argument, Value> e : template.defaultArgs.entrySet()) {
+            if (!argAssignment.containsKey(e.getKey().getName())) {
+                pcontext.addArgumentValue(e.getKey(), e.getValue());
+            }
         }
         collectAndCheckArguments(pcontext, argAssignment);
 
         byte[] binary = null;
 
-        if (cmdContainer != null) {
+        if (template.entries != null) {
             try {
-                pcontext.mccProcessor.encode(mc);
+                int fromIndex = template.applyPrefix(pcontext);
+                pcontext.mccProcessor.encode(template.entries, fromIndex);
             } catch (CommandEncodingException e) {
                 throw new ErrorInCommand("Error when encoding command: " + e.getMessage());
             }
@@ -158,7 +200,7 @@ public class MetaCommandProcessor {
 
     // look at the command container if it inherits another container using a condition list and add those parameters
     // with the respective values
-    private static void collectParameters(Container container, Map<Parameter, Value> params) throws ErrorInCommand {
+    static void collectParameters(Container container, Map<Parameter, Value> params) throws ErrorInCommand {
         Container parent = container.getBaseContainer();
         if (parent != null) {
             MatchCriteria cr = container.getRestrictionCriteria();
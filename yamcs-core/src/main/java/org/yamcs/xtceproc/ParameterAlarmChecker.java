@@ -1,11 +1,13 @@
 package org.yamcs.xtceproc;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yamcs.parameter.ParameterValue;
+import org.yamcs.alarms.AlarmNotification;
 import org.yamcs.alarms.AlarmReporter;
 import org.yamcs.alarms.AlarmServer;
 import org.yamcs.parameter.LastValueCache;
@@ -72,18 +74,22 @@ public class ParameterAlarmChecker {
      * <p>
      * The method is called once before the algorithms are run and once after the algorithms to also check
      * the new values.
+     * <p>
+     * If the alarm server is enabled, the alarm notifications resulting from the check are added to the batch, to be
+     * published by the caller once the whole delivery has been processed.
      */
-    public void performAlarmChecking(ProcessingData processingData, Iterator<ParameterValue> it) {
+    public void performAlarmChecking(ProcessingData processingData, Iterator<ParameterValue> it,
+            List<AlarmNotification<ParameterValue>> batch) {
         while (it.hasNext()) {
             ParameterValue pval = it.next();
             ParameterType ptype = pdata.getParameterType(pval.getParameter());
             if (ptype != null && ptype.hasAlarm()) {
-                performAlarmChecking(processingData, pval, ptype);
+                performAlarmChecking(processingData, pval, ptype, batch);
             } else if (pval.getMonitoringResult() != null) {
                 // monitoring result set already - either processed parameters or some service like the
                 // TimeCorrelationService
                 if (alarmServer != null) {
-                    alarmServer.update(pval, 1, false, false);
+                    alarmServer.update(pval, 1, false, false, batch);
                 }
 
             } // else do not set the MonitoringResult
@@ -101,18 +107,19 @@ public class ParameterAlarmChecker {
     /**
      * Updates the ParameterValue with monitoring (out of limits) information
      */
-    private void performAlarmChecking(ProcessingData processingData, ParameterValue pv, ParameterType ptype) {
+    private void performAlarmChecking(ProcessingData processingData, ParameterValue pv, ParameterType ptype,
+            List<AlarmNotification<ParameterValue>> batch) {
         if (ptype instanceof FloatParameterType) {
-            performAlarmCheckingFloat(processingData, (FloatParameterType) ptype, pv);
+            performAlarmCheckingFloat(processingData, (FloatParameterType) ptype, pv, batch);
         } else if (ptype instanceof EnumeratedParameterType) {
-            performAlarmCheckingEnumerated(processingData, (EnumeratedParameterType) ptype, pv);
+            performAlarmCheckingEnumerated(processingData, (EnumeratedParameterType) ptype, pv, batch);
         } else if (ptype instanceof IntegerParameterType) {
-            performAlarmCheckingInteger(processingData, (IntegerParameterType) ptype, pv);
+            performAlarmCheckingInteger(processingData, (IntegerParameterType) ptype, pv, batch);
         }
     }
 
     private void performAlarmCheckingInteger(ProcessingData processingData,
-            IntegerParameterType ipt, ParameterValue pv) {
+            IntegerParameterType ipt, ParameterValue pv, List<AlarmNotification<ParameterValue>> batch) {
         long intCalValue = 0;
         if (pv.getEngValue().getType() == Type.SINT32) {
             intCalValue = pv.getEngValue().getSint32Value();
@@ -169,12 +176,12 @@ public class ParameterAlarmChecker {
             alarmReporter.reportNumericParameterEvent(pv, alarmType, minViolations);
         }
         if (alarmServer != null) {
-            alarmServer.update(pv, minViolations, autoAck, latching);
+            alarmServer.update(pv, minViolations, autoAck, latching, batch);
         }
     }
 
     private void performAlarmCheckingFloat(ProcessingData processingData,
-            FloatParameterType fpt, ParameterValue pv) {
+            FloatParameterType fpt, ParameterValue pv, List<AlarmNotification<ParameterValue>> batch) {
         double doubleCalValue = 0;
         if (pv.getEngValue().getType() == Type.FLOAT) {
             doubleCalValue = pv.getEngValue().getFloatValue();
@@ -228,7 +235,7 @@ public class ParameterAlarmChecker {
             alarmReporter.reportNumericParameterEvent(pv, alarmType, minViolations);
         }
         if (alarmServer != null) {
-            alarmServer.update(pv, minViolations, autoAck, latching);
+            alarmServer.update(pv, minViolations, autoAck, latching, batch);
         }
     }
 
@@ -281,7 +288,7 @@ public class ParameterAlarmChecker {
     }
 
     private void performAlarmCheckingEnumerated(ProcessingData processingData,
-            EnumeratedParameterType ept, ParameterValue pv) {
+            EnumeratedParameterType ept, ParameterValue pv, List<AlarmNotification<ParameterValue>> batch) {
         pv.setMonitoringResult(null); // Default is DISABLED, but that doesn't seem fit when we are checking
         String s = pv.getEngValue().getStringValue();
 
@@ -337,7 +344,7 @@ public class ParameterAlarmChecker {
         }
 
         if (alarmServer != null) {
-            alarmServer.update(pv, minViolations, autoAck, latching);
+            alarmServer.update(pv, minViolations, autoAck, latching, batch);
         }
     }
 }
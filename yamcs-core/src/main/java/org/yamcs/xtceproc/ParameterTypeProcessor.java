@@ -73,6 +73,20 @@ public class ParameterTypeProcessor {
     private void doCalibrate(ProcessingData processingData, ParameterValue pval) {
         ParameterType ptype = pdata.getParameterType(pval.getParameter());
 
+        if (isNumeric(pval.getRawType())
+                && (ptype instanceof IntegerParameterType || ptype instanceof FloatParameterType)) {
+            // numeric to numeric calibration, done without creating Value objects
+            if (ptype instanceof IntegerParameterType) {
+                calibrateInteger(processingData, (IntegerParameterType) ptype, pval);
+            } else {
+                calibrateFloat(processingData, (FloatParameterType) ptype, pval);
+            }
+            if (checkValidityRanges) {
+                checkValidity(ptype, pval);
+            }
+            return;
+        }
+
         Value engValue = doCalibrate(processingData, ptype, pval.getRawValue());
         if (engValue != null) {
             pval.setEngValue(engValue);
@@ -84,6 +98,86 @@ public class ParameterTypeProcessor {
         }
     }
 
+    private static boolean isNumeric(Type type) {
+        return type == Type.UINT32 || type == Type.SINT32 || type == Type.UINT64 || type == Type.SINT64
+                || type == Type.FLOAT || type == Type.DOUBLE;
+    }
+
+    /**
+     * same as {@link #calibrateInteger(ProcessingData, IntegerParameterType, Value)} for a numeric raw value but
+     * setting the result directly into the parameter value
+     */
+    private void calibrateInteger(ProcessingData processingData, IntegerParameterType ipt, ParameterValue pval) {
+        Type rawType = pval.getRawType();
+        if (!hasCalibrator(ipt) && ipt.getValueType() == rawType) {
+            pval.setEngValueFromRaw();
+            return;
+        }
+        long longValue;
+        switch (rawType) {
+        case UINT32:
+            longValue = pval.getRawLong() & 0xFFFFFFFFL;
+            break;
+        case SINT32:
+        case SINT64:
+        case UINT64:
+            longValue = pval.getRawLong();
+            break;
+        default: // FLOAT, DOUBLE
+            longValue = (long) pval.getRawDouble();
+        }
+        CalibratorProc calibrator = pdata.getCalibrator(processingData, ipt.getEncoding());
+        long longCalValue = (calibrator == null) ? longValue : (long) calibrator.calibrate(longValue);
+
+        if (ipt.getSizeInBits() <= 32) {
+            if (ipt.isSigned()) {
+                pval.setSignedIntegerValue((int) longCalValue);
+            } else {
+                pval.setUnsignedIntegerValue((int) longCalValue);
+            }
+        } else {
+            if (ipt.isSigned()) {
+                pval.setSignedLongValue(longCalValue);
+            } else {
+                pval.setUnsignedLongValue(longCalValue);
+            }
+        }
+    }
+
+    /**
+     * same as {@link #calibrateFloat(ProcessingData, FloatParameterType, Value)} for a numeric raw value but setting
+     * the result directly into the parameter value
+     */
+    private void calibrateFloat(ProcessingData processingData, FloatParameterType ptype, ParameterValue pval) {
+        Type rawType = pval.getRawType();
+        if (!hasCalibrator(ptype) && ptype.getValueType() == rawType) {
+            pval.setEngValueFromRaw();
+            return;
+        }
+        double doubleValue;
+        switch (rawType) {
+        case UINT32:
+            doubleValue = pval.getRawLong() & 0xFFFFFFFFL;
+            break;
+        case SINT32:
+        case SINT64:
+            doubleValue = pval.getRawLong();
+            break;
+        case UINT64:
+            doubleValue = UnsignedLong.toDouble(pval.getRawLong());
+            break;
+        default: // FLOAT, DOUBLE
+            doubleValue = pval.getRawDouble();
+        }
+        CalibratorProc calibrator = pdata.getCalibrator(processingData, ptype.getEncoding());
+        double doubleCalValue = (calibrator == null) ? doubleValue : calibrator.calibrate(doubleValue);
+        if (ptype.getSizeInBits() == 32) {
+            pval.setFloatValue((float) doubleCalValue);
+        } else {
+            pval.setDoubleValue(doubleCalValue);
+        }
+    }
+
     private Value doCalibrate(ProcessingData processingData, ParameterType ptype,
             Value rawValue) {
         Value engValue;
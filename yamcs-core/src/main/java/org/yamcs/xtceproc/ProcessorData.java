@@ -5,6 +5,7 @@ import static org.yamcs.xtce.XtceDb.YAMCS_SPACESYSTEM_NAME;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -56,10 +57,10 @@ public class ProcessorData {
      */
     final ParameterTypeProcessor parameterTypeProcessor;
 
-    private Map<Calibrator, CalibratorProc> calibrators = new HashMap<>();
+    private Map<Calibrator, CalibratorProc> calibrators = new ConcurrentHashMap<>();
     private Map<DataEncoding, DataDecoder> decoders = new HashMap<>();
     private Map<DataEncoding, DataEncoder> encoders = new HashMap<>();
-    private Map<MatchCriteria, MatchCriteriaEvaluator> evaluators = new HashMap<>();
+    private Map<MatchCriteria, MatchCriteriaEvaluator> evaluators = new ConcurrentHashMap<>();
 
     final XtceDb xtcedb;
     final Log log;
@@ -73,6 +74,9 @@ public class ProcessorData {
      * used to store parameter types which are changed dynamically (so they don't correspond anymore to MDB)
      */
     Map<Parameter, ParameterType> typeOverrides = new HashMap<>();
+
+    // incremented each time the type overrides are changed
+    private volatile int overridesVersion;
     String yamcsInstance;
 
     private ProcessorConfig processorConfig;
@@ -252,9 +256,18 @@ public class ProcessorData {
         return calibrator;
     }
 
+    /**
+     * Returns the evaluator for the given match criteria, creating and caching it if necessary.
+     * <p>
+     * If the compileMatchCriteria processor option is set, the evaluators are compiled with the
+     * {@link MatchCriteriaEvaluatorCompiler}.
+     */
     public MatchCriteriaEvaluator getEvaluator(MatchCriteria mc) {
-        return evaluators.computeIfAbsent(mc,
-                k -> MatchCriteriaEvaluatorFactory.getEvaluator(k));
+        if (processorConfig.compileMatchCriteria()) {
+            return evaluators.computeIfAbsent(mc, k -> MatchCriteriaEvaluatorCompiler.compile(k));
+        } else {
+            return evaluators.computeIfAbsent(mc, k -> MatchCriteriaEvaluatorFactory.getEvaluator(k));
+        }
     }
 
     public DataDecoder getDataDecoder(DataEncoding de) {
@@ -307,6 +320,15 @@ public class ProcessorData {
 
     public void clearParameterOverrides(Parameter p) {
         typeOverrides.remove(p);
+        overridesVersion++;
+    }
+
+    /**
+     * Returns a number which changes each time the type overrides are modified. It can be used to invalidate the
+     * information derived from the types.
+     */
+    public int getOverridesVersion() {
+        return overridesVersion;
     }
 
     public void clearParameterCalibratorOverrides(Parameter p) {
@@ -341,6 +363,7 @@ public class ProcessorData {
         NumericParameterType.Builder<?> builder = ptype.toBuilder();
         c.accept(builder);
         typeOverrides.put(p, builder.build());
+        overridesVersion++;
     }
 
     private void modifyEnumeratedTypeOverride(Parameter p, Consumer<EnumeratedParameterType.Builder> c) {
@@ -355,6 +378,7 @@ public class ProcessorData {
         EnumeratedParameterType.Builder builder = ptype.toBuilder();
         c.accept(builder);
         typeOverrides.put(p, builder.build());
+        overridesVersion++;
     }
 
     public void clearParameterAlarmOverrides(Parameter p) {
@@ -378,6 +402,7 @@ public class ProcessorData {
         } else {
             throw new IllegalArgumentException("Can only have alarms on numeric and enumerated parameters");
         }
+        overridesVersion++;
     }
 
     public void removeDefaultCalibrator(Parameter p) {
@@ -0,0 +1,213 @@
+package org.yamcs.xtceproc;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.janino.SimpleCompiler;
+import org.yamcs.logging.Log;
+import org.yamcs.xtce.BaseDataType;
+import org.yamcs.xtce.DataEncoding;
+import org.yamcs.xtce.FloatDataEncoding;
+import org.yamcs.xtce.IntegerDataEncoding;
+import org.yamcs.xtce.ParameterEntry;
+import org.yamcs.xtce.ParameterType;
+import org.yamcs.xtce.SequenceEntry;
+import org.yamcs.xtce.SequenceEntry.ReferenceLocationType;
+
+/**
+ * Generates using Janino a {@link CompiledContainerDecoder} for the entries of a {@link SubscribedContainer}.
+ * <p>
+ * The decoder covers the leading entries of the container which are parameter entries without include condition and
+ * without repeat, having a base data type encoded as unsigned or two's complement integer or as IEEE754 float, without
+ * a custom decoding algorithm. For each of them the generated code contains the positioning, the bit extraction and
+ * the creation of the raw value, without any dispatching on the entry or encoding type. If the position of the entry
+ * in the buffer is known at compile time and it is byte aligned, the value is read directly from the byte array.
+ * <p>
+ * The entries following the first one that does not satisfy the conditions above are left to the interpreter.
+ */
+public class SequenceContainerCompiler {
+    static final String PACKAGE = "org.yamcs.xtceproc.scc";
+    static final AtomicInteger counter = new AtomicInteger();
+    private static Log log = new Log(SequenceContainerCompiler.class);
+
+    /**
+     * Compiles the leading entries of the list.
+     *
+     * @param entries
+     * @return the compiled decoder or null if none of the entries can be compiled or if the compilation fails (in
+     *         which case a warning is logged)
+     */
+    public static CompiledContainerDecoder compile(List<SequenceEntry> entries) {
+        List<ParameterEntry> compilable = new ArrayList<>();
+        for (SequenceEntry se : entries) {
+            if (!isCompilable(se)) {
+                break;
+            }
+            compilable.add((ParameterEntry) se);
+        }
+        if (compilable.isEmpty()) {
+            return null;
+        }
+
+        String className = "CompiledContainer" + counter.incrementAndGet();
+        String code = generate(className, compilable);
+        try {
+            SimpleCompiler compiler = new SimpleCompiler();
+            compiler.cook(code);
+            Class<?> clazz = compiler.getClassLoader().loadClass(PACKAGE + "." + className);
+            return (CompiledContainerDecoder) clazz.getConstructor(ParameterEntry[].class)
+                    .newInstance(new Object[] { compilable.toArray(new ParameterEntry[0]) });
+        } catch (Exception e) {
+            log.warn("Cannot compile the entries of container {}, using the interpreter",
+                    compilable.get(0).getContainer().getQualifiedName(), e);
+            if (log.isDebugEnabled()) {
+                log.debug("Generated code:\n{}", code);
+            }
+            return null;
+        }
+    }
+
+    static boolean isCompilable(SequenceEntry se) {
+        if (se.getClass() != ParameterEntry.class) { // excludes also the ArrayParameterEntry
+            return false;
+        }
+        if (se.getIncludeCondition() != null || se.getRepeatEntry() != null) {
+            return false;
+        }
+        ParameterType ptype = ((ParameterEntry) se).getParameter().getParameterType();
+        if (!(ptype instanceof BaseDataType)) {
+            return false;
+        }
+        DataEncoding de = ((BaseDataType) ptype).getEncoding();
+        if (de == null || de.getFromBinaryTransformAlgorithm() != null) {
+            return false;
+        }
+        int n = de.getSizeInBits();
+        if (de instanceof IntegerDataEncoding) {
+            IntegerDataEncoding.Encoding enc = ((IntegerDataEncoding) de).getEncoding();
+            return (enc == IntegerDataEncoding.Encoding.UNSIGNED || enc == IntegerDataEncoding.Encoding.TWOS_COMPLEMENT)
+                    && n > 0 && n <= 64;
+        } else if (de instanceof FloatDataEncoding) {
+            return ((FloatDataEncoding) de).getEncoding() == FloatDataEncoding.Encoding.IEEE754_1985
+                    && (n == 32 || n == 64);
+        } else {
+            return false;
+        }
+    }
+
+    static String generate(String className, List<ParameterEntry> entries) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(PACKAGE).append(";\n")
+                .append("import java.nio.BufferOverflowException;\n")
+                .append("import java.nio.BufferUnderflowException;\n")
+                .append("import java.nio.ByteOrder;\n")
+                .append("import org.yamcs.utils.BitBuffer;\n")
+                .append("import org.yamcs.xtce.ParameterEntry;\n")
+                .append("import org.yamcs.xtceproc.CompiledContainerDecoder;\n")
+                .append("import org.yamcs.xtceproc.ContainerProcessingContext;\n")
+                .append("public class ").append(className).append(" extends CompiledContainerDecoder {\n")
+                .append("  public ").append(className).append("(ParameterEntry[] entries) {\n")
+                .append("    super(entries);\n")
+                .append("  }\n")
+                .append("  protected int doExtract(ContainerProcessingContext pcontext, BitBuffer buf,")
+                .append(" boolean ignoreOut, int maxpos) {\n")
+                .append("    byte[] b = buf.array();\n")
+                .append("    int o = buf.offset();\n")
+                .append("    int size = buf.sizeInBits();\n")
+                .append("    int i = 0;\n")
+                .append("    int pos = buf.getPosition();\n")
+                .append("    long x;\n")
+                .append("    try {\n");
+
+        // the position of the entry relative to the beginning of the buffer if known at compile time, -1 otherwise
+        int knownPos = -1;
+        for (int i = 0; i < entries.size(); i++) {
+            ParameterEntry pe = entries.get(i);
+            DataEncoding de = ((BaseDataType) pe.getParameter().getParameterType()).getEncoding();
+            int n = de.getSizeInBits();
+            int loc = pe.getLocationInContainerInBits();
+
+            sb.append("      i = ").append(i).append(";\n");
+            if (pe.getReferenceLocation() == ReferenceLocationType.CONTAINER_START) {
+                knownPos = loc;
+                sb.append("      pos = ").append(loc).append(";\n");
+            } else {
+                if (knownPos >= 0) {
+                    knownPos += loc;
+                }
+                sb.append("      pos = buf.getPosition() + ").append(loc).append(";\n");
+            }
+            sb.append("      buf.setPosition(pos);\n")
+                    .append("      if (ignoreOut && pos >= size) return ~maxpos;\n");
+
+            if (knownPos >= 0 && (knownPos & 7) == 0 && (n & 7) == 0) {
+                sb.append("      x = ").append(readBytes(knownPos >> 3, n >> 3, de.getByteOrder())).append(";\n")
+                        .append("      buf.setPosition(pos + ").append(n).append(");\n");
+            } else {
+                sb.append("      buf.setByteOrder(ByteOrder.")
+                        .append(de.getByteOrder() == ByteOrder.LITTLE_ENDIAN ? "LITTLE_ENDIAN" : "BIG_ENDIAN")
+                        .append(");\n")
+                        .append("      x = buf.getBits(").append(n).append(");\n");
+            }
+            sb.append("      ").append(addRawValue(de, n, i)).append(";\n")
+                    .append("      if (buf.getPosition() > maxpos) maxpos = buf.getPosition();\n");
+            if (knownPos >= 0) {
+                knownPos += n;
+            }
+        }
+        sb.append("    } catch (BufferUnderflowException e) {\n")
+                .append("      throw outOfContainer(i, pos, buf);\n")
+                .append("    } catch (BufferOverflowException e) {\n")
+                .append("      throw outOfContainer(i, pos, buf);\n")
+                .append("    } catch (IndexOutOfBoundsException e) {\n")
+                .append("      throw outOfContainer(i, pos, buf);\n")
+                .append("    }\n")
+                .append("    return maxpos;\n")
+                .append("  }\n")
+                .append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * expression reading numBytes from the byte array b starting at byte o+bytePos
+     */
+    static String readBytes(int bytePos, int numBytes, ByteOrder byteOrder) {
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < numBytes; k++) {
+            int shift = byteOrder == ByteOrder.LITTLE_ENDIAN ? 8 * k : 8 * (numBytes - k - 1);
+            if (k > 0) {
+                sb.append(" | ");
+            }
+            sb.append("((long) (b[o + ").append(bytePos + k).append("] & 0xFF)");
+            if (shift > 0) {
+                sb.append(" << ").append(shift);
+            }
+            sb.append(")");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * statement adding the parameter with the raw value from the extracted bits in the variable x, same as the
+     * {@link DataEncodingDecoder}
+     */
+    static String addRawValue(DataEncoding de, int n, int idx) {
+        String args = "(pcontext, " + idx + ", pos, ";
+        if (de instanceof FloatDataEncoding) {
+            return n == 32 ? "addFloat" + args + "Float.intBitsToFloat((int) x))"
+                    : "addDouble" + args + "Double.longBitsToDouble(x))";
+        }
+        boolean signed = ((IntegerDataEncoding) de).getEncoding() == IntegerDataEncoding.Encoding.TWOS_COMPLEMENT;
+        String v = "x";
+        if (signed && n < 64) {
+            v = "((x << " + (64 - n) + ") >> " + (64 - n) + ")";
+        }
+        if (n <= 32) {
+            return (signed ? "addSint32" : "addUint32") + args + "(int) " + v + ")";
+        } else {
+            return (signed ? "addSint64" : "addUint64") + args + v + ")";
+        }
+    }
+}
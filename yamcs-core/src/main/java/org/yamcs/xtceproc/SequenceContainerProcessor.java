@@ -41,7 +41,20 @@ public class SequenceContainerProcessor {
 
         // then extract the entries
         List<SequenceEntry> entries = subscribedContainer.entries;
-        for (SequenceEntry se : entries) {
+        int first = 0;
+        if (options.compileContainers()) {
+            CompiledContainerDecoder decoder = subscribedContainer.getDecoder();
+            if (decoder != null) {
+                maxposition = decoder.extract(pcontext, maxposition);
+                first = decoder.getNumEntries();
+                if (maxposition < 0) { // one entry is outside of the packet
+                    maxposition = ~maxposition;
+                    first = entries.size();
+                }
+            }
+        }
+        for (int idx = first; idx < entries.size(); idx++) {
+            SequenceEntry se = entries.get(idx);
             int position = buf.getPosition();
             try {
                 if (se.getIncludeCondition() != null) {
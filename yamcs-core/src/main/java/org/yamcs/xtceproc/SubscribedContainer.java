@@ -11,13 +11,19 @@ import org.yamcs.xtceproc.MatchCriteriaEvaluator.MatchResult;
 
 public class SubscribedContainer {
     final SequenceContainer conainerDef;
+    final ProcessorData pdata;
     List<SequenceEntry> entries = new ArrayList<>();
 
     List<InheritingContainer> inheritingContainers = new ArrayList<>();
     boolean allEntriesAdded = false;
 
-    public SubscribedContainer(SequenceContainer sc) {
+    // decoder for the leading entries, used if the compileContainers option is set
+    private volatile CompiledContainerDecoder decoder;
+    private volatile boolean decoderCompiled = false;
+
+    public SubscribedContainer(SequenceContainer sc, ProcessorData pdata) {
         this.conainerDef = sc;
+        this.pdata = pdata;
     }
 
     public void addEntry(SequenceEntry se) {
@@ -28,6 +34,7 @@ public class SubscribedContainer {
         int idx = Collections.binarySearch(entries, se);
         if (idx < 0) {
             entries.add(-idx - 1, se);
+            decoderCompiled = false;
         }
     }
 
@@ -36,11 +43,32 @@ public class SubscribedContainer {
             return;
         }
         entries = conainerDef.getEntryList();
+        decoderCompiled = false;
+    }
+
+    /**
+     * Returns the compiled decoder for the leading entries of this container, compiling it if necessary.
+     *
+     * @return the decoder or null if none of the entries can be compiled
+     */
+    CompiledContainerDecoder getDecoder() {
+        if (!decoderCompiled) {
+            synchronized (this) {
+                if (!decoderCompiled) {
+                    decoder = SequenceContainerCompiler.compile(entries);
+                    decoderCompiled = true;
+                }
+            }
+        }
+        return decoder;
     }
 
     public void addIneriting(SubscribedContainer child) {
         if (!inheritingContainers.stream().anyMatch(ic -> ic.container == child)) {
-            inheritingContainers.add(new InheritingContainer(child, child.conainerDef.getRestrictionCriteria()));
+            MatchCriteria mc = child.conainerDef.getRestrictionCriteria();
+            MatchCriteriaEvaluator evaluator = mc == null ? MatchCriteriaEvaluatorFactory.ALWAYS_MATCH
+                    : pdata.getEvaluator(mc);
+            inheritingContainers.add(new InheritingContainer(child, evaluator));
         }
     }
 
@@ -58,10 +86,9 @@ public class SubscribedContainer {
         final SubscribedContainer container;
         final MatchCriteriaEvaluator criteriaEvaluator;
 
-        public InheritingContainer(SubscribedContainer container, MatchCriteria matchCriteria) {
+        public InheritingContainer(SubscribedContainer container, MatchCriteriaEvaluator criteriaEvaluator) {
             this.container = container;
-            criteriaEvaluator = matchCriteria == null ? MatchCriteriaEvaluatorFactory.ALWAYS_MATCH
-                    : MatchCriteriaEvaluatorFactory.getEvaluator(matchCriteria);
+            this.criteriaEvaluator = criteriaEvaluator;
         }
 
         public MatchResult matches(ProcessingData data) {
@@ -33,9 +33,11 @@ public class Subscription {
     final static Logger log = LoggerFactory.getLogger(Subscription.class);
 
     XtceDb xtcedb;
+    final ProcessorData pdata;
 
-    Subscription(XtceDb xtcedb) {
+    Subscription(XtceDb xtcedb, ProcessorData pdata) {
         this.xtcedb = xtcedb;
+        this.pdata = pdata;
     }
 
     public SubscribedContainer addSequenceContainer(SequenceContainer containerDef) {
@@ -44,7 +46,7 @@ public class Subscription {
             return subscribedContainer;
         }
 
-        subscribedContainer = new SubscribedContainer(containerDef);
+        subscribedContainer = new SubscribedContainer(containerDef, pdata);
         containers.put(containerDef, subscribedContainer);
 
         // if there is a base container, add that one to the subscription and the parameters which have to be
@@ -85,7 +87,7 @@ public class Subscription {
      * @param seq
      */
     public void addAll(SequenceContainer seq) {
-        SubscribedContainer subscr = containers.computeIfAbsent(seq, k -> new SubscribedContainer(k));
+        SubscribedContainer subscr = containers.computeIfAbsent(seq, k -> new SubscribedContainer(k, pdata));
         subscr.addAllEntries();
 
         for (SequenceEntry se : seq.getEntryList()) {
@@ -44,7 +44,7 @@ public class XtceTmExtractor {
      */
     public XtceTmExtractor(XtceDb xtcedb, ProcessorData pdata) {
         this.xtcedb = xtcedb;
-        this.subscription = new Subscription(xtcedb);
+        this.subscription = new Subscription(xtcedb, pdata);
         rootContainer = xtcedb.getRootSequenceContainer();
         this.pdata = pdata;
         if (pdata.getProcessorConfig().subscribeContainerArchivePartitions()) {
@@ -0,0 +1,110 @@
+package org.yamcs.yarch;
+
+import org.yamcs.utils.StringConverter;
+import org.yamcs.utils.TimeEncoding;
+
+/**
+ * Number of tuples and their serialized size for one histogram column value inside one time bucket.
+ * <p>
+ * The aggregates are maintained by the histogram writers next to the histogram segments at each of the
+ * {@link Resolution}s. The buckets are aligned to UTC (i.e. the leap seconds are not taken into account) such that a
+ * day bucket corresponds to a calendar day.
+ */
+public class HistogramAggregate {
+    final byte[] columnv;
+    final long bucketStart;
+    final Resolution resolution;
+    long count;
+    long size;
+
+    public enum Resolution {
+        MINUTE(60_000L), HOUR(3600_000L), DAY(86400_000L);
+
+        private final long duration;
+
+        Resolution(long duration) {
+            this.duration = duration;
+        }
+
+        /**
+         *
+         * @return the duration in milliseconds of one bucket
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         *
+         * @param instant
+         * @return the index of the bucket containing the instant
+         */
+        public long bucket(long instant) {
+            return Math.floorDiv(TimeEncoding.toUnixMillisec(instant), duration);
+        }
+
+        /**
+         *
+         * @param bucket
+         * @return the start instant of the bucket with the given index
+         */
+        public long bucketStart(long bucket) {
+            return TimeEncoding.fromUnixMillisec(bucket * duration);
+        }
+    }
+
+    public HistogramAggregate(byte[] columnv, Resolution resolution, long bucketStart, long count, long size) {
+        this.columnv = columnv;
+        this.resolution = resolution;
+        this.bucketStart = bucketStart;
+        this.count = count;
+        this.size = size;
+    }
+
+    public byte[] getColumnv() {
+        return columnv;
+    }
+
+    public Resolution getResolution() {
+        return resolution;
+    }
+
+    /**
+     *
+     * @return the instant corresponding to the start of the bucket
+     */
+    public long getBucketStart() {
+        return bucketStart;
+    }
+
+    /**
+     *
+     * @return number of tuples in the bucket
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     *
+     * @return the total size in bytes of the serialized tuples in the bucket
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Adds the count and size of another aggregate for the same bucket and value; used to merge the aggregates read
+     * from different partitions.
+     */
+    public void add(long count, long size) {
+        this.count += count;
+        this.size += size;
+    }
+
+    @Override
+    public String toString() {
+        return "bucket: " + TimeEncoding.toString(bucketStart) + "(" + resolution + "), columnv: "
+                + StringConverter.arrayToHexString(columnv) + ", count: " + count + ", size: " + size;
+    }
+}
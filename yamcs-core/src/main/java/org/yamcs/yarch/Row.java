@@ -20,6 +20,7 @@ public class Row {
     IndexedList<String, TableColumnDefinition> definition;
     Object[] values;
     byte[] key;
+    int size;
 
     public Row(IndexedList<String, TableColumnDefinition> definition) {
         this.definition = definition;
@@ -60,6 +61,18 @@ public class Row {
         return key;
     }
 
+    /**
+     * Sets the size in bytes of the serialized row (key + value) as written in the database; used for the histogram
+     * aggregates.
+     */
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
     public TableColumnDefinition getColumnDefinition(String colName) {
         return definition.get(colName);
     }
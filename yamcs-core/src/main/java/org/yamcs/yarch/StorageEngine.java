@@ -80,6 +80,14 @@ public interface StorageEngine {
     public HistogramIterator getHistogramIterator(YarchDatabaseInstance ydb, TableDefinition tblDef, String columnName,
             TimeInterval interval) throws YarchException;
 
+    /**
+     * Returns the number of tuples and their size per histogram column value and per time bucket of the given
+     * resolution, for the buckets overlapping with the interval.
+     */
+    public List<HistogramAggregate> getHistogramAggregates(YarchDatabaseInstance ydb, TableDefinition tblDef,
+            String columnName, HistogramAggregate.Resolution resolution, TimeInterval interval)
+            throws YarchException;
+
     public BucketDatabase getBucketDatabase(YarchDatabaseInstance yarchDatabaseInstance) throws YarchException;
 
     public ProtobufDatabase getProtobufDatabase(YarchDatabaseInstance ydb) throws YarchException;
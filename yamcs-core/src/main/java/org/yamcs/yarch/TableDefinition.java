@@ -544,10 +544,16 @@ public class TableDefinition {
             }
 
             // deserialize the value
+            // it may consist of multiple segments (each terminated by -1) concatenated by the RocksDB merge operator
+            // with a one byte delimiter in between; a column appearing in a later segment overrides the previous value
             byteArray = ByteArray.wrap(v);
             while (true) {
                 int cidx = byteArray.getInt(); // column index
                 if (cidx == -1) {
+                    if (byteArray.position() < byteArray.size()) {
+                        byteArray.get(); // merge delimiter
+                        continue;
+                    }
                     break;
                 }
                 byte dt = (byte) (cidx >>> 24);
@@ -565,8 +571,13 @@ public class TableDefinition {
                 }
 
                 Object o = tcd.deserializeValue(byteArray);
-                tdef.addColumn(tcd);
-                cols.add(o);
+                int idx = tdef.getColumnIndex(tcd.getName());
+                if (idx >= 0) {
+                    cols.set(idx, o);
+                } else {
+                    tdef.addColumn(tcd);
+                    cols.add(o);
+                }
             }
         } catch (IOException e) {
             throw new DatabaseCorruptionException(
@@ -579,6 +590,15 @@ public class TableDefinition {
         return new Tuple(tdef, cols);
     }
 
+    /**
+     * 
+     * @return true if the table has auto-increment columns in the value part (their values are generated when the
+     *         rows are serialized)
+     */
+    public boolean hasValueAutoIncrement() {
+        return autoIncrementValues != null;
+    }
+
     public boolean isCompressed() {
         return compressed;
     }
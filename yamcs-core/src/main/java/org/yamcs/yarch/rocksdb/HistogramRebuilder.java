@@ -18,6 +18,7 @@ import org.yamcs.utils.IntArray;
 import org.yamcs.utils.TimeInterval;
 import org.yamcs.yarch.ColumnSerializer;
 import org.yamcs.yarch.DbRange;
+import org.yamcs.yarch.HistogramAggregate.Resolution;
 import org.yamcs.yarch.HistogramInfo;
 import org.yamcs.yarch.HistogramSegment;
 import org.yamcs.yarch.PartitionManager;
@@ -31,6 +32,7 @@ import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord.Type;
 import org.yamcs.yarch.streamsql.StreamSqlException;
 
 import static org.yamcs.yarch.HistogramSegment.segmentStart;
+import static org.yamcs.yarch.rocksdb.RdbHistogramInfo.aggregateDbKey;
 import static org.yamcs.yarch.rocksdb.RdbHistogramInfo.histoDbKey;
 import static org.yamcs.yarch.rocksdb.RdbStorageEngine.dbKey;
 
@@ -154,10 +156,11 @@ public class HistogramRebuilder {
         @Override
         public Action visit(byte[] key, byte[] value) {
             Tuple tuple = tableDefinition.deserialize(key, value);
+            int size = RdbStorageEngine.TBS_INDEX_SIZE + key.length + value.length;
 
             for (ColumnHistoRebuilder chr : clist) {
                 try {
-                    chr.addTuple(tuple);
+                    chr.addTuple(tuple, size);
                 } catch (IOException | RocksDBException e) {
                     cf.completeExceptionally(e);
                     return ACTION_STOP;
@@ -191,7 +194,15 @@ public class HistogramRebuilder {
             // start a new one
             Map<ByteArrayWrapper, HistogramSegment> values = new HashMap<>();
 
-            void addTuple(Tuple tuple) throws IOException, RocksDBException {
+            // same for the aggregates, for each resolution we maintain the last bucket of each column value
+            List<Map<ByteArrayWrapper, AggregateBucket>> aggregates = new ArrayList<>();
+            {
+                for (int i = 0; i < Resolution.values().length; i++) {
+                    aggregates.add(new HashMap<>());
+                }
+            }
+
+            void addTuple(Tuple tuple, int size) throws IOException, RocksDBException {
                 long time = (Long) tuple.getColumn(0);
 
                 ColumnSerializer cs = tableDefinition.getColumnSerializer(columnName);
@@ -216,6 +227,29 @@ public class HistogramRebuilder {
                     values.put(valuew, segment);
                 }
                 segment.merge(dtime);
+
+                for (Resolution res : Resolution.values()) {
+                    long bucket = res.bucket(time);
+                    Map<ByteArrayWrapper, AggregateBucket> m = aggregates.get(res.ordinal());
+                    AggregateBucket ab = m.get(valuew);
+                    if (ab == null) {
+                        ab = new AggregateBucket(bucket);
+                        m.put(valuew, ab);
+                    } else if (ab.bucket != bucket) {
+                        YRDB rdb = tablespace.getRdb(partitionDir, false);
+                        writeAggregate(rdb, res, columnv, ab);
+                        ab = new AggregateBucket(bucket);
+                        m.put(valuew, ab);
+                    }
+                    ab.agg[0]++;
+                    ab.agg[1] += size;
+                }
+            }
+
+            private void writeAggregate(YRDB rdb, Resolution res, byte[] columnv, AggregateBucket ab)
+                    throws RocksDBException {
+                byte[] dbKey = aggregateDbKey(histoInfo.tbsIndex, res, ab.bucket, columnv);
+                rdb.put(dbKey, HistogramWriter.encodeAggregate(ab.agg));
             }
 
             void flush() throws IOException, RocksDBException {
@@ -227,7 +261,22 @@ public class HistogramRebuilder {
                     byte[] dbKey = histoDbKey(histoInfo.tbsIndex, segment.getSegmentStart(), columnv);
                     rdb.put(dbKey, segment.val());
                 }
+                for (Resolution res : Resolution.values()) {
+                    for (Map.Entry<ByteArrayWrapper, AggregateBucket> me : aggregates.get(res.ordinal()).entrySet()) {
+                        writeAggregate(rdb, res, me.getKey().getData(), me.getValue());
+                    }
+                }
             }
         }
     }
+
+    static class AggregateBucket {
+        final long bucket;
+        // count and size
+        final long[] agg = new long[2];
+
+        AggregateBucket(long bucket) {
+            this.bucket = bucket;
+        }
+    }
 }
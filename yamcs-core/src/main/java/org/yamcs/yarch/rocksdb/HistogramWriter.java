@@ -1,6 +1,7 @@
 package org.yamcs.yarch.rocksdb;
 
 import static org.yamcs.yarch.HistogramSegment.segmentStart;
+import static org.yamcs.yarch.rocksdb.RdbHistogramInfo.aggregateDbKey;
 import static org.yamcs.yarch.rocksdb.RdbHistogramInfo.histoDbKey;
 
 import java.io.IOException;
@@ -12,7 +13,11 @@ import java.util.concurrent.CompletableFuture;
 
 import org.rocksdb.RocksDBException;
 import org.rocksdb.Snapshot;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+import org.yamcs.utils.ByteArrayUtils;
 import org.yamcs.utils.ByteArrayWrapper;
+import org.yamcs.yarch.HistogramAggregate.Resolution;
 import org.yamcs.yarch.HistogramSegment;
 import org.yamcs.yarch.Row;
 import org.yamcs.yarch.TableDefinition;
@@ -83,11 +88,15 @@ public abstract class HistogramWriter {
      * handles histogram writes for one column.
      * <p>
      * Keeps a cache of recent modified histogram segments to avoid retrieving them from the db each time.
+     * <p>
+     * Together with the histogram segment, it updates the count and size aggregates for each
+     * {@link Resolution}. The segment and the aggregates are written in one batch.
      * 
      */
     class ColumnHistogramWriter {
         final String columnName;
         int MAX_ENTRIES = 100;
+        int MAX_AGGREGATE_ENTRIES = 100 * Resolution.values().length;
 
         private LinkedHashMap<ByteArrayWrapper, HistogramSegment> segments = new LinkedHashMap<ByteArrayWrapper, HistogramSegment>() {
             protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, HistogramSegment> eldest) {
@@ -95,13 +104,20 @@ public abstract class HistogramWriter {
             };
         };
 
+        // the values are {count, size}
+        private LinkedHashMap<ByteArrayWrapper, long[]> aggregates = new LinkedHashMap<ByteArrayWrapper, long[]>() {
+            protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, long[]> eldest) {
+                return size() > MAX_AGGREGATE_ENTRIES;
+            };
+        };
+
         public ColumnHistogramWriter(String columnName) {
             this.columnName = columnName;
         }
 
-        void addHistogram(long time, byte[] value) {
+        void addHistogram(long time, byte[] value, int size) {
             RdbHistogramInfo histo;
-            try {
+            try (WriteBatch writeBatch = new WriteBatch(); WriteOptions writeOpts = new WriteOptions()) {
                 histo = (RdbHistogramInfo) table.createAndGetHistogram(time, columnName);
                 YRDB rdb = tablespace.getRdb(histo.partitionDir, false);
 
@@ -120,9 +136,22 @@ public abstract class HistogramWriter {
                     }
                 }
                 segment.merge(dtime);
-                rdb.put(histoDbKey, segment.val());
-
+                writeBatch.put(histoDbKey, segment.val());
                 segments.put(hmkey, segment);
+
+                for (Resolution res : Resolution.values()) {
+                    byte[] aggDbKey = aggregateDbKey(histo.tbsIndex, res, res.bucket(time), value);
+                    ByteArrayWrapper amkey = new ByteArrayWrapper(aggDbKey);
+                    long[] agg = aggregates.get(amkey);
+                    if (agg == null) {
+                        agg = decodeAggregate(rdb.get(aggDbKey));
+                    }
+                    agg[0]++;
+                    agg[1] += size;
+                    writeBatch.put(aggDbKey, encodeAggregate(agg));
+                    aggregates.put(amkey, agg);
+                }
+                rdb.write(writeOpts, writeBatch);
             } catch (RocksDBException e) {
                 throw new YarchException(e);
             }
@@ -130,6 +159,22 @@ public abstract class HistogramWriter {
 
         public void cleanup() {
             segments.clear();
+            aggregates.clear();
         }
     }
+
+    static long[] decodeAggregate(byte[] val) {
+        if (val == null) {
+            return new long[2];
+        } else {
+            return new long[] { ByteArrayUtils.decodeLong(val, 0), ByteArrayUtils.decodeLong(val, 8) };
+        }
+    }
+
+    static byte[] encodeAggregate(long[] agg) {
+        byte[] val = new byte[16];
+        ByteArrayUtils.encodeLong(agg[0], val, 0);
+        ByteArrayUtils.encodeLong(agg[1], val, 8);
+        return val;
+    }
 }
@@ -16,6 +16,7 @@ import org.rocksdb.DBOptions;
 import org.rocksdb.Env;
 import org.rocksdb.IndexType;
 import org.rocksdb.Options;
+import org.rocksdb.StringAppendOperator;
 import org.yamcs.ConfigurationException;
 import org.yamcs.YConfiguration;
 
@@ -35,6 +36,12 @@ public class RdbConfig {
     public static final String KEY_TF_CONFIG = "tableFormatConfig";
     public static final int DEFAULT_MAX_OPEN_FILES = 1000;
 
+    /**
+     * Byte inserted by RocksDB between the merge operands of a key (and between the existing value and the first
+     * operand) when they are combined. See {@link RdbTableWriter} for the usage of the merge operation.
+     */
+    public static final char MERGE_DELIMITER = 0;
+
     static final Map<String, CompressionType> COMP_TYPES = new HashMap<>();
     static {
         COMP_TYPES.put("none", CompressionType.DISABLE_COMPRESSION_OPTION);
@@ -94,12 +101,14 @@ public class RdbConfig {
         defaultOptions.useFixedLengthPrefixExtractor(4);
         defaultOptions.setBottommostCompressionType(CompressionType.ZSTD_COMPRESSION);
         defaultOptions.setTargetFileSizeMultiplier(2);
+        defaultOptions.setMergeOperator(new StringAppendOperator(MERGE_DELIMITER));
 
         defaultColumnFamilyOptions.setTableFormatConfig(tableFormatConfig);
         defaultColumnFamilyOptions.useFixedLengthPrefixExtractor(4);
         defaultColumnFamilyOptions.setWriteBufferSize(defaultOptions.writeBufferSize());
         defaultColumnFamilyOptions.setBottommostCompressionType(defaultOptions.bottommostCompressionType());
         defaultColumnFamilyOptions.setTargetFileSizeMultiplier(defaultOptions.targetFileSizeMultiplier());
+        defaultColumnFamilyOptions.setMergeOperator(new StringAppendOperator(MERGE_DELIMITER));
 
         defaultDBOptions = new DBOptions();
         defaultDBOptions.setCreateIfMissing(true);
@@ -168,6 +177,8 @@ public class RdbConfig {
                 throw new ConfigurationException("Cannot parse regexp " + e);
             }
             options.setCreateIfMissing(true);
+            options.setMergeOperator(new StringAppendOperator(MERGE_DELIMITER));
+            cfOptions.setMergeOperator(new StringAppendOperator(MERGE_DELIMITER));
             int maxOpenFiles = tblspConfig.getInt("maxOpenFiles", DEFAULT_MAX_OPEN_FILES);
             if (maxOpenFiles < 20) {
                 throw new ConfigurationException(
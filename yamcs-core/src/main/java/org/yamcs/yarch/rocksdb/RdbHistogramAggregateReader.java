@@ -0,0 +1,93 @@
+package org.yamcs.yarch.rocksdb;
+
+import static org.yamcs.yarch.rocksdb.RdbHistogramInfo.AGGREGATE_KEY_HEADER_SIZE;
+import static org.yamcs.yarch.rocksdb.RdbHistogramInfo.aggregateBucket;
+import static org.yamcs.yarch.rocksdb.RdbHistogramInfo.aggregateDbKey;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.rocksdb.RocksDBException;
+import org.yamcs.utils.ByteArrayWrapper;
+import org.yamcs.utils.TimeInterval;
+import org.yamcs.yarch.HistogramAggregate;
+import org.yamcs.yarch.HistogramAggregate.Resolution;
+import org.yamcs.yarch.PartitionManager;
+import org.yamcs.yarch.TableDefinition;
+
+/**
+ * Reads the histogram aggregates written by the {@link HistogramWriter}.
+ * <p>
+ * The aggregates of the same bucket found in different partitions (if the partition boundary does not fall on a
+ * bucket boundary) are summed up.
+ */
+public class RdbHistogramAggregateReader {
+    final Tablespace tablespace;
+    final TableDefinition tblDef;
+    final String colName;
+
+    public RdbHistogramAggregateReader(Tablespace tablespace, TableDefinition tblDef, String colName) {
+        this.tablespace = tablespace;
+        this.tblDef = tblDef;
+        this.colName = colName;
+    }
+
+    /**
+     * Returns the aggregates of the buckets overlapping with the interval sorted by bucket start.
+     * <p>
+     * The first and last buckets are returned complete even if the interval covers them only partially.
+     */
+    public List<HistogramAggregate> read(Resolution resolution, TimeInterval interval)
+            throws IOException, RocksDBException {
+        long bucketStart = interval.hasStart() ? resolution.bucket(interval.getStart()) : Long.MIN_VALUE;
+        long bucketStop = interval.hasEnd() ? resolution.bucket(interval.getEnd()) : Long.MAX_VALUE;
+
+        Map<Long, Map<ByteArrayWrapper, HistogramAggregate>> buckets = new TreeMap<>();
+        PartitionManager partMgr = tablespace.getTable(tblDef).getPartitionManager();
+        Iterator<PartitionManager.Interval> it = partMgr.intervalIterator(interval);
+        while (it.hasNext()) {
+            RdbHistogramInfo hist = (RdbHistogramInfo) it.next().getHistogram(colName);
+            if (hist == null) {
+                continue;
+            }
+            byte[] dbKeyStart = aggregateDbKey(hist.tbsIndex, resolution, bucketStart, 0);
+            byte[] dbKeyStop = aggregateDbKey(hist.tbsIndex, resolution, bucketStop, 0);
+
+            YRDB rdb = tablespace.getRdb(hist.partitionDir, false);
+            try (AscendingRangeIterator ari = new AscendingRangeIterator(rdb.newIterator(), dbKeyStart, dbKeyStop)) {
+                while (ari.isValid()) {
+                    byte[] key = ari.key();
+                    long[] agg = HistogramWriter.decodeAggregate(ari.value());
+                    long bucket = aggregateBucket(key);
+                    byte[] columnv = Arrays.copyOfRange(key, AGGREGATE_KEY_HEADER_SIZE, key.length);
+
+                    Map<ByteArrayWrapper, HistogramAggregate> m = buckets.computeIfAbsent(bucket,
+                            k -> new LinkedHashMap<>());
+                    ByteArrayWrapper valuew = new ByteArrayWrapper(columnv);
+                    HistogramAggregate ha = m.get(valuew);
+                    if (ha == null) {
+                        m.put(valuew, new HistogramAggregate(columnv, resolution, resolution.bucketStart(bucket),
+                                agg[0], agg[1]));
+                    } else {
+                        ha.add(agg[0], agg[1]);
+                    }
+                    ari.next();
+                }
+            } finally {
+                tablespace.dispose(rdb);
+            }
+        }
+
+        List<HistogramAggregate> result = new ArrayList<>();
+        for (Map<ByteArrayWrapper, HistogramAggregate> m : buckets.values()) {
+            result.addAll(m.values());
+        }
+        return result;
+    }
+}
@@ -1,12 +1,21 @@
 package org.yamcs.yarch.rocksdb;
 
 import org.yamcs.utils.ByteArrayUtils;
+import org.yamcs.yarch.HistogramAggregate.Resolution;
 import org.yamcs.yarch.HistogramInfo;
 
 import static org.yamcs.yarch.rocksdb.RdbStorageEngine.*;
 
 public class RdbHistogramInfo extends HistogramInfo {
-   
+    /**
+     * the aggregates are stored in the same tbsIndex as the histogram segments with this byte following the tbsIndex.
+     * <p>
+     * The histogram segment keys have the segment start (a small positive number) following the tbsIndex so they all
+     * sort before the aggregates.
+     */
+    public static final byte AGGREGATE_MARKER = (byte) 0xFF;
+    static final int AGGREGATE_KEY_HEADER_SIZE = TBS_INDEX_SIZE + 2 + 8;
+
     final int tbsIndex;
     //for time based partitions something like 2017/11
     final String partitionDir;
@@ -26,6 +35,42 @@ public class RdbHistogramInfo extends HistogramInfo {
         return dbKey;
     }
     
+    /**
+     * The key of the aggregate is composed of: tbsIndex(4 bytes), {@link #AGGREGATE_MARKER}(1 byte), resolution (1
+     * byte), bucket (8 bytes), column value
+     * <p>
+     * The bucket is stored with the sign bit flipped such that the negative buckets (before 1970) sort before the
+     * positive ones.
+     */
+    public static byte[] aggregateDbKey(int tbsIndex, Resolution resolution, long bucket, byte[] columnv) {
+        byte[] dbKey = aggregateDbKey(tbsIndex, resolution, bucket, columnv.length);
+        System.arraycopy(columnv, 0, dbKey, AGGREGATE_KEY_HEADER_SIZE, columnv.length);
+        return dbKey;
+    }
+
+    static byte[] aggregateDbKey(int tbsIndex, Resolution resolution, long bucket, int columnvLength) {
+        byte[] dbKey = new byte[AGGREGATE_KEY_HEADER_SIZE + columnvLength];
+        ByteArrayUtils.encodeInt(tbsIndex, dbKey, 0);
+        dbKey[TBS_INDEX_SIZE] = AGGREGATE_MARKER;
+        dbKey[TBS_INDEX_SIZE + 1] = (byte) resolution.ordinal();
+        ByteArrayUtils.encodeLong(bucket ^ Long.MIN_VALUE, dbKey, TBS_INDEX_SIZE + 2);
+        return dbKey;
+    }
+
+    static long aggregateBucket(byte[] dbKey) {
+        return ByteArrayUtils.decodeLong(dbKey, TBS_INDEX_SIZE + 2) ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * 
+     * @return the end key (inclusive as prefix) of the histogram segments, excluding the aggregates
+     */
+    public static byte[] histoDbKeyEnd(int tbsIndex) {
+        byte[] dbKey = ByteArrayUtils.encodeInt(tbsIndex, new byte[TBS_INDEX_SIZE + 8], 0);
+        ByteArrayUtils.encodeLong(Long.MAX_VALUE, dbKey, TBS_INDEX_SIZE);
+        return dbKey;
+    }
+
     @Override
     public String toString() {
         return "RdbHistogramInfo [tbsIndex=" + tbsIndex + ", partitionDir=" + partitionDir + ", columnName="
@@ -91,7 +91,7 @@ public class RdbHistogramIterator implements HistogramIterator {
             long segStop = segmentStart(interval.getEnd());
             ByteArrayUtils.encodeLong(segStop, dbKeyStop, TBS_INDEX_SIZE);
         } else {
-            dbKeyStop = RdbStorageEngine.dbKey(hist.tbsIndex);
+            dbKeyStop = RdbHistogramInfo.histoDbKeyEnd(hist.tbsIndex);
             strictEnd = false;
         }
         if (segmentIterator != null) {
@@ -210,7 +210,7 @@ public class RdbHistogramIterator implements HistogramIterator {
                 long segStop = segmentStart(interval.getEnd());
                 ByteArrayUtils.encodeLong(segStop, dbKeyStop, TBS_INDEX_SIZE);
             } else {
-                dbKeyStop = RdbStorageEngine.dbKey(hist.tbsIndex);
+                dbKeyStop = RdbHistogramInfo.histoDbKeyEnd(hist.tbsIndex);
             }
             if (segmentIterator != null) {
                 segmentIterator.close();
@@ -15,6 +15,8 @@ import org.yamcs.logging.Log;
 import org.yamcs.utils.ByteArrayUtils;
 import org.yamcs.utils.TimeInterval;
 import org.yamcs.yarch.BucketDatabase;
+import org.yamcs.yarch.HistogramAggregate;
+import org.yamcs.yarch.HistogramAggregate.Resolution;
 import org.yamcs.yarch.HistogramIterator;
 import org.yamcs.yarch.ProtobufDatabase;
 import org.yamcs.yarch.Sequence;
@@ -228,6 +230,18 @@ public class RdbStorageEngine implements StorageEngine {
         }
     }
 
+    @Override
+    public List<HistogramAggregate> getHistogramAggregates(YarchDatabaseInstance ydb, TableDefinition tblDef,
+            String columnName, Resolution resolution, TimeInterval interval) throws YarchException {
+        checkFormatVersion(ydb, tblDef);
+        try {
+            Tablespace tblsp = getTablespace(ydb);
+            return new RdbHistogramAggregateReader(tblsp, tblDef, columnName).read(resolution, interval);
+        } catch (RocksDBException | IOException e) {
+            throw new YarchException(e);
+        }
+    }
+
     @Override
     public synchronized BucketDatabase getBucketDatabase(YarchDatabaseInstance ydb) throws YarchException {
         String tablespaceName = ydb.getTablespaceName();
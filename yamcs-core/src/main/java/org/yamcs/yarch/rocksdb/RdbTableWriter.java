@@ -5,6 +5,8 @@ import static org.yamcs.yarch.rocksdb.RdbStorageEngine.dbKey;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.rocksdb.RocksDBException;
 import org.rocksdb.WriteBatch;
@@ -12,6 +14,7 @@ import org.rocksdb.WriteOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yamcs.YamcsServer;
+import org.yamcs.utils.ByteArrayWrapper;
 import org.yamcs.utils.TimeEncoding;
 import org.yamcs.yarch.ColumnDefinition;
 import org.yamcs.yarch.DataType;
@@ -54,6 +57,9 @@ public class RdbTableWriter extends TableWriter {
     final HistogramWriter histoWriter;
     final SecondaryIndexWriter indexWriter;
     TableDefinition tableDefinition;
+    // keys recently written with upsert_append, used to know if a row is new without reading it from the database
+    final RecentKeys recentKeys = new RecentKeys(RECENT_KEYS_SIZE);
+    static final int RECENT_KEYS_SIZE = 10000;
 
     public RdbTableWriter(YarchDatabaseInstance ydb, RdbTable table, InsertMode mode) {
         super(ydb, table, mode);
@@ -206,7 +212,46 @@ public class RdbTableWriter extends TableWriter {
         }
     }
 
+    /**
+     * Writes the columns of the tuple as a merge operand: RocksDB concatenates it to the existing value (if any) and
+     * the {@link TableDefinition#deserialize(byte[], byte[])} resolves the columns appearing multiple times by keeping
+     * the last value. This avoids reading and rewriting the full row each time a few columns are added or updated.
+     * <p>
+     * The tables with auto-increment value columns or secondary indices still use the read-modify-write because the
+     * generated values resp. the index entries depend on the full row.
+     */
     private void upsertAppend(YRDB rdb, RdbPartition partition, Tuple t) throws RocksDBException, IOException {
+        if (indexWriter != null || tableDefinition.hasValueAutoIncrement()) {
+            upsertAppendRmw(rdb, partition, t);
+            return;
+        }
+        Row row = tableDefinition.generateRow(t);
+        byte[] dbKey = dbKey(partition.tbsIndex, row.getKey());
+        byte[] v = tableDefinition.serializeValue(t, row);
+        row.setSize(dbKey.length + v.length);
+
+        if (histoWriter == null) {
+            rdb.merge(dbKey, v);
+            return;
+        }
+        // the histogram has to be updated only for the new rows
+        boolean inserted = false;
+        rdb.lock(dbKey);
+        try {
+            if (!recentKeys.contains(dbKey) && rdb.get(dbKey) == null) {
+                inserted = true;
+            }
+            rdb.merge(dbKey, v);
+            recentKeys.add(dbKey);
+        } finally {
+            rdb.unlock(dbKey);
+        }
+        if (inserted) {
+            histoWriter.addHistogram(row);
+        }
+    }
+
+    private void upsertAppendRmw(YRDB rdb, RdbPartition partition, Tuple t) throws RocksDBException, IOException {
         Row row = tableDefinition.generateRow(t);
         byte[] dbKey = dbKey(partition.tbsIndex, row.getKey());
 
@@ -259,6 +304,7 @@ public class RdbTableWriter extends TableWriter {
 
     private void writeToDb(YRDB rdb, RdbPartition partition, byte[] key, byte[] value, Row row)
             throws RocksDBException {
+        row.setSize(key.length + value.length);
         if (indexWriter == null) {
             rdb.put(key, value);
             return;
@@ -318,4 +364,26 @@ public class RdbTableWriter extends TableWriter {
         log.debug("Stream {} closed", stream.getName());
         close();
     }
+
+    static class RecentKeys {
+        final Map<ByteArrayWrapper, Boolean> keys;
+
+        @SuppressWarnings("serial")
+        RecentKeys(int maxSize) {
+            keys = new LinkedHashMap<ByteArrayWrapper, Boolean>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, Boolean> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        synchronized boolean contains(byte[] key) {
+            return keys.containsKey(new ByteArrayWrapper(key));
+        }
+
+        synchronized void add(byte[] key) {
+            keys.put(new ByteArrayWrapper(key), Boolean.TRUE);
+        }
+    }
 }
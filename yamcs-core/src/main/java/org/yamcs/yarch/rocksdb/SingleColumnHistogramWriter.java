@@ -45,7 +45,7 @@ public class SingleColumnHistogramWriter extends HistogramWriter {
         RdbHistogramInfo histo = table.createAndGetHistogram(time, columnName);
         WhileRebuild wr = wrs.get(histo.partitionDir);
         if (wr == null) {
-            colHistoWriter.addHistogram(time, v);
+            colHistoWriter.addHistogram(time, v, row.getSize());
         } else {
             if (wr.cf != null) {
                 // the histogram rebuilder is waiting for a snapshot
@@ -54,7 +54,7 @@ public class SingleColumnHistogramWriter extends HistogramWriter {
                 // we know that this tuple has already been added to the db so it is part of the snapshot
                 // we therefore don't queue this tuple but start from the next one
             } else {
-                wr.queue.add(new HistoData(time, v));
+                wr.queue.add(new HistoData(time, v, row.getSize()));
             }
         }
     }
@@ -132,17 +132,19 @@ public class SingleColumnHistogramWriter extends HistogramWriter {
             throw new IllegalStateException("Not queing for this partition");
         }
         for (HistoData hd : wr.queue) {
-            colHistoWriter.addHistogram(hd.time, hd.value);
+            colHistoWriter.addHistogram(hd.time, hd.value, hd.size);
         }
     }
 
     static class HistoData {
         long time;
         byte[] value;
+        int size;
 
-        public HistoData(long time, byte[] value) {
+        public HistoData(long time, byte[] value, int size) {
             this.time = time;
             this.value = value;
+            this.size = size;
         }
     }
 
@@ -188,6 +188,13 @@ public class YRDB {
         db.put(writeOpt, k, v);
     }
 
+    /**
+     * {@link RocksDB#merge}
+     */
+    public void merge(byte[] k, byte[] v) throws RocksDBException {
+        db.merge(k, v);
+    }
+
     public List<byte[]> getColumnFamilies() {
         List<byte[]> l = new ArrayList<>();
         for (ByteArrayWrapper baw : columnFamilies.keySet()) {
@@ -1,15 +1,20 @@
 package org.yamcs;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 
@@ -20,14 +25,20 @@ import org.yamcs.client.Command;
 import org.yamcs.client.CommandSubscription;
 import org.yamcs.client.Page;
 import org.yamcs.client.archive.ArchiveClient;
+import org.yamcs.client.base.ResponseObserver;
 import org.yamcs.client.processor.ProcessorClient;
 import org.yamcs.cmdhistory.CommandHistoryPublisher;
 import org.yamcs.cmdhistory.CommandHistoryPublisher.AckStatus;
+import org.yamcs.protobuf.BatchIssueCommandsRequest;
+import org.yamcs.protobuf.BatchIssueCommandsResponse;
 import org.yamcs.protobuf.Commanding.CommandHistoryAttribute;
 import org.yamcs.protobuf.Commanding.CommandHistoryEntry;
 import org.yamcs.protobuf.Commanding.VerifierConfig;
 import org.yamcs.protobuf.Commanding.VerifierConfig.CheckWindow;
+import org.yamcs.protobuf.CommandsApiClient;
 import org.yamcs.protobuf.IndexGroup;
+import org.yamcs.protobuf.IssueCommandRequest;
+import org.yamcs.protobuf.IssueCommandRequest.Assignment;
 import org.yamcs.protobuf.SubscribeCommandsRequest;
 import org.yamcs.protobuf.Yamcs.Value;
 import org.yamcs.protobuf.Yamcs.Value.Type;
@@ -73,6 +84,93 @@ public class CommandIntegrationTest extends AbstractIntegrationTest {
         assertEquals("IntegrationTest", entry.getOrigin());
     }
 
+    @Test
+    public void testBatchIssueCommands() throws Exception {
+        IssueCommandRequest command = IssueCommandRequest.newBuilder()
+                .setName("/REFMDB/SUBSYS1/ONE_INT_ARG_TC")
+                .addAssignment(Assignment.newBuilder().setName("uint32_arg").setValue("1000"))
+                .setOrigin("IntegrationTest")
+                .build();
+        BatchIssueCommandsRequest request = BatchIssueCommandsRequest.newBuilder()
+                .setInstance(yamcsInstance)
+                .setProcessor("realtime")
+                .addCommands(IssueCommandRequest.newBuilder(command).setSequenceNumber(21))
+                .addCommands(IssueCommandRequest.newBuilder(command).clearAssignment()
+                        .addAssignment(Assignment.newBuilder().setName("uint32_arg").setValue("invalid"))
+                        .setSequenceNumber(22))
+                .addCommands(IssueCommandRequest.newBuilder(command).setSequenceNumber(23))
+                .build();
+        CompletableFuture<BatchIssueCommandsResponse> f = new CompletableFuture<>();
+        new CommandsApiClient(yamcsClient.getMethodHandler()).batchIssueCommands(null, request,
+                new ResponseObserver<>(f));
+        BatchIssueCommandsResponse response = f.get();
+
+        assertEquals(3, response.getResultsCount());
+        assertEquals(21, response.getResults(0).getResponse().getSequenceNumber());
+        assertEquals("default", response.getResults(0).getResponse().getQueue());
+        // the invalid argument fails only the second command
+        assertFalse(response.getResults(1).hasResponse());
+        assertTrue(response.getResults(1).hasError());
+        assertEquals(23, response.getResults(2).getResponse().getSequenceNumber());
+
+        // both commands are added before being queued
+        CommandHistoryEntry cmdhist = captor.expectTimely();
+        assertEquals(21, cmdhist.getSequenceNumber());
+        cmdhist = captor.expectTimely();
+        assertEquals(23, cmdhist.getSequenceNumber());
+
+        // the queue and the queue acknowledgement come in one update
+        cmdhist = captor.expectTimely();
+        assertEquals(response.getResults(0).getResponse().getId(), cmdhist.getId());
+        assertEquals(3, cmdhist.getAttrCount());
+        assertEquals(CommandHistoryPublisher.Queue_KEY, cmdhist.getAttr(0).getName());
+        assertEquals("default", cmdhist.getAttr(0).getValue().getStringValue());
+        assertEquals(CommandHistoryPublisher.AcknowledgeQueued_KEY + "_Status", cmdhist.getAttr(1).getName());
+        assertEquals(AckStatus.OK.name(), cmdhist.getAttr(1).getValue().getStringValue());
+    }
+
+    @Test
+    public void testBatchIssueIdenticalCommands() throws Exception {
+        // identical commands without sequence number, with comments making the body larger than 64 KB
+        char[] comment = new char[1000];
+        Arrays.fill(comment, 'x');
+        IssueCommandRequest command = IssueCommandRequest.newBuilder()
+                .setName("/REFMDB/SUBSYS1/ONE_INT_ARG_TC")
+                .addAssignment(Assignment.newBuilder().setName("uint32_arg").setValue("1000"))
+                .setOrigin("IntegrationTest")
+                .setComment(new String(comment))
+                .build();
+        BatchIssueCommandsRequest.Builder requestb = BatchIssueCommandsRequest.newBuilder()
+                .setInstance(yamcsInstance)
+                .setProcessor("realtime");
+        for (int i = 0; i < 100; i++) {
+            requestb.addCommands(command);
+        }
+        BatchIssueCommandsRequest request = requestb.build();
+        assertTrue(request.getSerializedSize() > 65536);
+
+        CompletableFuture<BatchIssueCommandsResponse> f = new CompletableFuture<>();
+        new CommandsApiClient(yamcsClient.getMethodHandler()).batchIssueCommands(null, request,
+                new ResponseObserver<>(f));
+        BatchIssueCommandsResponse response = f.get();
+
+        assertEquals(100, response.getResultsCount());
+        Set<String> ids = new HashSet<>();
+        long prevGenerationTime = Long.MIN_VALUE;
+        for (BatchIssueCommandsResponse.Result result : response.getResultsList()) {
+            assertTrue(result.hasResponse());
+            assertTrue(ids.add(result.getResponse().getId()));
+            long generationTime = Timestamps.toMillis(result.getResponse().getGenerationTime());
+            assertTrue(generationTime >= prevGenerationTime);
+            prevGenerationTime = generationTime;
+        }
+
+        for (int i = 0; i < 100; i++) {
+            CommandHistoryEntry cmdhist = captor.expectTimely();
+            assertEquals(response.getResults(i).getResponse().getId(), cmdhist.getId());
+        }
+    }
+
     @Test
     public void testSendCommandFailedTransmissionConstraint() throws Exception {
         Command command = processorClient.prepareCommand("/REFMDB/SUBSYS1/CRITICAL_TC1")
@@ -7,10 +7,18 @@ import static org.junit.Assert.assertTrue;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
+import java.util.Base64;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 import org.yamcs.client.ClientException;
@@ -18,10 +26,30 @@ import org.yamcs.client.base.HttpClient;
 import org.yamcs.http.HttpServer;
 import org.yamcs.http.StaticFileHandler;
 
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.codec.http2.HttpConversionUtil.ExtensionHeaderNames;
 
 public class HttpServerTest extends AbstractIntegrationTest {
 
@@ -81,4 +109,139 @@ public class HttpServerTest extends AbstractIntegrationTest {
         file1.delete();
         file2.delete();
     }
+
+    @Test
+    public void testKeepAliveAfterClientError() throws Exception {
+        try (Socket socket = new Socket("localhost", 9190)) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write(("GET /api/nonexistent HTTP/1.1\r\nHost: localhost\r\n" + getAuthorizationHeader() + "\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            assertEquals(404, readResponse(in));
+
+            // the connection is still usable
+            out.write(("GET /api HTTP/1.1\r\nHost: localhost\r\n" + getAuthorizationHeader() + "\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            assertEquals(200, readResponse(in));
+        }
+    }
+
+    @Test
+    public void testCloseAfterClientErrorWithPendingBody() throws Exception {
+        try (Socket socket = new Socket("localhost", 9190)) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            // the error is sent before the body is received
+            out.write(("POST /api/nonexistent HTTP/1.1\r\nHost: localhost\r\n" + getAuthorizationHeader()
+                    + "Content-Length: 100000\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(new byte[1000]);
+            out.flush();
+            assertEquals(404, readResponse(in));
+
+            // the rest of the body cannot be told apart from a next request, so the connection is closed
+            try {
+                while (in.read() >= 0) {
+                    // the response body
+                }
+            } catch (SocketException e) {
+                // connection reset, also fine
+            }
+        }
+    }
+
+    @Test
+    public void testH2c() throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(1);
+        try {
+            // HTTP/2 with prior knowledge
+            Bootstrap bootstrap = new Bootstrap().group(group).channel(NioSocketChannel.class)
+                    .handler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast(Http2FrameCodecBuilder.forClient().build());
+                            ch.pipeline().addLast(new Http2MultiplexHandler(new SimpleChannelInboundHandler<Object>() {
+                                @Override
+                                protected void channelRead0(ChannelHandlerContext ctx, Object msg) {
+                                    // no streams pushed by the server
+                                }
+                            }));
+                        }
+                    });
+            Channel channel = bootstrap.connect("localhost", 9190).sync().channel();
+
+            CompletableFuture<FullHttpResponse> cf = new CompletableFuture<>();
+            Http2StreamChannel stream = new Http2StreamChannelBootstrap(channel)
+                    .handler(new ChannelInitializer<Http2StreamChannel>() {
+                        @Override
+                        protected void initChannel(Http2StreamChannel ch) {
+                            ch.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(false));
+                            ch.pipeline().addLast(new HttpObjectAggregator(1024 * 1024));
+                            ch.pipeline().addLast(new SimpleChannelInboundHandler<FullHttpResponse>() {
+                                @Override
+                                protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse msg) {
+                                    cf.complete(msg.retain());
+                                }
+                            });
+                        }
+                    }).open().sync().getNow();
+
+            DefaultFullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/api");
+            request.headers().set(HttpHeaderNames.HOST, "localhost:9190");
+            request.headers().set(ExtensionHeaderNames.SCHEME.text(), "http");
+            request.headers().set(HttpHeaderNames.AUTHORIZATION, getAuthorization());
+            stream.writeAndFlush(request);
+
+            FullHttpResponse response = cf.get(5, TimeUnit.SECONDS);
+            try {
+                assertEquals(HttpResponseStatus.OK, response.status());
+                assertTrue(response.content().toString(StandardCharsets.UTF_8).contains("yamcsVersion"));
+            } finally {
+                response.release();
+            }
+            channel.close().sync();
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    private String getAuthorization() {
+        String userpass = adminUsername + ":" + new String(adminPassword);
+        return "Basic " + Base64.getEncoder().encodeToString(userpass.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String getAuthorizationHeader() {
+        return "Authorization: " + getAuthorization() + "\r\n";
+    }
+
+    // reads the status and the body (of known length) of a response; returns -1 if the connection is closed
+    private static int readResponse(InputStream in) throws IOException {
+        StringBuilder head = new StringBuilder();
+        while (head.indexOf("\r\n\r\n") < 0) {
+            int c = in.read();
+            if (c < 0) {
+                return -1;
+            }
+            head.append((char) c);
+        }
+        String[] lines = head.toString().split("\r\n");
+        int status = Integer.parseInt(lines[0].split(" ")[1]);
+        int contentLength = 0;
+        for (String line : lines) {
+            if (line.toLowerCase().startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+            }
+        }
+        for (int i = 0; i < contentLength; i++) {
+            if (in.read() < 0) {
+                return -1;
+            }
+        }
+        return status;
+    }
 }
@@ -5,7 +5,10 @@ import static org.junit.Assert.assertFalse;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
@@ -16,11 +19,13 @@ import org.yamcs.client.archive.ArchiveClient;
 import org.yamcs.client.archive.ArchiveClient.ListOptions;
 import org.yamcs.client.archive.ArchiveClient.RangeOptions;
 import org.yamcs.parameterarchive.ParameterArchive;
+import org.yamcs.protobuf.ParameterColumns;
 import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
 import org.yamcs.protobuf.Pvalue.ParameterValue;
 import org.yamcs.protobuf.Pvalue.Ranges.Range;
 import org.yamcs.protobuf.Pvalue.TimeSeries.Sample;
 import org.yamcs.protobuf.Yamcs.Value;
+import org.yamcs.protobuf.Yamcs.Value.Type;
 import org.yamcs.utils.TimeEncoding;
 
 import com.google.protobuf.util.Timestamps;
@@ -156,6 +161,75 @@ public class ParameterArchiveIntegrationTest extends AbstractIntegrationTest {
         }
     }
 
+    @Test
+    public void testPagingAndStreaming() throws Exception {
+        generatePkt13AndPps("2021-03-01T10:00:00", 3600);
+        buildParameterArchive("2021-03-01T10:00:00", "2021-03-01T11:00:00");
+        Instant start = Instant.parse("2021-03-01T10:00:00Z");
+        Instant stop = Instant.parse("2021-03-01T10:10:00Z");
+        String pname = "/REFMDB/SUBSYS1/FloatPara1_1_2";
+
+        for (boolean ascending : new boolean[] { true, false }) {
+            List<ParameterValue> all = new ArrayList<>();
+            archiveClient.listValues(pname, start, stop, ListOptions.ascending(ascending), ListOptions.limit(1000))
+                    .get().iterator().forEachRemaining(all::add);
+            assertEquals(600, all.size());
+
+            // page through the same data, the pages have to be consecutive without gaps or duplicates
+            List<ParameterValue> paged = new ArrayList<>();
+            Page<ParameterValue> page = archiveClient
+                    .listValues(pname, start, stop, ListOptions.ascending(ascending), ListOptions.limit(70)).get();
+            page.iterator().forEachRemaining(paged::add);
+            while (page.hasNextPage()) {
+                page = page.getNextPage().get();
+                page.iterator().forEachRemaining(paged::add);
+            }
+            assertEquals(all, paged);
+
+            List<ParameterValue> streamed = new ArrayList<>();
+            archiveClient.streamValues(pname, streamed::add, start, stop, ListOptions.ascending(ascending)).get();
+            assertEquals(all, streamed);
+        }
+    }
+
+    @Test
+    public void testExportColumns() throws Exception {
+        generatePkt13AndPps("2021-04-01T10:00:00", 3600);
+        buildParameterArchive("2021-04-01T10:00:00", "2021-04-01T11:00:00");
+        Instant start = Instant.parse("2021-04-01T10:00:00Z");
+        Instant stop = Instant.parse("2021-04-01T10:10:00Z");
+        List<String> parameters = Arrays.asList("/REFMDB/SUBSYS1/FloatPara1_1_2",
+                "/REFMDB/SUBSYS1/EnumerationPara1_1_4");
+
+        Map<String, List<ParameterColumns>> columns = new ConcurrentHashMap<>();
+        archiveClient.exportParameterColumns(parameters,
+                pc -> columns.computeIfAbsent(pc.getParameter(), k -> new ArrayList<>()).add(pc), start, stop)
+                .get();
+        assertEquals(2, columns.size());
+
+        for (String pname : parameters) {
+            List<ParameterValue> values = new ArrayList<>();
+            archiveClient.listValues(pname, start, stop, ListOptions.ascending(true), ListOptions.limit(1000))
+                    .get().iterator().forEachRemaining(values::add);
+            List<Long> times = new ArrayList<>();
+            int numValues = 0;
+            for (ParameterColumns pc : columns.get(pname)) {
+                times.addAll(pc.getTimesList());
+                numValues += pc.getDoubleValuesCount() + pc.getStringValuesCount();
+            }
+            assertEquals(values.size(), times.size());
+            assertEquals(values.size(), numValues);
+            for (int i = 0; i < values.size(); i++) {
+                assertEquals(Timestamps.toMillis(values.get(i).getGenerationTime()), (long) times.get(i));
+            }
+        }
+        ParameterColumns pc = columns.get("/REFMDB/SUBSYS1/FloatPara1_1_2").get(0);
+        assertEquals(Type.FLOAT, pc.getType());
+        assertEquals(0.167291805148, pc.getDoubleValues(0), 1e-5);
+        pc = columns.get("/REFMDB/SUBSYS1/EnumerationPara1_1_4").get(0);
+        assertEquals("zero_yep", pc.getStringValues(0));
+    }
+
     @Test
     public void testWithEnums() throws Exception {
         generatePkt13AndPps("2020-12-08T10:00:00", 3600);
@@ -6,17 +6,25 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.yamcs.api.Api;
 import org.yamcs.client.ClientException;
 import org.yamcs.client.ParameterSubscription;
 import org.yamcs.client.processor.ProcessorClient;
 import org.yamcs.client.processor.ProcessorClient.GetOptions;
+import org.yamcs.http.Context;
+import org.yamcs.http.HttpServer;
+import org.yamcs.http.api.ParameterSubscriptionHub;
+import org.yamcs.http.api.ProcessingApi;
 import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
 import org.yamcs.protobuf.Pvalue.ParameterValue;
 import org.yamcs.protobuf.SubscribeParametersRequest;
@@ -80,6 +88,134 @@ public class ParameterTest extends AbstractIntegrationTest {
         captor.assertSilence();
     }
 
+    @Test
+    public void testSharedSubscription() throws Exception {
+        // the subscriptions of the previous tests are released asynchronously
+        ParameterSubscriptionHub hub = getParameterSubscriptionHub();
+        waitForSubscriptionCount(hub, 0);
+
+        ParameterSubscription subscription1 = yamcsClient.createParameterSubscription();
+        ParameterCaptor captor1 = ParameterCaptor.of(subscription1);
+        ParameterSubscription subscription2 = yamcsClient.createParameterSubscription();
+        ParameterCaptor captor2 = ParameterCaptor.of(subscription2);
+
+        // same parameters in a different order share the subscription
+        subscription1.sendMessage(SubscribeParametersRequest.newBuilder()
+                .setInstance(yamcsInstance)
+                .setProcessor("realtime")
+                .addId(NamedObjectId.newBuilder().setName("/REFMDB/SUBSYS1/IntegerPara1_1_7"))
+                .addId(NamedObjectId.newBuilder().setName("/REFMDB/SUBSYS1/IntegerPara1_1_6"))
+                .setSendFromCache(false)
+                .build());
+        subscription1.awaitConfirmation();
+        subscription2.sendMessage(SubscribeParametersRequest.newBuilder()
+                .setInstance(yamcsInstance)
+                .setProcessor("realtime")
+                .addId(NamedObjectId.newBuilder().setName("/REFMDB/SUBSYS1/IntegerPara1_1_6"))
+                .addId(NamedObjectId.newBuilder().setName("/REFMDB/SUBSYS1/IntegerPara1_1_7"))
+                .setSendFromCache(false)
+                .build());
+        subscription2.awaitConfirmation();
+        assertEquals(1, hub.getSubscriptionCount());
+        assertEquals(2, hub.getNumericIdCount());
+
+        packetGenerator.generate_PKT1_1();
+        checkPvals(2, captor1.expectTimely(), packetGenerator);
+        checkPvals(2, captor2.expectTimely(), packetGenerator);
+
+        // the remaining client keeps receiving the updates
+        subscription1.cancel(true);
+        packetGenerator.generate_PKT1_1();
+        checkPvals(2, captor2.expectTimely(), packetGenerator);
+
+        // adding a parameter moves the client to another subscription without changing the known numeric ids
+        captor2.clear();
+        subscription2.add(Arrays.asList(NamedObjectId.newBuilder().setName("/REFMDB/SUBSYS1/FloatPara1_1_2").build()));
+        captor2.expectTimely(); // from cache
+        packetGenerator.generate_PKT1_1();
+        List<ParameterValue> values = captor2.expectTimely();
+        assertEquals(3, values.size());
+        for (ParameterValue pv : values) {
+            assertTrue(pv.hasId());
+        }
+        waitForSubscriptionCount(hub, 1);
+        assertEquals(3, hub.getNumericIdCount());
+
+        // the numeric ids are released with the last subscription
+        subscription2.cancel(true);
+        waitForSubscriptionCount(hub, 0);
+        assertEquals(0, hub.getNumericIdCount());
+    }
+
+    @Test
+    public void testAddWhileUpdating() throws Exception {
+        ParameterSubscription subscription = yamcsClient.createParameterSubscription();
+        ParameterCaptor captor = ParameterCaptor.of(subscription);
+        subscription.sendMessage(SubscribeParametersRequest.newBuilder()
+                .setInstance(yamcsInstance)
+                .setProcessor("realtime")
+                .addId(NamedObjectId.newBuilder().setName("/REFMDB/SUBSYS1/IntegerPara1_1_6"))
+                .setSendFromCache(false)
+                .build());
+        subscription.awaitConfirmation();
+
+        // keeps updating the parameter with a different value each time while another parameter is added
+        AtomicBoolean stop = new AtomicBoolean();
+        CompletableFuture<Integer> generator = CompletableFuture.supplyAsync(() -> {
+            int value = 0;
+            while (!stop.get()) {
+                packetGenerator.pIntegerPara1_1_6 = ++value;
+                packetGenerator.generate_PKT1_1();
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            return value;
+        });
+        Thread.sleep(200);
+        subscription.add(Arrays.asList(NamedObjectId.newBuilder().setName("/REFMDB/SUBSYS1/FloatPara1_1_2").build()));
+        Thread.sleep(200);
+        stop.set(true);
+        int lastValue = generator.get();
+
+        // none of the values sent while the client moves to the new subscription is lost
+        Set<Long> received = new HashSet<>();
+        while (!received.contains((long) lastValue)) {
+            for (ParameterValue pv : captor.expectTimely()) {
+                if ("/REFMDB/SUBSYS1/IntegerPara1_1_6".equals(pv.getId().getName())) {
+                    received.add(pv.getEngValue().getUint32Value() & 0xFFFFFFFFL);
+                }
+            }
+        }
+        for (long value = 1; value <= lastValue; value++) {
+            assertTrue("Missing value " + value, received.contains(value));
+        }
+        subscription.cancel(true);
+        packetGenerator.pIntegerPara1_1_6 = 236;
+    }
+
+    private static void waitForSubscriptionCount(ParameterSubscriptionHub hub, int count)
+            throws InterruptedException {
+        long t0 = System.currentTimeMillis();
+        while (hub.getSubscriptionCount() != count && System.currentTimeMillis() - t0 < 5000) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, hub.getSubscriptionCount());
+    }
+
+    private static ParameterSubscriptionHub getParameterSubscriptionHub() {
+        HttpServer httpServer = yamcs.getGlobalServices(HttpServer.class).get(0);
+        for (Api<Context> api : httpServer.getApis()) {
+            if (api instanceof ProcessingApi) {
+                return ((ProcessingApi) api).getParameterSubscriptionHub();
+            }
+        }
+        throw new IllegalStateException("No processing API");
+    }
+
     @Test
     public void testWithAnInvalidIdentifier() throws Exception {
         ParameterSubscription subscription = yamcsClient.createParameterSubscription();
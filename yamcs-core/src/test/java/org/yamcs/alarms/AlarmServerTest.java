@@ -6,7 +6,9 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -202,6 +204,33 @@ public class AlarmServerTest {
         alarmServer.getActiveAlarm(p1, 123 /* wrong id */);
     }
 
+    @Test
+    public void testBatch() {
+        MyListener l = new MyListener();
+        alarmServer.addAlarmListener(l);
+        List<AlarmNotification<ParameterValue>> batch = new ArrayList<>();
+
+        ParameterValue pv1_0 = getParameterValue(p1, MonitoringResult.WARNING);
+        ParameterValue pv2_0 = getParameterValue(p2, MonitoringResult.CRITICAL);
+        alarmServer.update(pv1_0, 1, false, false, batch);
+        alarmServer.update(pv2_0, 1, false, false, batch);
+
+        // nothing notified before publishing
+        assertTrue(l.triggered.isEmpty());
+        assertEquals(0, l.batchCount);
+        assertEquals(2, batch.size());
+        assertNotNull(alarmServer.getActiveAlarm(p1));
+
+        alarmServer.publish(batch);
+        assertEquals(1, l.batchCount);
+        assertEquals(pv1_0, l.triggered.remove().getTriggerValue());
+        assertEquals(pv2_0, l.triggered.remove().getTriggerValue());
+
+        // empty batches are not published
+        alarmServer.publish(new ArrayList<>());
+        assertEquals(1, l.batchCount);
+    }
+
     @Test
     public void testMoreSevere() {
         assertTrue(AlarmServer.moreSevere(MonitoringResult.CRITICAL, MonitoringResult.WARNING));
@@ -219,6 +248,13 @@ public class AlarmServerTest {
         Queue<ActiveAlarm<ParameterValue>> shelved = new LinkedList<>();
         BlockingQueue<ActiveAlarm<ParameterValue>> unshelved = new LinkedBlockingQueue<>();
         Queue<ActiveAlarm<ParameterValue>> reset = new LinkedList<>();
+        int batchCount = 0;
+
+        @Override
+        public void notifyBatch(List<AlarmNotification<ParameterValue>> notifications) {
+            batchCount++;
+            AlarmListener.super.notifyBatch(notifications);
+        }
 
         @Override
         public void notifyValueUpdate(ActiveAlarm<ParameterValue> activeAlarm) {
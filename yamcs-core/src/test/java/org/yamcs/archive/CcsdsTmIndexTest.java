@@ -5,7 +5,9 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.BeforeClass;
@@ -13,6 +15,13 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.yamcs.YConfiguration;
 import org.yamcs.archive.CcsdsTmIndex.CcsdsIndexIterator;
+import org.yamcs.archive.CcsdsTmIndexRebuilder.Chunk;
+import org.yamcs.archive.CcsdsTmIndexRebuilder.RebuildJob;
+import org.yamcs.utils.ByteArrayUtils;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.TimeInterval;
+import org.yamcs.yarch.Stream;
+import org.yamcs.yarch.Tuple;
 import org.yamcs.yarch.YarchTestCase;
 
 public class CcsdsTmIndexTest extends YarchTestCase {
@@ -98,6 +107,117 @@ public class CcsdsTmIndexTest extends YarchTestCase {
         // tmindex.printApidDb();
     }
 
+    @Test
+    public void testRebuild() throws Exception {
+        CcsdsTmIndex tmindex = new CcsdsTmIndex();
+        tmindex.init(ydb.getName(), "test", YConfiguration.wrap(config));
+        long t0 = TimeEncoding.parse("2021-01-01T00:00:00");
+        createTmTable(t0, tmindex);
+        List<String> expected = getRecords(tmindex);
+        assertEquals(4, expected.size());
+
+        tmindex.rebuild(new TimeInterval()).get();
+        assertEquals(expected, getRecords(tmindex));
+
+        tmindex.rebuild(new TimeInterval(t0 + 36 * 3600_000L, t0 + 77 * 3600_000L)).get();
+        assertEquals(expected, getRecords(tmindex));
+
+        tmindex.rebuild(new TimeInterval(t0 + 10_000, t0 + 60_000)).get();
+        assertEquals(expected, getRecords(tmindex));
+    }
+
+    @Test
+    public void testRebuildResume() throws Exception {
+        CcsdsTmIndex tmindex = new CcsdsTmIndex();
+        tmindex.init(ydb.getName(), "test", YConfiguration.wrap(config));
+        long t0 = TimeEncoding.parse("2021-01-01T00:00:00");
+        createTmTable(t0, tmindex);
+        List<String> expected = getRecords(tmindex);
+
+        // removes the records and persists the chunks as if the rebuild has been interrupted
+        List<Chunk> chunks = tmindex.rebuilder.prepare(new TimeInterval());
+        assertEquals(6, chunks.size());
+        assertTrue(getRecords(tmindex).isEmpty());
+
+        tmindex = new CcsdsTmIndex();
+        tmindex.init(ydb.getName(), "test", YConfiguration.wrap(config));
+        tmindex.rebuilder.resume();
+        RebuildJob job = tmindex.rebuilder.getLastJob();
+        job.getFuture().get();
+        assertEquals(6, job.getCompletedChunks());
+        assertEquals(expected, getRecords(tmindex));
+
+        // nothing left to resume
+        tmindex.rebuilder.resume();
+        assertEquals(job, tmindex.rebuilder.getLastJob());
+    }
+
+    @Test
+    public void testRebuildResumeSameStart() throws Exception {
+        CcsdsTmIndex tmindex = new CcsdsTmIndex();
+        tmindex.init(ydb.getName(), "test", YConfiguration.wrap(config));
+        long t0 = TimeEncoding.parse("2021-01-01T00:00:00");
+        createTmTable(t0, tmindex);
+
+        // two interrupted rebuilds leaving behind chunks with the same start and different stops
+        List<Chunk> chunks1 = tmindex.rebuilder.prepare(new TimeInterval(t0, t0 + 3 * 3600_000L));
+        List<Chunk> chunks2 = tmindex.rebuilder.prepare(new TimeInterval(t0, t0 + 3600_000L));
+        assertEquals(1, chunks2.size());
+        assertEquals(chunks1.get(0).start, chunks2.get(0).start);
+
+        tmindex = new CcsdsTmIndex();
+        tmindex.init(ydb.getName(), "test", YConfiguration.wrap(config));
+        tmindex.rebuilder.resume();
+        RebuildJob job = tmindex.rebuilder.getLastJob();
+        job.getFuture().get();
+        assertEquals(chunks1.size() + 1, job.getCompletedChunks());
+
+        // nothing left to resume
+        tmindex.rebuilder.resume();
+        assertEquals(job, tmindex.rebuilder.getLastJob());
+    }
+
+    // creates a tm table with packets from two apids over 6 days and indexes them in realtime
+    private void createTmTable(long t0, CcsdsTmIndex tmindex) throws Exception {
+        execute("create table tm (gentime timestamp, seqNum int, packet binary, primary key(gentime, seqNum))");
+        execute("create stream tm_in (gentime timestamp, seqNum int, packet binary)");
+        execute("insert into tm select * from tm_in");
+        Stream s = ydb.getStream("tm_in");
+        int seqNum = 0;
+        // apid 100: 100 packets one second apart with a gap in the sequence count
+        for (int i = 0; i < 100; i++) {
+            short seq = (short) (i < 50 ? i : i + 10);
+            emitPacket(s, tmindex, t0 + 1000 * i, seqNum++, (short) 100, seq);
+        }
+        // apid 200: one packet every 30 minutes for 5 days, crossing the chunk boundaries
+        for (int i = 0; i < 240; i++) {
+            emitPacket(s, tmindex, t0 + 1800_000L * i, seqNum++, (short) 200, (short) (i & 0x3FFF));
+        }
+        // apid 300: one packet alone
+        emitPacket(s, tmindex, t0 + 5 * 86400_000L + 5, seqNum++, (short) 300, (short) 7);
+        s.close();
+    }
+
+    private void emitPacket(Stream s, CcsdsTmIndex tmindex, long time, int seqNum, short apid, short seq)
+            throws Exception {
+        byte[] packet = new byte[10];
+        ByteArrayUtils.encodeShort(apid, packet, 0);
+        ByteArrayUtils.encodeShort(0xC000 | seq, packet, 2);
+        s.emitTuple(new Tuple(s.getDefinition(), Arrays.asList(time, seqNum, packet)));
+        tmindex.addPacket(apid, time, seq);
+    }
+
+    private List<String> getRecords(CcsdsTmIndex tmindex) {
+        List<String> l = new ArrayList<>();
+        CcsdsIndexIterator it = tmindex.new CcsdsIndexIterator((short) -1, -1L, -1L);
+        Record r;
+        while ((r = it.getNextRecord()) != null) {
+            l.add(r + " numPackets: " + r.numPackets());
+        }
+        it.close();
+        return l;
+    }
+
     @Test
     @Ignore
     public void testApidIndexSameTimeAndWraparound() throws Exception {
@@ -3,6 +3,7 @@ package org.yamcs.cfdp;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
@@ -11,6 +12,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 import org.junit.After;
@@ -19,7 +24,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.yamcs.YConfiguration;
 import org.yamcs.YamcsServer;
+import org.yamcs.cfdp.OngoingCfdpTransfer.FaultHandlingAction;
 import org.yamcs.cfdp.pdu.CfdpPacket;
+import org.yamcs.cfdp.pdu.ConditionCode;
 import org.yamcs.client.YamcsClient;
 import org.yamcs.client.filetransfer.FileTransferClient;
 import org.yamcs.client.filetransfer.FileTransferClient.UploadOptions;
@@ -168,6 +175,29 @@ public class CfdpIntegrationTest {
     }
     
 
+    @Test
+    public void testMaxFileSizeAbandon() throws Exception {
+        byte[] data = createObject("randomfile8", 1000);
+        Path bufferDir = Files.createDirectories(Paths.get("/tmp/yamcs-cfdp-data/receive-buffer"));
+        YConfiguration config = getConfig();
+        config.toMap().put("inactivityTimeout", 1000);
+        config.toMap().put("maxFileSize", 500);
+        config.toMap().put("receiveBufferDir", bufferDir.toString());
+
+        // without the metadata the file size is unknown and the data is checked against the maximum file size
+        MyFileReceiver rec = new MyFileReceiver(Arrays.asList(1), config,
+                Collections.singletonMap(ConditionCode.FILESTORE_REJECTION, FaultHandlingAction.ABANDON));
+        ObjectId object = ObjectId.of(outgoingBucket.getName(), "randomfile8");
+        cfdpClient.upload(object, UploadOptions.reliable(false)).get();
+
+        for (int i = 0; i < 10 && (rec.trsf == null || !isFinished(rec.trsf.getTransferState())); i++) {
+            Thread.sleep(1000);
+        }
+        assertEquals(TransferState.FAILED, rec.trsf.getTransferState());
+        // the data received after abandoning the transfer is not written to the closed buffer file
+        assertEquals(Collections.emptyList(), rec.errors);
+    }
+
     private void uploadAndCheck(String objName, byte[] data, boolean reliable, List<Integer> dropPackets,
             TransferState expectedSenderState, TransferState expectedReceiverState) throws Exception {
         uploadAndCheck(getConfig(), objName, data, reliable, dropPackets, expectedSenderState, expectedReceiverState);
@@ -230,11 +260,31 @@ public class CfdpIntegrationTest {
     class MyFileReceiver implements TransferMonitor {
         byte[] data;
         CfdpIncomingTransfer trsf;
-        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1) {
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                try {
+                    if (r instanceof Future<?> && ((Future<?>) r).isDone()) {
+                        ((Future<?>) r).get();
+                    }
+                } catch (ExecutionException e) {
+                    errors.add(e.getCause());
+                } catch (CancellationException | InterruptedException e) {
+                    // ignore
+                }
+            }
+        };
         int tcount = 0;
         final List<Integer> dropPackets;
+        // exceptions thrown when processing the packets
+        final List<Throwable> errors = new CopyOnWriteArrayList<>();
 
         MyFileReceiver(List<Integer> dropPackets, YConfiguration config) {
+            this(dropPackets, config, Collections.emptyMap());
+        }
+
+        MyFileReceiver(List<Integer> dropPackets, YConfiguration config,
+                Map<ConditionCode, FaultHandlingAction> faultHandlerActions) {
             YarchDatabaseInstance ydb = YarchDatabase.getInstance(yamcsInstance);
             Stream cfdpIn = ydb.getStream("cfdp_in");
             Stream cfdpOut = ydb.getStream("cfdp_out");
@@ -260,7 +310,7 @@ public class CfdpIntegrationTest {
                     if (trsf == null) {
                         trsf = new CfdpIncomingTransfer("test", 1, TimeEncoding.getWallclockTime(), executor, config,
                                 packet.getHeader(), cfdpIn, incomingBucket, eventProducer, MyFileReceiver.this,
-                                Collections.emptyMap());
+                                faultHandlerActions);
                     }
                     // System.out.println("processing packet "+packet);
                     trsf.processPacket(packet);
@@ -0,0 +1,129 @@
+package org.yamcs.cfdp;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.yamcs.cfdp.pdu.SegmentRequest;
+import org.yamcs.utils.FileUtils;
+
+public class DiskDataFileTest {
+    static int n = 1000;
+    byte[] data = new byte[n];
+    Path dir;
+
+    @Before
+    public void before() throws Exception {
+        new Random(0).nextBytes(data);
+        dir = Files.createTempDirectory("DiskDataFileTest");
+    }
+
+    @After
+    public void after() throws Exception {
+        FileUtils.deleteRecursivelyIfExists(dir);
+    }
+
+    @Test
+    public void testGaps() throws Exception {
+        DiskDataFile df = new DiskDataFile(dir, n);
+        df.addSegment(getSegment(0, 3));
+        df.addSegment(getSegment(5, 5));
+
+        List<SegmentRequest> lmissing = df.getMissingChunks();
+        assertEquals(2, lmissing.size());
+        verifyEquals(3, 5, lmissing.get(0));
+        verifyEquals(10, n, lmissing.get(1));
+        assertEquals(8, df.getReceivedSize());
+        assertEquals(10, df.endOfFileOffset());
+        assertFalse(df.isComplete());
+
+        lmissing = df.getMissingChunks(false);
+        assertEquals(1, lmissing.size());
+        verifyEquals(3, 5, lmissing.get(0));
+
+        df.addSegment(getSegment(3, 2));
+        assertEquals(1, df.getNumRanges());
+        df.addSegment(getSegment(10, n - 10));
+
+        assertTrue(df.isComplete());
+        assertEquals(0, df.getMissingChunks().size());
+        assertEquals(n, df.getReceivedSize());
+        assertArrayEquals(data, df.getData());
+        assertEquals(ChecksumCalculator.calculateChecksum(data), df.getChecksum());
+        df.close();
+    }
+
+    @Test
+    public void testOverlaps() throws Exception {
+        DiskDataFile df = new DiskDataFile(dir, n);
+        df.addSegment(getSegment(0, 10));
+        df.addSegment(getSegment(20, 10));
+        df.addSegment(getSegment(40, 10));
+        // covers the gaps and part of the existing ranges
+        df.addSegment(getSegment(5, 40));
+        df.addSegment(getSegment(0, 50));
+        assertEquals(1, df.getNumRanges());
+        assertEquals(50, df.getReceivedSize());
+
+        df.addSegment(getSegment(50, n - 50));
+        assertTrue(df.isComplete());
+        assertArrayEquals(data, df.getData());
+        assertEquals(ChecksumCalculator.calculateChecksum(data), df.getChecksum());
+        df.close();
+    }
+
+    @Test
+    public void testRandomOrder() throws Exception {
+        DiskDataFile df = new DiskDataFile(dir, -1);
+        Random random = new Random(1);
+        int[] offsets = new int[100];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = i * 10;
+        }
+        for (int i = offsets.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int x = offsets[i];
+            offsets[i] = offsets[j];
+            offsets[j] = x;
+        }
+        for (int offset : offsets) {
+            // segments of random length, some overlapping the next one
+            int length = Math.min(n - offset, 10 + random.nextInt(10));
+            df.addSegment(getSegment(offset, length));
+        }
+        assertFalse(df.isComplete());
+        df.setSize(n);
+        assertTrue(df.isComplete());
+        assertArrayEquals(data, df.getData());
+        assertEquals(ChecksumCalculator.calculateChecksum(data), df.getChecksum());
+        df.close();
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        DiskDataFile df = new DiskDataFile(dir, n);
+        df.addSegment(getSegment(100, 10));
+        df.close();
+        assertFalse(Files.exists(df.getPath()));
+        try (Stream<Path> s = Files.list(dir)) {
+            assertEquals(0, s.count());
+        }
+    }
+
+    private DataFileSegment getSegment(int offset, int length) {
+        return new DataFileSegment(offset, Arrays.copyOfRange(data, offset, offset + length));
+    }
+
+    private void verifyEquals(long expectedStart, long expectedEnd, SegmentRequest sr) {
+        assertEquals(expectedStart, sr.getSegmentStart());
+        assertEquals(expectedEnd, sr.getSegmentEnd());
+    }
+}
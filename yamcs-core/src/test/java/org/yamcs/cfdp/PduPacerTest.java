@@ -0,0 +1,91 @@
+package org.yamcs.cfdp;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class PduPacerTest {
+    static final long SEC = 1_000_000_000L;
+
+    @Test
+    public void testUnlimited() {
+        PduPacer pacer = new PduPacer(-1, -1, 1, 512, null);
+        long t = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(pacer.tryAcquire(512, t));
+        }
+    }
+
+    @Test
+    public void testPduRate() {
+        PduPacer pacer = new PduPacer(10, -1, 5, 512, null);
+        long t = System.nanoTime();
+        // the burst is available immediately
+        for (int i = 0; i < 5; i++) {
+            assertTrue(pacer.tryAcquire(100, t));
+        }
+        assertFalse(pacer.tryAcquire(100, t));
+
+        // 10 PDUs/sec -> one PDU every 100 ms
+        assertFalse(pacer.tryAcquire(100, t + SEC / 20));
+        assertTrue(pacer.tryAcquire(100, t + SEC / 10));
+        assertFalse(pacer.tryAcquire(100, t + SEC / 10));
+
+        // the tokens do not accumulate beyond the burst size
+        t += 10 * SEC;
+        for (int i = 0; i < 5; i++) {
+            assertTrue(pacer.tryAcquire(100, t));
+        }
+        assertFalse(pacer.tryAcquire(100, t));
+    }
+
+    @Test
+    public void testDataRate() {
+        PduPacer pacer = new PduPacer(-1, 1000, 2, 500, null);
+        long t = System.nanoTime();
+        assertTrue(pacer.tryAcquire(500, t));
+        assertTrue(pacer.tryAcquire(400, t));
+        assertFalse(pacer.tryAcquire(200, t));
+        assertTrue(pacer.tryAcquire(100, t));
+        assertFalse(pacer.tryAcquire(100, t));
+
+        assertFalse(pacer.tryAcquire(500, t + SEC / 4));
+        assertTrue(pacer.tryAcquire(500, t + SEC / 2));
+
+        // PDU larger than the bucket
+        t += 10 * SEC;
+        assertTrue(pacer.tryAcquire(2000, t));
+        assertFalse(pacer.tryAcquire(1, t + SEC / 2));
+        assertTrue(pacer.tryAcquire(1, t + 2 * SEC));
+    }
+
+    @Test
+    public void testParent() {
+        PduPacer uplink = new PduPacer(2, -1, 2, 512, null);
+        PduPacer remote1 = new PduPacer(1, -1, 2, 512, uplink);
+        PduPacer remote2 = new PduPacer(1, -1, 2, 512, uplink);
+        long t = System.nanoTime();
+
+        assertTrue(remote1.tryAcquire(100, t));
+        assertTrue(remote1.tryAcquire(100, t));
+        // the uplink pacer is exhausted
+        assertFalse(remote2.tryAcquire(100, t));
+
+        // the uplink has one new token, remote1 has not
+        t += SEC / 2;
+        assertFalse(remote1.tryAcquire(100, t));
+        assertTrue(remote2.tryAcquire(100, t));
+    }
+
+    @Test
+    public void testUplinkQueue() {
+        AtomicInteger queueSize = new AtomicInteger(5);
+        PduPacer pacer = new PduPacer(-1, -1, 1, 512, null);
+        pacer.setUplinkQueue(() -> queueSize.get(), 5);
+        assertFalse(pacer.tryAcquire(100));
+        queueSize.set(4);
+        assertTrue(pacer.tryAcquire(100));
+    }
+}
@@ -0,0 +1,56 @@
+package org.yamcs.cmdhistory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.yamcs.protobuf.Commanding.CommandHistoryEntry;
+import org.yamcs.protobuf.Commanding.CommandId;
+import org.yamcs.utils.ValueUtility;
+
+public class ActiveCommandEntryTest {
+    CommandId cmdId = CommandId.newBuilder().setCommandName("/test/cmd").setOrigin("test").setSequenceNumber(1)
+            .setGenerationTime(1000).build();
+
+    @Test
+    public void testUpdate() {
+        ActiveCommandEntry ace = new ActiveCommandEntry(cmdId, 0);
+        long m0 = ace.getMemoryUsage();
+        long d1 = ace.update(Arrays.asList(new Attribute("Acknowledge_Sent_Status", ValueUtility.getStringValue("OK")),
+                new Attribute("binary", ValueUtility.getBinaryValue(new byte[100]))), 10);
+        assertTrue(d1 > 100);
+        assertEquals(m0 + d1, ace.getMemoryUsage());
+
+        // the same attribute published again replaces the value
+        long d2 = ace.update(Arrays.asList(new Attribute("binary", ValueUtility.getBinaryValue(new byte[10]))), 20);
+        assertEquals(-90, d2);
+
+        CommandHistoryEntry che = ace.toProto();
+        assertEquals(cmdId, che.getCommandId());
+        assertEquals(2, che.getAttrCount());
+        assertEquals("binary", che.getAttr(1).getName());
+        assertEquals(10, che.getAttr(1).getValue().getBinaryValue().size());
+    }
+
+    @Test
+    public void testExpiration() {
+        ActiveCommandEntry ace = new ActiveCommandEntry(cmdId, 0);
+        ace.update(Arrays.asList(new Attribute("Acknowledge_Sent_Status", ValueUtility.getStringValue("OK"))), 100);
+        assertFalse(ace.isCompleted());
+        assertFalse(ace.isExpired(1000, 10, 1000));
+        assertTrue(ace.isExpired(1100, 10, 1000));
+
+        ace.update(Arrays.asList(new Attribute(ActiveCommandEntry.COMPLETE_STATUS_KEY,
+                ValueUtility.getStringValue("OK"))), 200);
+        assertTrue(ace.isCompleted());
+        assertFalse(ace.isExpired(209, 10, 1000));
+        assertTrue(ace.isExpired(210, 10, 1000));
+
+        // later updates do not change the completion time
+        ace.update(Arrays.asList(new Attribute("CommandComplete_Time", ValueUtility.getTimestampValue(0))), 205);
+        assertTrue(ace.isExpired(210, 10, 1000));
+    }
+}
@@ -0,0 +1,128 @@
+package org.yamcs.cmdhistory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.Processor;
+import org.yamcs.ProcessorConfig;
+import org.yamcs.ProcessorFactory;
+import org.yamcs.YConfiguration;
+import org.yamcs.commanding.InvalidCommandId;
+import org.yamcs.commanding.PreparedCommand;
+import org.yamcs.protobuf.Commanding.CommandId;
+import org.yamcs.utils.ValueUtility;
+
+public class CommandHistoryRequestManagerTest {
+
+    static CommandHistoryConsumer consumer = new CommandHistoryConsumer() {
+        @Override
+        public void addedCommand(PreparedCommand pc) {
+        }
+
+        @Override
+        public void updatedCommand(CommandId cmdId, long time, List<Attribute> attrs) {
+        }
+    };
+
+    @BeforeClass
+    public static void beforeClass() {
+        YConfiguration.setupTest(null);
+    }
+
+    @Test
+    public void testMaxActiveCommands() throws Exception {
+        CommandHistoryRequestManager chrm = createManager(10, 60, 3);
+        for (int i = 0; i < 5; i++) {
+            chrm.addCommand(new PreparedCommand(getCmdId(i)));
+        }
+        assertEquals(3, chrm.getNumActiveCommands());
+
+        // the oldest ones have been removed
+        assertNotActive(chrm, 0);
+        assertNotActive(chrm, 1);
+        for (int i = 2; i < 5; i++) {
+            chrm.subscribeCommand(getCmdId(i), consumer);
+        }
+    }
+
+    @Test
+    public void testSubscribedNotRemovedAtMaxActiveCommands() throws Exception {
+        CommandHistoryRequestManager chrm = createManager(10, 60, 2);
+        chrm.addCommand(new PreparedCommand(getCmdId(0)));
+        chrm.subscribeCommand(getCmdId(0), consumer);
+        for (int i = 1; i < 4; i++) {
+            chrm.addCommand(new PreparedCommand(getCmdId(i)));
+        }
+        assertEquals(2, chrm.getNumActiveCommands());
+
+        // the subscribed command is kept, the next oldest ones are removed
+        chrm.subscribeCommand(getCmdId(0), consumer);
+        assertNotActive(chrm, 1);
+        assertNotActive(chrm, 2);
+        chrm.subscribeCommand(getCmdId(3), consumer);
+    }
+
+    @Test
+    public void testSweep() throws Exception {
+        CommandHistoryRequestManager chrm = createManager(10, 60, 100);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            chrm.addCommand(new PreparedCommand(getCmdId(i)));
+        }
+        chrm.updateCommand(getCmdId(0), Arrays.asList(new Attribute(ActiveCommandEntry.COMPLETE_STATUS_KEY,
+                ValueUtility.getStringValue("OK"))));
+        chrm.subscribeCommand(getCmdId(2), consumer);
+
+        // nothing expired yet
+        chrm.sweep(now);
+        assertEquals(3, chrm.getNumActiveCommands());
+
+        // the completed command is removed after the retention time
+        chrm.sweep(now + 20_000);
+        assertEquals(2, chrm.getNumActiveCommands());
+        assertNotActive(chrm, 0);
+
+        // the not completed ones are removed after the timeout, unless they have subscribers
+        chrm.sweep(now + 120_000);
+        assertEquals(1, chrm.getNumActiveCommands());
+        assertNotActive(chrm, 1);
+
+        chrm.unsubscribeCommand(getCmdId(2), consumer);
+        chrm.sweep(now + 120_000);
+        assertEquals(0, chrm.getNumActiveCommands());
+        assertEquals(0, chrm.getMemoryUsage());
+    }
+
+    private static CommandHistoryRequestManager createManager(int retention, int timeout, int maxActiveCommands)
+            throws Exception {
+        Map<String, Object> m = new HashMap<>();
+        m.put("activeCommandRetention", retention);
+        m.put("activeCommandTimeout", timeout);
+        m.put("maxActiveCommands", maxActiveCommands);
+        Processor processor = ProcessorFactory.create("refxtce", "test", "test", new ArrayList<>(), "test",
+                new ProcessorConfig(YConfiguration.wrap(m)), null);
+        return new CommandHistoryRequestManager(processor);
+    }
+
+    private static void assertNotActive(CommandHistoryRequestManager chrm, int seq) {
+        try {
+            chrm.subscribeCommand(getCmdId(seq), consumer);
+            fail("command " + seq + " should not be active");
+        } catch (InvalidCommandId e) {
+            // expected
+        }
+    }
+
+    private static CommandId getCmdId(int seq) {
+        return CommandId.newBuilder().setCommandName("/test/cmd").setOrigin("test").setSequenceNumber(seq)
+                .setGenerationTime(1000).build();
+    }
+}
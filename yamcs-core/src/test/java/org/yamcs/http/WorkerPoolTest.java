@@ -0,0 +1,92 @@
+package org.yamcs.http;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class WorkerPoolTest {
+    WorkerPool pool;
+
+    @After
+    public void after() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+        pool = new WorkerPool("test", 1, 2, 0);
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        Runnable task = () -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        };
+        pool.execute(task, () -> fail());
+        pool.execute(task, () -> fail());
+        pool.execute(task, () -> fail());
+        try {
+            pool.execute(task, () -> fail());
+            fail("should have been rejected");
+        } catch (ServiceUnavailableException e) {
+            // expected
+        }
+        assertEquals(1, pool.getRejectedCount());
+
+        blocker.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(3, pool.getExecutedCount());
+    }
+
+    @Test
+    public void testQueueTimeout() throws Exception {
+        pool = new WorkerPool("test", 1, 10, 50);
+        AtomicInteger executed = new AtomicInteger();
+        CountDownLatch timedOut = new CountDownLatch(1);
+
+        pool.execute(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executed.incrementAndGet();
+        }, () -> fail());
+        // waits behind the first one for more than the timeout
+        pool.execute(() -> executed.incrementAndGet(), () -> timedOut.countDown());
+
+        assertTrue(timedOut.await(5, TimeUnit.SECONDS));
+        assertEquals(1, executed.get());
+        assertEquals(1, pool.getTimedOutCount());
+        assertTrue(pool.getMaxQueueTime() >= 50);
+    }
+
+    @Test
+    public void testConcurrency() throws Exception {
+        pool = new WorkerPool("test", 4, 10, 0);
+        CountDownLatch started = new CountDownLatch(4);
+        CountDownLatch blocker = new CountDownLatch(1);
+        for (int i = 0; i < 4; i++) {
+            pool.execute(() -> {
+                started.countDown();
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, () -> fail());
+        }
+        // all four tasks run in parallel
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(4, pool.getActiveCount());
+        blocker.countDown();
+    }
+}
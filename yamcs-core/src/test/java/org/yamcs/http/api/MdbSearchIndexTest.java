@@ -0,0 +1,108 @@
+package org.yamcs.http.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.YConfiguration;
+import org.yamcs.http.api.MdbPageBuilder.MdbPage;
+import org.yamcs.http.api.MdbSearchIndex.ScoredParameter;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.XtceDb;
+import org.yamcs.xtceproc.XtceDbFactory;
+
+public class MdbSearchIndexTest {
+    static XtceDb mdb;
+    static MdbSearchIndex index;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        YConfiguration.setupTest("refmdb");
+        XtceDbFactory.reset();
+        mdb = XtceDbFactory.createInstanceByConfig("refmdb");
+        index = MdbSearchIndex.get(mdb);
+    }
+
+    @Test
+    public void testSameAsMatcher() {
+        String[] queries = { "ccsds", "/REFMDB/CcSdS-APID", "REFMDB_ccsds-apid", "ap ReFmDB_CC", "float", "Para1",
+                "x", "/REFMDB/SUBSYS1/", "", "  ", "nonexistent" };
+        for (String q : queries) {
+            NameDescriptionSearchMatcher matcher = new NameDescriptionSearchMatcher(q);
+            Set<Parameter> expected = mdb.getParameters().stream().filter(matcher::matches)
+                    .collect(Collectors.toSet());
+            Set<Parameter> actual = index.searchParameters(q).stream().map(ScoredParameter::getParameter)
+                    .collect(Collectors.toSet());
+            assertEquals("Results for '" + q + "'", expected, actual);
+        }
+    }
+
+    @Test
+    public void testMembers() {
+        Set<String> queries = new HashSet<>();
+        for (Parameter p : mdb.getParameters()) {
+            for (String entryName : MdbSearchHelpers.getEntryNames(p)) {
+                queries.add(entryName.substring(entryName.lastIndexOf('.') + 1).replace("[-1]", ""));
+            }
+        }
+        assertFalse(queries.isEmpty());
+        for (String q : queries) {
+            Set<Parameter> expected = mdb.getParameters().stream()
+                    .filter(p -> !MdbSearchHelpers.searchEntries(p, q).isEmpty())
+                    .collect(Collectors.toSet());
+            List<Parameter> candidates = index.getMemberCandidates(q);
+            assertTrue("Candidates for '" + q + "'", candidates.containsAll(expected));
+        }
+    }
+
+    @Test
+    public void testRanking() {
+        List<ScoredParameter> result = index.searchParameters("floatpara1_1_2");
+        Collections.sort(result);
+        assertFalse(result.isEmpty());
+        assertEquals("/REFMDB/SUBSYS1/FloatPara1_1_2", result.get(0).getParameter().getQualifiedName());
+        for (int i = 1; i < result.size(); i++) {
+            assertTrue(result.get(i - 1).getScore() >= result.get(i).getScore());
+        }
+    }
+
+    @Test
+    public void testRankedPages() {
+        List<Parameter> ranked = index.searchParameters("para").stream().sorted().map(ScoredParameter::getParameter)
+                .collect(Collectors.toList());
+        assertTrue(ranked.size() > 5);
+
+        List<Parameter> pages = new ArrayList<>();
+        String next = null;
+        do {
+            MdbPageBuilder<Parameter> pageBuilder = new MdbPageBuilder<>(new ArrayList<>(), new ArrayList<>(ranked),
+                    (p1, p2) -> Integer.compare(ranked.indexOf(p1), ranked.indexOf(p2)));
+            pageBuilder.setNext(next);
+            pageBuilder.setLimit(5);
+            MdbPage<Parameter> page = pageBuilder.buildPage();
+            assertEquals(ranked.size(), page.getTotalSize());
+            pages.addAll(page.getItems());
+            next = page.getContinuationToken();
+        } while (next != null);
+        assertEquals(ranked, pages);
+    }
+
+    @Test
+    public void testIntersect() {
+        assertEquals(0, MdbSearchIndex.intersect(new int[] { 1, 3 }, new int[] { 2, 4 }).length);
+        int[] r = MdbSearchIndex.intersect(new int[] { 1, 2, 5, 7, 9 }, new int[] { 2, 3, 7, 9, 10 });
+        assertEquals(3, r.length);
+        assertEquals(2, r[0]);
+        assertEquals(7, r[1]);
+        assertEquals(9, r[2]);
+    }
+}
@@ -14,6 +14,7 @@ import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
 import org.yamcs.utils.TimeEncoding;
 import org.yamcs.utils.ValueUtility;
 import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.util.DoubleRange;
 
 public class ArrayParameterCacheTest {
     Parameter p1 = new Parameter("p1");
@@ -52,7 +53,11 @@ public class ArrayParameterCacheTest {
         TestUtils.checkEquals(p2v1, pcache.getLastValue(p2));
 
         List<ParameterValue> pvlist = pcache.getValues(Arrays.asList(p1, p2));
-
+        // the returned p1 value is expired; the status stored in the cache and in p1v2 is not changed
+        assertEquals(AcquisitionStatus.ACQUIRED, p1v2.getAcquisitionStatus());
+        assertEquals(AcquisitionStatus.ACQUIRED, pcache.getLastValue(p1).getAcquisitionStatus());
+        p1v1.setAcquisitionStatus(AcquisitionStatus.EXPIRED);
+        p1v2.setAcquisitionStatus(AcquisitionStatus.EXPIRED);
         checkEquals(pvlist, p1v2, p2v1);
 
         pvlist = pcache.getValues(Arrays.asList(p2, p1));
@@ -60,6 +65,24 @@ public class ArrayParameterCacheTest {
 
     }
 
+    @Test
+    public void testExpiredStatusWithRanges() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 1000, 4096);
+        ArrayParameterCache pcache = new ArrayParameterCache("test", pcc);
+
+        ParameterValue p1v1 = getStringParameterValue(p1, 10);
+        p1v1.setExpireMillis(1000);
+        p1v1.setWatchRange(new DoubleRange(0, 10));
+        pcache.update(Arrays.asList(p1v1));
+
+        List<ParameterValue> pvlist = pcache.getValues(Arrays.asList(p1));
+        assertEquals(AcquisitionStatus.EXPIRED, pvlist.get(0).getAcquisitionStatus());
+        assertEquals(10, pvlist.get(0).getWatchRange().getMax(), 0);
+        // the status stored in the cache is not changed
+        assertEquals(AcquisitionStatus.ACQUIRED, p1v1.getAcquisitionStatus());
+        assertEquals(AcquisitionStatus.ACQUIRED, pcache.getLastValue(p1).getAcquisitionStatus());
+    }
+
     @Test
     public void testNoCacheAll() {
         ParameterCacheConfig pcc = new ParameterCacheConfig(true, false, 1000, 4096);
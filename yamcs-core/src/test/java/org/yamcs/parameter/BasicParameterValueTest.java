@@ -0,0 +1,86 @@
+package org.yamcs.parameter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
+import org.yamcs.protobuf.Pvalue.MonitoringResult;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.utils.ValueUtility;
+
+public class BasicParameterValueTest {
+
+    @Test
+    public void testSharedStatus() {
+        BasicParameterValue pv1 = new BasicParameterValue();
+        BasicParameterValue pv2 = new BasicParameterValue();
+        assertSame(ParameterStatus.NOMINAL, pv1.getStatus());
+
+        pv1.setExpireMillis(1900);
+        pv2.setExpireMillis(1900);
+        assertSame(pv1.getStatus(), pv2.getStatus());
+        assertTrue(pv1.getStatus().isShared());
+        assertEquals(1900, pv1.getExpireMills());
+
+        pv2.setAcquisitionStatus(AcquisitionStatus.INVALID);
+        assertSame(ParameterStatus.getSharedStatus(AcquisitionStatus.INVALID, 1900), pv2.getStatus());
+        assertEquals(AcquisitionStatus.ACQUIRED, pv1.getAcquisitionStatus());
+
+        pv2.setMonitoringResult(MonitoringResult.WARNING);
+        assertFalse(pv2.getStatus().isShared());
+        assertEquals(AcquisitionStatus.INVALID, pv2.getAcquisitionStatus());
+        assertEquals(1900, pv2.getExpireMills());
+        assertEquals(MonitoringResult.WARNING, pv2.getMonitoringResult());
+
+        assertNull(pv1.getMonitoringResult());
+        assertNull(ParameterStatus.NOMINAL.getMonitoringResult());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSharedStatusNotModifiable() {
+        ParameterStatus.NOMINAL.setMonitoringResult(MonitoringResult.CRITICAL);
+    }
+
+    @Test
+    public void testInlineValues() {
+        BasicParameterValue pv = new BasicParameterValue();
+        assertFalse(pv.hasRawValue());
+        assertNull(pv.getRawType());
+
+        pv.setRawUnsignedInteger(-1);
+        assertEquals(Type.UINT32, pv.getRawType());
+        assertEquals(-1, pv.getRawLong());
+        assertEquals(ValueUtility.getUint32Value(-1), pv.getRawValue());
+        assertSame(pv.getRawValue(), pv.getRawValue());
+
+        pv.setDoubleValue(3.14);
+        assertEquals(Type.DOUBLE, pv.getEngType());
+        assertEquals(3.14, pv.getEngDouble(), 0);
+        assertEquals(ValueUtility.getDoubleValue(3.14), pv.getEngValue());
+
+        pv.setEngValue(ValueUtility.getSint64Value(-5));
+        assertEquals(Type.SINT64, pv.getEngType());
+        assertEquals(-5, pv.getEngLong());
+
+        pv.setRawFloatValue(2.5f);
+        pv.setEngValueFromRaw();
+        assertEquals(Type.FLOAT, pv.getEngType());
+        assertEquals(2.5, pv.getEngDouble(), 0);
+        assertEquals(ValueUtility.getFloatValue(2.5f), pv.getEngValue());
+
+        BasicParameterValue copy = new BasicParameterValue(pv);
+        assertEquals(pv.getEngValue(), copy.getEngValue());
+        assertEquals(pv.getRawValue(), copy.getRawValue());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testWrongPrimitiveType() {
+        BasicParameterValue pv = new BasicParameterValue();
+        pv.setSignedIntegerValue(3);
+        pv.getEngDouble();
+    }
+}
@@ -0,0 +1,196 @@
+package org.yamcs.parameter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.parameterarchive.TestUtils;
+import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.ValueUtility;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.util.DoubleRange;
+
+public class OffHeapParameterCacheTest {
+    Parameter p1 = new Parameter("p1");
+    Parameter p2 = new Parameter("p2");
+
+    @BeforeClass
+    public static void before() {
+        TimeEncoding.setUp();
+    }
+
+    @Test
+    public void test1() {
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", config(true, 1000, 4096));
+        assertNull(pcache.getLastValue(p1));
+
+        ParameterValue p1v1 = getStringParameterValue(p1, 10);
+        ParameterValue p2v1 = getFloatParameterValue(p2, 10);
+        p2v1.setAcquisitionStatus(AcquisitionStatus.INVALID);
+        pcache.update(Arrays.asList(p1v1, p2v1));
+
+        TestUtils.checkEquals(p1v1, pcache.getLastValue(p1));
+        TestUtils.checkEquals(p2v1, pcache.getLastValue(p2));
+
+        ParameterValue p1v2 = getStringParameterValue(p1, 20);
+        pcache.update(Arrays.asList(p1v2));
+
+        TestUtils.checkEquals(p1v2, pcache.getLastValue(p1));
+        TestUtils.checkEquals(p2v1, pcache.getLastValue(p2));
+
+        ArrayParameterCacheTest.checkEquals(pcache.getValues(Arrays.asList(p1, p2)), p1v2, p2v1);
+        ArrayParameterCacheTest.checkEquals(pcache.getValues(Arrays.asList(p2, p1)), p2v1, p1v2);
+
+        List<ParameterValue> pvlist = pcache.getAllValues(p1);
+        ArrayParameterCacheTest.checkEquals(pvlist, p1v2, p1v1);
+
+        pvlist = pcache.getAllValues(p1, 10, 20);
+        ArrayParameterCacheTest.checkEquals(pvlist, p1v2);
+        assertNull(pcache.getAllValues(p1, 20, 30));
+
+        // older than the last value of the group -> ignored
+        pcache.update(Arrays.asList(getStringParameterValue(p1, 15)));
+        ArrayParameterCacheTest.checkEquals(pcache.getAllValues(p1), p1v2, p1v1);
+
+        pcache.clear();
+        assertNull(pcache.getLastValue(p1));
+    }
+
+    @Test
+    public void testNoCacheAll() {
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", config(false, 1000, 4096));
+        pcache.update(Arrays.asList(getStringParameterValue(p1, 0)));
+        assertNull(pcache.getLastValue(p1));
+
+        ParameterValue p1v1 = getStringParameterValue(p1, 10);
+        ParameterValue p2v1 = getFloatParameterValue(p2, 10);
+        pcache.update(Arrays.asList(p1v1, p2v1));
+
+        TestUtils.checkEquals(p1v1, pcache.getLastValue(p1));
+        assertNull(pcache.getLastValue(p2));
+    }
+
+    @Test
+    public void testTypes() {
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", config(true, 1000, 4096));
+        List<Value> values = Arrays.asList(ValueUtility.getBooleanValue(true), ValueUtility.getSint32Value(-3),
+                ValueUtility.getUint32Value(-1), ValueUtility.getSint64Value(-5), ValueUtility.getUint64Value(-7),
+                ValueUtility.getFloatValue(1.5f), ValueUtility.getDoubleValue(2.5), ValueUtility.getTimestampValue(100),
+                ValueUtility.getStringValue("s"), ValueUtility.getBinaryValue(new byte[] { 1, 2 }));
+        for (int i = 0; i < values.size(); i++) {
+            Parameter p = new Parameter("p" + i);
+            ParameterValue pv = new ParameterValue(p);
+            pv.setGenerationTime(1000);
+            pv.setAcquisitionTime(1001);
+            pv.setRawValue(values.get(i));
+            pv.setEngValue(values.get(values.size() - 1 - i));
+            pcache.update(Arrays.asList(pv));
+            TestUtils.checkEquals(pv, pcache.getLastValue(p));
+        }
+    }
+
+    @Test
+    public void testExpiration() {
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", config(true, 800, 4096));
+        List<ParameterValue> expectedPVlist = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            ParameterValue pv = getUint64ParameterValue(p1, i * 10L);
+            expectedPVlist.add(pv);
+            pcache.update(Arrays.asList(pv));
+        }
+        // the values covering the last 800 ms are kept plus maximum one block of 100 ms
+        List<ParameterValue> pvlist = pcache.getAllValues(p1);
+        assertTrue(pvlist.size() > 80);
+        assertTrue(pvlist.size() <= 90);
+        for (int i = 0; i < pvlist.size(); i++) {
+            TestUtils.checkEquals(expectedPVlist.get(299 - i), pvlist.get(i));
+        }
+    }
+
+    @Test
+    public void testMaxSize() {
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", config(true, 2000, 128));
+        List<ParameterValue> expectedPVlist = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            ParameterValue pv = getUint64ParameterValue(p1, i);
+            expectedPVlist.add(pv);
+            pcache.update(Arrays.asList(pv));
+
+            List<ParameterValue> pvlist = pcache.getAllValues(p1);
+            assertTrue(pvlist.size() <= 128);
+            assertTrue(pvlist.size() > Math.min(i, 128 - 2 * 16));
+            for (int j = 0; j < pvlist.size(); j++) {
+                TestUtils.checkEquals(expectedPVlist.get(i - j), pvlist.get(j));
+            }
+        }
+    }
+
+    @Test
+    public void testExpiredStatusWithRanges() {
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", config(true, 1000, 4096));
+        ParameterValue p1v1 = getStringParameterValue(p1, 10);
+        p1v1.setExpireMillis(1000);
+        p1v1.setWatchRange(new DoubleRange(0, 10));
+        ParameterValue p1v2 = getStringParameterValue(p1, 20);
+        p1v2.setExpireMillis(1000);
+        p1v2.setWatchRange(new DoubleRange(0, 10));
+        pcache.update(Arrays.asList(p1v1));
+        pcache.update(Arrays.asList(p1v2));
+
+        List<ParameterValue> pvlist = pcache.getValues(Arrays.asList(p1));
+        assertEquals(AcquisitionStatus.EXPIRED, pvlist.get(0).getAcquisitionStatus());
+        assertEquals(10, pvlist.get(0).getWatchRange().getMax(), 0);
+        // the status shared by the rows of the cache is not changed
+        for (ParameterValue pv : pcache.getAllValues(p1)) {
+            assertEquals(AcquisitionStatus.ACQUIRED, pv.getAcquisitionStatus());
+        }
+    }
+
+    @Test
+    public void testMultipleGroups() {
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", config(true, 1000, 4096));
+        ParameterValue p1v1 = getUint64ParameterValue(p1, 10);
+        pcache.update(Arrays.asList(p1v1, getUint64ParameterValue(p2, 10)));
+        ParameterValue p1v2 = getUint64ParameterValue(p1, 20);
+        pcache.update(Arrays.asList(p1v2));
+        ParameterValue p1v3 = getUint64ParameterValue(p1, 30);
+        pcache.update(Arrays.asList(p1v3, getUint64ParameterValue(p2, 30)));
+
+        TestUtils.checkEquals(p1v3, pcache.getLastValue(p1));
+        ArrayParameterCacheTest.checkEquals(pcache.getAllValues(p1), p1v3, p1v2, p1v1);
+    }
+
+    static ParameterCacheConfig config(boolean cacheAll, long duration, int maxNumEntries) {
+        return new ParameterCacheConfig(true, cacheAll, duration, maxNumEntries,
+                ParameterCacheConfig.Implementation.OFFHEAP);
+    }
+
+    ParameterValue getUint64ParameterValue(Parameter p, long t) {
+        ParameterValue pv = new ParameterValue(p);
+        pv.setGenerationTime(t);
+        pv.setAcquisitionTime(t + 5);
+        pv.setEngValue(ValueUtility.getUint64Value(t));
+        return pv;
+    }
+
+    ParameterValue getFloatParameterValue(Parameter p, long t) {
+        ParameterValue pv = new ParameterValue(p);
+        pv.setGenerationTime(t);
+        pv.setEngValue(ValueUtility.getFloatValue((float) t));
+        return pv;
+    }
+
+    ParameterValue getStringParameterValue(Parameter p, long t) {
+        ParameterValue pv = new ParameterValue(p);
+        pv.setGenerationTime(t);
+        pv.setEngValue(ValueUtility.getStringValue(p.getName() + "_" + t));
+        return pv;
+    }
+}
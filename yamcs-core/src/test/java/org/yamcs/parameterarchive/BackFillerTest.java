@@ -0,0 +1,57 @@
+package org.yamcs.parameterarchive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.parameterarchive.BackFiller.Chunk;
+import org.yamcs.utils.TimeEncoding;
+
+public class BackFillerTest {
+    static long d = ParameterArchive.getIntervalDuration();
+
+    @BeforeClass
+    public static void beforeClass() {
+        TimeEncoding.setUp();
+    }
+
+    @Test
+    public void testSmallJob() {
+        long t = TimeEncoding.parse("2020-01-01T10:00:00");
+        long t0 = ParameterArchive.getIntervalStart(t);
+
+        List<Chunk> chunks = BackFiller.getChunks(t, t + 2 * d, 4);
+        assertEquals(3, chunks.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(t0 + i * d, chunks.get(i).start);
+            assertEquals(ParameterArchive.getIntervalEnd(t0 + i * d), chunks.get(i).stop);
+        }
+
+        chunks = BackFiller.getChunks(t, t, 4);
+        assertEquals(1, chunks.size());
+        assertEquals(t0, chunks.get(0).start);
+
+        assertTrue(BackFiller.getChunks(t + d, t, 4).isEmpty());
+    }
+
+    @Test
+    public void testLargeJob() {
+        long start = TimeEncoding.parse("2019-01-01T00:00:00");
+        long stop = TimeEncoding.parse("2020-01-01T00:00:00");
+        int numThreads = 3;
+
+        List<Chunk> chunks = BackFiller.getChunks(start, stop, numThreads);
+        assertTrue(chunks.size() <= BackFiller.CHUNKS_PER_THREAD * numThreads);
+        assertTrue(chunks.size() > BackFiller.CHUNKS_PER_THREAD * numThreads / 2);
+
+        // the chunks are aligned to intervals, consecutive and cover the whole range
+        assertEquals(ParameterArchive.getIntervalStart(start), chunks.get(0).start);
+        for (int i = 1; i < chunks.size(); i++) {
+            assertEquals(chunks.get(i - 1).stop + 1, chunks.get(i).start);
+        }
+        assertEquals(ParameterArchive.getIntervalEnd(stop), chunks.get(chunks.size() - 1).stop);
+    }
+}
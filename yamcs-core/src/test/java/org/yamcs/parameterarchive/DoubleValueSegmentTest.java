@@ -2,10 +2,12 @@ package org.yamcs.parameterarchive;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Random;
 
 import org.junit.Test;
 import org.yamcs.utils.DecodingException;
@@ -30,4 +32,50 @@ public class DoubleValueSegmentTest {
         assertArrayEquals(new double[]{1.2, 2.3,3}, fvs1.getRange(0, 3, true).getDoubleArray(), 1e-10);
         assertArrayEquals(new double[]{3, 2.3}, fvs1.getRange(0, 2, false).getDoubleArray(), 1e-10);
     }
+
+    @Test
+    public void testCompressed() throws DecodingException {
+        // slowly varying housekeeping value
+        DoubleValueSegment dvs = new DoubleValueSegment();
+        for (int i = 0; i < 1000; i++) {
+            dvs.add(i, ValueUtility.getDoubleValue(20 + (i / 50) * 0.5));
+        }
+        byte[] b = checkEncoding(dvs);
+        assertEquals(DoubleValueSegment.SUBFORMAT_ID_COMPRESSED, b[1]);
+        assertTrue(b.length < dvs.getMaxSerializedSize() / 6);
+    }
+
+    @Test
+    public void testRandom() throws DecodingException {
+        // not compressible, the raw encoding is used
+        Random r = new Random(1);
+        DoubleValueSegment dvs = new DoubleValueSegment();
+        for (int i = 0; i < 1000; i++) {
+            dvs.add(i, ValueUtility.getDoubleValue(Double.longBitsToDouble(r.nextLong())));
+        }
+        byte[] b = checkEncoding(dvs);
+        assertEquals(DoubleValueSegment.SUBFORMAT_ID_RAW, b[1]);
+    }
+
+    @Test
+    public void testSpecialValues() throws DecodingException {
+        double[] da = { 0, -0.0, Double.NaN, Double.MAX_VALUE, Double.MIN_VALUE, Double.NEGATIVE_INFINITY, 1, 1, 3.14,
+                Double.longBitsToDouble(1), Double.longBitsToDouble(0x8000000000000001L) };
+        DoubleValueSegment dvs = new DoubleValueSegment();
+        for (int i = 0; i < da.length; i++) {
+            dvs.add(i, ValueUtility.getDoubleValue(da[i]));
+        }
+        checkEncoding(dvs);
+    }
+
+    private byte[] checkEncoding(DoubleValueSegment dvs) throws DecodingException {
+        SegmentEncoderDecoder sed = new SegmentEncoderDecoder();
+        byte[] b = sed.encode(dvs);
+        DoubleValueSegment dvs1 = (DoubleValueSegment) sed.decode(b, 0);
+        assertEquals(dvs.size(), dvs1.size());
+        for (int i = 0; i < dvs.size(); i++) {
+            assertEquals(Double.doubleToRawLongBits(dvs.values.get(i)), Double.doubleToRawLongBits(dvs1.values.get(i)));
+        }
+        return b;
+    }
 }
@@ -5,6 +5,7 @@ import static org.junit.Assert.*;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Random;
 
 import org.junit.Test;
 import org.yamcs.protobuf.Yamcs.Value.Type;
@@ -71,4 +72,57 @@ public class LongValueSegmentTest {
         assertArrayEquals(new long[]{1, 2,3}, fvs1.getRange(0, 3, true).getLongArray());
         assertArrayEquals(new long[]{3, 2}, fvs1.getRange(0, 2, false).getLongArray());
     }
+
+    @Test
+    public void testCounter() throws DecodingException {
+        LongValueSegment lvs = new LongValueSegment(Type.UINT64);
+        for (int i = 0; i < 1000; i++) {
+            lvs.add(i, ValueUtility.getUint64Value((1L << 40) + 3 * i));
+        }
+        byte[] b = checkEncoding(lvs);
+        assertEquals(LongValueSegment.SUBFORMAT_ID_DELTAZG_FPF128_VB, b[1] & 0xF);
+        assertTrue(b.length < lvs.getMaxSerializedSize() / 6);
+    }
+
+    @Test
+    public void testFewValues() throws DecodingException {
+        LongValueSegment lvs = new LongValueSegment(Type.SINT64);
+        for (int i = 0; i < 10; i++) {
+            lvs.add(i, ValueUtility.getSint64Value(-i));
+        }
+        byte[] b = checkEncoding(lvs);
+        assertEquals(LongValueSegment.SUBFORMAT_ID_DELTAZG_VB, b[1] & 0xF);
+    }
+
+    @Test
+    public void testLargeDeltas() throws DecodingException {
+        LongValueSegment lvs = new LongValueSegment(Type.TIMESTAMP);
+        for (int i = 0; i < 100; i++) {
+            lvs.add(i, ValueUtility.getTimestampValue((i % 3) * (1L << 40)));
+        }
+        byte[] b = checkEncoding(lvs);
+        assertEquals(LongValueSegment.SUBFORMAT_ID_DELTAZG_VB64, b[1] & 0xF);
+    }
+
+    @Test
+    public void testRandom() throws DecodingException {
+        Random r = new Random(1);
+        LongValueSegment lvs = new LongValueSegment(Type.SINT64);
+        for (int i = 0; i < 1000; i++) {
+            lvs.add(i, ValueUtility.getSint64Value(r.nextLong()));
+        }
+        byte[] b = checkEncoding(lvs);
+        assertEquals(LongValueSegment.SUBFORMAT_ID_RAW, b[1] & 0xF);
+    }
+
+    private byte[] checkEncoding(LongValueSegment lvs) throws DecodingException {
+        SegmentEncoderDecoder sed = new SegmentEncoderDecoder();
+        byte[] b = sed.encode(lvs);
+        LongValueSegment lvs1 = (LongValueSegment) sed.decode(b, 0);
+        assertEquals(lvs.size(), lvs1.size());
+        for (int i = 0; i < lvs.size(); i++) {
+            assertEquals(lvs.getValue(i), lvs1.getValue(i));
+        }
+        return b;
+    }
 }
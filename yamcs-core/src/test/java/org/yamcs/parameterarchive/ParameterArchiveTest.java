@@ -5,6 +5,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.yamcs.parameterarchive.TestUtils.checkEquals;
 
 import java.io.IOException;
@@ -448,6 +449,149 @@ public class ParameterArchiveTest {
         return retrieveSingleValueMultigroup(start, stop, parameterId, parameterGroupIds, ascending, true, true, true);
     }
 
+    @Test
+    public void testRetention() throws Exception {
+        long t1 = TimeEncoding.parse("2016-01-01T00:00:00");
+        long t2 = TimeEncoding.parse("2017-01-01T00:00:00");
+        ParameterValue pv1_0 = getParameterValue(p1, t1, "pv1_0");
+        ParameterValue pv2_0 = getParameterValue(p2, t1, "pv2_0");
+        ParameterValue pv1_1 = getParameterValue(p1, t1 + 100, "pv1_1");
+        ParameterValue pv1_2 = getParameterValue(p1, t2, "pv1_2");
+        ParameterValue pv2_1 = getParameterValue(p2, t2, "pv2_1");
+
+        int p1id = parchive.getParameterIdDb().createAndGet(p1.getQualifiedName(), pv1_0.getEngValue().getType());
+        int p2id = parchive.getParameterIdDb().createAndGet(p2.getQualifiedName(), pv2_0.getEngValue().getType());
+        int pg1id = parchive.getParameterGroupIdDb().createAndGet(IntArray.wrap(p1id, p2id));
+        int pg2id = parchive.getParameterGroupIdDb().createAndGet(IntArray.wrap(p1id));
+        int[] p1groups = new int[] { pg1id, pg2id };
+
+        long seg1 = ParameterArchive.getIntervalStart(t1);
+        PGSegment pgSegment1 = new PGSegment(pg1id, seg1, IntArray.wrap(p1id, p2id));
+        pgSegment1.addRecord(t1, Arrays.asList(pv1_0, pv2_0));
+        PGSegment pgSegment2 = new PGSegment(pg2id, seg1, IntArray.wrap(p1id));
+        pgSegment2.addRecord(t1 + 100, Arrays.asList(pv1_1));
+        parchive.writeToArchive(seg1, Arrays.asList(pgSegment1, pgSegment2));
+
+        long seg2 = ParameterArchive.getIntervalStart(t2);
+        PGSegment pgSegment3 = new PGSegment(pg1id, seg2, IntArray.wrap(p1id, p2id));
+        pgSegment3.addRecord(t2, Arrays.asList(pv1_2, pv2_1));
+        parchive.writeToArchive(pgSegment3);
+
+        Map<String, Object> policy = new HashMap<>();
+        policy.put("parameters", "/test/p1");
+        policy.put("duration", 30 * 86400);
+        Map<String, Object> conf = new HashMap<>();
+        conf.put("policies", Arrays.asList(policy));
+        conf.put("compactionPause", 0);
+        RetentionManager rm = new RetentionManager(parchive,
+                RetentionManager.getSpec().validate(YConfiguration.wrap(conf)));
+        rm.doSweep(t2);
+
+        // p1 is expired in the first interval, p2 is not
+        List<ParameterValueArray> l1 = retrieveSingleValueMultigroup(0, TimeEncoding.MAX_INSTANT, p1id, p1groups,
+                true);
+        assertEquals(1, l1.size());
+        checkEquals(l1.get(0), pv1_2);
+
+        List<ParameterValueArray> l2 = retrieveSingleValueMultigroup(0, TimeEncoding.MAX_INSTANT, p2id,
+                new int[] { pg1id }, true);
+        assertEquals(2, l2.size());
+        checkEquals(l2.get(0), pv2_0);
+        checkEquals(l2.get(1), pv2_1);
+
+        // the time segment of the group containing only p1 is removed, the one shared with p2 is kept
+        Partition part1 = parchive.getPartitions(seg1);
+        assertNotNull(parchive.getTimeSegment(part1, seg1, pg1id));
+        assertNull(parchive.getTimeSegment(part1, seg1, pg2id));
+
+        parchive.deleteParameterHistory(p2.getQualifiedName(), TimeEncoding.MAX_INSTANT);
+        l2 = retrieveSingleValueMultigroup(0, TimeEncoding.MAX_INSTANT, p2id, new int[] { pg1id }, true);
+        assertEquals(0, l2.size());
+        l1 = retrieveSingleValueMultigroup(0, TimeEncoding.MAX_INSTANT, p1id, p1groups, true);
+        assertEquals(1, l1.size());
+    }
+
+    @Test
+    public void testPartitionSummary() throws Exception {
+        long t1 = TimeEncoding.parse("2016-06-01T00:00:00");
+        long t2 = TimeEncoding.parse("2017-06-01T00:00:00");
+        ParameterValue pv1_0 = getParameterValue(p1, t1, "pv1_0");
+        ParameterValue pv1_1 = getParameterValue(p1, t2, "pv1_1");
+        ParameterValue pv2_0 = getParameterValue(p2, t2, "pv2_0");
+
+        int p1id = parchive.getParameterIdDb().createAndGet(p1.getQualifiedName(), pv1_0.getEngValue().getType());
+        int p2id = parchive.getParameterIdDb().createAndGet(p2.getQualifiedName(), pv2_0.getEngValue().getType());
+        int pg1id = parchive.getParameterGroupIdDb().createAndGet(IntArray.wrap(p1id));
+        int pg2id = parchive.getParameterGroupIdDb().createAndGet(IntArray.wrap(p1id, p2id));
+
+        PGSegment pgSegment1 = new PGSegment(pg1id, ParameterArchive.getIntervalStart(t1), IntArray.wrap(p1id));
+        pgSegment1.addRecord(t1, Arrays.asList(pv1_0));
+        parchive.writeToArchive(pgSegment1);
+        PGSegment pgSegment2 = new PGSegment(pg2id, ParameterArchive.getIntervalStart(t2),
+                IntArray.wrap(p1id, p2id));
+        pgSegment2.addRecord(t2, Arrays.asList(pv1_1, pv2_0));
+        parchive.writeToArchive(pgSegment2);
+
+        checkPartitionSummary(t1, t2, p1id, p2id, pg1id, pg2id);
+
+        // keys shorter than the segment keys (found in the main database without partitioning) are skipped
+        Partition part1 = parchive.getPartitions(ParameterArchive.getIntervalStart(t1));
+        RdbStorageEngine.getInstance().getTablespace(instance).getRdb(part1.partitionDir, false)
+                .put(new byte[] { 0x7F, 1, 2 }, new byte[0]);
+
+        // reopen the archive such that the summaries are loaded from the database
+        parchive = new ParameterArchive();
+        Map<String, Object> conf = new HashMap<>();
+        conf.put("partitioningSchema", partitioningSchema);
+        parchive.init(instance, "test", parchive.getSpec().validate(YConfiguration.wrap(conf)));
+        Partition reopened1 = parchive.getPartitions(ParameterArchive.getIntervalStart(t1));
+        Partition reopened2 = parchive.getPartitions(ParameterArchive.getIntervalStart(t2));
+        // until the summaries are loaded, all the partitions are searched
+        assertTrue(parchive.mightContain(reopened1, p2id, pg2id));
+        parchive.loadSummary(reopened1);
+        parchive.loadSummary(reopened2);
+        waitForSummary(reopened1);
+        waitForSummary(reopened2);
+        checkPartitionSummary(t1, t2, p1id, p2id, pg1id, pg2id);
+
+        List<ParameterValueArray> l1 = retrieveSingleValueMultigroup(0, TimeEncoding.MAX_INSTANT, p1id,
+                new int[] { pg1id, pg2id }, true);
+        assertEquals(2, l1.size());
+        checkEquals(l1.get(0), pv1_0);
+        checkEquals(l1.get(1), pv1_1);
+        List<ParameterValueArray> l2 = retrieveSingleValueMultigroup(0, TimeEncoding.MAX_INSTANT, p2id,
+                new int[] { pg2id }, true);
+        assertEquals(1, l2.size());
+        checkEquals(l2.get(0), pv2_0);
+    }
+
+    private void waitForSummary(Partition p) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            synchronized (p) {
+                if (p.summary != null) {
+                    return;
+                }
+            }
+            Thread.sleep(50);
+        }
+        fail("summary of " + p + " not loaded");
+    }
+
+    private void checkPartitionSummary(long t1, long t2, int p1id, int p2id, int pg1id, int pg2id) {
+        Partition part1 = parchive.getPartitions(ParameterArchive.getIntervalStart(t1));
+        Partition part2 = parchive.getPartitions(ParameterArchive.getIntervalStart(t2));
+        int timeId = parchive.getParameterIdDb().getTimeParameterId();
+        assertTrue(parchive.mightContain(part1, p1id, pg1id));
+        assertTrue(parchive.mightContain(part1, timeId, pg1id));
+        assertTrue(parchive.mightContain(part2, p1id, pg2id));
+        assertTrue(parchive.mightContain(part2, p2id, pg2id));
+        if (part1 != part2) {
+            assertFalse(parchive.mightContain(part1, p2id, pg2id));
+            assertFalse(parchive.mightContain(part1, p1id, pg2id));
+            assertFalse(parchive.mightContain(part2, p1id, pg1id));
+        }
+    }
+
     @Test
     public void testMultipleParameters() throws Exception {
         ParameterValue pv1_0 = getParameterValue(p1, 100, "pv1_0");
@@ -608,6 +752,51 @@ public class ParameterArchiveTest {
 
     }
 
+    @Test
+    public void testSegmentCache() throws Exception {
+        SegmentCache cache = parchive.getSegmentCache();
+        assertNotNull(cache);
+
+        ParameterValue pv1_0 = getParameterValue(p1, 100, "blala100", 100);
+        int p1id = pidMap.createAndGet(p1.getQualifiedName(), pv1_0.getEngValue().getType(),
+                pv1_0.getRawValue().getType());
+        int pg1id = pgidMap.createAndGet(IntArray.wrap(p1id));
+
+        PGSegment pgSegment1 = new PGSegment(pg1id, 0, IntArray.wrap(p1id));
+        pgSegment1.addRecord(100, Arrays.asList(pv1_0));
+        parchive.writeToArchive(pgSegment1);
+
+        List<ParameterValueArray> l1a = retrieveSingleParamSingleGroup(0, 1000, p1id, pg1id, true);
+        checkEquals(l1a.get(0), pv1_0);
+        long misses = cache.getStats().missCount();
+        // time, eng, raw and status segments
+        assertEquals(4, cache.size());
+        assertTrue(cache.getMemoryUsage() > 0);
+
+        // the second retrieval and the multiple parameter retrieval are served from the cache
+        List<ParameterValueArray> l2a = retrieveSingleParamSingleGroup(0, 1000, p1id, pg1id, true);
+        checkEquals(l2a.get(0), pv1_0);
+        List<ParameterIdValueList> params = retrieveMultipleParameters(0, 1000, new int[] { p1id },
+                new int[] { pg1id }, true);
+        checkEquals(params.get(0), 100, pv1_0);
+        assertEquals(misses, cache.getStats().missCount());
+        assertTrue(cache.getStats().hitCount() >= 8);
+
+        // rewriting the segment invalidates the cached segments
+        ParameterValue pv1_1 = getParameterValue(p1, 100, "blala100bis", 101);
+        PGSegment pgSegment2 = new PGSegment(pg1id, 0, IntArray.wrap(p1id));
+        pgSegment2.addRecord(100, Arrays.asList(pv1_1));
+        ParameterValue pv1_2 = getParameterValue(p1, 200, "blala200", 200);
+        pgSegment2.addRecord(200, Arrays.asList(pv1_2));
+        parchive.writeToArchive(pgSegment2);
+        assertEquals(0, cache.size());
+
+        List<ParameterValueArray> l3a = retrieveSingleParamSingleGroup(0, 1000, p1id, pg1id, true);
+        checkEquals(l3a.get(0), pv1_1, pv1_2);
+        List<ParameterValueArray> l3d = retrieveSingleParamSingleGroup(0, 1000, p1id, pg1id, false);
+        checkEquals(l3d.get(0), pv1_2, pv1_1);
+    }
+
     List<ParameterIdValueList> retrieveMultipleParameters(long start, long stop, int[] parameterIds,
             int[] parameterGroupIds, boolean ascending) throws Exception {
         return retrieveMultipleParameters(start, stop, parameterIds, parameterGroupIds, ascending, -1);
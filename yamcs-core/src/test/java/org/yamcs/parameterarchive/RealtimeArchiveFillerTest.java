@@ -0,0 +1,166 @@
+package org.yamcs.parameterarchive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.YConfiguration;
+import org.yamcs.YamcsServer;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameterarchive.RealtimeArchiveFiller.SegmentQueue;
+import org.yamcs.utils.FileUtils;
+import org.yamcs.utils.IntArray;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.ValueUtility;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.yarch.YarchDatabase;
+import org.yamcs.yarch.rocksdb.RdbStorageEngine;
+
+public class RealtimeArchiveFillerTest {
+    String instance = "RealtimeArchiveFillerTest";
+    static Parameter p1;
+    ParameterArchive parchive;
+
+    @BeforeClass
+    public static void beforeClass() {
+        p1 = new Parameter("p1");
+        p1.setQualifiedName("/test/p1");
+        TimeEncoding.setUp();
+        YamcsServer.setMockupTimeService(new MockupTimeService());
+    }
+
+    @Before
+    public void openDb() throws Exception {
+        String dbroot = YarchDatabase.getInstance(instance).getRoot();
+        FileUtils.deleteRecursivelyIfExists(Paths.get(dbroot));
+        FileUtils.deleteRecursivelyIfExists(Paths.get(dbroot + ".rdb"));
+        FileUtils.deleteRecursivelyIfExists(Paths.get(dbroot + ".tbs"));
+        RdbStorageEngine rse = RdbStorageEngine.getInstance();
+        if (rse.getTablespace(instance) != null) {
+            rse.dropTablespace(instance);
+        }
+        rse.createTablespace(instance);
+        Map<String, Object> conf = new HashMap<>();
+        conf.put("maxSegmentSize", 80);
+        parchive = new ParameterArchive();
+        parchive.init(instance, "test", parchive.getSpec().validate(YConfiguration.wrap(conf)));
+    }
+
+    @After
+    public void closeDb() throws Exception {
+        RdbStorageEngine.getInstance().dropTablespace(instance);
+    }
+
+    @Test
+    public void testSegmentSizeIncreases() throws Exception {
+        RealtimeArchiveFiller filler = createFiller(1024 * 1024, 0);
+        long t0 = TimeEncoding.parse("2021-06-01T00:00:00");
+        feed(filler, t0, 1, 2000);
+
+        SegmentQueue queue = filler.queues.values().iterator().next();
+        // the constant values compress very well, the size is limited by the factor
+        assertEquals(80 * RealtimeArchiveFiller.SEGMENT_SIZE_FACTOR, queue.getSegmentLimit());
+        checkArchive(t0, 1, 2000);
+    }
+
+    @Test
+    public void testSegmentSizeDecreases() throws Exception {
+        RealtimeArchiveFiller filler = createFiller(1, 0);
+        long t0 = TimeEncoding.parse("2021-06-01T00:00:00");
+        feed(filler, t0, 1, 2000);
+
+        SegmentQueue queue = filler.queues.values().iterator().next();
+        assertEquals(80 / RealtimeArchiveFiller.SEGMENT_SIZE_FACTOR, queue.getSegmentLimit());
+        checkArchive(t0, 1, 2000);
+    }
+
+    @Test
+    public void testMaxSegmentAge() throws Exception {
+        RealtimeArchiveFiller filler = createFiller(0, 1);
+        long t0 = TimeEncoding.parse("2021-06-01T00:00:00");
+        feed(filler, t0, 100, 50);
+
+        List<ParameterValueArray> segments = checkArchive(t0, 100, 50);
+        for (ParameterValueArray pva : segments) {
+            long[] timestamps = pva.getTimestamps();
+            assertTrue(timestamps[timestamps.length - 1] - timestamps[0] < 1000);
+        }
+        assertTrue(segments.size() >= 5);
+    }
+
+    @Test
+    public void testQueueGrows() throws Exception {
+        RealtimeArchiveFiller filler = createFiller(0, 0);
+        // block the writing such that the segments accumulate in the queue
+        CountDownLatch latch = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) {
+            filler.executor.submit(() -> {
+                latch.await();
+                return null;
+            });
+        }
+        long t0 = TimeEncoding.parse("2021-06-01T00:00:00");
+        for (int i = 0; i < 8000; i++) {
+            ParameterValue pv = new ParameterValue(p1);
+            pv.setGenerationTime(t0 + i);
+            pv.setEngineeringValue(ValueUtility.getUint32Value(i));
+            filler.processParameters(Arrays.asList(pv));
+        }
+        SegmentQueue queue = filler.queues.values().iterator().next();
+        assertEquals(128, queue.segments.length);
+
+        latch.countDown();
+        filler.shutDown();
+        checkArchive(t0, 1, 8000);
+    }
+
+    private RealtimeArchiveFiller createFiller(int segmentTargetSize, int maxSegmentAge) throws Exception {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put("sortingThreshold", 0);
+        conf.put("numThreads", 2);
+        conf.put("segmentTargetSize", segmentTargetSize);
+        conf.put("maxSegmentAge", maxSegmentAge);
+        return new RealtimeArchiveFiller(parchive,
+                RealtimeArchiveFiller.getSpec().validate(YConfiguration.wrap(conf)));
+    }
+
+    private void feed(RealtimeArchiveFiller filler, long t0, long step, int n) throws Exception {
+        for (int i = 0; i < n; i++) {
+            ParameterValue pv = new ParameterValue(p1);
+            pv.setGenerationTime(t0 + i * step);
+            pv.setEngineeringValue(ValueUtility.getUint32Value(3));
+            filler.processParameters(Arrays.asList(pv));
+        }
+        filler.shutDown();
+    }
+
+    // checks that all the values are in the archive and returns the segments
+    private List<ParameterValueArray> checkArchive(long t0, long step, int n) throws Exception {
+        int pid = parchive.getParameterIdDb().get(p1.getQualifiedName())[0].pid;
+        int pgid = parchive.getParameterGroupIdDb().createAndGet(IntArray.wrap(pid));
+        ParameterRequest req = new ParameterRequest(0, TimeEncoding.MAX_INSTANT, true, true, false, false);
+        List<ParameterValueArray> segments = new ArrayList<>();
+        new SingleParameterRetrieval(parchive, pid, new int[] { pgid }, req).retrieve(segments::add);
+
+        int k = 0;
+        for (ParameterValueArray pva : segments) {
+            for (long t : pva.getTimestamps()) {
+                assertEquals(t0 + k * step, t);
+                k++;
+            }
+        }
+        assertEquals(n, k);
+        return segments;
+    }
+}
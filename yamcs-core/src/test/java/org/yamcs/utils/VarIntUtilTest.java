@@ -102,5 +102,25 @@ public class VarIntUtilTest {
         IntArray s2 = VarIntUtil.decodeDeltaIntArray(encoded);
         assertTrue(s1.equals(s2));
     }
-    
+
+    @Test
+    public void testVarInt64() {
+        long[] la = { 0, 1, 127, 128, 1L << 31, 1L << 35, Long.MAX_VALUE, -1, Long.MIN_VALUE };
+        ByteBuffer bb = ByteBuffer.allocate(10 * la.length);
+        for (long x : la) {
+            VarIntUtil.writeVarInt64(bb, x);
+        }
+        bb.rewind();
+        for (long x : la) {
+            assertEquals(x, VarIntUtil.readVarInt64(bb));
+        }
+    }
+
+    @Test
+    public void testDeltaDeltaZigZag64() {
+        LongArray la = LongArray.wrap(5, Long.MAX_VALUE, Long.MIN_VALUE, -3, 1000, 2000, 3000);
+        long[] ddz = VarIntUtil.encodeDeltaDeltaZigZag(la);
+        assertEquals(0, ddz[6]);
+        assertArrayEquals(la.array(), VarIntUtil.decodeDeltaDeltaZigZag(ddz));
+    }
 }
@@ -0,0 +1,106 @@
+package org.yamcs.xtceproc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.yamcs.ProcessorConfig;
+import org.yamcs.YConfiguration;
+import org.yamcs.commanding.ArgumentValue;
+import org.yamcs.xtce.Argument;
+import org.yamcs.xtce.ArgumentAssignment;
+import org.yamcs.xtce.MetaCommand;
+import org.yamcs.xtce.XtceDb;
+import org.yamcs.xtceproc.MetaCommandProcessor.CommandBuildResult;
+
+public class CommandTemplateTest {
+    static XtceDb xtcedb;
+    ProcessorData pdata;
+    MetaCommandProcessor metaCommandProcessor;
+
+    static final List<ArgumentAssignment> CCSDS_TC_ARGS = Arrays.asList(
+            new ArgumentAssignment("uint8_arg", "1"),
+            new ArgumentAssignment("uint16_arg", "2"),
+            new ArgumentAssignment("int32_arg", "-3"),
+            new ArgumentAssignment("uint64_arg", "4"));
+
+    @BeforeClass
+    public static void beforeClass() {
+        YConfiguration.setupTest(null);
+        xtcedb = XtceDbFactory.createInstanceByConfig("refmdb");
+    }
+
+    @Before
+    public void before() {
+        pdata = new ProcessorData("test", "test", xtcedb, new ProcessorConfig());
+        metaCommandProcessor = new MetaCommandProcessor(pdata);
+    }
+
+    @Test
+    public void testSameAsUncached() throws Exception {
+        MetaCommand mc = xtcedb.getMetaCommand("/REFMDB/SUBSYS1/CCSDS_TC");
+        CommandBuildResult expected = MetaCommandProcessor.buildCommand(pdata, mc, CCSDS_TC_ARGS);
+
+        for (int i = 0; i < 3; i++) {
+            CommandBuildResult cbr = metaCommandProcessor.buildCommand(mc, CCSDS_TC_ARGS);
+            assertArrayEquals(expected.getCmdPacket(), cbr.getCmdPacket());
+            assertEquals(expected.getArgs().size(), cbr.getArgs().size());
+            for (Argument a : expected.getArgs().keySet()) {
+                ArgumentValue expectedValue = expected.getArgs().get(a);
+                ArgumentValue value = cbr.getArgs().get(a);
+                assertEquals(expectedValue.getEngValue(), value.getEngValue());
+                assertEquals(expectedValue.getRawValue(), value.getRawValue());
+            }
+        }
+        assertEquals(1, metaCommandProcessor.getTemplateCount());
+    }
+
+    @Test
+    public void testDefaultValues() throws Exception {
+        MetaCommand mc = xtcedb.getMetaCommand("/REFMDB/SUBSYS1/INT_ARG_TC_ABS");
+        List<ArgumentAssignment> noArgs = Collections.emptyList();
+        byte[] b1 = metaCommandProcessor.buildCommand(mc, noArgs).getCmdPacket();
+        byte[] b2 = metaCommandProcessor.buildCommand(mc, noArgs).getCmdPacket();
+        assertArrayEquals(MetaCommandProcessor.buildCommand(pdata, mc, noArgs).getCmdPacket(), b1);
+        assertArrayEquals(b1, b2);
+    }
+
+    @Test
+    public void testInvalidatedOnOverride() throws Exception {
+        MetaCommand mc = xtcedb.getMetaCommand("/REFMDB/SUBSYS1/CCSDS_TC");
+        metaCommandProcessor.buildCommand(mc, CCSDS_TC_ARGS);
+        assertEquals(1, metaCommandProcessor.getTemplateCount());
+
+        pdata.removeDefaultAlarm(xtcedb.getParameter("/REFMDB/SUBSYS1/FloatPara1_1_2"));
+        metaCommandProcessor.buildCommand(xtcedb.getMetaCommand("/REFMDB/SUBSYS1/ONE_INT_ARG_TC"),
+                Collections.emptyList());
+        assertEquals(1, metaCommandProcessor.getTemplateCount());
+    }
+
+    @Test
+    @Ignore
+    public void benchmark() throws Exception {
+        MetaCommand mc = xtcedb.getMetaCommand("/REFMDB/SUBSYS1/CCSDS_TC");
+        int n = 1_000_000;
+        for (int k = 0; k < 5; k++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                MetaCommandProcessor.buildCommand(pdata, mc, CCSDS_TC_ARGS);
+            }
+            long t1 = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                metaCommandProcessor.buildCommand(mc, CCSDS_TC_ARGS);
+            }
+            long t2 = System.nanoTime();
+            System.out.println("uncached: " + (long) (n * 1e9 / (t1 - t0)) + " commands/sec, cached: "
+                    + (long) (n * 1e9 / (t2 - t1)) + " commands/sec");
+        }
+    }
+}
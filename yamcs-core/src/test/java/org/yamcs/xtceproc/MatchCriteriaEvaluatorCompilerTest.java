@@ -0,0 +1,139 @@
+package org.yamcs.xtceproc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.YConfiguration;
+import org.yamcs.parameter.LastValueCache;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.Value;
+import org.yamcs.utils.ValueUtility;
+import org.yamcs.xtce.ANDedConditions;
+import org.yamcs.xtce.BooleanParameterType;
+import org.yamcs.xtce.Comparison;
+import org.yamcs.xtce.Condition;
+import org.yamcs.xtce.MatchCriteria;
+import org.yamcs.xtce.ORedConditions;
+import org.yamcs.xtce.OperatorType;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.ParameterInstanceRef;
+import org.yamcs.xtce.XtceDb;
+import org.yamcs.xtceproc.MatchCriteriaEvaluator.MatchResult;
+
+public class MatchCriteriaEvaluatorCompilerTest {
+    static XtceDb db;
+    static Parameter intPara;
+    static Parameter floatPara;
+
+    @BeforeClass
+    public static void beforeClass() {
+        YConfiguration.setupTest(null);
+        db = XtceDbFactory.createInstanceByConfig("refmdb");
+        intPara = db.getParameter("/REFMDB/SUBSYS1/IntegerPara1_1_6");
+        floatPara = db.getParameter("/REFMDB/SUBSYS1/FloatPara1_1_2");
+    }
+
+    @Test
+    public void testComparisons() {
+        for (OperatorType op : OperatorType.values()) {
+            checkSame(new Comparison(new ParameterInstanceRef(intPara, true), "10", op),
+                    pv(intPara, ValueUtility.getUint32Value(10)));
+            checkSame(new Comparison(new ParameterInstanceRef(intPara, true), "10", op),
+                    pv(intPara, ValueUtility.getSint64Value(-3)));
+            checkSame(new Comparison(new ParameterInstanceRef(floatPara, true), "2.5", op),
+                    pv(floatPara, ValueUtility.getFloatValue(3.1f)));
+            checkSame(new Comparison(new ParameterInstanceRef(floatPara, true), "2.5", op),
+                    pv(floatPara, ValueUtility.getDoubleValue(2.5)));
+        }
+    }
+
+    @Test
+    public void testBooleanComparisons() {
+        Parameter boolPara = new Parameter("boolPara");
+        boolPara.setQualifiedName("/test/boolPara");
+        boolPara.setParameterType(new BooleanParameterType.Builder().setName("bool").build());
+        for (OperatorType op : new OperatorType[] { OperatorType.EQUALITY, OperatorType.INEQUALITY }) {
+            Comparison c = new Comparison(new ParameterInstanceRef(boolPara, true), "True", op);
+            // the compiled evaluator is used, not the interpreted fallback
+            assertNotSame(MatchCriteriaEvaluatorFactory.getEvaluator(c).getClass(),
+                    MatchCriteriaEvaluatorCompiler.compile(c).getClass());
+            checkSame(c, pv(boolPara, ValueUtility.getBooleanValue(true)));
+            checkSame(c, pv(boolPara, ValueUtility.getBooleanValue(false)));
+        }
+    }
+
+    @Test
+    public void testTypeMismatchFallback() {
+        // the value type does not match the type of the constant, the interpreted version is used
+        checkSame(new Comparison(new ParameterInstanceRef(intPara, true), "10", OperatorType.EQUALITY),
+                pv(intPara, ValueUtility.getDoubleValue(10)));
+    }
+
+    @Test
+    public void testUndef() {
+        Comparison c = new Comparison(new ParameterInstanceRef(intPara, true), "10", OperatorType.EQUALITY);
+        ProcessingData data = ProcessingData.createForTmProcessing(new LastValueCache());
+        assertEquals(MatchResult.UNDEF, MatchCriteriaEvaluatorCompiler.compile(c).evaluate(data));
+    }
+
+    @Test
+    public void testAndOr() {
+        Condition c1 = new Condition(OperatorType.LARGERTHAN, new ParameterInstanceRef(intPara, true), "10");
+        Condition c2 = new Condition(OperatorType.SMALLERTHAN, new ParameterInstanceRef(floatPara, true), "2.5");
+        Condition c3 = new Condition(OperatorType.EQUALITY, new ParameterInstanceRef(intPara, true), "100");
+
+        ANDedConditions and = new ANDedConditions();
+        and.addConditionExpression(c1);
+        and.addConditionExpression(c2);
+
+        ORedConditions or = new ORedConditions();
+        or.addConditionExpression(and);
+        or.addConditionExpression(c3);
+
+        long[] ivalues = { 5, 11, 100 };
+        double[] fvalues = { 1.0, 2.5, 3.0 };
+        for (long i : ivalues) {
+            for (double f : fvalues) {
+                ProcessingData data = ProcessingData.createForTmProcessing(new LastValueCache());
+                data.getTmParams().add(pv(intPara, ValueUtility.getUint32Value((int) i)));
+                data.getTmParams().add(pv(floatPara, ValueUtility.getDoubleValue(f)));
+                checkSame(and, data);
+                checkSame(or, data);
+            }
+            // float parameter not available
+            ProcessingData data = ProcessingData.createForTmProcessing(new LastValueCache());
+            data.getTmParams().add(pv(intPara, ValueUtility.getUint32Value((int) i)));
+            checkSame(and, data);
+            checkSame(or, data);
+        }
+    }
+
+    @Test
+    public void testExpressionString() {
+        Comparison c = new Comparison(new ParameterInstanceRef(intPara, true), "10", OperatorType.EQUALITY);
+        MatchCriteriaEvaluator compiled = MatchCriteriaEvaluatorCompiler.compile(c);
+        assertNotSame(MatchCriteriaEvaluatorFactory.getEvaluator(c).getClass(), compiled.getClass());
+        assertEquals(MatchCriteriaEvaluatorFactory.getEvaluator(c).toExpressionString(),
+                compiled.toExpressionString());
+    }
+
+    private void checkSame(MatchCriteria mc, ParameterValue pv) {
+        ProcessingData data = ProcessingData.createForTmProcessing(new LastValueCache());
+        data.getTmParams().add(pv);
+        checkSame(mc, data);
+    }
+
+    private void checkSame(MatchCriteria mc, ProcessingData data) {
+        MatchResult expected = MatchCriteriaEvaluatorFactory.getEvaluator(mc).evaluate(data);
+        MatchResult actual = MatchCriteriaEvaluatorCompiler.compile(mc).evaluate(data);
+        assertEquals(mc.toString(), expected, actual);
+    }
+
+    private static ParameterValue pv(Parameter p, Value engValue) {
+        ParameterValue pv = new ParameterValue(p);
+        pv.setEngValue(engValue);
+        return pv;
+    }
+}
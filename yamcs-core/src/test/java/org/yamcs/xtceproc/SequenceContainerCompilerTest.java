@@ -0,0 +1,147 @@
+package org.yamcs.xtceproc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.yamcs.ProcessorConfig;
+import org.yamcs.RefMdbPacketGenerator;
+import org.yamcs.YConfiguration;
+import org.yamcs.parameter.ContainerParameterValue;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.ParameterValueList;
+import org.yamcs.xtce.SequenceContainer;
+import org.yamcs.xtce.XtceDb;
+
+public class SequenceContainerCompilerTest {
+    static XtceDb xtcedb;
+    static RefMdbPacketGenerator tmGenerator = new RefMdbPacketGenerator();
+
+    @BeforeClass
+    public static void beforeClass() {
+        YConfiguration.setupTest("refmdb");
+        XtceDbFactory.reset();
+        xtcedb = XtceDbFactory.createInstanceByConfig("refmdb");
+    }
+
+    @Test
+    public void testCompilable() {
+        SequenceContainer sc = xtcedb.getSequenceContainer("/REFMDB/SUBSYS1/PKT1_1");
+        CompiledContainerDecoder decoder = SequenceContainerCompiler.compile(sc.getEntryList());
+        assertNotNull(decoder);
+        assertTrue(decoder.getNumEntries() > 0);
+    }
+
+    @Test
+    public void testSameAsInterpreted() {
+        for (byte[] pkt : packets()) {
+            compare(pkt, false);
+        }
+    }
+
+    @Test
+    public void testTruncated() {
+        for (byte[] pkt : packets()) {
+            for (int n : new int[] { 8, 17, pkt.length / 2, pkt.length - 1 }) {
+                compare(Arrays.copyOf(pkt, n), false);
+                compare(Arrays.copyOf(pkt, n), true);
+            }
+        }
+    }
+
+    @Ignore
+    @Test
+    public void benchmark() {
+        List<byte[]> pkts = packets();
+        XtceTmExtractor interpreted = extractor(false, false);
+        XtceTmExtractor compiled = extractor(true, false);
+        for (int k = 0; k < 5; k++) {
+            for (boolean compile : new boolean[] { false, true }) {
+                XtceTmExtractor extractor = compile ? compiled : interpreted;
+                long t0 = System.nanoTime();
+                int n = 0;
+                for (int i = 0; i < 200_000; i++) {
+                    byte[] pkt = pkts.get(i % pkts.size());
+                    n += extractor.processPacket(pkt, 0, 0).getParameterResult().size();
+                }
+                long t1 = System.nanoTime();
+                System.out.println((compile ? "compiled:    " : "interpreted: ") + (t1 - t0) / 1000_000 + " ms, "
+                        + n + " parameters");
+            }
+        }
+    }
+
+    private void compare(byte[] pkt, boolean ignoreOutOfContainerEntries) {
+        ParameterValueList expected;
+        try {
+            expected = extract(pkt, false, ignoreOutOfContainerEntries);
+        } catch (RuntimeException e) {
+            try {
+                extract(pkt, true, ignoreOutOfContainerEntries);
+            } catch (RuntimeException e1) {
+                assertEquals(e.getClass(), e1.getClass());
+                assertEquals(e.getMessage(), e1.getMessage());
+                return;
+            }
+            throw new AssertionError("Expected exception " + e.getMessage());
+        }
+        ParameterValueList actual = extract(pkt, true, ignoreOutOfContainerEntries);
+        assertEquals(expected.size(), actual.size());
+
+        Iterator<ParameterValue> it = actual.iterator();
+        for (ParameterValue pv : expected) {
+            ParameterValue pv1 = it.next();
+            String name = pv.getParameterQualifiedName();
+            assertEquals(name, pv1.getParameterQualifiedName());
+            assertEquals(name, pv.getRawValue(), pv1.getRawValue());
+            assertEquals(name, pv.getEngValue(), pv1.getEngValue());
+            assertEquals(name, pv.getAcquisitionStatus(), pv1.getAcquisitionStatus());
+            if (pv instanceof ContainerParameterValue) {
+                ContainerParameterValue cpv = (ContainerParameterValue) pv;
+                ContainerParameterValue cpv1 = (ContainerParameterValue) pv1;
+                assertEquals(name, cpv.getAbsoluteBitOffset(), cpv1.getAbsoluteBitOffset());
+                assertEquals(name, cpv.getBitSize(), cpv1.getBitSize());
+            }
+        }
+    }
+
+    private ParameterValueList extract(byte[] pkt, boolean compile, boolean ignoreOutOfContainerEntries) {
+        return extractor(compile, ignoreOutOfContainerEntries).processPacket(pkt, 0, 0).getParameterResult();
+    }
+
+    private XtceTmExtractor extractor(boolean compile, boolean ignoreOutOfContainerEntries) {
+        ProcessorConfig pconf = new ProcessorConfig();
+        pconf.getContainerProcessingOptions().setCompileContainers(compile);
+        pconf.getContainerProcessingOptions().setIgnoreOutOfContainerEntries(ignoreOutOfContainerEntries);
+        ProcessorData pdata = new ProcessorData(null, "XTCEPROC", xtcedb, pconf);
+        XtceTmExtractor tmExtractor = new XtceTmExtractor(xtcedb, pdata);
+        tmExtractor.provideAll();
+        return tmExtractor;
+    }
+
+    private static List<byte[]> packets() {
+        List<byte[]> l = new ArrayList<>();
+        l.add(tmGenerator.generate_PKT1_1());
+        l.add(tmGenerator.generate_PKT1_2());
+        l.add(tmGenerator.generate_PKT1_3());
+        l.add(tmGenerator.generate_PKT14());
+        l.add(tmGenerator.generate_PKT1_5());
+        l.add(tmGenerator.generate_PKT1_6(3, 4));
+        l.add(tmGenerator.generate_PKT1_7());
+        l.add(tmGenerator.generate_PKT1_9());
+        l.add(tmGenerator.generate_PKT1_10(5, 1, 3.14f));
+        l.add(tmGenerator.generate_PKT1_11());
+        l.add(tmGenerator.generate_PKT1_12());
+        l.add(tmGenerator.generate_PKT2());
+        l.add(tmGenerator.generate_PKT3());
+        return l;
+    }
+}
@@ -8,6 +8,7 @@ import java.util.Random;
 
 import org.junit.Test;
 import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.TimeInterval;
 
 public class WriterTest extends YarchTestCase {
     int n = 10;
@@ -137,4 +138,54 @@ public class WriterTest extends YarchTestCase {
 
         execute("drop table tbl_upsert_append");
     }
+
+    @Test
+    public void TestUpsertAppendOverride() throws Exception {
+        long t = TimeEncoding.parse("2021-03-01T10:00:00");
+        execute("create table tbl_upsert_append "
+                + "(gentime timestamp, seq int, name string, primary key(gentime, seq)) histogram(name)");
+        execute("create stream tbl_upsert_append_in(gentime timestamp)");
+        execute("upsert_append into tbl_upsert_append select * from tbl_upsert_append_in");
+
+        Stream s = ydb.getStream("tbl_upsert_append_in");
+        TupleDefinition td = new TupleDefinition();
+        td.addColumn(new ColumnDefinition("gentime", DataType.TIMESTAMP));
+        td.addColumn(new ColumnDefinition("seq", DataType.INT));
+
+        TupleDefinition td0 = td.copy();
+        td0.addColumn(new ColumnDefinition("name", DataType.STRING));
+        TupleDefinition td1 = td.copy();
+        td1.addColumn(new ColumnDefinition("status", DataType.STRING));
+        for (int i = 0; i < 5; i++) {
+            s.emitTuple(new Tuple(td0, new Object[] { t + i, i, "cmd" + (i % 2) }));
+            for (int j = 0; j < 10; j++) {
+                s.emitTuple(new Tuple(td1, new Object[] { t + i, i, "s" + j }));
+            }
+        }
+        // an update of a row not written by this writer
+        TableDefinition tblDef = ydb.getTable("tbl_upsert_append");
+        TableWriter tw = ydb.getStorageEngine(tblDef).newTableWriter(ydb, tblDef,
+                TableWriter.InsertMode.UPSERT_APPEND);
+        tw.onTuple(null, new Tuple(td1, new Object[] { t, 0, "final" }));
+        tw.close();
+        execute("close stream tbl_upsert_append_in");
+
+        execute("create stream tbl_upsert_append_out as select * from tbl_upsert_append");
+        List<Tuple> tuples = fetchAll("tbl_upsert_append_out");
+        assertEquals(5, tuples.size());
+        for (int i = 0; i < 5; i++) {
+            Tuple t1 = tuples.get(i);
+            assertEquals(i, t1.getIntColumn("seq"));
+            assertEquals("cmd" + (i % 2), t1.getColumn("name"));
+            assertEquals(i == 0 ? "final" : "s9", t1.getColumn("status"));
+        }
+
+        // the histogram counts each row once
+        List<HistogramAggregate> aggs = ydb.getStorageEngine(tblDef).getHistogramAggregates(ydb, tblDef, "name",
+                HistogramAggregate.Resolution.HOUR, new TimeInterval());
+        assertEquals(2, aggs.size());
+        assertEquals(5, aggs.get(0).getCount() + aggs.get(1).getCount());
+
+        execute("drop table tbl_upsert_append");
+    }
 }
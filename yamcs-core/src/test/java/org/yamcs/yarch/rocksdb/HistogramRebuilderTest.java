@@ -17,6 +17,8 @@ import org.yamcs.utils.parser.ParseException;
 import org.yamcs.yarch.ColumnSerializer;
 import org.yamcs.yarch.ColumnSerializerFactory;
 import org.yamcs.yarch.DataType;
+import org.yamcs.yarch.HistogramAggregate;
+import org.yamcs.yarch.HistogramAggregate.Resolution;
 import org.yamcs.yarch.HistogramIterator;
 import org.yamcs.yarch.HistogramRecord;
 import org.yamcs.yarch.PartitionManager;
@@ -107,6 +109,44 @@ public class HistogramRebuilderTest extends YarchTestCase {
         iter.close();
     }
 
+    @Test
+    public void testAggregates() throws Exception {
+        populate(true);
+        List<HistogramAggregate> aggs = rse.getHistogramAggregates(ydb, tblDef, "name", Resolution.HOUR,
+                new TimeInterval());
+        assertEquals(3, aggs.size());
+        checkAggregate(aggs.get(0), "p1", 1000, 2);
+        checkAggregate(aggs.get(1), "p2", 3000, 1);
+        checkAggregate(aggs.get(2), "p2", t1, 1);
+        assertEquals(2 * aggs.get(1).getSize(), aggs.get(0).getSize());
+
+        aggs = rse.getHistogramAggregates(ydb, tblDef, "name", Resolution.DAY, new TimeInterval(t1 - 1000, t1));
+        assertEquals(1, aggs.size());
+        checkAggregate(aggs.get(0), "p2", t1, 1);
+
+        // the aggregates do not show up in the histogram
+        HistogramIterator iter = rse.getHistogramIterator(ydb, tblDef, "name", new TimeInterval());
+        assertNumElementsEqual(iter, 3);
+        iter.close();
+
+        List<HistogramAggregate> aggs1 = rse.getHistogramAggregates(ydb, tblDef, "name", Resolution.MINUTE,
+                new TimeInterval());
+        Tablespace tablespace = rse.getTablespace(ydb.getName());
+        HistogramRebuilder rebuilder = new HistogramRebuilder(tablespace, ydb, tblName);
+        rebuilder.rebuild().get();
+        List<HistogramAggregate> aggs2 = rse.getHistogramAggregates(ydb, tblDef, "name", Resolution.MINUTE,
+                new TimeInterval());
+        assertEquals(aggs1.toString(), aggs2.toString());
+    }
+
+    private void checkAggregate(HistogramAggregate ha, String name, long time, long count) {
+        assertEquals(name, new String(ha.getColumnv(), 0, ha.getColumnv().length - 1));
+        Resolution res = ha.getResolution();
+        assertEquals(res.bucketStart(res.bucket(time)), ha.getBucketStart());
+        assertEquals(count, ha.getCount());
+        assertTrue(ha.getSize() > 0);
+    }
+
     Thread startWriter(int n, int m, int seqStart, String p, Semaphore semaphore) {
         Thread thread = new Thread(() -> {
             int seq = seqStart;
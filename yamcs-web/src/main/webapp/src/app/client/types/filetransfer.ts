@@ -32,6 +32,8 @@ export interface Transfer {
   totalSize: number;
   sizeTransferred: number;
   failureReason?: string;
+  throughput?: number;
+  queueTime?: number;
 }
 
 export interface UploadOptions {
@@ -346,6 +346,7 @@ export interface GetParametersOptions {
   q?: string;
   system?: string;
   searchMembers?: boolean;
+  rank?: boolean;
   pos?: number;
   limit?: number;
 }
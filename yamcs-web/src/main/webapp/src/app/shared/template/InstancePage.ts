@@ -143,6 +143,7 @@ export class InstancePage implements OnInit, OnDestroy {
             q: val,
             limit: 25,
             searchMembers: true,
+            rank: true,
           });
         } else {
           return of({ parameters: [] });